@@ -0,0 +1,137 @@
+package org.example.bench;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.service.BankCentralSystem;
+import org.example.service.CredentialHasher;
+import org.example.service.CredentialVerifier;
+import org.example.service.InMemoryAccountStore;
+import org.example.service.WithdrawalLimits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the BankCentralSystem operations on an in-memory bank.
+ *
+ * {@code skew=uniform} spreads operations over all accounts; {@code skew=hot}
+ * sends 90% of them to {@value #HOT_ACCOUNTS} accounts to show lock
+ * contention. Thread count is chosen on the command line ({@code -t}).
+ * {@code withdraw} pays 20 TL notes and tops the cassettes up every
+ * {@value #REFILL_EVERY} calls per thread, so the ATM never runs dry.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BankBenchmark {
+
+    static final int HOT_ACCOUNTS = 8;
+    static final String PIN = "1234";
+    static final long AMOUNT = 100; // 1 TL
+    static final long NOTE_AMOUNT = Money.ofLira(20);
+    static final int REFILL_EVERY = 256;
+
+    @State(Scope.Benchmark)
+    public static class BankState {
+        @Param({"uniform", "hot"})
+        public String skew;
+
+        @Param({"10000"})
+        public int accounts;
+
+        BankCentralSystem bank;
+        String[] cards;
+        Customer[] customers;
+        boolean hot;
+
+        @Setup
+        public void setUp() {
+            InMemoryAccountStore store = new InMemoryAccountStore();
+            // cheap KDF and one shared credential: logins are measured on the verified-session cache
+            CredentialVerifier verifier = new CredentialVerifier(new CredentialHasher(1000),
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                    CredentialVerifier.DEFAULT_QUEUE_CAPACITY, accounts);
+            byte[] pinHash = verifier.hash(PIN);
+            cards = new String[accounts];
+            customers = new Customer[accounts];
+            for (int i = 0; i < accounts; i++) {
+                String card = Long.toString(4_000_000_000_000_000L + i);
+                Customer c = new Customer(card, pinHash, "Bench " + i,
+                        new Account("ACC-B" + i, 1L << 60));
+                store.add(c);
+                cards[i] = card;
+                customers[i] = c;
+            }
+            bank = new BankCentralSystem(store, 1L << 60, verifier);
+            bank.setWithdrawalLimits(WithdrawalLimits.UNLIMITED); // measure the debit, not the limit check
+            bank.setLoginRate(Double.POSITIVE_INFINITY, 1);
+            bank.getFraudMonitor().setRules(Collections.emptyList()); // publish, but don't block hot cards
+            for (String card : cards) {
+                bank.authenticateCustomer(card, PIN); // fill the verified-session cache
+            }
+            hot = "hot".equals(skew);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom();
+        private int withdrawals;
+
+        int next(BankState s) {
+            if (s.hot && random.nextInt(10) != 0) {
+                return random.nextInt(HOT_ACCOUNTS);
+            }
+            return random.nextInt(s.accounts);
+        }
+
+        int other(BankState s, int first) {
+            int j = next(s);
+            return j != first ? j : (first + 1) % s.accounts;
+        }
+    }
+
+    @Benchmark
+    public Customer authenticateCustomer(BankState s, Picker p) {
+        return s.bank.authenticateCustomer(s.cards[p.next(s)], PIN);
+    }
+
+    @Benchmark
+    public boolean deposit(BankState s, Picker p) {
+        return s.bank.deposit(s.customers[p.next(s)], AMOUNT);
+    }
+
+    @Benchmark
+    public boolean withdraw(BankState s, Picker p) {
+        if (++p.withdrawals % REFILL_EVERY == 0) {
+            s.bank.refillCassettes();
+        }
+        return s.bank.withdraw(s.customers[p.next(s)], NOTE_AMOUNT);
+    }
+
+    @Benchmark
+    public boolean transfer(BankState s, Picker p) {
+        int from = p.next(s);
+        return s.bank.transfer(s.customers[from], s.cards[p.other(s, from)], AMOUNT);
+    }
+
+    @Benchmark
+    public long getBalance(BankState s, Picker p) {
+        return s.bank.getBalance(s.customers[p.next(s)]);
+    }
+}
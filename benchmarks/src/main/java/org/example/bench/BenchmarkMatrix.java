@@ -0,0 +1,31 @@
+package org.example.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link BankBenchmark} single-threaded and contended (1/4/16/64 threads)
+ * for both skews, with the GC profiler reporting allocation per operation.
+ * Results are written to {@code bench-t<threads>.json} for later comparison.
+ */
+public class BenchmarkMatrix {
+
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(BankBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("bench-t" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -2,11 +2,23 @@ package org.example.console;
 
 import org.example.model.ATMState;
 import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.model.StatementEntry;
 import org.example.model.Technician;
+import org.example.service.AtmTerminal;
 import org.example.service.BankCentralSystem;
+import org.example.service.CashStock;
+import org.example.service.DiagnosticReport;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Simple console UI that simulates the ATM front panel and technician keyboard.
@@ -14,7 +26,11 @@ import java.util.Scanner;
  */
 public class ATMConsoleApp {
 
-    private final BankCentralSystem bank = new BankCentralSystem();
+    private static final String RETAINED_MESSAGE =
+            "Too many incorrect PINs. Your card has been retained; please contact your bank.\n";
+    private static final String BLOCKED_MESSAGE = "This card is blocked. Please contact your bank.\n";
+
+    private final BankCentralSystem bank = openBank();
     private final Scanner scanner = new Scanner(System.in);
 
     public void run() {
@@ -35,6 +51,7 @@ public class ATMConsoleApp {
                     break;
                 case "0":
                     System.out.println("Goodbye.");
+                    closeBank();
                     return;
                 default:
                     System.out.println("Invalid selection.\n");
@@ -55,15 +72,13 @@ public class ATMConsoleApp {
         System.out.print("Enter PIN: ");
         String pin = scanner.nextLine().trim();
 
-        long start = System.currentTimeMillis();
         Customer customer = bank.authenticateCustomer(card, pin);
-        long durationMs = System.currentTimeMillis() - start;
-
         if (customer == null) {
-            System.out.println("Authentication failed (" + durationMs + " ms).\n");
+            System.out.println(bank.isCardRetained(card) ? RETAINED_MESSAGE
+                    : bank.isCardBlocked(card) ? BLOCKED_MESSAGE : "Authentication failed.\n");
             return;
         }
-        System.out.println("Welcome, " + customer.getName() + " (" + durationMs + " ms)\n");
+        System.out.println("Welcome, " + customer.getName() + "\n");
 
         boolean done = false;
         while (!done) {
@@ -102,6 +117,7 @@ public class ATMConsoleApp {
         System.out.println("2) Withdraw");
         System.out.println("3) Check Balance");
         System.out.println("4) Transfer Money");
+        System.out.println("5) Mini Statement");
         System.out.println("0) Cancel");
         System.out.print("Select: ");
         String sel = scanner.nextLine().trim();
@@ -118,6 +134,9 @@ public class ATMConsoleApp {
             case "4":
                 doTransfer(customer);
                 break;
+            case "5":
+                doMiniStatement(customer);
+                break;
             case "0":
                 System.out.println("Transaction cancelled.\n");
                 break;
@@ -128,17 +147,17 @@ public class ATMConsoleApp {
 
     private void doDeposit(Customer customer) {
         System.out.print("Enter amount to deposit: ");
-        BigDecimal amount = readAmount();
-        if (amount == null)
+        long amount = readAmount();
+        if (amount <= 0)
             return;
-        System.out.println("You are depositing: " + amount + " TL");
+        System.out.println("You are depositing: " + Money.format(amount) + " TL");
         if (!confirm()) {
             System.out.println("Deposit cancelled. Returning money and card.\n");
             return;
         }
         boolean ok = bank.deposit(customer, amount);
         if (ok) {
-            System.out.println("Deposit successful. New balance: " + bank.getBalance(customer) + " TL\n");
+            System.out.println("Deposit successful. New balance: " + Money.format(bank.getBalance(customer)) + " TL\n");
         } else {
             System.out.println("Error while depositing. Operation cancelled.\n");
         }
@@ -147,12 +166,24 @@ public class ATMConsoleApp {
     private void doWithdraw(Customer customer) {
         while (true) {
             System.out.print("Enter amount to withdraw: ");
-            BigDecimal amount = readAmount();
-            if (amount == null)
+            long amount = readAmount();
+            if (amount <= 0)
                 return;
 
-            if (bank.getAtmCashStock().compareTo(amount) < 0) {
-                System.out.println("ATM does not have enough cash for this withdrawal.");
+            long allowance = bank.withdrawalAllowance(customer);
+            if (amount > allowance) {
+                if (allowance <= 0) {
+                    System.out.println("You have reached your withdrawal limit for now. Card returned.\n");
+                    return;
+                }
+                System.out.println("This exceeds your withdrawal limit. You can withdraw up to "
+                        + Money.format(allowance) + " TL right now.");
+                continue;
+            }
+
+            long reservation = bank.reserveCash(amount);
+            if (reservation == CashStock.NO_RESERVATION) {
+                System.out.println("ATM cannot pay out this amount with the notes it has.");
                 System.out.print("Do you want to enter a different amount? (y/n): ");
                 String again = scanner.nextLine().trim();
                 if (!again.equalsIgnoreCase("y")) {
@@ -162,24 +193,38 @@ public class ATMConsoleApp {
                 continue;
             }
 
-            System.out.println("You are withdrawing: " + amount + " TL");
+            System.out.println("You are withdrawing: " + Money.format(amount) + " TL");
             if (!confirm()) {
+                bank.releaseCash(reservation);
                 System.out.println("Withdrawal cancelled. Card returned.\n");
                 return;
             }
 
-            boolean ok = bank.withdraw(customer, amount);
+            boolean ok = bank.withdrawReserved(customer, reservation);
             if (!ok) {
-                System.out.println("Insufficient funds. Please enter an amount within your balance.\n");
+                System.out.println("Withdrawal declined. Please enter an amount within your balance and limits.\n");
             } else {
-                System.out.println("Please take your cash. New balance: " + bank.getBalance(customer) + " TL\n");
+                System.out.println("Please take your cash. New balance: " + Money.format(bank.getBalance(customer)) + " TL\n");
             }
             return;
         }
     }
 
     private void doCheckBalance(Customer customer) {
-        System.out.println("Your current balance: " + bank.getBalance(customer) + " TL");
+        System.out.println("Your current balance: " + Money.format(bank.getBalance(customer)) + " TL");
+        System.out.println("Card returned.\n");
+    }
+
+    private void doMiniStatement(Customer customer) {
+        List<StatementEntry> entries = bank.miniStatement(customer, BankCentralSystem.MINI_STATEMENT_ENTRIES);
+        System.out.println("\n--- Mini Statement (newest first) ---");
+        if (entries.isEmpty()) {
+            System.out.println("No transactions yet.");
+        }
+        for (StatementEntry e : entries) {
+            System.out.println(e);
+        }
+        System.out.println("Current balance: " + Money.format(bank.getBalance(customer)) + " TL");
         System.out.println("Card returned.\n");
     }
 
@@ -196,12 +241,12 @@ public class ATMConsoleApp {
             return;
         }
         System.out.print("Enter amount to transfer: ");
-        BigDecimal amount = readAmount();
-        if (amount == null)
+        long amount = readAmount();
+        if (amount <= 0)
             return;
         boolean ok = bank.transfer(customer, target, amount);
         if (ok) {
-            System.out.println("Transfer completed. New balance: " + bank.getBalance(customer) + " TL\n");
+            System.out.println("Transfer completed. New balance: " + Money.format(bank.getBalance(customer)) + " TL\n");
         } else {
             System.out.println("Transfer failed (insufficient funds or system error).\n");
         }
@@ -234,8 +279,9 @@ public class ATMConsoleApp {
     private void doChangePin(Customer customer) {
         System.out.print("Enter your old PIN: ");
         String oldPin = scanner.nextLine().trim();
-        if (!customer.getPin().equals(oldPin)) {
-            System.out.println("Incorrect PIN. Card returned.\n");
+        if (!bank.verifyPin(customer, oldPin)) {
+            System.out.println(bank.isCardRetained(customer.getCardNumber())
+                    ? RETAINED_MESSAGE : "Incorrect PIN. Card returned.\n");
             return;
         }
         System.out.print("Enter your new PIN: ");
@@ -246,8 +292,11 @@ public class ATMConsoleApp {
             System.out.println("PINs do not match, try again. Card returned.\n");
             return;
         }
-        customer.setPin(newPin1);
-        System.out.println("PIN successfully changed.\n");
+        if (bank.changePin(customer, newPin1)) {
+            System.out.println("PIN successfully changed.\n");
+        } else {
+            System.out.println("System busy, PIN not changed. Please try again later.\n");
+        }
     }
 
     private void doReportEmergency(Customer customer) {
@@ -277,10 +326,8 @@ public class ATMConsoleApp {
             System.out.println("Report cancelled.\n");
             return;
         }
-        long start = System.currentTimeMillis();
         bank.reportEmergency(type, customer.getCardNumber());
-        long duration = System.currentTimeMillis() - start;
-        System.out.println("Report received (" + duration + " ms). A technician will assist you. Please be patient.\n");
+        System.out.println("Report received. A technician will assist you. Please be patient.\n");
     }
 
     // --- Technician / SystemMaintenance use case ---
@@ -298,6 +345,7 @@ public class ATMConsoleApp {
             return;
         }
         System.out.println("Welcome, technician " + tech.getUsername() + ".\n");
+        warnLowCash();
 
         boolean done = false;
         while (!done) {
@@ -305,6 +353,14 @@ public class ATMConsoleApp {
             System.out.println("1) Enable Maintenance Mode");
             System.out.println("2) Disable Maintenance Mode");
             System.out.println("3) Log Out");
+            System.out.println("4) Show Metrics");
+            System.out.println("5) Retained Cards");
+            System.out.println("6) Blocked Cards");
+            System.out.println("7) Load Blocklist");
+            System.out.println("8) Refill Cassettes");
+            System.out.println("9) Cash Forecast");
+            System.out.println("10) Uptime");
+            System.out.println("11) Emergency Reports");
             System.out.print("Select: ");
             String sel = scanner.nextLine().trim();
             switch (sel) {
@@ -317,6 +373,34 @@ public class ATMConsoleApp {
                 case "3":
                     done = true;
                     break;
+                case "4":
+                    System.out.println("\n--- Bank Metrics ---");
+                    System.out.println(bank.getMetrics().dump());
+                    break;
+                case "5":
+                    handleRetainedCards();
+                    break;
+                case "6":
+                    handleBlockedCards();
+                    break;
+                case "7":
+                    loadBlocklist();
+                    break;
+                case "8":
+                    refillCassettes();
+                    break;
+                case "9":
+                    System.out.println("\n--- Cash Forecast ---");
+                    System.out.println(bank.cashForecastReport());
+                    break;
+                case "10":
+                    System.out.println("\n--- Uptime ---");
+                    System.out.println(bank.uptimeReport(30));
+                    break;
+                case "11":
+                    System.out.println("\n--- Emergency Reports ---");
+                    System.out.println(bank.emergencyReport());
+                    break;
                 default:
                     System.out.println("Invalid selection.\n");
             }
@@ -324,8 +408,87 @@ public class ATMConsoleApp {
         System.out.println("Technician logged out.\n");
     }
 
+    private void handleRetainedCards() {
+        Map<String, String> retained = bank.getRetainedCards();
+        if (retained.isEmpty()) {
+            System.out.println("No cards are retained.\n");
+            return;
+        }
+        System.out.println("\n--- Retained Cards ---");
+        retained.forEach((card, atm) -> System.out.println(card + " at " + atm));
+        System.out.print("Card number to give back (blank to cancel): ");
+        String card = scanner.nextLine().trim();
+        if (card.isEmpty()) {
+            return;
+        }
+        System.out.println(bank.returnRetainedCard(card)
+                ? "Card returned to its customer.\n" : "That card is not retained.\n");
+    }
+
+    private void handleBlockedCards() {
+        System.out.println(bank.getBlocklist().size() + " cards on the blocklist.");
+        Map<String, String> blocked = bank.getBlockedCards();
+        if (blocked.isEmpty()) {
+            System.out.println("No cards are blocked.\n");
+            return;
+        }
+        System.out.println("\n--- Blocked Cards ---");
+        blocked.forEach((card, reason) -> System.out.println(card + ": " + reason));
+        System.out.print("Card number to unblock (blank to cancel): ");
+        String card = scanner.nextLine().trim();
+        if (card.isEmpty()) {
+            return;
+        }
+        System.out.println(bank.unblockCard(card) ? "Card unblocked.\n" : "That card is not blocked.\n");
+    }
+
+    /** Names the terminals forecast to run low on cash within a day, so a refill can be scheduled. */
+    private void warnLowCash() {
+        long soon = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        for (AtmTerminal atm : bank.getFleet().terminals()) {
+            long low = bank.forecastLowCash(atm);
+            if (low >= 0 && low <= soon) {
+                System.out.println("Warning: " + atm.getId() + " is forecast to run low on cash within "
+                        + TimeUnit.MILLISECONDS.toHours(low - System.currentTimeMillis()) + " h. See 9) Cash Forecast.");
+            }
+        }
+    }
+
+    private void refillCassettes() {
+        long added = bank.refillCassettes();
+        System.out.println("Loaded " + Money.format(added) + " TL in notes. Cassettes now hold:");
+        System.out.println(describeCassettes() + "\n");
+    }
+
+    private String describeCassettes() {
+        long[] denominations = CashStock.denominations();
+        int[] counts = bank.getDefaultTerminal().getCashStock().noteCounts();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(counts[i]).append(" x ")
+                    .append(Money.toBigDecimal(denominations[i]).stripTrailingZeros().toPlainString()).append(" TL");
+        }
+        return sb.toString();
+    }
+
+    private void loadBlocklist() {
+        System.out.print("Blocklist file, one card number per line (blank to cancel): ");
+        String file = scanner.nextLine().trim();
+        if (file.isEmpty()) {
+            return;
+        }
+        try {
+            System.out.println(bank.loadBlocklist(Paths.get(file)) + " cards on the blocklist.\n");
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Could not load the blocklist: " + e.getMessage() + "\n");
+        }
+    }
+
     private void enableMaintenance() {
-        bank.setAtmState(ATMState.ON_MAINTENANCE);
+        if (!bank.setAtmState(ATMState.ON_MAINTENANCE)) {
+            System.out.println("Cannot enter maintenance mode from " + bank.getAtmState() + ".\n");
+            return;
+        }
         System.out.println("ATM state changed to ON_MAINTENANCE.");
         System.out.println("Card reader locked. Screen: 'Temporarily Out of Service'.");
         System.out.println("Technician can now physically refill cash / fix errors, then press confirm.\n");
@@ -335,35 +498,61 @@ public class ATMConsoleApp {
 
     private void disableMaintenance() {
         System.out.println("Running self-check...");
-        if (!bank.selfCheckOk()) {
+        DiagnosticReport report = bank.runDiagnostics();
+        System.out.println(report);
+        if (!report.passed()) {
             System.out.println("Error, check the ATM Machine. Staying in ON_MAINTENANCE.\n");
             bank.setAtmState(ATMState.ON_MAINTENANCE);
+        } else if (!bank.setAtmState(ATMState.ACTIVE)) {
+            System.out.println("Cannot go back into service from " + bank.getAtmState()
+                    + ". Enable maintenance mode first.\n");
         } else {
-            bank.setAtmState(ATMState.ACTIVE);
             System.out.println("ATM ready. Screen: 'Ready'.\n");
         }
     }
 
     // --- Helpers ---
 
+    private static BankCentralSystem openBank() {
+        try {
+            return new BankCentralSystem(BankCentralSystem.DEFAULT_DATA_DIR);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open bank data directory", e);
+        }
+    }
+
+    private void closeBank() {
+        try {
+            bank.close();
+        } catch (IOException e) {
+            System.out.println("Warning: bank journal was not closed cleanly: " + e.getMessage());
+        }
+    }
+
     private boolean confirm() {
         System.out.print("Confirm? (y/n): ");
         String ans = scanner.nextLine().trim();
         return ans.equalsIgnoreCase("y");
     }
 
-    private BigDecimal readAmount() {
+    /** Reads an amount in TL and returns it in kurus, or 0 if it was rejected. */
+    private long readAmount() {
         String text = scanner.nextLine().trim();
         try {
             BigDecimal amount = new BigDecimal(text);
             if (amount.signum() <= 0) {
                 System.out.println("Amount must be positive.\n");
-                return null;
+                return 0;
+            }
+            long minor = Money.toMinor(amount);
+            if (minor <= 0) {
+                System.out.println("Invalid number.\n");
+                return 0;
             }
-            return amount;
+            return minor;
         } catch (NumberFormatException e) {
             System.out.println("Invalid number.\n");
-            return null;
+            return 0;
         }
     }
 }
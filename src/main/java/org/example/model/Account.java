@@ -1,12 +1,19 @@
 package org.example.model;
 
-import java.math.BigDecimal;
-
+/**
+ * Bank account. The balance is kept in kurus (see {@link Money}).
+ * Balance mutations are not synchronized here; callers must hold the
+ * account's stripe in {@link org.example.service.AccountLocks}.
+ * Reads are lock-free through the volatile field.
+ *
+ * Storage backends that keep balances outside the heap override
+ * {@link #getBalance()} and {@link #setBalance(long)}.
+ */
 public class Account {
     private final String accountNumber;
-    private BigDecimal balance;
+    private volatile long balance;
 
-    public Account(String accountNumber, BigDecimal balance) {
+    public Account(String accountNumber, long balance) {
         this.accountNumber = accountNumber;
         this.balance = balance;
     }
@@ -15,21 +22,26 @@ public class Account {
         return accountNumber;
     }
 
-    public BigDecimal getBalance() {
+    public long getBalance() {
         return balance;
     }
 
-    public void deposit(BigDecimal amount) {
-        balance = balance.add(amount);
+    /** Overwrites the balance, e.g. with one recorded in the transaction journal. */
+    public void setBalance(long balance) {
+        this.balance = balance;
+    }
+
+    /** Adds {@code amount}; throws {@link ArithmeticException}, leaving the balance as it was, on overflow. */
+    public void deposit(long amount) {
+        setBalance(Math.addExact(getBalance(), amount));
     }
 
-    public boolean withdraw(BigDecimal amount) {
-        if (balance.compareTo(amount) >= 0) {
-            balance = balance.subtract(amount);
+    public boolean withdraw(long amount) {
+        long current = getBalance();
+        if (current >= amount) {
+            setBalance(current - amount);
             return true;
         }
         return false;
     }
 }
-
-
@@ -2,13 +2,13 @@ package org.example.model;
 
 public class Customer {
     private final String cardNumber;
-    private String pin;
+    private volatile byte[] pinHash;
     private final String name;
     private final Account account;
 
-    public Customer(String cardNumber, String pin, String name, Account account) {
+    public Customer(String cardNumber, byte[] pinHash, String name, Account account) {
         this.cardNumber = cardNumber;
-        this.pin = pin;
+        this.pinHash = pinHash;
         this.name = name;
         this.account = account;
     }
@@ -17,12 +17,12 @@ public class Customer {
         return cardNumber;
     }
 
-    public String getPin() {
-        return pin;
+    public byte[] getPinHash() {
+        return pinHash;
     }
 
-    public void setPin(String pin) {
-        this.pin = pin;
+    public void setPinHash(byte[] pinHash) {
+        this.pinHash = pinHash;
     }
 
     public String getName() {
@@ -0,0 +1,41 @@
+package org.example.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money is carried as a primitive {@code long} of kurus (1/100 TL) everywhere
+ * inside the system. BigDecimal is only used where amounts are typed in or
+ * shown to a person.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    public static long ofLira(long lira) {
+        return Math.multiplyExact(lira, 100L);
+    }
+
+    /**
+     * Converts a typed-in amount to kurus. Returns -1 if it has fractions
+     * below one kurus or does not fit in a long.
+     */
+    public static long toMinor(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return -1;
+        }
+    }
+
+    public static BigDecimal toBigDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public static String format(long minor) {
+        return toBigDecimal(minor).toPlainString();
+    }
+}
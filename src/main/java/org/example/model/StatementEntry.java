@@ -0,0 +1,62 @@
+package org.example.model;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One line of an account statement. Amounts are in kurus (see {@link Money});
+ * {@code amount} is positive for money coming in and negative for money going
+ * out. {@code index} counts the account's history from 0 and can be passed
+ * back to page further into the past.
+ */
+public final class StatementEntry {
+
+    public enum Type {
+        DEPOSIT, WITHDRAWAL, TRANSFER_OUT, TRANSFER_IN
+    }
+
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final long index;
+    private final long timeMillis;
+    private final Type type;
+    private final long amount;
+    private final long balanceAfter;
+
+    public StatementEntry(long index, long timeMillis, Type type, long amount, long balanceAfter) {
+        this.index = index;
+        this.timeMillis = timeMillis;
+        this.type = type;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public long getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    /** One statement line: time, type, signed amount and balance after, in TL. */
+    @Override
+    public String toString() {
+        return String.format("%s  %-12s %12s %12s", TIME.format(Instant.ofEpochMilli(timeMillis)), type,
+                (amount > 0 ? "+" : "") + Money.format(amount), Money.format(balanceAfter));
+    }
+}
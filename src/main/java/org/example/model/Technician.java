@@ -2,20 +2,18 @@ package org.example.model;
 
 public class Technician {
     private final String username;
-    private final String password;
+    private final byte[] passwordHash;
 
-    public Technician(String username, String password) {
+    public Technician(String username, byte[] passwordHash) {
         this.username = username;
-        this.password = password;
+        this.passwordHash = passwordHash;
     }
 
     public String getUsername() {
         return username;
     }
 
-    public String getPassword() {
-        return password;
+    public byte[] getPasswordHash() {
+        return passwordHash;
     }
 }
-
-
@@ -0,0 +1,132 @@
+package org.example.remote;
+
+import org.example.service.BatchInstruction;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wire format between {@link RemoteBankService} and {@link BankServer}.
+ *
+ * Every message is one frame:
+ * <pre>
+ * int length | int request id | byte code | payload (length - 5 bytes)
+ * </pre>
+ * A request's code is its operation; a response echoes the request id and
+ * carries {@link #STATUS_OK} or {@link #STATUS_ERROR} (payload: a message).
+ * Responses may arrive in any order, so many requests can be in flight on
+ * one connection. Payload fields are written with {@code DataOutputStream}.
+ * Logins and {@link #IN_SERVICE} start with the id of the client's
+ * terminal; a session stays at the terminal it logged in at. Customers and
+ * technicians are referred to by the session id returned at login (batches,
+ * the terminal's state, cash and diagnostics, and back-office calls need a
+ * technician's), and deposits, withdrawals and transfers end with their
+ * request id. Reports are sent as an int length and UTF-8 bytes.
+ */
+final class BankProtocol {
+
+    static final int MAX_FRAME = 1 << 20;
+
+    // operations
+    static final byte LOGIN = 1;
+    static final byte VERIFY_PIN = 2;
+    static final byte TECHNICIAN_LOGIN = 3;
+    static final byte DEPOSIT = 4;
+    static final byte WITHDRAW = 5;
+    static final byte RESERVE_CASH = 6;
+    static final byte RELEASE_CASH = 7;
+    static final byte WITHDRAW_RESERVED = 8;
+    static final byte TRANSFER = 9;
+    static final byte BATCH = 10;
+    static final byte BALANCE = 11;
+    static final byte CARD_CHECK = 12;
+    static final byte CHANGE_PIN = 13;
+    static final byte EMERGENCY = 14;
+    static final byte GET_STATE = 15;
+    static final byte SET_STATE = 16;
+    static final byte SELF_CHECK = 17;
+    static final byte CASH_STOCK = 18;
+    static final byte METRICS = 19;
+    static final byte STATEMENT = 20;
+    static final byte ALLOWANCE = 21;
+    static final byte CARD_RETAINED = 22;
+    static final byte CARD_BLOCKED = 23;
+    static final byte DIAGNOSTICS = 24;
+    // back office, all with a technician's session
+    static final byte RETAINED_CARDS = 25;
+    static final byte RETURN_CARD = 26;
+    static final byte BLOCKED_CARDS = 27;
+    static final byte BLOCKLIST_SIZE = 28;
+    static final byte UNBLOCK_CARD = 29;
+    static final byte LOAD_BLOCKLIST = 30;
+    static final byte REFILL = 31;
+    static final byte NOTE_COUNTS = 32;
+    static final byte CASH_FORECAST = 33;
+    static final byte UPTIME = 34;
+    static final byte EMERGENCY_REPORT = 35;
+    static final byte IN_SERVICE = 36;
+
+    // response status
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    private BankProtocol() {
+    }
+
+    /** Writes text that may be longer than {@code writeUTF} allows, such as a report. */
+    static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readText(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+    }
+
+    static Map<String, String> readMap(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        Map<String, String> map = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            map.put(in.readUTF(), in.readUTF());
+        }
+        return map;
+    }
+
+    static void writeInstruction(DataOutputStream out, BatchInstruction in) throws IOException {
+        out.writeByte(in.getType().ordinal());
+        out.writeUTF(in.getCardNumber());
+        if (in.getType() == BatchInstruction.Type.TRANSFER) {
+            out.writeUTF(in.getTargetCardNumber());
+        }
+        out.writeLong(in.getAmount());
+    }
+
+    static BatchInstruction readInstruction(DataInputStream in) throws IOException {
+        BatchInstruction.Type type = BatchInstruction.Type.values()[in.readByte()];
+        String card = in.readUTF();
+        switch (type) {
+            case DEPOSIT:
+                return BatchInstruction.deposit(card, in.readLong());
+            case WITHDRAW:
+                return BatchInstruction.withdraw(card, in.readLong());
+            default:
+                String target = in.readUTF();
+                return BatchInstruction.transfer(card, target, in.readLong());
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package org.example.remote;
+
+import org.example.model.ATMState;
+import org.example.model.Customer;
+import org.example.model.StatementEntry;
+import org.example.model.Technician;
+import org.example.service.AtmTerminal;
+import org.example.service.BankCentralSystem;
+import org.example.service.BankMetrics.Outcome;
+import org.example.service.BatchInstruction;
+import org.example.service.CashStock;
+import org.example.service.DiagnosticReport;
+import org.example.service.DiagnosticResult;
+import org.example.service.VirtualThreads;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves a {@link BankCentralSystem} to {@link RemoteBankService} clients over
+ * TCP. Each request runs on its own (virtual, where available) thread, and
+ * its response is sent as soon as it is ready, so one slow request does not
+ * hold up the others pipelined behind it.
+ *
+ * A successful customer or technician login at a terminal opens a session;
+ * later requests name the customer or technician by session id, and act on
+ * that terminal. Batches, the terminal's state, cash and self-checks, and
+ * back-office calls (retained and blocked cards, the blocklist, cassette
+ * refills and reports) need a technician's session; emergency reports a
+ * customer's.
+ * Cash reservations need a customer's session and belong to it: only that
+ * session can pay one out or release it. Sessions idle for
+ * {@link #SESSION_IDLE_MILLIS} are dropped, releasing the cash they held.
+ *
+ * Run {@link #main} to host a bank in a separate process:
+ * {@code BankServer [port] [data dir] [bind address]}. It listens on the
+ * loopback interface unless given an address.
+ */
+public class BankServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7420;
+    public static final long SESSION_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final int SWEEP_EVERY_LOGINS = 1024;
+    private static final long ACCEPT_RETRY_MILLIS = 100; // after a failed accept, e.g. out of file descriptors
+
+    private final BankCentralSystem bank;
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers = VirtualThreads.newPerTaskExecutor("bank-rpc");
+    private final Set<FrameConnection> connections = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicInteger logins = new AtomicInteger();
+    private final AtomicLong acceptFailures = new AtomicLong();
+    private volatile IOException lastAcceptFailure;
+    private volatile boolean closed;
+
+    /** Listens on {@code port} (0: any free port) of the loopback interface. */
+    public BankServer(BankCentralSystem bank, int port) throws IOException {
+        this(bank, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public BankServer(BankCentralSystem bank, InetSocketAddress address) throws IOException {
+        this.bank = bank;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        Thread acceptor = new Thread(this::acceptLoop, "bank-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (FrameConnection c : connections) {
+            c.close();
+        }
+        workers.shutdown();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                Connection handler = new Connection();
+                FrameConnection connection = new FrameConnection(socket, "bank-server", handler);
+                handler.connection = connection;
+                connections.add(connection);
+                connection.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    lastAcceptFailure = e;
+                    acceptFailures.incrementAndGet();
+                    try {
+                        Thread.sleep(ACCEPT_RETRY_MILLIS);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Connections the server failed to accept; reported with the bank's metrics. */
+    public long getAcceptFailures() {
+        return acceptFailures.get();
+    }
+
+    /** Server-side counters appended to the bank's metrics dump. */
+    private String serverMetrics() {
+        long failures = acceptFailures.get();
+        return failures == 0 ? "" : String.format("accept failures %d, last: %s%n", failures,
+                lastAcceptFailure.getMessage());
+    }
+
+    /** Requests of one client connection. */
+    private class Connection implements FrameConnection.Handler {
+        FrameConnection connection;
+
+        @Override
+        public void onFrame(int id, byte code, DataInputStream payload) {
+            workers.execute(() -> {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] response;
+                try {
+                    handle(code, payload, new DataOutputStream(bytes));
+                    response = FrameConnection.frame(id, BankProtocol.STATUS_OK, bytes);
+                } catch (IOException | RuntimeException e) {
+                    response = error(id, e);
+                }
+                connection.send(response);
+            });
+        }
+
+        @Override
+        public void onClosed(IOException cause) {
+            connections.remove(connection);
+        }
+    }
+
+    private static byte[] error(int id, Exception e) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            new DataOutputStream(bytes).writeUTF(String.valueOf(e.getMessage()));
+        } catch (IOException impossible) {
+            throw new IllegalStateException(impossible);
+        }
+        return FrameConnection.frame(id, BankProtocol.STATUS_ERROR, bytes);
+    }
+
+    private void handle(byte code, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (code) {
+            case BankProtocol.LOGIN: {
+                AtmTerminal atm = terminal(in.readUTF());
+                Customer c = bank.authenticateCustomer(atm, in.readUTF(), in.readUTF());
+                out.writeBoolean(c != null);
+                if (c != null) {
+                    out.writeLong(openSession(new Session(atm, c, null)));
+                    out.writeUTF(c.getCardNumber());
+                    out.writeUTF(c.getName());
+                    out.writeUTF(c.getAccount().getAccountNumber());
+                    out.writeLong(c.getAccount().getBalance());
+                }
+                break;
+            }
+            case BankProtocol.VERIFY_PIN: {
+                Session s = customerSession(in.readLong());
+                out.writeBoolean(bank.verifyPin(s.terminal, s.customer, in.readUTF()));
+                break;
+            }
+            case BankProtocol.TECHNICIAN_LOGIN: {
+                AtmTerminal atm = terminal(in.readUTF());
+                Technician t = bank.authenticateTechnician(in.readUTF(), in.readUTF());
+                out.writeBoolean(t != null);
+                if (t != null) {
+                    out.writeLong(openSession(new Session(atm, null, t)));
+                    out.writeUTF(t.getUsername());
+                }
+                break;
+            }
+            case BankProtocol.DEPOSIT: {
+                Session s = customerSession(in.readLong());
+                out.writeBoolean(bank.deposit(s.terminal, s.customer, in.readLong(), in.readLong()));
+                break;
+            }
+            case BankProtocol.WITHDRAW: {
+                Session s = customerSession(in.readLong());
+                out.writeBoolean(bank.withdraw(s.terminal, s.customer, in.readLong(), in.readLong()));
+                break;
+            }
+            case BankProtocol.RESERVE_CASH: {
+                Session s = customerSession(in.readLong());
+                long reservation = bank.reserveCash(s.terminal, in.readLong());
+                if (reservation != CashStock.NO_RESERVATION) {
+                    s.reservations.add(reservation);
+                }
+                out.writeLong(reservation);
+                break;
+            }
+            case BankProtocol.RELEASE_CASH: {
+                Session s = customerSession(in.readLong());
+                long reservation = in.readLong();
+                if (s.reservations.remove(reservation)) {
+                    bank.releaseCash(s.terminal, reservation);
+                }
+                break;
+            }
+            case BankProtocol.WITHDRAW_RESERVED: {
+                Session s = customerSession(in.readLong());
+                long reservation = in.readLong();
+                // someone else's reservation is paid as none; a retry still gets the first result
+                out.writeBoolean(bank.withdrawReserved(s.terminal, s.customer,
+                        s.reservations.remove(reservation) ? reservation : CashStock.NO_RESERVATION, in.readLong()));
+                break;
+            }
+            case BankProtocol.TRANSFER:
+                out.writeBoolean(bank.transfer(session(in.readLong()), in.readUTF(), in.readLong(), in.readLong()));
+                break;
+            case BankProtocol.BATCH: {
+                technicianSession(in.readLong());
+                int n = in.readInt();
+                List<BatchInstruction> batch = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    batch.add(BankProtocol.readInstruction(in));
+                }
+                Outcome[] results = bank.applyBatch(batch);
+                out.writeInt(results.length);
+                for (Outcome o : results) {
+                    out.writeByte(o.ordinal());
+                }
+                break;
+            }
+            case BankProtocol.BALANCE:
+                out.writeLong(bank.getBalance(session(in.readLong())));
+                break;
+            case BankProtocol.ALLOWANCE:
+                out.writeLong(bank.withdrawalAllowance(session(in.readLong())));
+                break;
+            case BankProtocol.STATEMENT: {
+                List<StatementEntry> entries = bank.miniStatement(session(in.readLong()), in.readInt());
+                out.writeInt(entries.size());
+                for (StatementEntry e : entries) {
+                    out.writeLong(e.getIndex());
+                    out.writeLong(e.getTimeMillis());
+                    out.writeByte(e.getType().ordinal());
+                    out.writeLong(e.getAmount());
+                    out.writeLong(e.getBalanceAfter());
+                }
+                break;
+            }
+            case BankProtocol.CARD_CHECK:
+                out.writeBoolean(bank.isValidCard(in.readUTF()));
+                break;
+            case BankProtocol.CARD_RETAINED:
+                out.writeBoolean(bank.isCardRetained(in.readUTF()));
+                break;
+            case BankProtocol.CARD_BLOCKED:
+                out.writeBoolean(bank.isCardBlocked(in.readUTF()));
+                break;
+            case BankProtocol.CHANGE_PIN:
+                out.writeBoolean(bank.changePin(session(in.readLong()), in.readUTF()));
+                break;
+            case BankProtocol.EMERGENCY: {
+                Session s = customerSession(in.readLong());
+                bank.reportEmergency(s.terminal, in.readUTF(), s.customer.getCardNumber());
+                break;
+            }
+            case BankProtocol.IN_SERVICE:
+                out.writeBoolean(terminal(in.readUTF()).getState() == ATMState.ACTIVE);
+                break;
+            case BankProtocol.GET_STATE:
+                out.writeByte(technicianSession(in.readLong()).terminal.getState().ordinal());
+                break;
+            case BankProtocol.SET_STATE: {
+                Session s = technicianSession(in.readLong());
+                out.writeBoolean(bank.setAtmState(s.terminal, ATMState.values()[in.readByte()]));
+                break;
+            }
+            case BankProtocol.SELF_CHECK:
+                out.writeBoolean(bank.selfCheckOk(technicianSession(in.readLong()).terminal));
+                break;
+            case BankProtocol.DIAGNOSTICS: {
+                DiagnosticReport report = bank.runDiagnostics(technicianSession(in.readLong()).terminal);
+                out.writeUTF(report.getTerminalId());
+                out.writeLong(report.getElapsedNanos());
+                out.writeInt(report.getResults().size());
+                for (DiagnosticResult r : report.getResults()) {
+                    out.writeUTF(r.getProbe());
+                    out.writeByte(r.getStatus().ordinal());
+                    out.writeUTF(r.getDetail());
+                    out.writeLong(r.getElapsedNanos());
+                }
+                break;
+            }
+            case BankProtocol.CASH_STOCK:
+                out.writeLong(technicianSession(in.readLong()).terminal.getCashStock().available());
+                break;
+            case BankProtocol.METRICS:
+                BankProtocol.writeText(out, bank.getMetrics().dump() + serverMetrics());
+                break;
+            case BankProtocol.RETAINED_CARDS:
+                technicianSession(in.readLong());
+                BankProtocol.writeMap(out, bank.getRetainedCards());
+                break;
+            case BankProtocol.RETURN_CARD:
+                technicianSession(in.readLong());
+                out.writeBoolean(bank.returnRetainedCard(in.readUTF()));
+                break;
+            case BankProtocol.BLOCKED_CARDS:
+                technicianSession(in.readLong());
+                BankProtocol.writeMap(out, bank.getBlockedCards());
+                break;
+            case BankProtocol.BLOCKLIST_SIZE:
+                technicianSession(in.readLong());
+                out.writeInt(bank.getBlocklist().size());
+                break;
+            case BankProtocol.UNBLOCK_CARD:
+                technicianSession(in.readLong());
+                out.writeBoolean(bank.unblockCard(in.readUTF()));
+                break;
+            case BankProtocol.LOAD_BLOCKLIST:
+                technicianSession(in.readLong());
+                out.writeInt(bank.loadBlocklist(Paths.get(in.readUTF())));
+                break;
+            case BankProtocol.REFILL:
+                out.writeLong(bank.refillCassettes(technicianSession(in.readLong()).terminal));
+                break;
+            case BankProtocol.NOTE_COUNTS: {
+                int[] counts = technicianSession(in.readLong()).terminal.getCashStock().noteCounts();
+                out.writeInt(counts.length);
+                for (int c : counts) {
+                    out.writeInt(c);
+                }
+                break;
+            }
+            case BankProtocol.CASH_FORECAST:
+                technicianSession(in.readLong());
+                BankProtocol.writeText(out, bank.cashForecastReport());
+                break;
+            case BankProtocol.UPTIME:
+                technicianSession(in.readLong());
+                BankProtocol.writeText(out, bank.uptimeReport(in.readInt()));
+                break;
+            case BankProtocol.EMERGENCY_REPORT:
+                technicianSession(in.readLong());
+                BankProtocol.writeText(out, bank.emergencyReport());
+                break;
+            default:
+                throw new IOException("Unknown operation " + code);
+        }
+    }
+
+    // --- Sessions ---
+
+    private long openSession(Session session) {
+        if (logins.incrementAndGet() % SWEEP_EVERY_LOGINS == 0) {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Long, Session> e : sessions.entrySet()) {
+                if (now - e.getValue().lastUsed > SESSION_IDLE_MILLIS) {
+                    drop(e.getKey(), e.getValue());
+                }
+            }
+        }
+        long id;
+        do {
+            id = random.nextLong();
+        } while (sessions.putIfAbsent(id, session) != null);
+        return id;
+    }
+
+    /** The customer of session {@code id}. */
+    private Customer session(long id) {
+        return customerSession(id).customer;
+    }
+
+    private AtmTerminal terminal(String id) {
+        AtmTerminal atm = bank.getFleet().get(id);
+        if (atm == null) {
+            throw new IllegalArgumentException("Unknown terminal " + id);
+        }
+        return atm;
+    }
+
+    private Session customerSession(long id) {
+        Session s = live(id);
+        if (s.customer == null) {
+            throw new IllegalStateException("Not a customer session");
+        }
+        return s;
+    }
+
+    private Session technicianSession(long id) {
+        Session s = live(id);
+        if (s.technician == null) {
+            throw new IllegalStateException("Not a technician session");
+        }
+        return s;
+    }
+
+    private Session live(long id) {
+        Session s = sessions.get(id);
+        if (s == null || System.currentTimeMillis() - s.lastUsed > SESSION_IDLE_MILLIS) {
+            if (s != null) {
+                drop(id, s);
+            }
+            throw new IllegalStateException("Session expired");
+        }
+        s.lastUsed = System.currentTimeMillis();
+        return s;
+    }
+
+    /** Removes an expired session and releases the cash it still held. */
+    private void drop(long id, Session s) {
+        if (sessions.remove(id, s)) {
+            for (Long reservation : s.reservations) {
+                if (s.reservations.remove(reservation)) {
+                    bank.releaseCash(s.terminal, reservation);
+                }
+            }
+        }
+    }
+
+    /** A customer or technician logged in at a terminal; exactly one of the two is set. */
+    private static final class Session {
+        final AtmTerminal terminal;
+        final Customer customer;
+        final Technician technician;
+        final Set<Long> reservations = ConcurrentHashMap.newKeySet(); // held by this customer
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Session(AtmTerminal terminal, Customer customer, Technician technician) {
+            this.terminal = terminal;
+            this.customer = customer;
+            this.technician = technician;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        BankCentralSystem bank = new BankCentralSystem(
+                args.length > 1 ? Paths.get(args[1]) : BankCentralSystem.DEFAULT_DATA_DIR);
+        InetAddress address = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+        BankServer server = new BankServer(bank, new InetSocketAddress(address, port));
+        System.out.println("Bank server listening on " + address.getHostAddress() + ":" + server.getPort());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                bank.close();
+            } catch (IOException e) {
+                System.err.println("Bank server: shutdown failed: " + e.getMessage());
+            }
+        }));
+        Thread.currentThread().join();
+    }
+}
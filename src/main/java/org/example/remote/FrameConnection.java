@@ -0,0 +1,156 @@
+package org.example.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One socket carrying {@link BankProtocol} frames in both directions.
+ *
+ * A reader thread hands every incoming frame to the {@link Handler}. Outgoing
+ * frames are queued and written by a single writer thread, which writes
+ * everything queued so far and flushes once, so pipelined requests share
+ * TCP segments instead of paying one flush each.
+ */
+class FrameConnection implements Closeable {
+
+    interface Handler {
+        void onFrame(int id, byte code, DataInputStream payload);
+
+        /** The connection is gone; {@code cause} is null after a local close. */
+        void onClosed(IOException cause);
+    }
+
+    private static final byte[] CLOSE = new byte[0]; // wakes the writer on close
+
+    private final Socket socket;
+    private final String name;
+    private final Handler handler;
+    private final LinkedBlockingQueue<byte[]> outbox = new LinkedBlockingQueue<>();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private volatile boolean closed;
+
+    FrameConnection(Socket socket, String name, Handler handler) throws IOException {
+        this.socket = socket;
+        this.name = name;
+        this.handler = handler;
+        socket.setTcpNoDelay(true);
+    }
+
+    void start() {
+        Thread reader = new Thread(this::readLoop, name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+        Thread writer = new Thread(this::writeLoop, name + "-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Encodes a frame with an empty payload. */
+    static byte[] frame(int id, byte code) {
+        return frame(id, code, new ByteArrayOutputStream(0));
+    }
+
+    /** Encodes a frame whose payload has been written to {@code payload}. */
+    static byte[] frame(int id, byte code, ByteArrayOutputStream payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(13 + payload.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(5 + payload.size());
+            out.writeInt(id);
+            out.writeByte(code);
+            payload.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory streams do not fail
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Queues an encoded frame; it is dropped if the connection is closed. */
+    void send(byte[] frame) {
+        if (!closed) {
+            outbox.add(frame);
+        }
+    }
+
+    long framesSent() {
+        return framesSent.sum();
+    }
+
+    long flushes() {
+        return flushes.sum();
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        outbox.add(CLOSE);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already broken; nothing else to release
+        }
+    }
+
+    private void readLoop() {
+        IOException cause = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                int length = in.readInt();
+                if (length < 5 || length > BankProtocol.MAX_FRAME) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                int id = in.readInt();
+                byte code = in.readByte();
+                byte[] payload = new byte[length - 5];
+                in.readFully(payload);
+                handler.onFrame(id, code, new DataInputStream(new ByteArrayInputStream(payload)));
+            }
+        } catch (EOFException e) {
+            // peer closed the connection
+        } catch (IOException e) {
+            if (!closed) cause = e;
+        } finally {
+            close();
+            handler.onClosed(cause);
+        }
+    }
+
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        try {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            while (true) {
+                batch.add(outbox.take());
+                outbox.drainTo(batch);
+                for (byte[] f : batch) {
+                    if (f == CLOSE) return;
+                    out.write(f);
+                }
+                out.flush();
+                framesSent.add(batch.size());
+                flushes.increment();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            close(); // the reader reports the failure
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package org.example.remote;
+
+import org.example.model.ATMState;
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.StatementEntry;
+import org.example.model.Technician;
+import org.example.service.AtmFleet;
+import org.example.service.BankMetrics.Outcome;
+import org.example.service.BankService;
+import org.example.service.BatchInstruction;
+import org.example.service.DiagnosticReport;
+import org.example.service.DiagnosticResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link BankService} that talks to a {@link BankServer} over one TCP
+ * connection. Calls are pipelined: each request is sent at once with its own
+ * id, and responses complete their futures in whatever order the server
+ * answers, so an ATM with several customers never waits on a round trip per
+ * request.
+ *
+ * For testing, a simulated network delay can be injected on top of the real
+ * link: every frame is held for half the configured round trip, plus or minus
+ * half the jitter, in each direction. Frames never overtake each other within
+ * one direction, as on a real TCP stream.
+ *
+ * The service acts for one terminal, {@link AtmFleet#DEFAULT_TERMINAL_ID}
+ * unless another is given; its customers and technicians log in there.
+ *
+ * Customers returned by {@link #authenticateCustomer} are local copies; their
+ * account balance is the one seen at login and is not kept up to date. Use
+ * {@link #getBalance} for the current value.
+ */
+public class RemoteBankService implements BankService {
+
+    /** Writes a request payload. */
+    private interface Request {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** Reads a response payload. */
+    private interface Response<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private final String terminalId;
+    private final FrameConnection connection;
+    private final Map<Integer, CompletableFuture<DataInputStream>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Customer, Long> sessions = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<Technician, Long> technicianSessions = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile boolean closed;
+
+    // --- Latency injection ---
+    private final long oneWayNanos;
+    private final long jitterNanos;
+    private final ScheduledThreadPoolExecutor delay; // null: no injected latency
+    private long lastSendAt; // guarded by sendLock
+    private long lastReceiveAt; // guarded by receiveLock
+    private final Object sendLock = new Object();
+    private final Object receiveLock = new Object();
+
+    private RemoteBankService(Socket socket, String terminalId, long rttMillis, long jitterMillis)
+            throws IOException {
+        this.terminalId = terminalId;
+        this.oneWayNanos = TimeUnit.MILLISECONDS.toNanos(rttMillis) / 2;
+        this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis) / 2;
+        if (rttMillis > 0 || jitterMillis > 0) {
+            delay = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "bank-link-delay");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            delay = null;
+        }
+        this.connection = new FrameConnection(socket, "bank-client", new FrameConnection.Handler() {
+            @Override
+            public void onFrame(int id, byte code, DataInputStream payload) {
+                received(id, code, payload);
+            }
+
+            @Override
+            public void onClosed(IOException cause) {
+                failAll(cause != null ? cause : new IOException("Connection to bank closed"));
+            }
+        });
+        connection.start();
+    }
+
+    public static RemoteBankService connect(String host, int port) throws IOException {
+        return connect(host, port, AtmFleet.DEFAULT_TERMINAL_ID, 0, 0);
+    }
+
+    public static RemoteBankService connect(String host, int port, long rttMillis, long jitterMillis)
+            throws IOException {
+        return connect(host, port, AtmFleet.DEFAULT_TERMINAL_ID, rttMillis, jitterMillis);
+    }
+
+    /**
+     * Connects to a bank server on behalf of terminal {@code terminalId},
+     * adding a simulated round trip of {@code rttMillis} (plus or minus
+     * {@code jitterMillis / 2}) to every call.
+     */
+    public static RemoteBankService connect(String host, int port, String terminalId, long rttMillis,
+                                            long jitterMillis) throws IOException {
+        if (rttMillis < 0 || jitterMillis < 0) {
+            throw new IllegalArgumentException("Latency must not be negative");
+        }
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port));
+        return new RemoteBankService(socket, terminalId, rttMillis, jitterMillis);
+    }
+
+    // --- Authentication ---
+
+    @Override
+    public CompletableFuture<Customer> authenticateCustomer(String cardNumber, String pin) {
+        return call(BankProtocol.LOGIN, out -> {
+            out.writeUTF(terminalId);
+            out.writeUTF(cardNumber);
+            out.writeUTF(pin);
+        }, in -> {
+            if (!in.readBoolean()) return null;
+            long session = in.readLong();
+            String card = in.readUTF();
+            String name = in.readUTF();
+            Account account = new Account(in.readUTF(), in.readLong());
+            Customer customer = new Customer(card, null, name, account);
+            sessions.put(customer, session);
+            return customer;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> verifyPin(Customer customer, String pin) {
+        return callForCustomer(BankProtocol.VERIFY_PIN, customer, out -> out.writeUTF(pin),
+                DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Technician> authenticateTechnician(String username, String password) {
+        return call(BankProtocol.TECHNICIAN_LOGIN, out -> {
+            out.writeUTF(terminalId);
+            out.writeUTF(username);
+            out.writeUTF(password);
+        }, in -> {
+            if (!in.readBoolean()) return null;
+            long session = in.readLong();
+            Technician technician = new Technician(in.readUTF(), null);
+            technicianSessions.put(technician, session);
+            return technician;
+        });
+    }
+
+    // --- Account / monetary operations ---
+
+    @Override
+    public CompletableFuture<Boolean> deposit(Customer customer, long amount, long requestId) {
+        return callForCustomer(BankProtocol.DEPOSIT, customer, out -> {
+            out.writeLong(amount);
+            out.writeLong(requestId);
+        }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> withdraw(Customer customer, long amount, long requestId) {
+        return callForCustomer(BankProtocol.WITHDRAW, customer, out -> {
+            out.writeLong(amount);
+            out.writeLong(requestId);
+        }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Long> reserveCash(Customer customer, long amount) {
+        return callForCustomer(BankProtocol.RESERVE_CASH, customer, out -> out.writeLong(amount),
+                DataInputStream::readLong);
+    }
+
+    @Override
+    public CompletableFuture<Void> releaseCash(Customer customer, long reservation) {
+        return callForCustomer(BankProtocol.RELEASE_CASH, customer, out -> out.writeLong(reservation), in -> null);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> withdrawReserved(Customer customer, long reservation, long requestId) {
+        return callForCustomer(BankProtocol.WITHDRAW_RESERVED, customer, out -> {
+            out.writeLong(reservation);
+            out.writeLong(requestId);
+        }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> transfer(Customer from, String targetCardNumber, long amount, long requestId) {
+        return callForCustomer(BankProtocol.TRANSFER, from, out -> {
+            out.writeUTF(targetCardNumber);
+            out.writeLong(amount);
+            out.writeLong(requestId);
+        }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Outcome[]> applyBatch(Technician technician, List<BatchInstruction> batch) {
+        return callForTechnician(BankProtocol.BATCH, technician, out -> {
+            out.writeInt(batch.size());
+            for (BatchInstruction i : batch) {
+                BankProtocol.writeInstruction(out, i);
+            }
+        }, in -> {
+            Outcome[] all = Outcome.values();
+            Outcome[] results = new Outcome[in.readInt()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = all[in.readByte()];
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> getBalance(Customer customer) {
+        return callForCustomer(BankProtocol.BALANCE, customer, out -> { }, DataInputStream::readLong);
+    }
+
+    @Override
+    public CompletableFuture<Long> withdrawalAllowance(Customer customer) {
+        return callForCustomer(BankProtocol.ALLOWANCE, customer, out -> { }, DataInputStream::readLong);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isValidCard(String cardNumber) {
+        return call(BankProtocol.CARD_CHECK, out -> out.writeUTF(cardNumber), DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isCardRetained(String cardNumber) {
+        return call(BankProtocol.CARD_RETAINED, out -> out.writeUTF(cardNumber), DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isCardBlocked(String cardNumber) {
+        return call(BankProtocol.CARD_BLOCKED, out -> out.writeUTF(cardNumber), DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<List<StatementEntry>> miniStatement(Customer customer, int count) {
+        return callForCustomer(BankProtocol.STATEMENT, customer, out -> out.writeInt(count), in -> {
+            StatementEntry.Type[] types = StatementEntry.Type.values();
+            int n = in.readInt();
+            List<StatementEntry> entries = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                entries.add(new StatementEntry(in.readLong(), in.readLong(), types[in.readByte()],
+                        in.readLong(), in.readLong()));
+            }
+            return entries;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> changePin(Customer customer, String newPin) {
+        return callForCustomer(BankProtocol.CHANGE_PIN, customer, out -> out.writeUTF(newPin),
+                DataInputStream::readBoolean);
+    }
+
+    // --- Emergency / maintenance ---
+
+    @Override
+    public CompletableFuture<Void> reportEmergency(Customer customer, String type) {
+        return callForCustomer(BankProtocol.EMERGENCY, customer, out -> out.writeUTF(type), in -> null);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isInService() {
+        return call(BankProtocol.IN_SERVICE, out -> out.writeUTF(terminalId), DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<ATMState> getAtmState(Technician technician) {
+        return callForTechnician(BankProtocol.GET_STATE, technician, out -> { },
+                in -> ATMState.values()[in.readByte()]);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setAtmState(Technician technician, ATMState atmState) {
+        return callForTechnician(BankProtocol.SET_STATE, technician, out -> out.writeByte(atmState.ordinal()),
+                DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> selfCheckOk(Technician technician) {
+        return callForTechnician(BankProtocol.SELF_CHECK, technician, out -> { }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<DiagnosticReport> runDiagnostics(Technician technician) {
+        return callForTechnician(BankProtocol.DIAGNOSTICS, technician, out -> { }, in -> {
+            DiagnosticResult.Status[] statuses = DiagnosticResult.Status.values();
+            String terminalId = in.readUTF();
+            long elapsed = in.readLong();
+            int n = in.readInt();
+            List<DiagnosticResult> results = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                results.add(new DiagnosticResult(in.readUTF(), statuses[in.readByte()], in.readUTF(), in.readLong()));
+            }
+            return new DiagnosticReport(terminalId, results, elapsed);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> getAtmCashStock(Technician technician) {
+        return callForTechnician(BankProtocol.CASH_STOCK, technician, out -> { }, DataInputStream::readLong);
+    }
+
+    @Override
+    public CompletableFuture<String> metricsReport() {
+        return call(BankProtocol.METRICS, out -> { }, BankProtocol::readText);
+    }
+
+    // --- Back office (logged-in technician) ---
+
+    @Override
+    public CompletableFuture<Map<String, String>> getRetainedCards(Technician technician) {
+        return callForTechnician(BankProtocol.RETAINED_CARDS, technician, out -> { }, BankProtocol::readMap);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> returnRetainedCard(Technician technician, String cardNumber) {
+        return callForTechnician(BankProtocol.RETURN_CARD, technician, out -> out.writeUTF(cardNumber),
+                DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getBlockedCards(Technician technician) {
+        return callForTechnician(BankProtocol.BLOCKED_CARDS, technician, out -> { }, BankProtocol::readMap);
+    }
+
+    @Override
+    public CompletableFuture<Integer> blocklistSize(Technician technician) {
+        return callForTechnician(BankProtocol.BLOCKLIST_SIZE, technician, out -> { }, DataInputStream::readInt);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> unblockCard(Technician technician, String cardNumber) {
+        return callForTechnician(BankProtocol.UNBLOCK_CARD, technician, out -> out.writeUTF(cardNumber),
+                DataInputStream::readBoolean);
+    }
+
+    @Override
+    public CompletableFuture<Integer> loadBlocklist(Technician technician, String file) {
+        return callForTechnician(BankProtocol.LOAD_BLOCKLIST, technician, out -> out.writeUTF(file),
+                DataInputStream::readInt);
+    }
+
+    @Override
+    public CompletableFuture<Long> refillCassettes(Technician technician) {
+        return callForTechnician(BankProtocol.REFILL, technician, out -> { }, DataInputStream::readLong);
+    }
+
+    @Override
+    public CompletableFuture<int[]> noteCounts(Technician technician) {
+        return callForTechnician(BankProtocol.NOTE_COUNTS, technician, out -> { }, in -> {
+            int[] counts = new int[in.readInt()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.readInt();
+            }
+            return counts;
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> cashForecastReport(Technician technician) {
+        return callForTechnician(BankProtocol.CASH_FORECAST, technician, out -> { }, BankProtocol::readText);
+    }
+
+    @Override
+    public CompletableFuture<String> uptimeReport(Technician technician, int days) {
+        return callForTechnician(BankProtocol.UPTIME, technician, out -> out.writeInt(days), BankProtocol::readText);
+    }
+
+    @Override
+    public CompletableFuture<String> emergencyReport(Technician technician) {
+        return callForTechnician(BankProtocol.EMERGENCY_REPORT, technician, out -> { }, BankProtocol::readText);
+    }
+
+    // --- Link statistics ---
+
+    /** Requests sent but not yet answered. */
+    public int inFlight() {
+        return pending.size();
+    }
+
+    /** Frames written to the socket so far. */
+    public long framesSent() {
+        return connection.framesSent();
+    }
+
+    /** Socket flushes so far; frames per flush shows how well requests coalesce. */
+    public long flushes() {
+        return connection.flushes();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        connection.close();
+        if (delay != null) {
+            delay.shutdownNow();
+        }
+        failAll(new IOException("Connection to bank closed"));
+    }
+
+    // --- Calls ---
+
+    private <T> CompletableFuture<T> callForCustomer(byte code, Customer customer, Request request,
+                                                     Response<T> response) {
+        Long session = sessions.get(customer);
+        if (session == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Customer was not logged in through this service"));
+        }
+        return call(code, out -> {
+            out.writeLong(session);
+            request.write(out);
+        }, response);
+    }
+
+    private <T> CompletableFuture<T> callForTechnician(byte code, Technician technician, Request request,
+                                                       Response<T> response) {
+        Long session = technicianSessions.get(technician);
+        if (session == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Technician was not logged in through this service"));
+        }
+        return call(code, out -> {
+            out.writeLong(session);
+            request.write(out);
+        }, response);
+    }
+
+    private <T> CompletableFuture<T> call(byte code, Request request, Response<T> response) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            request.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (bytes.size() > BankProtocol.MAX_FRAME - 5) {
+            return CompletableFuture.failedFuture(new IOException("Request too large: " + bytes.size() + " bytes"));
+        }
+        int id = nextId.incrementAndGet();
+        CompletableFuture<DataInputStream> reply = new CompletableFuture<>();
+        pending.put(id, reply);
+        if (closed) { // checked after registering, so failAll cannot miss this call
+            pending.remove(id);
+            return CompletableFuture.failedFuture(new IOException("Connection to bank closed"));
+        }
+        send(FrameConnection.frame(id, code, bytes));
+        return reply.thenApply(in -> {
+            try {
+                return response.read(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void send(byte[] frame) {
+        if (delay == null) {
+            connection.send(frame);
+            return;
+        }
+        long wait;
+        synchronized (sendLock) {
+            lastSendAt = deliveryTime(lastSendAt);
+            wait = lastSendAt - System.nanoTime();
+        }
+        delay.schedule(() -> connection.send(frame), wait, TimeUnit.NANOSECONDS);
+    }
+
+    private void received(int id, byte status, DataInputStream payload) {
+        if (delay == null) {
+            complete(id, status, payload);
+            return;
+        }
+        long wait;
+        synchronized (receiveLock) {
+            lastReceiveAt = deliveryTime(lastReceiveAt);
+            wait = lastReceiveAt - System.nanoTime();
+        }
+        delay.schedule(() -> complete(id, status, payload), wait, TimeUnit.NANOSECONDS);
+    }
+
+    /** Now plus a one-way delay, but never before the previous frame in the same direction. */
+    private long deliveryTime(long previous) {
+        long jitter = jitterNanos == 0 ? 0 : ThreadLocalRandom.current().nextLong(-jitterNanos, jitterNanos + 1);
+        long at = System.nanoTime() + Math.max(0, oneWayNanos + jitter);
+        return previous - at > 0 ? previous : at;
+    }
+
+    private void complete(int id, byte status, DataInputStream payload) {
+        CompletableFuture<DataInputStream> reply = pending.remove(id);
+        if (reply == null) return; // already failed by close
+        if (status == BankProtocol.STATUS_OK) {
+            reply.complete(payload);
+            return;
+        }
+        try {
+            reply.completeExceptionally(new IOException("Bank error: " + payload.readUTF()));
+        } catch (IOException e) {
+            reply.completeExceptionally(e);
+        }
+    }
+
+    private void failAll(IOException cause) {
+        closed = true;
+        for (Integer id : pending.keySet()) {
+            CompletableFuture<DataInputStream> reply = pending.remove(id);
+            if (reply != null) {
+                reply.completeExceptionally(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of striped locks guarding account balances.
+ * An account always maps to the same stripe, so operations on different
+ * accounts rarely contend while operations on the same account are serialized.
+ */
+public class AccountLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public AccountLocks() {
+        this(Math.max(64, Runtime.getRuntime().availableProcessors() * 16));
+    }
+
+    public AccountLocks(int minStripes) {
+        int size = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    public int stripeOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        h ^= (h >>> 16);
+        return h & mask;
+    }
+
+    public void lock(String accountNumber) {
+        stripes[stripeOf(accountNumber)].lock();
+    }
+
+    public void unlock(String accountNumber) {
+        stripes[stripeOf(accountNumber)].unlock();
+    }
+
+    /**
+     * Locks the stripes of two accounts in ascending stripe order, so two
+     * transfers running in opposite directions can never deadlock.
+     */
+    public void lockBoth(String first, String second) {
+        int a = stripeOf(first);
+        int b = stripeOf(second);
+        if (a == b) {
+            stripes[a].lock();
+        } else if (a < b) {
+            stripes[a].lock();
+            stripes[b].lock();
+        } else {
+            stripes[b].lock();
+            stripes[a].lock();
+        }
+    }
+
+    public void unlockBoth(String first, String second) {
+        int a = stripeOf(first);
+        int b = stripeOf(second);
+        stripes[a].unlock();
+        if (a != b) {
+            stripes[b].unlock();
+        }
+    }
+
+    /** Locks the given stripes, which must be distinct and in ascending order. */
+    public void lockStripes(int[] sortedStripes) {
+        for (int stripe : sortedStripes) {
+            stripes[stripe].lock();
+        }
+    }
+
+    public void unlockStripes(int[] sortedStripes) {
+        for (int i = sortedStripes.length - 1; i >= 0; i--) {
+            stripes[sortedStripes[i]].unlock();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.service;
+
+import org.example.model.Customer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Storage for customers and their accounts, indexed by card number.
+ *
+ * Balance changes are made through the returned {@link Customer}'s account
+ * while holding its {@link AccountLocks} stripe; implementations must make
+ * such writes visible to every other customer object they hand out for the
+ * same card.
+ */
+public interface AccountStore extends Closeable {
+
+    /** Returns the customer owning {@code cardNumber}, or null if the card is unknown. */
+    Customer find(String cardNumber);
+
+    boolean contains(String cardNumber);
+
+    /** Adds a new customer; fails if the card number is already present. */
+    void add(Customer customer);
+
+    /** Persists the PIN hash currently set on {@code customer}. */
+    void updatePin(Customer customer);
+
+    long size();
+
+    /** Forces stored data to durable storage, if the store has any. */
+    void flush() throws IOException;
+}
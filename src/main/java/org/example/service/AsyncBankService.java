@@ -0,0 +1,283 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+import org.example.model.Customer;
+import org.example.model.StatementEntry;
+import org.example.model.Technician;
+import org.example.service.BankMetrics.Outcome;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * In-process {@link BankService}: every {@link BankCentralSystem} operation
+ * runs on an executor and returns a {@link CompletableFuture}, so UI threads
+ * never wait for the bank.
+ *
+ * By default each call gets its own virtual thread where the JDK supports
+ * them (see {@link VirtualThreads}). The facade does not own the bank;
+ * closing it only stops a default executor.
+ *
+ * Each facade acts for one ATM terminal, the bank's default one unless
+ * another is given. Cash reservations belong to the customer who made them:
+ * only that customer can pay one out or release it, and closing the facade
+ * releases those still held.
+ */
+public class AsyncBankService implements BankService {
+
+    private final BankCentralSystem bank;
+    private final AtmTerminal terminal;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor; // null: executor supplied by the caller
+    private final ConcurrentHashMap<Long, String> reservations = new ConcurrentHashMap<>(); // -> card holding it
+
+    public AsyncBankService(BankCentralSystem bank) {
+        this(bank, bank.getDefaultTerminal());
+    }
+
+    public AsyncBankService(BankCentralSystem bank, AtmTerminal terminal) {
+        this.bank = bank;
+        this.terminal = terminal;
+        this.ownedExecutor = VirtualThreads.newPerTaskExecutor("bank-call");
+        this.executor = ownedExecutor;
+    }
+
+    public AsyncBankService(BankCentralSystem bank, Executor executor) {
+        this(bank, bank.getDefaultTerminal(), executor);
+    }
+
+    public AsyncBankService(BankCentralSystem bank, AtmTerminal terminal, Executor executor) {
+        this.bank = bank;
+        this.terminal = terminal;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    // --- Authentication ---
+
+    @Override
+    public CompletableFuture<Customer> authenticateCustomer(String cardNumber, String pin) {
+        return CompletableFuture.supplyAsync(() -> bank.authenticateCustomer(terminal, cardNumber, pin), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> verifyPin(Customer customer, String pin) {
+        return CompletableFuture.supplyAsync(() -> bank.verifyPin(terminal, customer, pin), executor);
+    }
+
+    @Override
+    public CompletableFuture<Technician> authenticateTechnician(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> bank.authenticateTechnician(username, password), executor);
+    }
+
+    // --- Account / monetary operations ---
+
+    @Override
+    public CompletableFuture<Boolean> deposit(Customer customer, long amount, long requestId) {
+        return CompletableFuture.supplyAsync(() -> bank.deposit(terminal, customer, amount, requestId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> withdraw(Customer customer, long amount, long requestId) {
+        return CompletableFuture.supplyAsync(() -> bank.withdraw(terminal, customer, amount, requestId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Long> reserveCash(Customer customer, long amount) {
+        return CompletableFuture.supplyAsync(() -> {
+            long reservation = bank.reserveCash(terminal, amount);
+            if (reservation != CashStock.NO_RESERVATION) {
+                reservations.put(reservation, customer.getCardNumber());
+            }
+            return reservation;
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> releaseCash(Customer customer, long reservation) {
+        return CompletableFuture.runAsync(() -> {
+            if (reservations.remove(reservation, customer.getCardNumber())) {
+                bank.releaseCash(terminal, reservation);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> withdrawReserved(Customer customer, long reservation, long requestId) {
+        // someone else's reservation is paid as none; a retry still gets the first result
+        return CompletableFuture.supplyAsync(() -> bank.withdrawReserved(terminal, customer,
+                reservations.remove(reservation, customer.getCardNumber()) ? reservation : CashStock.NO_RESERVATION,
+                requestId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> transfer(Customer from, String targetCardNumber, long amount, long requestId) {
+        return CompletableFuture.supplyAsync(() -> bank.transfer(from, targetCardNumber, amount, requestId),
+                executor);
+    }
+
+    @Override
+    public CompletableFuture<Outcome[]> applyBatch(Technician technician, List<BatchInstruction> batch) {
+        return CompletableFuture.supplyAsync(() -> bank.applyBatch(batch), executor);
+    }
+
+    @Override
+    public CompletableFuture<Long> getBalance(Customer customer) {
+        return CompletableFuture.supplyAsync(() -> bank.getBalance(customer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Long> withdrawalAllowance(Customer customer) {
+        return CompletableFuture.supplyAsync(() -> bank.withdrawalAllowance(customer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isValidCard(String cardNumber) {
+        return CompletableFuture.supplyAsync(() -> bank.isValidCard(cardNumber), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isCardRetained(String cardNumber) {
+        return CompletableFuture.supplyAsync(() -> bank.isCardRetained(cardNumber), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isCardBlocked(String cardNumber) {
+        return CompletableFuture.supplyAsync(() -> bank.isCardBlocked(cardNumber), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<StatementEntry>> miniStatement(Customer customer, int count) {
+        return CompletableFuture.supplyAsync(() -> bank.miniStatement(customer, count), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> changePin(Customer customer, String newPin) {
+        return CompletableFuture.supplyAsync(() -> bank.changePin(customer, newPin), executor);
+    }
+
+    // --- Emergency / maintenance ---
+
+    @Override
+    public CompletableFuture<Void> reportEmergency(Customer customer, String type) {
+        return CompletableFuture.runAsync(() -> bank.reportEmergency(terminal, type, customer.getCardNumber()),
+                executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isInService() {
+        return CompletableFuture.supplyAsync(() -> terminal.getState() == ATMState.ACTIVE, executor);
+    }
+
+    @Override
+    public CompletableFuture<ATMState> getAtmState(Technician technician) {
+        return CompletableFuture.supplyAsync(terminal::getState, executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setAtmState(Technician technician, ATMState atmState) {
+        return CompletableFuture.supplyAsync(() -> bank.setAtmState(terminal, atmState), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> selfCheckOk(Technician technician) {
+        return CompletableFuture.supplyAsync(() -> bank.selfCheckOk(terminal), executor);
+    }
+
+    @Override
+    public CompletableFuture<DiagnosticReport> runDiagnostics(Technician technician) {
+        return CompletableFuture.supplyAsync(() -> bank.runDiagnostics(terminal), executor);
+    }
+
+    @Override
+    public CompletableFuture<Long> getAtmCashStock(Technician technician) {
+        return CompletableFuture.supplyAsync(() -> terminal.getCashStock().available(), executor);
+    }
+
+    @Override
+    public CompletableFuture<String> metricsReport() {
+        return CompletableFuture.supplyAsync(() -> bank.getMetrics().dump(), executor);
+    }
+
+    // --- Back office (logged-in technician) ---
+
+    @Override
+    public CompletableFuture<Map<String, String>> getRetainedCards(Technician technician) {
+        return CompletableFuture.supplyAsync(() -> Map.copyOf(bank.getRetainedCards()), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> returnRetainedCard(Technician technician, String cardNumber) {
+        return CompletableFuture.supplyAsync(() -> bank.returnRetainedCard(cardNumber), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getBlockedCards(Technician technician) {
+        return CompletableFuture.supplyAsync(() -> Map.copyOf(bank.getBlockedCards()), executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> blocklistSize(Technician technician) {
+        return CompletableFuture.supplyAsync(() -> bank.getBlocklist().size(), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> unblockCard(Technician technician, String cardNumber) {
+        return CompletableFuture.supplyAsync(() -> bank.unblockCard(cardNumber), executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> loadBlocklist(Technician technician, String file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return bank.loadBlocklist(Paths.get(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Long> refillCassettes(Technician technician) {
+        return CompletableFuture.supplyAsync(() -> bank.refillCassettes(terminal), executor);
+    }
+
+    @Override
+    public CompletableFuture<int[]> noteCounts(Technician technician) {
+        return CompletableFuture.supplyAsync(() -> terminal.getCashStock().noteCounts(), executor);
+    }
+
+    @Override
+    public CompletableFuture<String> cashForecastReport(Technician technician) {
+        return CompletableFuture.supplyAsync(bank::cashForecastReport, executor);
+    }
+
+    @Override
+    public CompletableFuture<String> uptimeReport(Technician technician, int days) {
+        return CompletableFuture.supplyAsync(() -> bank.uptimeReport(days), executor);
+    }
+
+    @Override
+    public CompletableFuture<String> emergencyReport(Technician technician) {
+        return CompletableFuture.supplyAsync(bank::emergencyReport, executor);
+    }
+
+    @Override
+    public void close() {
+        for (Long reservation : reservations.keySet()) {
+            if (reservations.remove(reservation) != null) {
+                bank.releaseCash(terminal, reservation);
+            }
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the ATM terminals served by one bank, keyed by terminal id.
+ *
+ * Lookups are lock-free, and each terminal keeps its own lock-free
+ * {@link CashStock}, so sessions at different machines only meet on the
+ * accounts they touch.
+ */
+public class AtmFleet {
+
+    /** The terminal used by the single-ATM API. */
+    public static final String DEFAULT_TERMINAL_ID = "ATM-1";
+
+    /** Customer logins per second each terminal sustains, and how many it takes at once. */
+    public static final double DEFAULT_LOGINS_PER_SECOND = 0.5;
+    public static final int DEFAULT_LOGIN_BURST = 10;
+
+    private final ConcurrentHashMap<String, AtmTerminal> terminals = new ConcurrentHashMap<>();
+    private volatile double loginsPerSecond = DEFAULT_LOGINS_PER_SECOND;
+    private volatile int loginBurst = DEFAULT_LOGIN_BURST;
+
+    /** Adds a terminal, or returns the one already registered under {@code id}. */
+    AtmTerminal add(String id, long initialCash, ATMState state) {
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("Terminal id must not be empty");
+        }
+        return terminals.computeIfAbsent(id, k -> new AtmTerminal(k, initialCash, state, newLoginBucket()));
+    }
+
+    /** Adds an active terminal, or returns null if {@code id} is taken. */
+    AtmTerminal addNew(String id, long initialCash) {
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("Terminal id must not be empty");
+        }
+        AtmTerminal atm = new AtmTerminal(id, initialCash, ATMState.ACTIVE, newLoginBucket());
+        return terminals.putIfAbsent(id, atm) == null ? atm : null;
+    }
+
+    /** Sets the login rate of every terminal, including ones added later. */
+    void setLoginRate(double perSecond, int burst) {
+        if (!(perSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        loginsPerSecond = perSecond;
+        loginBurst = burst;
+        for (AtmTerminal t : terminals.values()) {
+            t.setLoginRate(perSecond, burst);
+        }
+    }
+
+    private TokenBucket newLoginBucket() {
+        return new TokenBucket(loginsPerSecond, loginBurst);
+    }
+
+    /** The terminal with {@code id}, or null. */
+    public AtmTerminal get(String id) {
+        return terminals.get(id);
+    }
+
+    public Collection<AtmTerminal> terminals() {
+        return Collections.unmodifiableCollection(terminals.values());
+    }
+
+    public int size() {
+        return terminals.size();
+    }
+
+    /** Cash available across all terminals. */
+    public long totalCash() {
+        long total = 0;
+        for (AtmTerminal t : terminals.values()) {
+            total += t.getCashStock().available();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,279 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of ATM state transitions.
+ *
+ * The log holds every transition of the last {@link #RETENTION_DAYS} days
+ * plus each terminal's newest one, so its current state and its uptime over
+ * that period can be rebuilt from it; the {@link Checkpointer} drops older
+ * transitions with {@link #compact}, which keeps startup time bounded.
+ * Transitions are rare, so each append is forced to disk before it returns.
+ *
+ * In memory the log is primitive columns (time, terminal, from, to, reason),
+ * with terminal ids and reasons interned, so months of transitions replay in
+ * one pass without touching the file. Times never go backwards: an append
+ * with an earlier clock takes the previous transition's time.
+ */
+class AtmStateLog {
+
+    /** Days of transitions kept; uptime before then is no longer known. */
+    static final int RETENTION_DAYS = 90;
+    private static final String FILE_NAME = "states.log";
+    private static final int MAX_STRING = 255;
+    private static final ATMState[] STATES = ATMState.values();
+
+    private final Path file; // null: in-memory only
+    private final List<String> terminals = new ArrayList<>();
+    private final Map<String, Integer> terminalIds = new HashMap<>();
+    private final List<String> reasons = new ArrayList<>();
+    private final Map<String, Integer> reasonIds = new HashMap<>();
+    private long[] times = new long[64];
+    private int[] terminalOf = new int[64];
+    private byte[] fromState = new byte[64];
+    private byte[] toState = new byte[64];
+    private int[] reasonOf = new int[64];
+    private int size;
+
+    /** In-memory log, lost on exit. */
+    AtmStateLog() {
+        this.file = null;
+    }
+
+    /** Opens the log kept in {@code directory} and loads every transition in it. */
+    AtmStateLog(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(FILE_NAME);
+        load();
+    }
+
+    /** Records a transition and returns its time; durable on return. */
+    synchronized long append(String terminalId, ATMState from, ATMState to, String reason) {
+        String why = reason.length() > MAX_STRING ? reason.substring(0, MAX_STRING) : reason;
+        long time = Math.max(System.currentTimeMillis(), size == 0 ? 0 : times[size - 1]);
+        if (file != null) {
+            try {
+                write(time, terminalId, from, to, why);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write the ATM state log", e);
+            }
+        }
+        add(time, terminalId, from, to, why);
+        return time;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** Feeds every transition, oldest first, to {@code visitor}. */
+    synchronized void replay(AtmStateMachine.Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.transition(times[i], terminals.get(terminalOf[i]), STATES[fromState[i]], STATES[toState[i]],
+                    reasons.get(reasonOf[i]));
+        }
+    }
+
+    /**
+     * Time each logged terminal spent in each state between the two times,
+     * in one pass over the columns. A terminal counts as in its first
+     * transition's from-state until then; terminals first logged after
+     * {@code toMillis} are left out.
+     */
+    synchronized List<AtmUptime> uptime(long fromMillis, long toMillis) {
+        int n = terminals.size();
+        long[][] millis = new long[n][STATES.length];
+        long[] since = new long[n];
+        int[] state = new int[n];
+        int[] transitions = new int[n];
+        int[] faults = new int[n];
+        Arrays.fill(state, -1);
+        for (int i = 0; i < size && times[i] <= toMillis; i++) {
+            int t = terminalOf[i];
+            long at = Math.max(times[i], fromMillis);
+            if (state[t] < 0) {
+                state[t] = fromState[i];
+                since[t] = fromMillis;
+            }
+            millis[t][state[t]] += at - since[t];
+            since[t] = at;
+            state[t] = toState[i];
+            if (times[i] >= fromMillis) {
+                transitions[t]++;
+                if (toState[i] == ATMState.NEED_MAINTENANCE.ordinal()) {
+                    faults[t]++;
+                }
+            }
+        }
+        List<AtmUptime> result = new ArrayList<>();
+        for (int t = 0; t < n; t++) {
+            if (state[t] < 0) continue;
+            millis[t][state[t]] += toMillis - since[t];
+            result.add(new AtmUptime(terminals.get(t), fromMillis, toMillis, millis[t], transitions[t], faults[t]));
+        }
+        return result;
+    }
+
+    /**
+     * Drops transitions older than {@code beforeMillis}, except each
+     * terminal's newest, rewriting the file to match. The kept ones still
+     * say which state each terminal was in before them, so uptime from
+     * {@code beforeMillis} on is unchanged.
+     */
+    synchronized void compact(long beforeMillis) throws IOException {
+        boolean[] newest = new boolean[terminals.size()];
+        boolean[] keep = new boolean[size];
+        int kept = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            if (times[i] >= beforeMillis || !newest[terminalOf[i]]) {
+                keep[i] = true;
+                kept++;
+            }
+            newest[terminalOf[i]] = true;
+        }
+        if (kept == size) return;
+        int n = Math.max(64, kept);
+        long[] t = new long[n];
+        int[] term = new int[n];
+        byte[] from = new byte[n];
+        byte[] to = new byte[n];
+        int[] why = new int[n];
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                t[k] = times[i];
+                term[k] = terminalOf[i];
+                from[k] = fromState[i];
+                to[k] = toState[i];
+                why[k] = reasonOf[i];
+                k++;
+            }
+        }
+        if (file != null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * kept);
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (int i = 0; i < kept; i++) {
+                encode(out, t[i], terminals.get(term[i]), STATES[from[i]], STATES[to[i]], reasons.get(why[i]));
+            }
+            Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+            Files.deleteIfExists(tmp);
+            append(tmp, bytes.toByteArray());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        times = t;
+        terminalOf = term;
+        fromState = from;
+        toState = to;
+        reasonOf = why;
+        size = kept;
+    }
+
+    private void add(long time, String terminalId, ATMState from, ATMState to, String reason) {
+        if (size == times.length) {
+            int n = size * 2;
+            times = Arrays.copyOf(times, n);
+            terminalOf = Arrays.copyOf(terminalOf, n);
+            fromState = Arrays.copyOf(fromState, n);
+            toState = Arrays.copyOf(toState, n);
+            reasonOf = Arrays.copyOf(reasonOf, n);
+        }
+        times[size] = time;
+        terminalOf[size] = intern(terminalId, terminals, terminalIds);
+        fromState[size] = (byte) from.ordinal();
+        toState[size] = (byte) to.ordinal();
+        reasonOf[size] = intern(reason, reasons, reasonIds);
+        size++;
+    }
+
+    private static int intern(String s, List<String> values, Map<String, Integer> ids) {
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = values.size();
+            values.add(s);
+            ids.put(s, id);
+        }
+        return id;
+    }
+
+    // --- File ---
+
+    private void write(long time, String terminalId, ATMState from, ATMState to, String reason) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        encode(new DataOutputStream(bytes), time, terminalId, from, to, reason);
+        append(file, bytes.toByteArray());
+    }
+
+    private static void encode(DataOutputStream out, long time, String terminalId, ATMState from, ATMState to,
+                               String reason) throws IOException {
+        byte[] id = terminalId.getBytes(StandardCharsets.UTF_8);
+        byte[] why = reason.getBytes(StandardCharsets.UTF_8);
+        out.writeLong(time);
+        out.writeByte(from.ordinal());
+        out.writeByte(to.ordinal());
+        out.writeShort(id.length);
+        out.write(id);
+        out.writeShort(why.length);
+        out.write(why);
+    }
+
+    private static void append(Path file, byte[] bytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(false);
+        }
+    }
+
+    /** Loads the file, cutting off a record torn by a crash. */
+    private synchronized void load() throws IOException {
+        if (!Files.exists(file)) return;
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                long time = in.readLong();
+                if (time <= 0) break; // unwritten space after a crash
+                int from = in.readUnsignedByte();
+                int to = in.readUnsignedByte();
+                byte[] id = new byte[in.readUnsignedShort()];
+                in.readFully(id);
+                byte[] why = new byte[in.readUnsignedShort()];
+                in.readFully(why);
+                if (from >= STATES.length || to >= STATES.length) break;
+                add(time, new String(id, StandardCharsets.UTF_8), STATES[from], STATES[to],
+                        new String(why, StandardCharsets.UTF_8));
+                good += 8 + 1 + 1 + 2 + id.length + 2 + why.length;
+            }
+        } catch (EOFException e) {
+            // torn or complete; everything before `good` is intact
+        }
+        if (good < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(good);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The lifecycle of an ATM terminal. A fault takes an active terminal to
+ * {@link ATMState#NEED_MAINTENANCE}; a technician takes it, or an active
+ * terminal for planned work, to {@link ATMState#ON_MAINTENANCE}; and only
+ * from there does it go back to {@link ATMState#ACTIVE}. Any other change is
+ * refused, except that a {@link #fault} found during maintenance sends the
+ * terminal back to {@code NEED_MAINTENANCE}, so the fault is in its uptime.
+ *
+ * Every transition is appended to an {@link AtmStateLog} before the
+ * terminal's state changes, so the log is the terminal's history: replaying
+ * it rebuilds the current states on startup and gives each terminal's
+ * {@link AtmUptime} over the log's retention period. Transitions of one terminal are
+ * serialized on it; customer sessions read the state with a plain volatile
+ * read and never wait for one.
+ */
+public class AtmStateMachine {
+
+    private static final Map<ATMState, Set<ATMState>> ALLOWED = new EnumMap<>(ATMState.class);
+
+    static {
+        ALLOWED.put(ATMState.ACTIVE, EnumSet.of(ATMState.NEED_MAINTENANCE, ATMState.ON_MAINTENANCE));
+        ALLOWED.put(ATMState.NEED_MAINTENANCE, EnumSet.of(ATMState.ON_MAINTENANCE));
+        ALLOWED.put(ATMState.ON_MAINTENANCE, EnumSet.of(ATMState.ACTIVE));
+    }
+
+    private final AtmStateLog log;
+
+    AtmStateMachine(AtmStateLog log) {
+        this.log = log;
+    }
+
+    /** Whether a terminal in state {@code from} may change to {@code to}. */
+    public static boolean isAllowed(ATMState from, ATMState to) {
+        return ALLOWED.get(from).contains(to);
+    }
+
+    /** The states a terminal in state {@code from} may change to. */
+    public static Set<ATMState> allowedFrom(ATMState from) {
+        return Collections.unmodifiableSet(ALLOWED.get(from));
+    }
+
+    /**
+     * Moves {@code atm} to {@code to}, logging why. Returns true if the
+     * terminal is in {@code to} afterwards: moving to the current state is a
+     * no-op and is not logged. Returns false, changing nothing, if the
+     * transition is not allowed.
+     */
+    boolean transition(AtmTerminal atm, ATMState to, String reason) {
+        return move(atm, to, reason, false);
+    }
+
+    /**
+     * Takes {@code atm} to {@link ATMState#NEED_MAINTENANCE} for a fault,
+     * from any state; a terminal already there stays, and nothing is logged.
+     */
+    void fault(AtmTerminal atm, String reason) {
+        move(atm, ATMState.NEED_MAINTENANCE, reason, true);
+    }
+
+    private boolean move(AtmTerminal atm, ATMState to, String reason, boolean fault) {
+        synchronized (atm) { // log order matches the order states were set
+            ATMState from = atm.getState();
+            if (from == to) {
+                return true;
+            }
+            if (!fault && !isAllowed(from, to)) {
+                return false;
+            }
+            log.append(atm.getId(), from, to, reason);
+            atm.setState(to);
+            return true;
+        }
+    }
+
+    /** Sets every logged terminal in {@code fleet} to the state its last transition left it in. */
+    void restore(AtmFleet fleet) {
+        Map<String, ATMState> last = new HashMap<>();
+        log.replay((time, terminalId, from, to, reason) -> last.put(terminalId, to));
+        for (Map.Entry<String, ATMState> e : last.entrySet()) {
+            AtmTerminal atm = fleet.get(e.getKey());
+            if (atm != null) {
+                atm.setState(e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Time each terminal of {@code terminals} spent in each state between the
+     * two times. A terminal that never changed state spent all of it in its
+     * current one.
+     */
+    public List<AtmUptime> uptime(Collection<AtmTerminal> terminals, long fromMillis, long toMillis) {
+        Map<String, AtmUptime> logged = new HashMap<>();
+        for (AtmUptime u : log.uptime(fromMillis, toMillis)) {
+            logged.put(u.getTerminalId(), u);
+        }
+        List<AtmUptime> result = new ArrayList<>();
+        for (AtmTerminal atm : terminals) {
+            AtmUptime u = logged.get(atm.getId());
+            if (u == null) {
+                long[] millis = new long[ATMState.values().length];
+                millis[atm.getState().ordinal()] = Math.max(0, toMillis - fromMillis);
+                u = new AtmUptime(atm.getId(), fromMillis, toMillis, millis, 0, 0);
+            }
+            result.add(u);
+        }
+        return result;
+    }
+
+    /** Drops logged transitions older than {@code beforeMillis}; see {@link AtmStateLog#compact}. */
+    void compact(long beforeMillis) throws IOException {
+        log.compact(beforeMillis);
+    }
+
+    /** Feeds every logged transition, oldest first, to {@code visitor}. */
+    public void history(Visitor visitor) {
+        log.replay(visitor);
+    }
+
+    /** Receives logged transitions; see {@link #history}. */
+    public interface Visitor {
+        void transition(long time, String terminalId, ATMState from, ATMState to, String reason);
+    }
+}
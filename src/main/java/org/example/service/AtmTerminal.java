@@ -0,0 +1,70 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+
+/**
+ * One ATM served by the bank: its own state and cash, sharing customer
+ * accounts with every other terminal. Reads need no locking; state changes
+ * go through {@link BankCentralSystem#setAtmState(AtmTerminal, ATMState)} so
+ * the {@link AtmStateMachine} checks and logs them. Customer logins at the
+ * terminal are rate limited by its own {@link TokenBucket}, so a burst of
+ * guesses at one machine does not slow logins at the others. Its withdrawals
+ * feed a {@link CashForecaster}.
+ */
+public final class AtmTerminal {
+
+    private final String id;
+    private final String stolenCardReason;
+    private final CashStock cash;
+    private final CashForecaster forecast = new CashForecaster();
+    private volatile ATMState state;
+    private volatile TokenBucket logins;
+
+    AtmTerminal(String id, long initialCash, ATMState state, TokenBucket logins) {
+        this.id = id;
+        this.stolenCardReason = "reported stolen at " + id;
+        this.cash = new CashStock(initialCash);
+        this.state = state;
+        this.logins = logins;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /** Why a card reported stolen here is blocked; built once, not on each report. */
+    String getStolenCardReason() {
+        return stolenCardReason;
+    }
+
+    public ATMState getState() {
+        return state;
+    }
+
+    void setState(ATMState state) {
+        this.state = state;
+    }
+
+    /** Takes a login permit; false if the terminal is over its login rate. */
+    boolean tryLogin() {
+        return logins.tryAcquire();
+    }
+
+    void setLoginRate(double perSecond, int burst) {
+        logins = new TokenBucket(perSecond, burst);
+    }
+
+    public CashStock getCashStock() {
+        return cash;
+    }
+
+    /** The terminal's withdrawal volume by hour, and when its cassettes will run low. */
+    public CashForecaster getForecaster() {
+        return forecast;
+    }
+
+    @Override
+    public String toString() {
+        return id + " (" + state + ", " + cash.available() + " kurus available)";
+    }
+}
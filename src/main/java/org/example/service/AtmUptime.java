@@ -0,0 +1,72 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long one ATM spent in each state over a period, rebuilt from the
+ * {@link AtmStateLog}.
+ */
+public final class AtmUptime {
+
+    private final String terminalId;
+    private final long fromMillis;
+    private final long toMillis;
+    private final long[] millis; // by ATMState ordinal
+    private final int transitions;
+    private final int faults;
+
+    AtmUptime(String terminalId, long fromMillis, long toMillis, long[] millis, int transitions, int faults) {
+        this.terminalId = terminalId;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.millis = millis.clone();
+        this.transitions = transitions;
+        this.faults = faults;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public long millisIn(ATMState state) {
+        return millis[state.ordinal()];
+    }
+
+    /** Time out of service, for faults and planned maintenance alike. */
+    public long downtimeMillis() {
+        return Arrays.stream(millis).sum() - millisIn(ATMState.ACTIVE);
+    }
+
+    /** Share of the period the terminal was {@link ATMState#ACTIVE}, from 0 to 1. */
+    public double availability() {
+        long total = toMillis - fromMillis;
+        return total <= 0 ? 1 : (double) millisIn(ATMState.ACTIVE) / total;
+    }
+
+    /** State changes within the period. */
+    public int getTransitions() {
+        return transitions;
+    }
+
+    /** Changes into {@link ATMState#NEED_MAINTENANCE} within the period. */
+    public int getFaults() {
+        return faults;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.2f%% available, %d h down, %d faults, %d transitions", terminalId,
+                availability() * 100, TimeUnit.MILLISECONDS.toHours(downtimeMillis()), faults, transitions);
+    }
+}
@@ -3,124 +3,1472 @@ package org.example.service;
 import org.example.model.ATMState;
 import org.example.model.Account;
 import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.model.StatementEntry;
 import org.example.model.Technician;
+import org.example.service.BankMetrics.Operation;
+import org.example.service.BankMetrics.Outcome;
 
-import java.math.BigDecimal;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Simple in-memory simulation of a Bank Central System.
  * In a real implementation this would be a remote, encrypted service.
+ *
+ * Safe for concurrent ATM sessions: monetary operations are linearizable per
+ * account through striped account locks, so sessions on different accounts
+ * proceed in parallel.
+ *
+ * When opened on a data directory every state change is written to a
+ * {@link TransactionJournal} before the call returns. On startup the newest
+ * {@link BankSnapshot} is loaded and only the journal written after it is
+ * replayed; a background {@link Checkpointer} keeps that tail short. A
+ * money movement the journal refuses (its writer has failed) is undone and
+ * fails with {@link Outcome#JOURNAL_FAILED}.
+ *
+ * Customers and balances live in an {@link AccountStore}: on the heap by
+ * default, or in a {@link MappedAccountStore} for large card bases.
+ *
+ * Every deposit, withdrawal and transfer is also kept in a per-card
+ * {@link TransactionHistory} for mini-statements.
+ *
+ * Deposits, withdrawals and transfers may carry a request id (see
+ * {@link RequestDeduplicator}); a retried request with the same id returns
+ * the first attempt's result without being applied again.
+ *
+ * PINs and technician passwords are kept as salted slow hashes and checked
+ * through a {@link CredentialVerifier}.
+ *
+ * Every operation records its latency and outcome in {@link #getMetrics()}.
+ *
+ * One bank serves a fleet of ATM terminals ({@link #getFleet()}), each with
+ * its own state and cash stock. Cash operations take the terminal they run
+ * at; the overloads without one act on {@link AtmFleet#DEFAULT_TERMINAL_ID}.
+ *
+ * Cards can be blocked one at a time (a stolen-card report, the
+ * {@link FraudMonitor}) or in bulk through a {@link CardBlocklist} loaded
+ * from a file; logins, card checks and money movements refuse both.
+ *
+ * Emergency reports take effect at the terminal at once and are queued in an
+ * {@link EmergencyQueue} for delivery to the bank; delivery time is recorded
+ * as {@link Operation#EMERGENCY_DISPATCH} against the one-minute SLA.
  */
-public class BankCentralSystem {
+public class BankCentralSystem implements Closeable {
 
-    private final Map<String, Customer> customersByCard = new HashMap<>();
-    private final Map<String, Technician> techniciansByUser = new HashMap<>();
-    private ATMState atmState = ATMState.ACTIVE;
-    private BigDecimal atmCashStock = BigDecimal.valueOf(10_000); // cash available in ATM
+    public static final Path DEFAULT_DATA_DIR = Paths.get("atm-data");
+    public static final int DEFAULT_GROUP_COMMIT = 8;
+    public static final long DEFAULT_CHECKPOINT_SECONDS = 60;
+    public static final int MINI_STATEMENT_ENTRIES = 10;
+    public static final int MAX_PIN_ATTEMPTS = 3;
+    public static final String BLOCKLIST_FILE = "blocklist.txt";
+    /** Where the {@link LocalEmergencyNotifier} of a bank kept on disk writes delivered reports. */
+    public static final String EMERGENCY_OUTBOX_FILE = "emergency-outbox.txt";
+    /** Cash in the cassettes below which a terminal needs a refill. */
+    public static final long DEFAULT_LOW_CASH = Money.ofLira(5_000);
+    private static final long CARD_READER_MILLIS = 250; // simulated self-test time of the reader
+    private static final int CHECKPOINT_FAILURES_TO_FAIL = 3; // the self-check warns on fewer
+    private static final long INITIAL_CASH_STOCK = Money.ofLira(10_000);
+    private static final int PARALLEL_BATCH_SIZE = 1024; // smaller batches run on the caller
+
+    private final AccountStore store;
+    private final Map<String, Technician> techniciansByUser = new ConcurrentHashMap<>();
+    private final AccountLocks accountLocks = new AccountLocks();
+    private final AtmFleet fleet = new AtmFleet();
+    private final AtmTerminal defaultTerminal;
+    private final TransactionJournal journal; // null: in-memory only
+    private final Checkpointer checkpointer;
+    private final CredentialVerifier credentials;
+    private final TransactionHistory history;
+    private final WithdrawalVelocity velocity;
+    private final RequestDeduplicator requests = new RequestDeduplicator();
+    private final PinAttemptTracker pinAttempts = new PinAttemptTracker();
+    private final AccountLocks pinLocks = new AccountLocks(1024); // keyed by card number
+    private final Map<String, String> retainedCards = new ConcurrentHashMap<>(); // card -> terminal id
+    private final Map<String, String> blockedCards = new ConcurrentHashMap<>(); // card -> reason
+    private final FraudMonitor fraud = new FraudMonitor(this::blockCard);
+    private volatile long lowCash = DEFAULT_LOW_CASH;
+    private final Path blocklistFile; // null: in-memory only
+    private final AtmStateMachine states;
+    private final Diagnostics diagnostics = new Diagnostics();
+    private final EmergencyQueue emergencies;
+    private final AtomicLong emergencyIds = new AtomicLong(); // report ids without a journal
+    private volatile CardBlocklist blocklist = CardBlocklist.EMPTY;
+    private final BankMetrics metrics = new BankMetrics();
+    private final long replayedRecords; // journal records applied on top of the snapshot at startup
 
     public BankCentralSystem() {
+        this(new InMemoryAccountStore(), INITIAL_CASH_STOCK);
+    }
+
+    /** In-memory bank (no journal) over a prepared store, e.g. for benchmarks and simulations. */
+    public BankCentralSystem(AccountStore store, long initialCashStock) {
+        this(store, initialCashStock, new CredentialVerifier());
+    }
+
+    /**
+     * In-memory bank whose credentials are checked by {@code credentials};
+     * customers in {@code store} must have been hashed with the same hasher.
+     */
+    public BankCentralSystem(AccountStore store, long initialCashStock, CredentialVerifier credentials) {
+        this.store = store;
+        this.credentials = credentials;
+        this.defaultTerminal = fleet.add(AtmFleet.DEFAULT_TERMINAL_ID, initialCashStock, ATMState.ACTIVE);
+        this.history = new TransactionHistory();
+        this.velocity = new WithdrawalVelocity(history);
+        this.journal = null;
+        this.checkpointer = null;
+        this.replayedRecords = 0;
+        this.blocklistFile = null;
+        this.states = new AtmStateMachine(new AtmStateLog());
+        this.emergencies = new EmergencyQueue(new LocalEmergencyNotifier(), this::emergencyDelivered);
+        registerDefaultProbes(null);
         seedDemoData();
     }
 
-    private void seedDemoData() {
-        Account a1 = new Account("ACC-1001", BigDecimal.valueOf(2_000));
-        Account a2 = new Account("ACC-1002", BigDecimal.valueOf(5_000));
-        customersByCard.put("1",
-                new Customer("1", "1234", "Ali Veli", a1));
-        customersByCard.put("5555666677778888",
-                new Customer("5555666677778888", "4321", "Ayse Fatma", a2));
+    public BankCentralSystem(Path dataDir) throws IOException {
+        this(dataDir, DEFAULT_GROUP_COMMIT);
+    }
+
+    public BankCentralSystem(Path dataDir, int groupCommitSize) throws IOException {
+        this(new InMemoryAccountStore(), dataDir, groupCommitSize);
+    }
+
+    /**
+     * Opens the bank on an existing store. Demo customers are only added when
+     * the store is empty.
+     */
+    public BankCentralSystem(AccountStore store, Path dataDir, int groupCommitSize) throws IOException {
+        this.store = store;
+        this.credentials = new CredentialVerifier();
+        seedDemoData();
+        Path snapshotDir = dataDir.resolve("snapshots");
+        BankSnapshot snapshot = BankSnapshot.loadLatest(snapshotDir, INITIAL_CASH_STOCK);
+        snapshot.applyTo(store);
+        snapshot.applyTo(fleet);
+        retainedCards.putAll(snapshot.getRetainedCards());
+        blockedCards.putAll(snapshot.getBlockedCards());
+        this.blocklistFile = dataDir.resolve(BLOCKLIST_FILE);
+        if (Files.exists(blocklistFile)) {
+            this.blocklist = CardBlocklist.load(blocklistFile);
+        }
+        this.defaultTerminal = fleet.get(AtmFleet.DEFAULT_TERMINAL_ID);
+        this.history = new TransactionHistory(dataDir.resolve("history"));
+        this.velocity = new WithdrawalVelocity(history);
+        this.journal = new TransactionJournal(dataDir.resolve("journal"), groupCommitSize);
+        JournalReplayer replayer = new JournalReplayer(snapshot.getPendingEmergencies());
+        this.replayedRecords = journal.replay(snapshot.getLsn(), replayer);
+        this.states = new AtmStateMachine(new AtmStateLog(dataDir.resolve("states")));
+        states.restore(fleet);
+        this.emergencies = new EmergencyQueue(new LocalEmergencyNotifier(dataDir.resolve(EMERGENCY_OUTBOX_FILE)),
+                this::emergencyDelivered);
+        for (EmergencyReport r : replayer.pendingEmergencies.values()) {
+            emergencies.offer(r.getId(), r.getReportedAt(), r.getTerminalId(), r.getType(), r.getCardNumber());
+        }
+        this.checkpointer = new Checkpointer(snapshotDir, journal, snapshot, history, states,
+                DEFAULT_CHECKPOINT_SECONDS);
+        registerDefaultProbes(dataDir);
+        checkpointer.start();
+    }
+
+    /** Writes a snapshot now instead of waiting for the next scheduled checkpoint. */
+    public void checkpoint() throws IOException {
+        if (checkpointer != null) {
+            checkpointer.checkpoint();
+        }
+    }
+
+    /** Journal records replayed on top of the newest snapshot when this bank was opened. */
+    long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    /** The write-ahead journal; null for an in-memory bank. */
+    TransactionJournal getJournal() {
+        return journal;
+    }
 
-        techniciansByUser.put("tech1", new Technician("tech1", "password"));
+    private void seedDemoData() {
+        techniciansByUser.put("tech1", new Technician("tech1", credentials.hash("password")));
+        if (store.size() > 0) {
+            return;
+        }
+        Account a1 = new Account("ACC-1001", Money.ofLira(2_000));
+        Account a2 = new Account("ACC-1002", Money.ofLira(5_000));
+        store.add(new Customer("1", credentials.hash("1234"), "Ali Veli", a1));
+        store.add(new Customer("5555666677778888", credentials.hash("4321"), "Ayse Fatma", a2));
     }
 
     // --- Authentication ---
 
     public Customer authenticateCustomer(String cardNumber, String pin) {
-        Customer c = customersByCard.get(cardNumber);
-        if (c != null && c.getPin().equals(pin)) {
-            return c;
+        return authenticateCustomer(defaultTerminal, cardNumber, pin);
+    }
+
+    /**
+     * Logs a customer in at {@code atm}. Returns null for a wrong PIN, an
+     * unknown or retained card, or when the terminal is over its login rate.
+     * The {@link #MAX_PIN_ATTEMPTS}th wrong PIN in a row retains the card;
+     * see {@link #isCardRetained}.
+     */
+    public Customer authenticateCustomer(AtmTerminal atm, String cardNumber, String pin) {
+        long start = System.nanoTime();
+        if (!atm.tryLogin()) {
+            metrics.record(Operation.LOGIN, Outcome.THROTTLED, start);
+            return null;
+        }
+        Customer c = store.find(cardNumber);
+        if (c == null) {
+            metrics.record(Operation.LOGIN, Outcome.UNKNOWN_CARD, start);
+            return null;
+        }
+        Outcome outcome = checkPin(atm, c, pin);
+        metrics.record(Operation.LOGIN, outcome, start);
+        return outcome == Outcome.OK ? c : null;
+    }
+
+    public boolean verifyPin(Customer customer, String pin) {
+        return verifyPin(defaultTerminal, customer, pin);
+    }
+
+    /** Checks the PIN of a customer already at {@code atm}; wrong PINs count towards retention. */
+    public boolean verifyPin(AtmTerminal atm, Customer customer, String pin) {
+        long start = System.nanoTime();
+        return metrics.record(Operation.VERIFY_PIN, checkPin(atm, customer, pin), start);
+    }
+
+    /**
+     * Checks one card's PINs one at a time, so parallel guesses cannot slip
+     * past {@link #MAX_PIN_ATTEMPTS} between a check and its count. A correct
+     * PIN is usually answered from the verifier's cache, so the lock is held
+     * for the slow KDF only when the PIN is wrong or new.
+     */
+    private Outcome checkPin(AtmTerminal atm, Customer c, String pin) {
+        String card = c.getCardNumber();
+        pinLocks.lock(card);
+        try {
+            if (retainedCards.containsKey(card)) {
+                return Outcome.CARD_RETAINED;
+            }
+            if (isCardBlocked(card)) {
+                return Outcome.CARD_BLOCKED;
+            }
+            Outcome outcome = checkSecret(card, c.getPinHash(), pin);
+            if (outcome == Outcome.OK) {
+                pinAttempts.reset(card);
+            } else if (outcome == Outcome.BAD_CREDENTIALS && pinAttempts.increment(card) >= MAX_PIN_ATTEMPTS) {
+                retainCard(atm, card);
+            }
+            return outcome;
+        } finally {
+            pinLocks.unlock(card);
+        }
+    }
+
+    private void retainCard(AtmTerminal atm, String cardNumber) {
+        if (retainedCards.putIfAbsent(cardNumber, atm.getId()) == null && journal != null) {
+            journal.awaitDurable(journal.logCardRetained(atm.getId(), cardNumber));
+        }
+    }
+
+    /** Whether {@code cardNumber} has been retained for wrong PINs and not returned yet. */
+    public boolean isCardRetained(String cardNumber) {
+        return retainedCards.containsKey(cardNumber);
+    }
+
+    /** Retained cards, mapped to the id of the terminal holding each. */
+    public Map<String, String> getRetainedCards() {
+        return Collections.unmodifiableMap(retainedCards);
+    }
+
+    /**
+     * Gives a retained card back to its customer, with a fresh count of PIN
+     * attempts. Returns false if the card was not retained.
+     */
+    public boolean returnRetainedCard(String cardNumber) {
+        if (retainedCards.remove(cardNumber) == null) {
+            return false;
+        }
+        pinAttempts.reset(cardNumber);
+        if (journal != null) {
+            journal.awaitDurable(journal.logCardReturned(cardNumber));
+        }
+        return true;
+    }
+
+    /**
+     * Bars {@code cardNumber} from logging in and from moving money at any
+     * terminal. Returns false if it was already blocked.
+     */
+    public boolean blockCard(String cardNumber, String reason) {
+        long lsn = block(cardNumber, reason);
+        if (lsn < 0) {
+            return false;
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    /**
+     * Blocks without waiting for the journal. Returns the block's LSN (0
+     * without a journal), or -1 if the card was already blocked.
+     */
+    private long block(String cardNumber, String reason) {
+        reason = clip(reason);
+        if (blockedCards.putIfAbsent(cardNumber, reason) != null) {
+            return -1;
+        }
+        return journal == null ? 0 : journal.logCardBlocked(cardNumber, reason);
+    }
+
+    /** Cuts free text, such as a block reason or an emergency type from a client, to what the journal takes. */
+    private static String clip(String text) {
+        return text.length() > 255 ? text.substring(0, 255) : text; // journal strings are short
+    }
+
+    /** Lifts a block; returns false if the card was not blocked. */
+    public boolean unblockCard(String cardNumber) {
+        if (blockedCards.remove(cardNumber) == null) {
+            return false;
+        }
+        if (journal != null) {
+            journal.awaitDurable(journal.logCardUnblocked(cardNumber));
+        }
+        return true;
+    }
+
+    /** Whether the card was blocked on its own or is on the {@link #getBlocklist() blocklist}. */
+    public boolean isCardBlocked(String cardNumber) {
+        return blocklist.contains(cardNumber) || blockedCards.containsKey(cardNumber);
+    }
+
+    /** Cards blocked one at a time, mapped to the reason each was blocked; see also {@link #getBlocklist()}. */
+    public Map<String, String> getBlockedCards() {
+        return Collections.unmodifiableMap(blockedCards);
+    }
+
+    public CardBlocklist getBlocklist() {
+        return blocklist;
+    }
+
+    /**
+     * Replaces the blocklist with the card numbers in {@code file}, one per
+     * line, and returns how many there are. Logins and card checks keep using
+     * the old list while the new one is built. A bank on a data directory
+     * keeps a copy there as {@link #BLOCKLIST_FILE} and loads it on startup.
+     */
+    public int loadBlocklist(Path file) throws IOException {
+        CardBlocklist list = CardBlocklist.load(file);
+        if (blocklistFile != null
+                && !file.toAbsolutePath().normalize().equals(blocklistFile.toAbsolutePath().normalize())) {
+            Path tmp = blocklistFile.resolveSibling(BLOCKLIST_FILE + ".tmp");
+            Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, blocklistFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
-        return null;
+        blocklist = list;
+        return list.size();
+    }
+
+    /** Swaps in {@code list} for this run only; it is not saved to the data directory. */
+    public void setBlocklist(CardBlocklist list) {
+        blocklist = list;
+    }
+
+    /** The fraud scoring stage fed by every deposit, withdrawal and transfer; its rules can be changed. */
+    public FraudMonitor getFraudMonitor() {
+        return fraud;
+    }
+
+    /** Sets how many customer logins per second every terminal accepts, and how many at once. */
+    public void setLoginRate(double perSecond, int burst) {
+        fleet.setLoginRate(perSecond, burst);
     }
 
     public Technician authenticateTechnician(String username, String password) {
+        long start = System.nanoTime();
         Technician t = techniciansByUser.get(username);
-        if (t != null && t.getPassword().equals(password)) {
-            return t;
+        Outcome outcome = t == null ? Outcome.BAD_CREDENTIALS
+                : checkSecret("tech:" + username, t.getPasswordHash(), password);
+        metrics.record(Operation.TECHNICIAN_LOGIN, outcome, start);
+        return outcome == Outcome.OK ? t : null;
+    }
+
+    /** {@link Outcome#BUSY} when the KDF could not answer; that is not a wrong secret, and the caller may retry. */
+    private Outcome checkSecret(String principal, byte[] credential, String secret) {
+        switch (credentials.verify(principal, credential, secret)) {
+            case MATCH:
+                return Outcome.OK;
+            case MISMATCH:
+                return Outcome.BAD_CREDENTIALS;
+            default:
+                return Outcome.BUSY;
         }
-        return null;
     }
 
     // --- Account / monetary operations ---
 
-    public boolean deposit(Customer customer, BigDecimal amount) {
-        if (amount.signum() <= 0) return false;
-        customer.getAccount().deposit(amount);
-        atmCashStock = atmCashStock.add(amount);
-        return true;
+    // All amounts are in kurus (see Money); no BigDecimal on this path.
+
+    public boolean deposit(Customer customer, long amount) {
+        return deposit(defaultTerminal, customer, amount);
+    }
+
+    public boolean deposit(AtmTerminal atm, Customer customer, long amount) {
+        return deposit(atm, customer, amount, RequestDeduplicator.NONE);
     }
 
-    public boolean withdraw(Customer customer, BigDecimal amount) {
-        if (amount.signum() <= 0) return false;
-        if (atmCashStock.compareTo(amount) < 0) {
+    /** Deposits once per {@code requestId}; a retry returns the first attempt's result. */
+    public boolean deposit(AtmTerminal atm, Customer customer, long amount, long requestId) {
+        long start = System.nanoTime();
+        if (amount <= 0) return metrics.record(Operation.DEPOSIT, Outcome.INVALID_AMOUNT, start);
+        if (isCardBlocked(customer.getCardNumber())) {
+            return metrics.record(Operation.DEPOSIT, Outcome.CARD_BLOCKED, start);
+        }
+        Account acc = customer.getAccount();
+        long lsn;
+        long balance;
+        accountLocks.lock(acc.getAccountNumber());
+        try {
+            Outcome prior = priorOutcome(requestId);
+            if (prior != null) {
+                metrics.record(Operation.DEPOSIT, Outcome.DUPLICATE, start);
+                return prior == Outcome.OK;
+            }
+            CashStock cash = atm.getCashStock();
+            if (!credit(acc, cash, amount)) {
+                return metrics.record(Operation.DEPOSIT, Outcome.INVALID_AMOUNT, start);
+            }
+            balance = acc.getBalance();
+            try {
+                lsn = journal == null ? 0 : journal.logDeposit(atm.getId(), customer.getCardNumber(), amount, balance);
+            } catch (UncheckedIOException | IllegalStateException e) {
+                acc.withdraw(amount);
+                cash.add(-amount);
+                return metrics.record(Operation.DEPOSIT, Outcome.JOURNAL_FAILED, start);
+            }
+            remember(requestId, Outcome.OK);
+            history.record(customer.getCardNumber(), StatementEntry.Type.DEPOSIT, amount, balance);
+        } finally {
+            accountLocks.unlock(acc.getAccountNumber());
+        }
+        fraud.publish(TransactionEvent.Type.DEPOSIT, atm.getId(), customer.getCardNumber(), null, amount, balance);
+        awaitDurable(lsn);
+        return metrics.record(Operation.DEPOSIT, Outcome.OK, start);
+    }
+
+    /**
+     * Credits {@code amount} to {@code acc} and to the deposit bin of
+     * {@code cash}, or to neither if either total would overflow.
+     */
+    private static boolean credit(Account acc, CashStock cash, long amount) {
+        try {
+            cash.add(amount);
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        try {
+            acc.deposit(amount);
+            return true;
+        } catch (ArithmeticException e) {
+            cash.add(-amount);
+            return false;
+        }
+    }
+
+    public boolean withdraw(Customer customer, long amount) {
+        return withdraw(defaultTerminal, customer, amount);
+    }
+
+    public boolean withdraw(AtmTerminal atm, Customer customer, long amount) {
+        return withdraw(atm, customer, amount, RequestDeduplicator.NONE);
+    }
+
+    public boolean withdraw(AtmTerminal atm, Customer customer, long amount, long requestId) {
+        long reservation = reserveCash(atm, amount);
+        if (reservation == CashStock.NO_RESERVATION) {
             return false; // ATM does not have enough cash
         }
-        if (!customer.getAccount().withdraw(amount)) {
-            return false; // customer has not enough balance
+        return withdrawReserved(atm, customer, reservation, requestId);
+    }
+
+    /**
+     * Holds {@code amount} of the ATM's cash for this session, so it cannot be
+     * promised to anyone else while the customer confirms the withdrawal.
+     * Returns the reservation, or {@link CashStock#NO_RESERVATION} if the ATM
+     * lacks the cash or the notes to pay the amount out. Every reservation
+     * must be followed by either {@link #withdrawReserved} or
+     * {@link #releaseCash}.
+     */
+    public long reserveCash(long amount) {
+        return reserveCash(defaultTerminal, amount);
+    }
+
+    public long reserveCash(AtmTerminal atm, long amount) {
+        long start = System.nanoTime();
+        if (amount <= 0) {
+            metrics.record(Operation.RESERVE_CASH, Outcome.INVALID_AMOUNT, start);
+            return CashStock.NO_RESERVATION;
         }
-        atmCashStock = atmCashStock.subtract(amount);
-        return true;
+        CashStock cash = atm.getCashStock();
+        long reservation = cash.reserve(amount);
+        Outcome outcome;
+        if (reservation != CashStock.NO_RESERVATION) {
+            outcome = Outcome.OK;
+        } else {
+            // enough money but not the notes to make the amount up
+            outcome = cash.available() >= amount ? Outcome.NO_NOTE_MIX : Outcome.INSUFFICIENT_CASH;
+        }
+        metrics.record(Operation.RESERVE_CASH, outcome, start);
+        return reservation;
+    }
+
+    /** Gives back a reservation; does nothing if it was already paid out or released. */
+    public void releaseCash(long reservation) {
+        releaseCash(defaultTerminal, reservation);
+    }
+
+    public void releaseCash(AtmTerminal atm, long reservation) {
+        atm.getCashStock().release(reservation);
+    }
+
+    /**
+     * Debits the customer's account for cash previously held with
+     * {@link #reserveCash}. The reservation is committed on success and
+     * released if the account cannot cover the amount.
+     */
+    public boolean withdrawReserved(Customer customer, long reservation) {
+        return withdrawReserved(defaultTerminal, customer, reservation);
+    }
+
+    public boolean withdrawReserved(AtmTerminal atm, Customer customer, long reservation) {
+        return withdrawReserved(atm, customer, reservation, RequestDeduplicator.NONE);
+    }
+
+    /**
+     * Debits once per {@code requestId}. A retry returns the first attempt's
+     * result and releases {@code reservation} if it is still held; one the
+     * first attempt paid out is not held any more, so the retry puts nothing
+     * back. A reservation that is not held (already released) fails with
+     * {@link Outcome#NO_RESERVATION} and is not remembered, so the request
+     * can be retried with a fresh one. The card's {@link WithdrawalLimits}
+     * are checked together with the balance.
+     */
+    public boolean withdrawReserved(AtmTerminal atm, Customer customer, long reservation, long requestId) {
+        long start = System.nanoTime();
+        CashStock cash = atm.getCashStock();
+        if (isCardBlocked(customer.getCardNumber())) {
+            cash.release(reservation);
+            return metrics.record(Operation.WITHDRAW, Outcome.CARD_BLOCKED, start);
+        }
+        Account acc = customer.getAccount();
+        Outcome outcome;
+        boolean ok;
+        long amount = 0;
+        long lsn = 0;
+        long balance = 0;
+        accountLocks.lock(acc.getAccountNumber());
+        try {
+            Outcome prior = priorOutcome(requestId);
+            if (prior != null) {
+                cash.release(reservation);
+                metrics.record(Operation.WITHDRAW, Outcome.DUPLICATE, start);
+                return prior == Outcome.OK;
+            }
+            amount = cash.amountOf(reservation);
+            long notes = NoteMix.NONE;
+            if (amount == 0) {
+                outcome = Outcome.NO_RESERVATION;
+            } else if (!velocity.allows(customer.getCardNumber(), amount)) {
+                outcome = Outcome.LIMIT_EXCEEDED;
+            } else if (acc.getBalance() < amount) {
+                outcome = Outcome.INSUFFICIENT_FUNDS;
+            } else if ((notes = cash.commit(reservation)) == NoteMix.NONE) {
+                outcome = Outcome.NO_RESERVATION; // released meanwhile
+            } else {
+                acc.withdraw(amount);
+                outcome = Outcome.OK;
+                try {
+                    lsn = journal == null ? 0
+                            : journal.logWithdraw(atm.getId(), customer.getCardNumber(), amount, acc.getBalance(),
+                            notes);
+                } catch (UncheckedIOException | IllegalStateException e) {
+                    acc.deposit(amount);
+                    cash.refund(notes);
+                    outcome = Outcome.JOURNAL_FAILED;
+                }
+            }
+            ok = outcome == Outcome.OK;
+            if (outcome != Outcome.NO_RESERVATION && outcome != Outcome.JOURNAL_FAILED) {
+                remember(requestId, outcome);
+            }
+            if (ok) {
+                balance = acc.getBalance();
+                velocity.record(customer.getCardNumber(), amount);
+                history.record(customer.getCardNumber(), StatementEntry.Type.WITHDRAWAL, -amount, balance);
+            }
+        } finally {
+            accountLocks.unlock(acc.getAccountNumber());
+        }
+        if (ok) {
+            atm.getForecaster().record(System.currentTimeMillis(), amount);
+            fraud.publish(TransactionEvent.Type.WITHDRAWAL, atm.getId(), customer.getCardNumber(), null, amount,
+                    balance);
+            awaitDurable(lsn);
+        } else {
+            cash.release(reservation);
+        }
+        return metrics.record(Operation.WITHDRAW, outcome, start);
+    }
+
+    public boolean transfer(Customer from, String targetCardNumber, long amount) {
+        return transfer(from, targetCardNumber, amount, RequestDeduplicator.NONE);
     }
 
-    public boolean transfer(Customer from, String targetCardNumber, BigDecimal amount) {
-        if (amount.signum() <= 0) return false;
-        Customer to = customersByCard.get(targetCardNumber);
-        if (to == null) return false;
+    /** Transfers once per {@code requestId}; a retry returns the first attempt's result. */
+    public boolean transfer(Customer from, String targetCardNumber, long amount, long requestId) {
+        long start = System.nanoTime();
+        if (amount <= 0) return metrics.record(Operation.TRANSFER, Outcome.INVALID_AMOUNT, start);
+        Customer to = store.find(targetCardNumber);
+        if (to == null) return metrics.record(Operation.TRANSFER, Outcome.UNKNOWN_CARD, start);
+        if (isCardBlocked(from.getCardNumber()) || isCardBlocked(targetCardNumber)) {
+            return metrics.record(Operation.TRANSFER, Outcome.CARD_BLOCKED, start);
+        }
         Account fromAcc = from.getAccount();
-        if (fromAcc.getBalance().compareTo(amount) < 0) {
-            return false;
+        Account toAcc = to.getAccount();
+        long lsn;
+        long balance;
+        accountLocks.lockBoth(fromAcc.getAccountNumber(), toAcc.getAccountNumber());
+        try {
+            Outcome prior = priorOutcome(requestId);
+            if (prior != null) {
+                metrics.record(Operation.TRANSFER, Outcome.DUPLICATE, start);
+                return prior == Outcome.OK;
+            }
+            if (!fromAcc.withdraw(amount)) {
+                remember(requestId, Outcome.INSUFFICIENT_FUNDS);
+                return metrics.record(Operation.TRANSFER, Outcome.INSUFFICIENT_FUNDS, start);
+            }
+            try {
+                toAcc.deposit(amount);
+            } catch (ArithmeticException e) {
+                fromAcc.deposit(amount); // it held this much a moment ago
+                return metrics.record(Operation.TRANSFER, Outcome.INVALID_AMOUNT, start);
+            }
+            balance = fromAcc.getBalance();
+            try {
+                lsn = journal == null ? 0
+                        : journal.logTransfer(from.getCardNumber(), targetCardNumber, amount, balance,
+                        toAcc.getBalance());
+            } catch (UncheckedIOException | IllegalStateException e) {
+                toAcc.withdraw(amount);
+                fromAcc.deposit(amount);
+                return metrics.record(Operation.TRANSFER, Outcome.JOURNAL_FAILED, start);
+            }
+            remember(requestId, Outcome.OK);
+            history.record(from.getCardNumber(), StatementEntry.Type.TRANSFER_OUT, -amount, balance);
+            history.record(targetCardNumber, StatementEntry.Type.TRANSFER_IN, amount, toAcc.getBalance());
+        } finally {
+            accountLocks.unlockBoth(fromAcc.getAccountNumber(), toAcc.getAccountNumber());
         }
-        fromAcc.withdraw(amount);
-        to.getAccount().deposit(amount);
-        return true;
+        fraud.publish(TransactionEvent.Type.TRANSFER, null, from.getCardNumber(), targetCardNumber, amount, balance);
+        awaitDurable(lsn);
+        return metrics.record(Operation.TRANSFER, Outcome.OK, start);
     }
 
-    public BigDecimal getBalance(Customer customer) {
-        return customer.getAccount().getBalance();
+    public long getBalance(Customer customer) {
+        long start = System.nanoTime();
+        long balance = customer.getAccount().getBalance();
+        metrics.record(Operation.BALANCE, Outcome.OK, start);
+        return balance;
     }
 
     public boolean isValidCard(String cardNumber) {
-        return customersByCard.containsKey(cardNumber);
+        long start = System.nanoTime();
+        if (!store.contains(cardNumber)) return metrics.record(Operation.CARD_CHECK, Outcome.UNKNOWN_CARD, start);
+        if (isCardBlocked(cardNumber)) return metrics.record(Operation.CARD_CHECK, Outcome.CARD_BLOCKED, start);
+        return metrics.record(Operation.CARD_CHECK, Outcome.OK, start);
+    }
+
+    /** The customer's newest {@code count} history entries, newest first. */
+    public List<StatementEntry> miniStatement(Customer customer, int count) {
+        long start = System.nanoTime();
+        List<StatementEntry> entries = history.latest(customer.getCardNumber(), count);
+        metrics.record(Operation.STATEMENT, Outcome.OK, start);
+        return entries;
+    }
+
+    /**
+     * Up to {@code limit} of the customer's entries with a time in
+     * {@code [fromMillis, toMillis)}, newest first.
+     */
+    public List<StatementEntry> statement(Customer customer, long fromMillis, long toMillis, int limit) {
+        long start = System.nanoTime();
+        List<StatementEntry> entries = history.between(customer.getCardNumber(), fromMillis, toMillis, limit);
+        metrics.record(Operation.STATEMENT, Outcome.OK, start);
+        return entries;
+    }
+
+    public TransactionHistory getHistory() {
+        return history;
+    }
+
+    // --- Withdrawal limits ---
+
+    /** Limits for cards without limits of their own; {@link WithdrawalLimits#DEFAULT} at startup. */
+    public void setWithdrawalLimits(WithdrawalLimits limits) {
+        velocity.setDefaults(limits);
+    }
+
+    public WithdrawalLimits getWithdrawalLimits() {
+        return velocity.getDefaults();
+    }
+
+    /** Gives one card its own limits; null puts it back on the bank-wide limits. */
+    public void setWithdrawalLimits(String cardNumber, WithdrawalLimits limits) {
+        velocity.setLimits(cardNumber, limits);
+    }
+
+    public WithdrawalLimits getWithdrawalLimits(String cardNumber) {
+        return velocity.limitsOf(cardNumber);
+    }
+
+    /**
+     * The most the customer may withdraw right now under their limits, not
+     * counting the balance; {@link Long#MAX_VALUE} if unlimited. A hint for
+     * the UIs: the withdrawal itself checks again.
+     */
+    public long withdrawalAllowance(Customer customer) {
+        String accountNumber = customer.getAccount().getAccountNumber();
+        accountLocks.lock(accountNumber);
+        try {
+            return velocity.allowance(customer.getCardNumber());
+        } finally {
+            accountLocks.unlock(accountNumber);
+        }
+    }
+
+    /**
+     * Returns false if the PIN could not be hashed right now (KDF pool
+     * saturated or not answering) or the journal would not take the change.
+     * The change is journaled before the customer's PIN is replaced, under
+     * the card's PIN lock, so a PIN check sees the old PIN or the new one.
+     */
+    public boolean changePin(Customer customer, String newPin) {
+        long start = System.nanoTime();
+        String card = customer.getCardNumber();
+        byte[] pinHash;
+        try {
+            pinHash = credentials.hash(newPin);
+        } catch (RejectedExecutionException | IllegalStateException e) {
+            return metrics.record(Operation.CHANGE_PIN, Outcome.BUSY, start);
+        }
+        long lsn;
+        pinLocks.lock(card);
+        try {
+            try {
+                lsn = journal == null ? 0 : journal.logPinChange(card, pinHash);
+            } catch (UncheckedIOException | IllegalStateException e) {
+                return metrics.record(Operation.CHANGE_PIN, Outcome.JOURNAL_FAILED, start);
+            }
+            customer.setPinHash(pinHash);
+            store.updatePin(customer);
+        } finally {
+            pinLocks.unlock(card);
+        }
+        awaitDurable(lsn);
+        return metrics.record(Operation.CHANGE_PIN, Outcome.OK, start);
+    }
+
+    // --- Batch posting ---
+
+    /**
+     * Applies a back-office batch in one pass and returns the outcome of each
+     * instruction, by position. The result is the same as calling
+     * {@link #deposit}, {@link #withdraw} and {@link #transfer} for every item
+     * in batch order, blocked cards included, except that items only post to
+     * the ledger: no terminal's cash or notes move. Back-office withdrawals
+     * are not held to the card's {@link WithdrawalLimits}.
+     *
+     * Items are sorted into groups of connected accounts (a transfer joins its
+     * two accounts). Each group locks its account stripes once, in ascending
+     * order, applies its items in batch order, and the batch waits for the
+     * journal once at the end. Large batches apply independent groups in
+     * parallel on the common fork-join pool.
+     */
+    public Outcome[] applyBatch(List<BatchInstruction> batch) {
+        long start = System.nanoTime();
+        BatchRun run = new BatchRun(batch);
+        long lsn = run.groupCount() > 1 && batch.size() >= PARALLEL_BATCH_SIZE
+                ? ForkJoinPool.commonPool().invoke(new BatchTask(run, 0, run.groupCount()))
+                : run.applyGroups(0, run.groupCount());
+        awaitDurable(lsn);
+        metrics.record(Operation.BATCH, Outcome.OK, start);
+        return run.results;
     }
 
     // --- Emergency / maintenance ---
 
     public void reportEmergency(String type, String cardNumber) {
-        // In real system this would notify the bank; here we just switch state if needed
+        reportEmergency(defaultTerminal, type, cardNumber);
+    }
+
+    /**
+     * Blocks a stolen card or takes a jammed terminal out of service first,
+     * then journals the report, queues it for the bank and waits once for the
+     * journal; never for delivery. The journal is best-effort here: if it
+     * fails, the block and the fault still hold, the report is queued under
+     * an in-memory id and the call counts as {@link Outcome#JOURNAL_FAILED}.
+     * If the queue is full the report waits in its overflow list and counts
+     * as {@link Outcome#BUSY}.
+     */
+    public void reportEmergency(AtmTerminal atm, String type, String cardNumber) {
+        long start = System.nanoTime();
+        type = clip(type);
+        long lsn = 0;
+        boolean journaled = true;
+        if ("Stolen Card".equalsIgnoreCase(type)) {
+            try {
+                lsn = block(cardNumber, atm.getStolenCardReason());
+            } catch (UncheckedIOException | IllegalStateException e) {
+                journaled = false; // blocked all the same, until a restart
+            }
+        }
         if ("Stuck Card".equalsIgnoreCase(type) ||
                 "Cash Jam".equalsIgnoreCase(type)) {
-            atmState = ATMState.NEED_MAINTENANCE;
+            long faultStart = System.nanoTime();
+            states.fault(atm, "emergency: " + type); // also during maintenance: the fault must show in uptime
+            metrics.record(Operation.STATE_CHANGE, Outcome.OK, faultStart);
+        }
+        long id = 0;
+        if (journal != null) {
+            try {
+                id = journal.logEmergency(atm.getId(), type, cardNumber);
+                lsn = Math.max(lsn, id);
+            } catch (UncheckedIOException | IllegalStateException e) {
+                journaled = false;
+            }
+        }
+        if (id == 0) {
+            id = journal == null ? emergencyIds.incrementAndGet() : -emergencyIds.incrementAndGet();
+        }
+        boolean queued = emergencies.offer(id, System.currentTimeMillis(), atm.getId(), type, cardNumber);
+        try {
+            awaitDurable(lsn); // the journal is durable in LSN order, so this covers the block too
+        } catch (UncheckedIOException | IllegalStateException e) {
+            journaled = false;
+        }
+        metrics.record(Operation.EMERGENCY,
+                !journaled ? Outcome.JOURNAL_FAILED : queued ? Outcome.OK : Outcome.BUSY, start);
+    }
+
+    private void emergencyDelivered(EmergencyReport report, long latencyNanos) {
+        metrics.record(Operation.EMERGENCY_DISPATCH,
+                latencyNanos > EmergencyQueue.SLA_NANOS ? Outcome.SLA_MISSED : Outcome.OK,
+                System.nanoTime() - latencyNanos);
+        if (journal != null && report.getId() > 0) { // a negative id was never journaled
+            journal.logEmergencySent(report.getId()); // not awaited: a lost ack only means sending it twice
+        }
+    }
+
+    public EmergencyQueue getEmergencyQueue() {
+        return emergencies;
+    }
+
+    /** Queue counters, the reports still waiting, and the SLA record of the delivered ones. */
+    public String emergencyReport() {
+        long now = System.currentTimeMillis();
+        List<EmergencyReport> pending = emergencies.pending();
+        LatencyHistogram latency = metrics.latency(Operation.EMERGENCY_DISPATCH);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("delivered %d, retries %d, overflowed %d, waiting %d%n", emergencies.delivered(),
+                emergencies.retries(), emergencies.overflowed(), pending.size()));
+        sb.append(String.format("delivery p50 %.1f ms, p99 %.1f ms, max %.1f ms; %d of %d past the %d s SLA%n",
+                latency.percentile(50) / 1e6, latency.percentile(99) / 1e6, latency.max() / 1e6,
+                metrics.count(Operation.EMERGENCY_DISPATCH, Outcome.SLA_MISSED), latency.count(),
+                TimeUnit.NANOSECONDS.toSeconds(EmergencyQueue.SLA_NANOS)));
+        for (EmergencyReport r : pending) {
+            sb.append(String.format("waiting %6.1f s, sent %d times: %s%n", (now - r.getReportedAt()) / 1000.0,
+                    r.getAttempt(), r));
         }
-        // For demo we don't store logs; assume report processed < 1 minute
+        return sb.toString();
     }
 
     public ATMState getAtmState() {
-        return atmState;
+        return defaultTerminal.getState();
+    }
+
+    public boolean setAtmState(ATMState atmState) {
+        return setAtmState(defaultTerminal, atmState);
+    }
+
+    public boolean setAtmState(AtmTerminal atm, ATMState atmState) {
+        return setAtmState(atm, atmState, "technician");
+    }
+
+    /**
+     * Moves {@code atm} to {@code atmState} if {@link AtmStateMachine} allows
+     * it, logging {@code reason}. Returns whether the terminal is in that
+     * state afterwards; asking for the state it is already in succeeds.
+     */
+    public boolean setAtmState(AtmTerminal atm, ATMState atmState, String reason) {
+        long start = System.nanoTime();
+        Outcome outcome = states.transition(atm, atmState, reason) ? Outcome.OK : Outcome.INVALID_TRANSITION;
+        return metrics.record(Operation.STATE_CHANGE, outcome, start);
+    }
+
+    public AtmStateMachine getStateMachine() {
+        return states;
     }
 
-    public void setAtmState(ATMState atmState) {
-        this.atmState = atmState;
+    /** One line per terminal: its state now and its {@link AtmUptime} over the last {@code days} days. */
+    public String uptimeReport(int days) {
+        long now = System.currentTimeMillis();
+        List<AtmUptime> uptime = states.uptime(fleet.terminals(), now - TimeUnit.DAYS.toMillis(days), now);
+        uptime.sort(Comparator.comparing(AtmUptime::getTerminalId));
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-12s %-16s %10s %10s %10s %7s %7s  (last %d days)%n",
+                "terminal", "state", "available", "fault h", "maint h", "faults", "changes", days));
+        for (AtmUptime u : uptime) {
+            sb.append(String.format("%-12s %-16s %9.2f%% %10.1f %10.1f %7d %7d%n", u.getTerminalId(),
+                    fleet.get(u.getTerminalId()).getState(), u.availability() * 100,
+                    u.millisIn(ATMState.NEED_MAINTENANCE) / 3_600_000.0,
+                    u.millisIn(ATMState.ON_MAINTENANCE) / 3_600_000.0, u.getFaults(), u.getTransitions()));
+        }
+        return sb.toString();
     }
 
     public boolean selfCheckOk() {
-        // simple mock: always OK unless NEED_MAINTENANCE
-        return atmState != ATMState.NEED_MAINTENANCE;
+        return selfCheckOk(defaultTerminal);
+    }
+
+    public boolean selfCheckOk(AtmTerminal atm) {
+        return runDiagnostics(atm).passed();
+    }
+
+    public DiagnosticReport runDiagnostics() {
+        return runDiagnostics(defaultTerminal);
+    }
+
+    /** Runs every registered {@link DiagnosticProbe} on {@code atm} at once; see {@link Diagnostics}. */
+    public DiagnosticReport runDiagnostics(AtmTerminal atm) {
+        long start = System.nanoTime();
+        DiagnosticReport report = diagnostics.run(atm);
+        metrics.record(Operation.SELF_CHECK, report.passed() ? Outcome.OK : Outcome.CHECK_FAILED, start);
+        return report;
+    }
+
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
     }
 
-    public BigDecimal getAtmCashStock() {
-        return atmCashStock;
+    /** The built-in probes; the journal and storage ones only for a bank kept in {@code dataDir}. */
+    private void registerDefaultProbes(Path dataDir) {
+        diagnostics.register(DiagnosticProbes.terminalState());
+        diagnostics.register(DiagnosticProbes.cassettes(this::getLowCashThreshold));
+        diagnostics.register(DiagnosticProbes.cardReader(CARD_READER_MILLIS));
+        diagnostics.register(DiagnosticProbes.clockSkew(DiagnosticProbes.monotonicClock(),
+                TimeUnit.SECONDS.toMillis(2), TimeUnit.MINUTES.toMillis(5)));
+        if (dataDir != null) {
+            diagnostics.register(DiagnosticProbes.journal(journal));
+            diagnostics.register(DiagnosticProbes.checkpoints(checkpointer, CHECKPOINT_FAILURES_TO_FAIL));
+            diagnostics.register(DiagnosticProbes.storage(dataDir, 1L << 30, 64L << 20));
+        }
+    }
+
+    public long getAtmCashStock() {
+        return defaultTerminal.getCashStock().available();
+    }
+
+    // --- Fleet ---
+
+    public AtmFleet getFleet() {
+        return fleet;
+    }
+
+    /** The terminal every single-ATM overload acts on. */
+    public AtmTerminal getDefaultTerminal() {
+        return defaultTerminal;
+    }
+
+    /**
+     * Adds a new ATM terminal holding {@code initialCash}, in the
+     * {@link ATMState#ACTIVE} state.
+     *
+     * @throws IllegalArgumentException if {@code id} is already registered
+     */
+    public AtmTerminal registerTerminal(String id, long initialCash) {
+        if (initialCash < 0) {
+            throw new IllegalArgumentException("Initial cash must not be negative");
+        }
+        AtmTerminal atm = fleet.addNew(id, initialCash);
+        if (atm == null) {
+            throw new IllegalArgumentException("Terminal already registered: " + id);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journal.logCashLoaded(id, initialCash));
+        }
+        return atm;
+    }
+
+    /**
+     * Tops every cassette of {@code atm} up to its standard load, as a
+     * technician does after maintenance, and returns the value added.
+     */
+    public long refillCassettes(AtmTerminal atm) {
+        CashStock cash = atm.getCashStock();
+        int[] counts = cash.noteCounts();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = Math.max(0, NoteMix.REFILL_COUNT - counts[i]);
+        }
+        long added = cash.loadNotes(NoteMix.pack(counts));
+        if (journal != null) {
+            journal.awaitDurable(journal.logNotesLoaded(atm.getId(), added));
+        }
+        return NoteMix.value(added);
+    }
+
+    public long refillCassettes() {
+        return refillCassettes(defaultTerminal);
+    }
+
+    public long getLowCashThreshold() {
+        return lowCash;
+    }
+
+    /** Sets the cash in the cassettes below which {@link #forecastLowCash} says a terminal runs low. */
+    public void setLowCashThreshold(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative");
+        }
+        lowCash = amount;
+    }
+
+    /**
+     * When {@code atm}'s cassettes are forecast to hold less than the low-cash
+     * threshold, in epoch millis: now if they already do, -1 if not within
+     * {@link CashForecaster#HORIZON_HOURS} or the terminal has no withdrawal
+     * history yet.
+     */
+    public long forecastLowCash(AtmTerminal atm) {
+        return atm.getForecaster().lowAt(System.currentTimeMillis(), atm.getCashStock().dispensable(), lowCash);
+    }
+
+    /** One line per terminal: cash in the cassettes, withdrawals last and next day, and when it runs low. */
+    public String cashForecastReport() {
+        long now = System.currentTimeMillis();
+        DateTimeFormatter time = DateTimeFormatter.ofPattern("EEE dd MMM HH:mm").withZone(ZoneId.systemDefault());
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-12s %14s %12s %12s  below %s TL%n",
+                "terminal", "cassettes TL", "last 24 h", "next 24 h", Money.format(lowCash)));
+        List<AtmTerminal> terminals = new ArrayList<>(fleet.terminals());
+        terminals.sort(Comparator.comparing(AtmTerminal::getId));
+        for (AtmTerminal atm : terminals) {
+            CashForecaster f = atm.getForecaster();
+            long expected = f.expected(now, 24);
+            long low = forecastLowCash(atm);
+            String when = low == now ? "now"
+                    : low >= 0 ? time.format(Instant.ofEpochMilli(low)) + " (in " + TimeUnit.MILLISECONDS.toHours(low - now) + " h)"
+                    : expected < 0 ? "no history yet" : "not within " + CashForecaster.HORIZON_HOURS / 24 + " days";
+            sb.append(String.format("%-12s %14s %12s %12s  %s%n", atm.getId(),
+                    Money.format(atm.getCashStock().dispensable()), Money.format(f.withdrawn(now, 24)),
+                    expected < 0 ? "-" : Money.format(expected), when));
+        }
+        return sb.toString();
+    }
+
+    /** Latency and outcome counters of every operation since startup (or the last reset). */
+    public BankMetrics getMetrics() {
+        return metrics;
+    }
+
+    // --- Request ids ---
+
+    /** Outcome of an earlier attempt of {@code requestId}; call under the account's lock. */
+    private Outcome priorOutcome(long requestId) {
+        return requestId == RequestDeduplicator.NONE ? null : requests.outcomeOf(requestId);
+    }
+
+    private void remember(long requestId, Outcome outcome) {
+        if (requestId != RequestDeduplicator.NONE) {
+            requests.remember(requestId, outcome);
+        }
+    }
+
+    // --- Durability ---
+
+    private void awaitDurable(long lsn) {
+        if (journal != null) {
+            journal.awaitDurable(lsn);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fraud.close(); // may still block cards, so before the journal
+        diagnostics.close();
+        emergencies.close(); // journals deliveries, so before the journal
+        if (journal != null) {
+            journal.close();
+            checkpointer.close();
+        }
+        credentials.close();
+        store.close();
+    }
+
+    /** One batch, sorted into account groups; see {@link #applyBatch}. */
+    private class BatchRun {
+        final List<BatchInstruction> batch;
+        final Outcome[] results;
+        final Customer[] source;
+        final Customer[] target;
+        final long[] sorted;     // (group root << 32 | item index), ascending
+        final int[] groupStarts; // offsets into sorted, plus a final end offset
+
+        BatchRun(List<BatchInstruction> batch) {
+            int n = batch.size();
+            this.batch = batch;
+            results = new Outcome[n];
+            source = new Customer[n];
+            target = new Customer[n];
+
+            // union-find over the distinct accounts touched by the batch
+            Map<String, Integer> ids = new HashMap<>();
+            int[] parent = new int[2 * n];
+            int[] accountOf = new int[n];
+            int valid = 0;
+            for (int i = 0; i < n; i++) {
+                BatchInstruction in = batch.get(i);
+                if (in.getAmount() <= 0) {
+                    results[i] = Outcome.INVALID_AMOUNT;
+                    continue;
+                }
+                source[i] = store.find(in.getCardNumber());
+                if (in.getType() == BatchInstruction.Type.TRANSFER) {
+                    target[i] = store.find(in.getTargetCardNumber());
+                }
+                if (source[i] == null || (in.getType() == BatchInstruction.Type.TRANSFER && target[i] == null)) {
+                    results[i] = Outcome.UNKNOWN_CARD;
+                    continue;
+                }
+                accountOf[i] = idOf(ids, parent, source[i]);
+                if (target[i] != null) {
+                    int a = find(parent, accountOf[i]);
+                    int b = find(parent, idOf(ids, parent, target[i]));
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+                valid++;
+            }
+
+            sorted = new long[valid];
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (results[i] == null) {
+                    sorted[k++] = (long) find(parent, accountOf[i]) << 32 | i;
+                }
+            }
+            Arrays.sort(sorted);
+
+            int groups = 0;
+            int[] starts = new int[valid + 1];
+            for (int i = 0; i < valid; i++) {
+                if (i == 0 || (sorted[i] >>> 32) != (sorted[i - 1] >>> 32)) {
+                    starts[groups++] = i;
+                }
+            }
+            starts[groups] = valid;
+            groupStarts = Arrays.copyOf(starts, groups + 1);
+        }
+
+        int groupCount() {
+            return groupStarts.length - 1;
+        }
+
+        /** Applies groups {@code [from, to)} and returns the highest journal LSN written. */
+        long applyGroups(int from, int to) {
+            long lsn = 0;
+            for (int g = from; g < to; g++) {
+                lsn = Math.max(lsn, applyGroup(groupStarts[g], groupStarts[g + 1]));
+            }
+            return lsn;
+        }
+
+        private long applyGroup(int lo, int hi) {
+            int[] stripes = new int[2 * (hi - lo)];
+            int n = 0;
+            for (int k = lo; k < hi; k++) {
+                int i = (int) sorted[k];
+                stripes[n++] = accountLocks.stripeOf(source[i].getAccount().getAccountNumber());
+                if (target[i] != null) {
+                    stripes[n++] = accountLocks.stripeOf(target[i].getAccount().getAccountNumber());
+                }
+            }
+            Arrays.sort(stripes, 0, n);
+            int distinct = 0;
+            for (int j = 0; j < n; j++) {
+                if (j == 0 || stripes[j] != stripes[j - 1]) {
+                    stripes[distinct++] = stripes[j];
+                }
+            }
+            stripes = Arrays.copyOf(stripes, distinct);
+
+            long lsn = 0;
+            accountLocks.lockStripes(stripes);
+            try {
+                for (int k = lo; k < hi; k++) {
+                    lsn = Math.max(lsn, applyItem((int) sorted[k]));
+                }
+            } finally {
+                accountLocks.unlockStripes(stripes);
+            }
+            return lsn;
+        }
+
+        /** Applies one item under its group's locks; returns its journal LSN, or 0. */
+        private long applyItem(int i) {
+            BatchInstruction in = batch.get(i);
+            long amount = in.getAmount();
+            Customer c = source[i];
+            if (isCardBlocked(c.getCardNumber()) || (target[i] != null && isCardBlocked(target[i].getCardNumber()))) {
+                results[i] = Outcome.CARD_BLOCKED;
+                return 0;
+            }
+            Account acc = c.getAccount();
+            long lsn;
+            switch (in.getType()) {
+                case DEPOSIT:
+                    try {
+                        acc.deposit(amount);
+                    } catch (ArithmeticException e) {
+                        results[i] = Outcome.INVALID_AMOUNT;
+                        return 0;
+                    }
+                    try {
+                        lsn = journal == null ? 0 : journal.logPosting(c.getCardNumber(), amount, acc.getBalance());
+                    } catch (UncheckedIOException | IllegalStateException e) {
+                        acc.withdraw(amount);
+                        results[i] = Outcome.JOURNAL_FAILED;
+                        return 0;
+                    }
+                    history.record(c.getCardNumber(), StatementEntry.Type.DEPOSIT, amount, acc.getBalance());
+                    break;
+                case WITHDRAW:
+                    if (!acc.withdraw(amount)) {
+                        results[i] = Outcome.INSUFFICIENT_FUNDS;
+                        return 0;
+                    }
+                    try {
+                        lsn = journal == null ? 0 : journal.logPosting(c.getCardNumber(), -amount, acc.getBalance());
+                    } catch (UncheckedIOException | IllegalStateException e) {
+                        acc.deposit(amount);
+                        results[i] = Outcome.JOURNAL_FAILED;
+                        return 0;
+                    }
+                    history.record(c.getCardNumber(), StatementEntry.Type.WITHDRAWAL, -amount, acc.getBalance());
+                    break;
+                default:
+                    Account toAcc = target[i].getAccount();
+                    if (!acc.withdraw(amount)) {
+                        results[i] = Outcome.INSUFFICIENT_FUNDS;
+                        return 0;
+                    }
+                    try {
+                        toAcc.deposit(amount);
+                    } catch (ArithmeticException e) {
+                        acc.deposit(amount);
+                        results[i] = Outcome.INVALID_AMOUNT;
+                        return 0;
+                    }
+                    try {
+                        lsn = journal == null ? 0 : journal.logTransfer(c.getCardNumber(), in.getTargetCardNumber(),
+                                amount, acc.getBalance(), toAcc.getBalance());
+                    } catch (UncheckedIOException | IllegalStateException e) {
+                        toAcc.withdraw(amount);
+                        acc.deposit(amount);
+                        results[i] = Outcome.JOURNAL_FAILED;
+                        return 0;
+                    }
+                    history.record(c.getCardNumber(), StatementEntry.Type.TRANSFER_OUT, -amount, acc.getBalance());
+                    history.record(in.getTargetCardNumber(), StatementEntry.Type.TRANSFER_IN, amount,
+                            toAcc.getBalance());
+                    break;
+            }
+            results[i] = Outcome.OK;
+            return lsn;
+        }
+
+        private int idOf(Map<String, Integer> ids, int[] parent, Customer c) {
+            Integer id = ids.get(c.getAccount().getAccountNumber());
+            if (id == null) {
+                id = ids.size();
+                ids.put(c.getAccount().getAccountNumber(), id);
+                parent[id] = id;
+            }
+            return id;
+        }
+
+        private int find(int[] parent, int x) {
+            while (parent[x] != x) {
+                parent[x] = parent[parent[x]]; // path halving
+                x = parent[x];
+            }
+            return x;
+        }
+    }
+
+    /** Splits a batch's groups across the fork-join pool. */
+    private static class BatchTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private static final int MIN_GROUPS = 16;
+
+        private final BatchRun run;
+        private final int from;
+        private final int to;
+
+        BatchTask(BatchRun run, int from, int to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= MIN_GROUPS) {
+                return run.applyGroups(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            BatchTask left = new BatchTask(run, from, mid);
+            left.fork();
+            long right = new BatchTask(run, mid, to).compute();
+            return Math.max(left.join(), right);
+        }
+    }
+
+    /** Applies journal records on top of the seeded state during startup. */
+    private class JournalReplayer implements TransactionJournal.Replayer {
+        private final TransactionJournal.Replayer historyReplayer = history.replayer();
+        final Map<Long, EmergencyReport> pendingEmergencies = new LinkedHashMap<>(); // by id, oldest first
+
+        JournalReplayer(Collection<EmergencyReport> pending) {
+            for (EmergencyReport r : pending) {
+                pendingEmergencies.put(r.getId(), r);
+            }
+        }
+
+        @Override
+        public void deposit(long lsn, long time, String terminalId, String cardNumber, long amount, long balanceAfter) {
+            restore(cardNumber, balanceAfter);
+            terminal(terminalId).getCashStock().add(amount);
+            historyReplayer.deposit(lsn, time, terminalId, cardNumber, amount, balanceAfter);
+        }
+
+        @Override
+        public void withdraw(long lsn, long time, String terminalId, String cardNumber, long amount, long balanceAfter,
+                             long notes) {
+            restore(cardNumber, balanceAfter);
+            AtmTerminal atm = terminal(terminalId);
+            atm.getCashStock().add(-amount);
+            atm.getCashStock().takeNotes(notes);
+            atm.getForecaster().record(time, amount);
+            historyReplayer.withdraw(lsn, time, terminalId, cardNumber, amount, balanceAfter, notes);
+        }
+
+        @Override
+        public void transfer(long lsn, long time, String fromCard, String toCard, long amount,
+                             long fromBalanceAfter, long toBalanceAfter) {
+            restore(fromCard, fromBalanceAfter);
+            restore(toCard, toBalanceAfter);
+            historyReplayer.transfer(lsn, time, fromCard, toCard, amount, fromBalanceAfter, toBalanceAfter);
+        }
+
+        @Override
+        public void posted(long lsn, long time, String cardNumber, long amount, long balanceAfter) {
+            restore(cardNumber, balanceAfter);
+            historyReplayer.posted(lsn, time, cardNumber, amount, balanceAfter);
+        }
+
+        @Override
+        public void pinChanged(long lsn, String cardNumber, byte[] pinHash) {
+            Customer c = store.find(cardNumber);
+            if (c != null) {
+                c.setPinHash(pinHash);
+                store.updatePin(c);
+            }
+        }
+
+        @Override
+        public void emergency(long lsn, long time, String terminalId, String type, String cardNumber) {
+            // the block and the state change have records of their own
+            pendingEmergencies.put(lsn, new EmergencyReport(lsn, time, terminalId, type, cardNumber, 0));
+        }
+
+        @Override
+        public void emergencySent(long lsn, long reportLsn) {
+            pendingEmergencies.remove(reportLsn);
+        }
+
+        @Override
+        public void cashLoaded(long lsn, String terminalId, long amount) {
+            terminal(terminalId).getCashStock().load(amount);
+        }
+
+        @Override
+        public void notesLoaded(long lsn, String terminalId, long notes) {
+            terminal(terminalId).getCashStock().loadNotes(notes);
+        }
+
+        @Override
+        public void cardRetained(long lsn, String terminalId, String cardNumber) {
+            retainedCards.put(cardNumber, terminalId);
+        }
+
+        @Override
+        public void cardReturned(long lsn, String cardNumber) {
+            retainedCards.remove(cardNumber);
+        }
+
+        @Override
+        public void cardBlocked(long lsn, String cardNumber, String reason) {
+            blockedCards.put(cardNumber, reason);
+        }
+
+        @Override
+        public void cardUnblocked(long lsn, String cardNumber) {
+            blockedCards.remove(cardNumber);
+        }
+
+        private AtmTerminal terminal(String id) {
+            return fleet.add(id, 0, ATMState.ACTIVE);
+        }
+
+        private void restore(String cardNumber, long balance) {
+            Customer c = store.find(cardNumber);
+            if (c != null) {
+                c.getAccount().setBalance(balance);
+            }
+        }
     }
 }
 
@@ -0,0 +1,88 @@
+package org.example.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counters for every {@link BankCentralSystem}
+ * operation. Recording is lock-free and allocation-free, so it stays on the
+ * hot path; {@link #dump()} renders the current numbers for the UIs.
+ */
+public class BankMetrics {
+
+    public enum Operation {
+        LOGIN, VERIFY_PIN, TECHNICIAN_LOGIN, DEPOSIT, RESERVE_CASH, WITHDRAW, TRANSFER,
+        BALANCE, CARD_CHECK, CHANGE_PIN, EMERGENCY, STATE_CHANGE, BATCH, STATEMENT, SELF_CHECK, EMERGENCY_DISPATCH
+    }
+
+    /** Why an operation ended the way it did. */
+    public enum Outcome {
+        OK, BAD_CREDENTIALS, INVALID_AMOUNT, INSUFFICIENT_FUNDS, INSUFFICIENT_CASH, UNKNOWN_CARD, BUSY, DUPLICATE,
+        LIMIT_EXCEEDED, THROTTLED, CARD_RETAINED, CARD_BLOCKED, NO_NOTE_MIX, INVALID_TRANSITION, CHECK_FAILED,
+        SLA_MISSED, NO_RESERVATION, JOURNAL_FAILED
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] counters = new LongAdder[OPERATIONS.length * OUTCOMES.length];
+
+    public BankMetrics() {
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one call that started at {@code startNanos} ({@link System#nanoTime()}).
+     * Returns whether the outcome was {@link Outcome#OK}, so callers can
+     * {@code return metrics.record(...)} directly.
+     */
+    public boolean record(Operation op, Outcome outcome, long startNanos) {
+        latency[op.ordinal()].record(System.nanoTime() - startNanos);
+        counters[op.ordinal() * OUTCOMES.length + outcome.ordinal()].increment();
+        return outcome == Outcome.OK;
+    }
+
+    public long count(Operation op, Outcome outcome) {
+        return counters[op.ordinal() * OUTCOMES.length + outcome.ordinal()].sum();
+    }
+
+    public LatencyHistogram latency(Operation op) {
+        return latency[op.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : latency) {
+            h.reset();
+        }
+        for (LongAdder c : counters) {
+            c.reset();
+        }
+    }
+
+    /** One line per operation that has been called: latency percentiles in microseconds and outcome counts. */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-18s %9s %9s %9s %9s %9s  %s%n",
+                "operation", "count", "p50 us", "p99 us", "p999 us", "max us", "outcomes"));
+        for (Operation op : OPERATIONS) {
+            LatencyHistogram h = latency(op);
+            long n = h.count();
+            if (n == 0) continue;
+            sb.append(String.format("%-18s %9d %9.1f %9.1f %9.1f %9.1f ", op, n,
+                    h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3));
+            for (Outcome outcome : OUTCOMES) {
+                long c = count(op, outcome);
+                if (c > 0) {
+                    sb.append(' ').append(outcome).append('=').append(c);
+                }
+            }
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
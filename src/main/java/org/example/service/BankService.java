@@ -0,0 +1,143 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+import org.example.model.Customer;
+import org.example.model.StatementEntry;
+import org.example.model.Technician;
+import org.example.service.BankMetrics.Outcome;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous view of the bank as seen from an ATM, whether the bank runs
+ * in the same process ({@link AsyncBankService}) or behind a network link.
+ * Operations mirror {@link BankCentralSystem}; amounts are in kurus.
+ *
+ * A {@link Customer} passed in must be one returned by
+ * {@link #authenticateCustomer} on the same service, and a {@link Technician}
+ * one returned by {@link #authenticateTechnician}. Each service acts for one
+ * terminal: the one its customers and technicians are at.
+ *
+ * Monetary operations take a request id from
+ * {@link RequestDeduplicator#newRequestId()}, made once per customer action.
+ * Retrying the call with the same id after a timeout or error is safe: the
+ * bank applies it at most once and answers retries with the first result.
+ */
+public interface BankService extends Closeable {
+
+    // --- Authentication ---
+
+    /** Null for a wrong PIN, an unknown, retained or blocked card, or a terminal over its login rate. */
+    CompletableFuture<Customer> authenticateCustomer(String cardNumber, String pin);
+
+    /** Whether the card was retained after too many wrong PINs. */
+    CompletableFuture<Boolean> isCardRetained(String cardNumber);
+
+    /** Whether the card was blocked, e.g. by the fraud monitor. */
+    CompletableFuture<Boolean> isCardBlocked(String cardNumber);
+
+    CompletableFuture<Boolean> verifyPin(Customer customer, String pin);
+
+    CompletableFuture<Technician> authenticateTechnician(String username, String password);
+
+    // --- Account / monetary operations ---
+
+    CompletableFuture<Boolean> deposit(Customer customer, long amount, long requestId);
+
+    CompletableFuture<Boolean> withdraw(Customer customer, long amount, long requestId);
+
+    /**
+     * Holds cash for {@code customer}; completes with the reservation, or
+     * {@link CashStock#NO_RESERVATION} if the ATM cannot pay the amount.
+     * Only the same customer may pay the reservation out or release it.
+     */
+    CompletableFuture<Long> reserveCash(Customer customer, long amount);
+
+    CompletableFuture<Void> releaseCash(Customer customer, long reservation);
+
+    CompletableFuture<Boolean> withdrawReserved(Customer customer, long reservation, long requestId);
+
+    CompletableFuture<Boolean> transfer(Customer from, String targetCardNumber, long amount, long requestId);
+
+    /** Applies a back-office batch on behalf of a logged-in technician. */
+    CompletableFuture<Outcome[]> applyBatch(Technician technician, List<BatchInstruction> batch);
+
+    CompletableFuture<Long> getBalance(Customer customer);
+
+    /** The most the customer may withdraw now under their {@link WithdrawalLimits}. */
+    CompletableFuture<Long> withdrawalAllowance(Customer customer);
+
+    CompletableFuture<Boolean> isValidCard(String cardNumber);
+
+    /** The customer's newest {@code count} history entries, newest first. */
+    CompletableFuture<List<StatementEntry>> miniStatement(Customer customer, int count);
+
+    CompletableFuture<Boolean> changePin(Customer customer, String newPin);
+
+    // --- Emergency / maintenance ---
+
+    /** Reports an emergency for the logged-in customer's card. */
+    CompletableFuture<Void> reportEmergency(Customer customer, String type);
+
+    /** Whether the terminal takes customers, i.e. is {@link ATMState#ACTIVE}; all a customer screen may know. */
+    CompletableFuture<Boolean> isInService();
+
+    CompletableFuture<ATMState> getAtmState(Technician technician);
+
+    /**
+     * Changes the terminal's state for a logged-in technician; false if
+     * {@link AtmStateMachine} does not allow the change.
+     */
+    CompletableFuture<Boolean> setAtmState(Technician technician, ATMState atmState);
+
+    CompletableFuture<Boolean> selfCheckOk(Technician technician);
+
+    /** Every diagnostic probe's result for the terminal; see {@link Diagnostics}. */
+    CompletableFuture<DiagnosticReport> runDiagnostics(Technician technician);
+
+    CompletableFuture<Long> getAtmCashStock(Technician technician);
+
+    /** Text rendering of the bank's {@link BankMetrics}. */
+    CompletableFuture<String> metricsReport();
+
+    // --- Back office (logged-in technician) ---
+
+    /** Retained cards, mapped to the id of the terminal holding each. */
+    CompletableFuture<Map<String, String>> getRetainedCards(Technician technician);
+
+    /** Gives a retained card back to its customer; false if it was not retained. */
+    CompletableFuture<Boolean> returnRetainedCard(Technician technician, String cardNumber);
+
+    /** Cards blocked one at a time, mapped to the reason each was blocked. */
+    CompletableFuture<Map<String, String>> getBlockedCards(Technician technician);
+
+    /** Number of cards on the bulk {@link CardBlocklist}. */
+    CompletableFuture<Integer> blocklistSize(Technician technician);
+
+    /** Lifts a block; false if the card was not blocked. */
+    CompletableFuture<Boolean> unblockCard(Technician technician, String cardNumber);
+
+    /**
+     * Replaces the blocklist with the card numbers in {@code file}, a path on
+     * the bank's host; completes with the number of cards on it.
+     */
+    CompletableFuture<Integer> loadBlocklist(Technician technician, String file);
+
+    /** Fills the terminal's cassettes; completes with the value of the notes loaded. */
+    CompletableFuture<Long> refillCassettes(Technician technician);
+
+    /** Notes in each of the terminal's cassettes, in {@link CashStock#denominations()} order. */
+    CompletableFuture<int[]> noteCounts(Technician technician);
+
+    CompletableFuture<String> cashForecastReport(Technician technician);
+
+    CompletableFuture<String> uptimeReport(Technician technician, int days);
+
+    CompletableFuture<String> emergencyReport(Technician technician);
+
+    @Override
+    void close();
+}
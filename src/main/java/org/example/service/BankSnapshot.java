@@ -0,0 +1,361 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+import org.example.model.Customer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Bank state as of one journal LSN: the cash stock, cassette note counts and
+ * withdrawal forecast of every ATM terminal, the cards retained for
+ * wrong PINs or blocked, the emergency reports not delivered yet, plus the
+ * balance and PIN hash of every account that changed since the base data.
+ *
+ * A snapshot is also a {@link TransactionJournal.Replayer}, so the next
+ * snapshot is built by feeding it the journal records written since, without
+ * reading the live bank state.
+ */
+public class BankSnapshot implements TransactionJournal.Replayer {
+
+    private static final int MAGIC = 0x41544D53; // "ATMS"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private long lsn;
+    private final Map<String, Terminal> terminals = new TreeMap<>();
+    private final Map<String, Long> balances = new HashMap<>();
+    private final Map<String, byte[]> pinHashes = new HashMap<>();
+    private final Map<String, String> retainedCards = new TreeMap<>(); // card -> terminal id
+    private final Map<String, String> blockedCards = new TreeMap<>(); // card -> reason
+    private final Map<Long, EmergencyReport> pendingEmergencies = new TreeMap<>(); // by id
+
+    /** An empty snapshot holding only the default terminal with {@code initialCashStock}. */
+    public BankSnapshot(long initialCashStock) {
+        Terminal t = terminal(AtmFleet.DEFAULT_TERMINAL_ID);
+        t.cash = initialCashStock;
+        t.notes = NoteMix.fill(initialCashStock);
+    }
+
+    public long getLsn() {
+        return lsn;
+    }
+
+    /**
+     * Registers every recorded terminal, with its cash, notes and forecast, in
+     * {@code fleet}; their states come from the {@link AtmStateLog}.
+     */
+    void applyTo(AtmFleet fleet) {
+        for (Map.Entry<String, Terminal> e : terminals.entrySet()) {
+            Terminal t = e.getValue();
+            AtmTerminal atm = fleet.add(e.getKey(), t.cash, ATMState.ACTIVE);
+            atm.getCashStock().restoreNotes(t.notes);
+            atm.getForecaster().copyFrom(t.forecast);
+        }
+    }
+
+    /** Retained cards, mapped to the terminal holding them. */
+    Map<String, String> getRetainedCards() {
+        return Collections.unmodifiableMap(retainedCards);
+    }
+
+    /** Blocked cards, mapped to the reason they were blocked. */
+    Map<String, String> getBlockedCards() {
+        return Collections.unmodifiableMap(blockedCards);
+    }
+
+    /** Emergency reports journaled but not delivered, oldest first. */
+    Collection<EmergencyReport> getPendingEmergencies() {
+        return Collections.unmodifiableCollection(pendingEmergencies.values());
+    }
+
+    /** Writes the recorded balances and PIN hashes into {@code store}. */
+    public void applyTo(AccountStore store) {
+        for (Map.Entry<String, Long> e : balances.entrySet()) {
+            Customer c = store.find(e.getKey());
+            if (c != null) {
+                c.getAccount().setBalance(e.getValue());
+            }
+        }
+        for (Map.Entry<String, byte[]> e : pinHashes.entrySet()) {
+            Customer c = store.find(e.getKey());
+            if (c != null) {
+                c.setPinHash(e.getValue());
+                store.updatePin(c);
+            }
+        }
+    }
+
+    // --- Replayer ---
+
+    @Override
+    public void deposit(long lsn, long time, String terminalId, String cardNumber, long amount, long balanceAfter) {
+        balances.put(cardNumber, balanceAfter);
+        terminal(terminalId).cash += amount;
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void withdraw(long lsn, long time, String terminalId, String cardNumber, long amount, long balanceAfter,
+                         long notes) {
+        balances.put(cardNumber, balanceAfter);
+        Terminal t = terminal(terminalId);
+        t.cash -= amount;
+        t.notes = NoteMix.subtract(t.notes, notes);
+        t.forecast.record(time, amount);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void transfer(long lsn, long time, String fromCard, String toCard, long amount,
+                         long fromBalanceAfter, long toBalanceAfter) {
+        balances.put(fromCard, fromBalanceAfter);
+        balances.put(toCard, toBalanceAfter);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void posted(long lsn, long time, String cardNumber, long amount, long balanceAfter) {
+        balances.put(cardNumber, balanceAfter);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void pinChanged(long lsn, String cardNumber, byte[] pinHash) {
+        pinHashes.put(cardNumber, pinHash);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void emergency(long lsn, long time, String terminalId, String type, String cardNumber) {
+        pendingEmergencies.put(lsn, new EmergencyReport(lsn, time, terminalId, type, cardNumber, 0));
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void emergencySent(long lsn, long reportLsn) {
+        pendingEmergencies.remove(reportLsn);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void cashLoaded(long lsn, String terminalId, long amount) {
+        Terminal t = terminal(terminalId);
+        t.cash += amount;
+        t.notes = NoteMix.add(t.notes, NoteMix.fill(amount));
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void cardRetained(long lsn, String terminalId, String cardNumber) {
+        retainedCards.put(cardNumber, terminalId);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void cardReturned(long lsn, String cardNumber) {
+        retainedCards.remove(cardNumber);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void cardBlocked(long lsn, String cardNumber, String reason) {
+        blockedCards.put(cardNumber, reason);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void cardUnblocked(long lsn, String cardNumber) {
+        blockedCards.remove(cardNumber);
+        this.lsn = lsn;
+    }
+
+    @Override
+    public void notesLoaded(long lsn, String terminalId, long notes) {
+        Terminal t = terminal(terminalId);
+        t.cash += NoteMix.value(notes);
+        t.notes = NoteMix.add(t.notes, notes);
+        this.lsn = lsn;
+    }
+
+    private Terminal terminal(String id) {
+        return terminals.computeIfAbsent(id, k -> new Terminal());
+    }
+
+    private static final class Terminal {
+        long cash;
+        long notes; // packed as in NoteMix
+        final CashForecaster forecast = new CashForecaster();
+    }
+
+    // --- Files ---
+
+    /** Writes this snapshot next to older ones; the file only appears once complete. */
+    public Path writeTo(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+        Path tmp = directory.resolve(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(tmp);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), crc)) {
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+            out.writeInt(terminals.size());
+            for (Map.Entry<String, Terminal> e : terminals.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().cash);
+                out.writeLong(e.getValue().notes);
+                e.getValue().forecast.write(out);
+            }
+            out.writeInt(balances.size());
+            for (Map.Entry<String, Long> e : balances.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue());
+            }
+            out.writeInt(pinHashes.size());
+            for (Map.Entry<String, byte[]> e : pinHashes.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeByte(e.getValue().length);
+                out.write(e.getValue());
+            }
+            out.writeInt(retainedCards.size());
+            for (Map.Entry<String, String> e : retainedCards.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue());
+            }
+            out.writeInt(blockedCards.size());
+            for (Map.Entry<String, String> e : blockedCards.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue());
+            }
+            out.writeInt(pendingEmergencies.size());
+            for (EmergencyReport r : pendingEmergencies.values()) {
+                out.writeLong(r.getId());
+                out.writeLong(r.getReportedAt());
+                out.writeUTF(r.getTerminalId());
+                out.writeUTF(r.getType());
+                out.writeUTF(r.getCardNumber());
+            }
+            out.writeInt((int) crc.getValue());
+            out.flush();
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Loads the newest intact snapshot in {@code directory}, or returns an empty
+     * snapshot at LSN 0 if there is none.
+     */
+    public static BankSnapshot loadLatest(Path directory, long initialCashStock) throws IOException {
+        List<Path> files = list(directory);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            BankSnapshot s = read(files.get(i), initialCashStock);
+            if (s != null) {
+                return s;
+            }
+        }
+        return new BankSnapshot(initialCashStock);
+    }
+
+    /** Deletes every snapshot older than {@code keep}. */
+    public static void deleteOlderThan(Path directory, Path keep) throws IOException {
+        for (Path f : list(directory)) {
+            if (f.getFileName().toString().compareTo(keep.getFileName().toString()) < 0) {
+                Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    private static BankSnapshot read(Path file, long initialCashStock) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc)) {
+            DataInputStream data = new DataInputStream(in);
+            int magic = data.readInt();
+            int version = data.readInt();
+            if (magic != MAGIC || version != VERSION) {
+                return null;
+            }
+            BankSnapshot s = new BankSnapshot(initialCashStock);
+            s.lsn = data.readLong();
+            int terminals = data.readInt();
+            for (int i = 0; i < terminals; i++) {
+                Terminal t = s.terminal(data.readUTF());
+                t.cash = data.readLong();
+                t.notes = data.readLong();
+                t.forecast.read(data);
+            }
+            int n = data.readInt();
+            for (int i = 0; i < n; i++) {
+                s.balances.put(data.readUTF(), data.readLong());
+            }
+            n = data.readInt();
+            for (int i = 0; i < n; i++) {
+                String card = data.readUTF();
+                byte[] hash = new byte[data.readUnsignedByte()];
+                data.readFully(hash);
+                s.pinHashes.put(card, hash);
+            }
+            n = data.readInt();
+            for (int i = 0; i < n; i++) {
+                s.retainedCards.put(data.readUTF(), data.readUTF());
+            }
+            n = data.readInt();
+            for (int i = 0; i < n; i++) {
+                s.blockedCards.put(data.readUTF(), data.readUTF());
+            }
+            n = data.readInt();
+            for (int i = 0; i < n; i++) {
+                EmergencyReport r = new EmergencyReport(data.readLong(), data.readLong(), data.readUTF(),
+                        data.readUTF(), data.readUTF(), 0);
+                s.pendingEmergencies.put(r.getId(), r);
+            }
+            int expected = (int) crc.getValue();
+            return data.readInt() == expected ? s : null;
+        } catch (EOFException e) {
+            return null; // truncated file
+        }
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path f : ds) {
+                files.add(f);
+            }
+        }
+        Collections.sort(files); // zero-padded LSN in the name sorts chronologically
+        return files;
+    }
+}
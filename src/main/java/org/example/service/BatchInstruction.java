@@ -0,0 +1,57 @@
+package org.example.service;
+
+/**
+ * One line of a back-office batch posted through
+ * {@link BankCentralSystem#applyBatch}. Amounts are in kurus.
+ */
+public final class BatchInstruction {
+
+    public enum Type { DEPOSIT, WITHDRAW, TRANSFER }
+
+    private final Type type;
+    private final String cardNumber;
+    private final String targetCardNumber; // only for TRANSFER
+    private final long amount;
+
+    private BatchInstruction(Type type, String cardNumber, String targetCardNumber, long amount) {
+        this.type = type;
+        this.cardNumber = cardNumber;
+        this.targetCardNumber = targetCardNumber;
+        this.amount = amount;
+    }
+
+    public static BatchInstruction deposit(String cardNumber, long amount) {
+        return new BatchInstruction(Type.DEPOSIT, cardNumber, null, amount);
+    }
+
+    public static BatchInstruction withdraw(String cardNumber, long amount) {
+        return new BatchInstruction(Type.WITHDRAW, cardNumber, null, amount);
+    }
+
+    public static BatchInstruction transfer(String fromCardNumber, String toCardNumber, long amount) {
+        return new BatchInstruction(Type.TRANSFER, fromCardNumber, toCardNumber, amount);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCardNumber() {
+        return cardNumber;
+    }
+
+    public String getTargetCardNumber() {
+        return targetCardNumber;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.TRANSFER
+                ? type + " " + cardNumber + " -> " + targetCardNumber + " " + amount
+                : type + " " + cardNumber + " " + amount;
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable set of card numbers that must not be used, such as the card
+ * network's list of stolen cards. Built for millions of entries.
+ *
+ * Card numbers of up to 19 digits without a leading zero are kept as
+ * (unsigned) longs in one sorted array, 8 bytes a card; anything else goes
+ * in a sorted String array. In front of both sits a Bloom filter that sets
+ * four bits in a single 64-bit word per card, so a card that is not listed,
+ * which is nearly every card the bank sees, costs one hash and one memory
+ * read rather than a binary search. At most about 0.5% of unlisted cards get
+ * past the filter and are settled by the search.
+ *
+ * Lists are replaced, never changed: the bank swaps a newly loaded list in
+ * with one reference write and readers never wait for a reload.
+ */
+public final class CardBlocklist {
+
+    public static final CardBlocklist EMPTY = new CardBlocklist(new long[0], 0, new String[0]);
+
+    private static final int FILTER_BITS_PER_CARD = 16;
+    private static final int BITS_PER_LOOKUP = 4;
+    private static final long NOT_NUMERIC = -1; // 2^64 - 1 as unsigned: 20 digits, never a key
+
+    private final long[] numbers; // sorted, distinct
+    private final String[] others; // sorted, distinct
+    private final long[] filter;
+    private final int mask;
+
+    private CardBlocklist(long[] numbers, int count, String[] others) {
+        Arrays.parallelSort(numbers, 0, count);
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (n == 0 || numbers[i] != numbers[n - 1]) {
+                numbers[n++] = numbers[i];
+            }
+        }
+        this.numbers = n == numbers.length ? numbers : Arrays.copyOf(numbers, n);
+        this.others = Arrays.stream(others).sorted().distinct().toArray(String[]::new);
+        long words = Math.max(1, ((long) size() * FILTER_BITS_PER_CARD + 63) / 64);
+        if (words > 1 << 30) {
+            throw new IllegalArgumentException("too many cards: " + size());
+        }
+        this.filter = new long[Integer.highestOneBit((int) Math.max(2, words) - 1) << 1];
+        this.mask = filter.length - 1;
+        for (long number : this.numbers) {
+            add(hash(number));
+        }
+        for (String card : this.others) {
+            add(hash(card));
+        }
+    }
+
+    public static CardBlocklist of(Collection<String> cardNumbers) {
+        long[] numbers = new long[cardNumbers.size()];
+        int count = 0;
+        List<String> others = new ArrayList<>();
+        for (String card : cardNumbers) {
+            long n = numeric(card);
+            if (n != NOT_NUMERIC) {
+                numbers[count++] = n;
+            } else {
+                others.add(card);
+            }
+        }
+        return new CardBlocklist(numbers, count, others.toArray(new String[0]));
+    }
+
+    /**
+     * Reads a list of one card number per line. Blank lines and lines
+     * starting with {@code #} are skipped.
+     */
+    public static CardBlocklist load(Path file) throws IOException {
+        long[] numbers = new long[1 << 16];
+        int count = 0;
+        List<String> others = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String card = line.trim();
+                if (card.isEmpty() || card.charAt(0) == '#') {
+                    continue;
+                }
+                long n = numeric(card);
+                if (n == NOT_NUMERIC) {
+                    others.add(card);
+                    continue;
+                }
+                if (count == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                }
+                numbers[count++] = n;
+            }
+        }
+        return new CardBlocklist(numbers, count, others.toArray(new String[0]));
+    }
+
+    public boolean contains(String cardNumber) {
+        long n = numeric(cardNumber);
+        long h = n != NOT_NUMERIC ? hash(n) : hash(cardNumber);
+        long bits = bits(h);
+        if ((filter[index(h)] & bits) != bits) {
+            return false;
+        }
+        return n != NOT_NUMERIC ? Arrays.binarySearch(numbers, n) >= 0 : Arrays.binarySearch(others, cardNumber) >= 0;
+    }
+
+    public int size() {
+        return numbers.length + others.length;
+    }
+
+    private void add(long h) {
+        filter[index(h)] |= bits(h);
+    }
+
+    private int index(long h) {
+        return (int) (h >>> 32) & mask;
+    }
+
+    /** The card's bits within its filter word, from the low 24 bits of the hash. */
+    private static long bits(long h) {
+        long bits = 0;
+        for (int i = 0; i < BITS_PER_LOOKUP; i++, h >>>= 6) {
+            bits |= 1L << (h & 63);
+        }
+        return bits;
+    }
+
+    /** The card's digits as an unsigned long, or {@link #NOT_NUMERIC}. */
+    private static long numeric(String card) {
+        int len = card.length();
+        if (len == 0 || len > 19 || (len > 1 && card.charAt(0) == '0')) {
+            return NOT_NUMERIC;
+        }
+        long n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = card.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_NUMERIC;
+            }
+            n = n * 10 + (c - '0'); // 19 digits still fit unsigned
+        }
+        return n;
+    }
+
+    /** FNV-1a over the characters, then mixed like a number. */
+    private static long hash(String card) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < card.length(); i++) {
+            h ^= card.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return hash(h);
+    }
+
+    /** The murmur3 64-bit finalizer. */
+    private static long hash(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,222 @@
+package org.example.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Withdrawal volume of one ATM by hour, and a forecast of when its cassettes
+ * will run low.
+ *
+ * The last week of withdrawals is kept as 168 hourly sums in a primitive
+ * ring indexed by hour of the week (local time, Monday 00:00 first).
+ * Recording a withdrawal is one atomic add to the current hour's slot; only
+ * the first withdrawal of a new hour takes a lock, to close the hours since
+ * the last one. Closing an hour folds its sum into an exponentially smoothed
+ * level for that hour of the week, so the forecaster learns that Friday
+ * evenings are busier than Tuesday mornings and forgets old weeks at a rate
+ * set by the smoothing factor.
+ *
+ * A forecast walks the levels forward from now, hour by hour, subtracting
+ * each from the cash in the cassettes until it falls below a threshold. Hours
+ * of the week that have never been seen count at the mean of those that
+ * have.
+ *
+ * The state is a deterministic function of the withdrawals recorded, so a
+ * {@link BankSnapshot} rebuilds it from the journal like the rest of the
+ * terminal. A withdrawal racing the turn of the hour may be counted in the
+ * hour it started in after that hour was closed; it stays in the series but
+ * is missed by the smoothing.
+ */
+public final class CashForecaster {
+
+    public static final int HOURS_PER_WEEK = 7 * 24;
+    /** How far ahead {@link #lowAt} looks. */
+    public static final int HORIZON_HOURS = 2 * HOURS_PER_WEEK;
+    public static final double DEFAULT_SMOOTHING = 0.3;
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long MONDAY = 3 * 24; // 1970-01-01 was a Thursday
+    private static final long NO_HOUR = Long.MIN_VALUE;
+
+    private final double smoothing;
+    private final long offsetMillis; // local time zone, fixed when the forecaster is made
+    private final AtomicLongArray hours = new AtomicLongArray(HOURS_PER_WEEK); // kurus, by hour of week
+    private final double[] levels = new double[HOURS_PER_WEEK]; // NaN until the hour is first closed
+    private volatile long head = NO_HOUR; // local hour number of the open slot
+
+    public CashForecaster() {
+        this(DEFAULT_SMOOTHING, ZoneId.systemDefault());
+    }
+
+    public CashForecaster(double smoothing, ZoneId zone) {
+        if (!(smoothing > 0 && smoothing <= 1)) {
+            throw new IllegalArgumentException("Smoothing must be in (0, 1]");
+        }
+        this.smoothing = smoothing;
+        this.offsetMillis = zone.getRules().getOffset(Instant.now()).getTotalSeconds() * 1000L;
+        Arrays.fill(levels, Double.NaN);
+    }
+
+    /** Counts a withdrawal of {@code amount} at {@code timeMillis}; earlier times count as the open hour. */
+    public void record(long timeMillis, long amount) {
+        long hour = hourOf(timeMillis);
+        long open = head;
+        if (hour > open) {
+            advance(hour);
+        } else {
+            hour = open;
+        }
+        hours.getAndAdd(slot(hour), amount);
+    }
+
+    /** Closes every hour before {@code hour} and opens it. */
+    private synchronized void advance(long hour) {
+        long open = head;
+        if (hour <= open) {
+            return; // another withdrawal got here first
+        }
+        if (open != NO_HOUR) {
+            smooth(slot(open), hours.get(slot(open)));
+            long idle = Math.min(hour - open - 1, HOURS_PER_WEEK); // a longer gap only decays each level once
+            for (long h = hour - idle; h < hour; h++) {
+                hours.set(slot(h), 0);
+                smooth(slot(h), 0);
+            }
+        }
+        hours.set(slot(hour), 0); // last week's sum
+        head = hour; // publishes the cleared slot to record()
+    }
+
+    private void smooth(int slot, long observed) {
+        double level = levels[slot];
+        levels[slot] = Double.isNaN(level) ? observed : level + smoothing * (observed - level);
+    }
+
+    /** Withdrawals in the last {@code count} hours up to {@code nowMillis}, this hour included. */
+    public long withdrawn(long nowMillis, int count) {
+        long now = hourOf(nowMillis);
+        long open = head;
+        long sum = 0;
+        for (long h = Math.max(now - Math.min(count, HOURS_PER_WEEK) + 1, open - HOURS_PER_WEEK + 1);
+             h <= Math.min(now, open); h++) {
+            sum += hours.get(slot(h));
+        }
+        return sum;
+    }
+
+    /** Withdrawals expected in the {@code count} hours from {@code nowMillis}, or -1 before any hour closed. */
+    public synchronized long expected(long nowMillis, int count) {
+        double fallback = meanLevel();
+        if (Double.isNaN(fallback)) {
+            return -1;
+        }
+        long now = hourOf(nowMillis);
+        double sum = rest(now, nowMillis, fallback);
+        for (long h = now + 1; h < now + count; h++) {
+            sum += level(slot(h), fallback);
+        }
+        return Math.round(sum);
+    }
+
+    /**
+     * When the cassettes' {@code stock} is forecast to fall below
+     * {@code threshold}: {@code nowMillis} if it already has, -1 if not
+     * within {@link #HORIZON_HOURS} or before any hour has closed.
+     */
+    public synchronized long lowAt(long nowMillis, long stock, long threshold) {
+        if (stock < threshold) {
+            return nowMillis;
+        }
+        double fallback = meanLevel();
+        if (Double.isNaN(fallback)) {
+            return -1;
+        }
+        double left = stock - threshold;
+        long now = hourOf(nowMillis);
+        double expected = rest(now, nowMillis, fallback);
+        if (expected > left) {
+            long remaining = startOf(now + 1) - nowMillis;
+            return nowMillis + (long) (remaining * left / expected);
+        }
+        left -= expected;
+        for (long h = now + 1; h <= now + HORIZON_HOURS; h++) {
+            expected = level(slot(h), fallback);
+            if (expected > left) {
+                return startOf(h) + (long) (HOUR_MILLIS * left / expected);
+            }
+            left -= expected;
+        }
+        return -1;
+    }
+
+    /** What the rest of the hour {@code now} should still bring: its level less what it has brought. */
+    private double rest(long now, long nowMillis, double fallback) {
+        double level = level(slot(now), fallback);
+        if (now == head) {
+            return Math.max(0, level - hours.get(slot(now)));
+        }
+        return level * (startOf(now + 1) - nowMillis) / HOUR_MILLIS;
+    }
+
+    private double level(int slot, double fallback) {
+        return Double.isNaN(levels[slot]) ? fallback : levels[slot];
+    }
+
+    private double meanLevel() {
+        double sum = 0;
+        int seen = 0;
+        for (double level : levels) {
+            if (!Double.isNaN(level)) {
+                sum += level;
+                seen++;
+            }
+        }
+        return seen == 0 ? Double.NaN : sum / seen;
+    }
+
+    private long hourOf(long timeMillis) {
+        return Math.floorDiv(timeMillis + offsetMillis, HOUR_MILLIS);
+    }
+
+    private long startOf(long hour) {
+        return hour * HOUR_MILLIS - offsetMillis;
+    }
+
+    private static int slot(long hour) {
+        return Math.floorMod(hour - MONDAY, HOURS_PER_WEEK);
+    }
+
+    // --- Snapshots ---
+
+    synchronized void copyFrom(CashForecaster other) {
+        synchronized (other) {
+            for (int i = 0; i < HOURS_PER_WEEK; i++) {
+                hours.set(i, other.hours.get(i));
+            }
+            System.arraycopy(other.levels, 0, levels, 0, HOURS_PER_WEEK);
+            head = other.head;
+        }
+    }
+
+    synchronized void write(DataOutput out) throws IOException {
+        out.writeLong(head);
+        for (int i = 0; i < HOURS_PER_WEEK; i++) {
+            out.writeLong(hours.get(i));
+            out.writeDouble(levels[i]);
+        }
+    }
+
+    synchronized void read(DataInput in) throws IOException {
+        head = in.readLong();
+        for (int i = 0; i < HOURS_PER_WEEK; i++) {
+            hours.set(i, in.readLong());
+            levels[i] = in.readDouble();
+        }
+    }
+}
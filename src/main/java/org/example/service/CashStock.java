@@ -0,0 +1,255 @@
+package org.example.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free cash inventory of one ATM, kept in minor units (kurus).
+ *
+ * A withdrawal first {@link #reserve reserves} its amount, which removes it
+ * from the available stock atomically and returns a reservation id. The
+ * reservation is then either {@link #commit committed} (cash dispensed) or
+ * {@link #release released} (customer cancelled, account declined), exactly
+ * once: a second commit or release of the same id does nothing. So two
+ * sessions can never be promised the same notes, and a retried call cannot
+ * put back cash it did not take.
+ *
+ * Each reservation's amount and notes sit in a slot of a preallocated table,
+ * claimed and freed with a CAS; the id is a sequence number plus the slot,
+ * so a freed slot's old id never matches its next holder. The table grows
+ * by a chunk when reservations crowd it, up to {@value #MAX_RESERVATIONS}
+ * at once, so reserving and paying out allocate nothing.
+ *
+ * Withdrawals are paid from the note cassettes (see {@link NoteMix}), so an
+ * amount is only reserved if the notes to make it up are there, not just
+ * enough money: reserving picks the notes and takes them out of the packed
+ * counts with one CAS. Deposited cash goes to a separate bin and counts
+ * towards {@link #available()} but is never paid out.
+ */
+public class CashStock {
+
+    /** What {@link #reserve} returns when it reserved nothing; never a valid id. */
+    public static final long NO_RESERVATION = 0;
+
+    private static final int SLOT_BITS = 16; // reservation id = sequence << SLOT_BITS | slot
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1 << (SLOT_BITS - CHUNK_BITS);
+    static final int MAX_RESERVATIONS = MAX_CHUNKS * CHUNK;
+    private static final int PROBES = 16; // slots tried before the table grows
+    private static final long CLAIMING = -1;
+
+    /** One chunk of reservation slots. */
+    private static final class Slots {
+        final AtomicLongArray holder = new AtomicLongArray(CHUNK); // reservation id, CLAIMING, or 0 when free
+        final long[] amount = new long[CHUNK]; // written before holder is set to the id
+        final long[] plan = new long[CHUNK];
+    }
+
+    private final AtomicLong available;
+    private final LongAdder reserved = new LongAdder();
+    private final AtomicLong notes; // packed cassette counts, less reserved notes
+    private final AtomicReferenceArray<Slots> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicInteger chunkCount = new AtomicInteger(1);
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** A stock of {@code initialMinor}, loaded into the cassettes as far as whole notes allow. */
+    public CashStock(long initialMinor) {
+        this.available = new AtomicLong(initialMinor);
+        this.notes = new AtomicLong(NoteMix.fill(initialMinor));
+        chunks.set(0, new Slots());
+    }
+
+    /**
+     * Holds {@code amountMinor} and the notes to pay it. Returns the
+     * reservation id, or {@link #NO_RESERVATION} if the cash or the notes
+     * are not there.
+     */
+    public long reserve(long amountMinor) {
+        if (amountMinor <= 0) return NO_RESERVATION;
+        long counts = notes.get();
+        long plan;
+        while (true) {
+            plan = NoteMix.plan(counts, amountMinor);
+            if (plan == NoteMix.NONE) return NO_RESERVATION;
+            long witness = notes.compareAndExchange(counts, counts - plan); // every count covers its plan: no borrows
+            if (witness == counts) break;
+            counts = witness;
+        }
+        long current = available.get();
+        while (current >= amountMinor) {
+            long witness = available.compareAndExchange(current, current - amountMinor);
+            if (witness == current) {
+                long id = hold(amountMinor, plan);
+                if (id != NO_RESERVATION) {
+                    reserved.add(amountMinor);
+                    return id;
+                }
+                available.addAndGet(amountMinor); // every slot taken
+                break;
+            }
+            current = witness;
+        }
+        addNotes(plan);
+        return NO_RESERVATION;
+    }
+
+    /**
+     * Pays out {@code reservation}; returns the notes dispensed, packed as in
+     * {@link NoteMix}, or {@link NoteMix#NONE} if it is not held (already
+     * paid or released).
+     */
+    public long commit(long reservation) {
+        Slots c = slots(reservation);
+        if (c == null) return NoteMix.NONE;
+        int i = (int) reservation & (CHUNK - 1);
+        long amount = c.amount[i];
+        long plan = c.plan[i];
+        if (!c.holder.compareAndSet(i, reservation, 0)) return NoteMix.NONE;
+        reserved.add(-amount);
+        return plan;
+    }
+
+    /** Puts the cash and notes of {@code reservation} back; returns false if it is not held. */
+    public boolean release(long reservation) {
+        Slots c = slots(reservation);
+        if (c == null) return false;
+        int i = (int) reservation & (CHUNK - 1);
+        long amount = c.amount[i];
+        long plan = c.plan[i];
+        if (!c.holder.compareAndSet(i, reservation, 0)) return false;
+        reserved.add(-amount);
+        available.addAndGet(amount);
+        addNotes(plan); // a refill may have topped a cassette up meanwhile
+        return true;
+    }
+
+    /** The amount {@code reservation} holds, or 0 if it is not held. */
+    public long amountOf(long reservation) {
+        Slots c = slots(reservation);
+        if (c == null) return 0;
+        int i = (int) reservation & (CHUNK - 1);
+        long amount = c.amount[i];
+        return c.holder.get(i) == reservation ? amount : 0;
+    }
+
+    /** Claims a free slot for the reservation; returns its id, or {@link #NO_RESERVATION} if all are taken. */
+    private long hold(long amount, long plan) {
+        long seq = sequence.incrementAndGet();
+        int start = ThreadLocalRandom.current().nextInt() & Integer.MAX_VALUE;
+        while (true) {
+            int n = chunkCount.get();
+            int size = n << CHUNK_BITS;
+            int probes = n == MAX_CHUNKS ? size : Math.min(PROBES, size);
+            for (int k = 0; k < probes; k++) {
+                int slot = (int) ((start + (long) k) % size);
+                Slots c = chunks.get(slot >>> CHUNK_BITS);
+                int i = slot & (CHUNK - 1);
+                if (c.holder.get(i) == 0 && c.holder.compareAndSet(i, 0, CLAIMING)) {
+                    c.amount[i] = amount;
+                    c.plan[i] = plan;
+                    long id = seq << SLOT_BITS | slot;
+                    c.holder.set(i, id); // publishes amount and plan
+                    return id;
+                }
+            }
+            if (n == MAX_CHUNKS) return NO_RESERVATION;
+            if (chunks.get(n) == null) {
+                chunks.compareAndSet(n, null, new Slots());
+            }
+            chunkCount.compareAndSet(n, n + 1);
+            start = n << CHUNK_BITS; // the new chunk is empty
+        }
+    }
+
+    private Slots slots(long reservation) {
+        if (reservation <= 0) return null;
+        int chunk = (int) (reservation & (MAX_RESERVATIONS - 1)) >>> CHUNK_BITS;
+        return chunk < chunkCount.get() ? chunks.get(chunk) : null;
+    }
+
+    /** Takes back the notes of a committed reservation whose withdrawal could not be journaled. */
+    void refund(long notes) {
+        available.addAndGet(NoteMix.value(notes));
+        addNotes(notes);
+    }
+
+    private void addNotes(long more) {
+        long n = notes.get();
+        long witness;
+        while ((witness = notes.compareAndExchange(n, NoteMix.add(n, more))) != n) {
+            n = witness;
+        }
+    }
+
+    /**
+     * Adds deposited cash; it goes to the deposit bin, not the cassettes.
+     * Throws {@link ArithmeticException}, adding nothing, on overflow.
+     */
+    public void add(long amountMinor) {
+        available.accumulateAndGet(amountMinor, Math::addExact);
+    }
+
+    /** Adds cash loaded by the bank, filling the cassettes as the constructor does. */
+    void load(long amountMinor) {
+        available.accumulateAndGet(amountMinor, Math::addExact);
+        long more = NoteMix.fill(amountMinor);
+        notes.getAndUpdate(n -> NoteMix.add(n, more));
+    }
+
+    /** Adds notes to the cassettes, and their value to the stock; returns the notes that fit. */
+    long loadNotes(long more) {
+        long before = notes.getAndUpdate(n -> NoteMix.add(n, more));
+        long added = NoteMix.add(before, more) - before; // fields only grow: no borrows
+        available.addAndGet(NoteMix.value(added));
+        return added;
+    }
+
+    /** Removes notes paid out by a replayed withdrawal, whose amount was already taken off. */
+    void takeNotes(long paid) {
+        notes.getAndUpdate(n -> NoteMix.subtract(n, paid));
+    }
+
+    /** Replaces the cassette counts, e.g. from a snapshot. */
+    void restoreNotes(long counts) {
+        notes.set(counts);
+    }
+
+    /** Whether the cassettes can pay {@code amountMinor} right now. */
+    public boolean canDispense(long amountMinor) {
+        return NoteMix.plan(notes.get(), amountMinor) != NoteMix.NONE && available.get() >= amountMinor;
+    }
+
+    /** Value of the notes in the cassettes, not counting notes reserved: the cash that can still be paid out. */
+    public long dispensable() {
+        return NoteMix.value(notes.get());
+    }
+
+    /** Notes left in each cassette, not counting notes reserved, largest denomination first. */
+    public int[] noteCounts() {
+        return NoteMix.unpack(notes.get());
+    }
+
+    /** Kurus per note in each cassette, in the order of {@link #noteCounts()}. */
+    public static long[] denominations() {
+        long[] d = new long[NoteMix.CASSETTES];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = NoteMix.denomination(i);
+        }
+        return d;
+    }
+
+    /** Cash in the machine not promised to a withdrawal, including the deposit bin. */
+    public long available() {
+        return available.get();
+    }
+
+    /** Cash promised to withdrawals that are waiting for confirmation. */
+    public long reserved() {
+        return reserved.sum();
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically folds the durable journal tail into the last snapshot, writes
+ * the result as a new snapshot and deletes the journal segments it covers.
+ * The same tail is first appended to the {@link TransactionHistory} file, so
+ * no statement entry is lost with the segments. Each checkpoint also drops
+ * state transitions older than {@link AtmStateLog#RETENTION_DAYS}.
+ *
+ * A failed checkpoint leaves everything in the journal and is tried again
+ * on the next tick; the failures in a row and the last error are kept for
+ * {@link DiagnosticProbes#checkpoints}, since a checkpointer that keeps
+ * failing lets the journal, and with it restart time, grow.
+ *
+ * The checkpointer only reads journal files, never the live bank state, so
+ * transactions are not paused while a snapshot is taken. Recovery then loads
+ * the newest snapshot and replays only the journal written after it.
+ */
+public class Checkpointer implements Closeable {
+
+    private final Path snapshotDir;
+    private final TransactionJournal journal;
+    private final BankSnapshot state;
+    private final TransactionHistory history;
+    private final AtmStateMachine states;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService scheduler;
+    private volatile long snapshotLsn; // LSN of the last snapshot written or loaded
+    private volatile int failures; // checkpoints failed since the last good one
+    private volatile Exception lastFailure;
+
+    public Checkpointer(Path snapshotDir, TransactionJournal journal, BankSnapshot base,
+                        TransactionHistory history, AtmStateMachine states, long intervalSeconds) {
+        this.snapshotDir = snapshotDir;
+        this.journal = journal;
+        this.state = base;
+        this.snapshotLsn = base.getLsn();
+        this.history = history;
+        this.states = states;
+        this.intervalSeconds = intervalSeconds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpointer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::checkpointQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Writes a snapshot covering everything durable in the journal so far. */
+    public synchronized void checkpoint() throws IOException {
+        try {
+            states.compact(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(AtmStateLog.RETENTION_DAYS));
+            long upTo = journal.durableLsn();
+            if (upTo > state.getLsn()) {
+                history.persist(journal.getDirectory(), upTo);
+                TransactionJournal.read(journal.getDirectory(), state.getLsn(), upTo, state);
+                Path written = state.writeTo(snapshotDir);
+                BankSnapshot.deleteOlderThan(snapshotDir, written);
+                journal.deleteSegmentsUpTo(state.getLsn());
+                snapshotLsn = state.getLsn();
+            }
+        } catch (IOException | RuntimeException e) {
+            lastFailure = e;
+            failures++;
+            throw e;
+        }
+        failures = 0;
+    }
+
+    /** LSN the newest snapshot covers; the journal after it is replayed on restart. */
+    public long snapshotLsn() {
+        return snapshotLsn;
+    }
+
+    /** Checkpoints failed since the last one that succeeded. */
+    public int failures() {
+        return failures;
+    }
+
+    /** The error of the last failed checkpoint, or null if none has failed. */
+    public Exception lastFailure() {
+        return lastFailure;
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // keep the schedule alive; the journal still holds everything, and failures() tells
+        }
+    }
+
+    /** Stops the schedule and takes a final snapshot, so the next start replays nothing. */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+    }
+}
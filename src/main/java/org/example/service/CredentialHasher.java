@@ -0,0 +1,76 @@
+package org.example.service;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 hashing for customer PINs and technician
+ * passwords, so neither the account store nor the journal ever holds a secret
+ * in clear text.
+ *
+ * A credential is the 32-byte derived key followed by its 16-byte random
+ * salt. Deriving a key is deliberately slow; callers on a hot path go through
+ * {@link CredentialVerifier} instead of calling this directly.
+ */
+public final class CredentialHasher {
+
+    public static final int DEFAULT_ITERATIONS = 100_000;
+    public static final int KEY_LENGTH = 32;
+    public static final int SALT_LENGTH = 16;
+    public static final int CREDENTIAL_LENGTH = KEY_LENGTH + SALT_LENGTH;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+
+    public CredentialHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public CredentialHasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /** Hashes {@code secret} under a fresh random salt. */
+    public byte[] hash(String secret) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        byte[] credential = Arrays.copyOf(derive(secret, salt), CREDENTIAL_LENGTH);
+        System.arraycopy(salt, 0, credential, KEY_LENGTH, SALT_LENGTH);
+        return credential;
+    }
+
+    public boolean matches(byte[] credential, String secret) {
+        if (credential == null || credential.length != CREDENTIAL_LENGTH) {
+            return false;
+        }
+        byte[] salt = Arrays.copyOfRange(credential, KEY_LENGTH, CREDENTIAL_LENGTH);
+        return constantTimeEquals(Arrays.copyOf(credential, KEY_LENGTH), derive(secret, salt));
+    }
+
+    /** Compares two arrays in time that depends only on their lengths. */
+    public static boolean constantTimeEquals(byte[] a, byte[] b) {
+        if (a == null || b == null || a.length != b.length) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < a.length; i++) {
+            diff |= a[i] ^ b[i];
+        }
+        return diff == 0;
+    }
+
+    private byte[] derive(String secret, byte[] salt) {
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt, iterations, KEY_LENGTH * 8);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Checks PINs and passwords against stored {@link CredentialHasher}
+ * credentials without putting the slow KDF on every login.
+ *
+ * Key derivation runs on a small dedicated pool with a bounded queue, so a
+ * login storm cannot take CPU away from transaction threads; when the queue
+ * is full, or the KDF does not answer within {@link #TIMEOUT_MILLIS}, a
+ * check ends {@link Result#UNAVAILABLE} rather than as a mismatch.
+ * After a successful check the principal is remembered in a bounded cache as
+ * a keyed HMAC of the secret, tied to the exact credential it was checked
+ * against. A later login with the same secret is then verified with one HMAC,
+ * and changing the PIN invalidates the entry.
+ */
+public class CredentialVerifier implements Closeable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_CACHE_SIZE = 16_384;
+    public static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /** How a {@link #verify} ended. */
+    public enum Result {
+        MATCH, MISMATCH,
+        /** Not checked: the KDF pool was full or shut down, timed out, or the caller was interrupted. */
+        UNAVAILABLE
+    }
+
+    private final CredentialHasher hasher;
+    private final ThreadPoolExecutor kdfPool;
+    private final AtomicReferenceArray<Verified> cache; // direct-mapped by principal
+    private final int cacheMask;
+    private final ThreadLocal<Mac> mac;
+
+    public CredentialVerifier() {
+        this(new CredentialHasher(), Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                DEFAULT_QUEUE_CAPACITY, DEFAULT_CACHE_SIZE);
+    }
+
+    public CredentialVerifier(CredentialHasher hasher, int kdfThreads, int queueCapacity, int cacheSize) {
+        this.hasher = hasher;
+        AtomicInteger threadId = new AtomicInteger();
+        this.kdfPool = new ThreadPoolExecutor(kdfThreads, kdfThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "kdf-" + threadId.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        int size = Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1;
+        this.cache = new AtomicReferenceArray<>(size);
+        this.cacheMask = size - 1;
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key); // per process: cache entries never leave memory
+        SecretKeySpec keySpec = new SecretKeySpec(key, "HmacSHA256");
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance("HmacSHA256");
+                m.init(keySpec);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+        });
+    }
+
+    /** Hashes a new secret on the KDF pool and waits for the credential. */
+    public byte[] hash(String secret) {
+        byte[] credential = await(CompletableFuture.supplyAsync(() -> hasher.hash(secret), kdfPool));
+        if (credential == null) {
+            throw new IllegalStateException("Interrupted or timed out while hashing");
+        }
+        return credential;
+    }
+
+    /**
+     * Checks {@code secret} for {@code principal} (e.g. a card number) against
+     * its stored credential, waiting for the KDF pool on a cache miss.
+     */
+    public Result verify(String principal, byte[] credential, String secret) {
+        Boolean ok;
+        try {
+            ok = await(verifyAsync(principal, credential, secret));
+        } catch (RejectedExecutionException e) {
+            return Result.UNAVAILABLE;
+        }
+        return ok == null ? Result.UNAVAILABLE : ok ? Result.MATCH : Result.MISMATCH;
+    }
+
+    /**
+     * Like {@link #verify}, but completes on the KDF pool instead of blocking;
+     * throws {@link RejectedExecutionException} if the pool is full.
+     */
+    public CompletableFuture<Boolean> verifyAsync(String principal, byte[] credential, String secret) {
+        if (credential == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        byte[] tag = tag(principal, secret);
+        int slot = slotOf(principal);
+        Verified v = cache.get(slot);
+        if (v != null && v.principal.equals(principal)
+                && CredentialHasher.constantTimeEquals(v.credential, credential)
+                && CredentialHasher.constantTimeEquals(v.tag, tag)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            boolean ok = hasher.matches(credential, secret);
+            if (ok) {
+                cache.set(slot, new Verified(principal, credential, tag));
+            }
+            return ok;
+        }, kdfPool);
+    }
+
+    /** Drops any cached verification for {@code principal}. */
+    public void forget(String principal) {
+        int slot = slotOf(principal);
+        Verified v = cache.get(slot);
+        if (v != null && v.principal.equals(principal)) {
+            cache.compareAndSet(slot, v, null);
+        }
+    }
+
+    /** Hash jobs waiting for a KDF thread. */
+    public int queuedJobs() {
+        return kdfPool.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        kdfPool.shutdownNow();
+    }
+
+    private int slotOf(String principal) {
+        return (principal.hashCode() * 0x9E3779B9 >>> 16) & cacheMask;
+    }
+
+    private byte[] tag(String principal, String secret) {
+        Mac m = mac.get();
+        m.update(principal.getBytes(StandardCharsets.UTF_8));
+        m.update((byte) 0);
+        return m.doFinal(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** The future's value, or null if interrupted or not done within {@link #TIMEOUT_MILLIS}. */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(false); // nobody waits for it: a queued job is skipped when its turn comes
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** A principal whose secret was checked against {@code credential}. */
+    private static final class Verified {
+        final String principal;
+        final byte[] credential;
+        final byte[] tag;
+
+        Verified(String principal, byte[] credential, byte[] tag) {
+            this.principal = principal;
+            this.credential = credential;
+            this.tag = tag;
+        }
+    }
+}
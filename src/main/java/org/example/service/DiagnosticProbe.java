@@ -0,0 +1,18 @@
+package org.example.service;
+
+/**
+ * One self-check of an ATM terminal, run by {@link Diagnostics} alongside the
+ * others. See {@link DiagnosticProbes} for the built-in ones.
+ */
+public interface DiagnosticProbe {
+
+    /** Short name for the report, e.g. {@code "journal"}. */
+    String name();
+
+    /**
+     * Checks {@code atm}. May block, but should give up when its thread is
+     * interrupted: that is how a probe past its timeout is cancelled. A probe
+     * that throws has failed.
+     */
+    DiagnosticResult check(AtmTerminal atm) throws Exception;
+}
@@ -0,0 +1,147 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+import org.example.model.Money;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+/** The built-in {@link DiagnosticProbe}s. */
+public final class DiagnosticProbes {
+
+    private static final long MB = 1L << 20;
+
+    private DiagnosticProbes() {
+    }
+
+    /**
+     * Fails while a fault reported at the terminal has not been taken into
+     * maintenance, as the old self-check did.
+     */
+    public static DiagnosticProbe terminalState() {
+        return probe("state", atm -> atm.getState() == ATMState.NEED_MAINTENANCE
+                ? DiagnosticResult.fail("a fault was reported; enable maintenance mode to clear it")
+                : DiagnosticResult.pass(atm.getState().toString()));
+    }
+
+    /**
+     * Fails if the cassettes cannot pay out the smallest note; warns if a
+     * cassette is empty or the cash in them is below {@code lowCash}.
+     */
+    public static DiagnosticProbe cassettes(LongSupplier lowCash) {
+        return probe("cassettes", atm -> {
+            CashStock cash = atm.getCashStock();
+            int[] counts = cash.noteCounts();
+            long[] denominations = CashStock.denominations();
+            StringBuilder detail = new StringBuilder();
+            boolean empty = false;
+            for (int i = 0; i < counts.length; i++) {
+                detail.append(i == 0 ? "" : ", ").append(counts[i]).append(" x ")
+                        .append(Money.toBigDecimal(denominations[i]).stripTrailingZeros().toPlainString());
+                empty |= counts[i] == 0;
+            }
+            long dispensable = cash.dispensable();
+            detail.append(" TL = ").append(Money.format(dispensable)).append(" TL");
+            if (!cash.canDispense(denominations[denominations.length - 1])) {
+                return DiagnosticResult.fail("cannot pay out: " + detail);
+            }
+            if (empty || dispensable < lowCash.getAsLong()) {
+                return DiagnosticResult.warn("refill soon: " + detail);
+            }
+            return DiagnosticResult.pass(detail.toString());
+        });
+    }
+
+    /** Re-reads the journal's durable records; fails on a damaged one or a failed flusher. */
+    public static DiagnosticProbe journal(TransactionJournal journal) {
+        return probe("journal", atm -> DiagnosticResult.pass("intact up to LSN " + journal.verify()));
+    }
+
+    /**
+     * Warns after a failed checkpoint and fails after {@code failAfter} in a
+     * row: until one succeeds the journal keeps growing and so does restart
+     * time.
+     */
+    public static DiagnosticProbe checkpoints(Checkpointer checkpointer, int failAfter) {
+        return probe("checkpoint", atm -> {
+            int failures = checkpointer.failures();
+            if (failures == 0) {
+                return DiagnosticResult.pass("snapshot up to LSN " + checkpointer.snapshotLsn());
+            }
+            String detail = String.format("%d failed in a row, snapshot still at LSN %d: %s", failures,
+                    checkpointer.snapshotLsn(), checkpointer.lastFailure());
+            return failures >= failAfter ? DiagnosticResult.fail(detail) : DiagnosticResult.warn(detail);
+        });
+    }
+
+    /**
+     * Stand-in for the card reader's self-test: there is no reader hardware
+     * here, so it answers after {@code latencyMillis}, as a real one would
+     * after cycling its motor.
+     */
+    public static DiagnosticProbe cardReader(long latencyMillis) {
+        return probe("card reader", atm -> {
+            Thread.sleep(latencyMillis);
+            return DiagnosticResult.pass("simulated reader answered");
+        });
+    }
+
+    /**
+     * Compares the wall clock with {@code referenceMillis}: warns past
+     * {@code warnMillis} of difference, fails past {@code failMillis}, since
+     * journal and state-log times would be wrong.
+     */
+    public static DiagnosticProbe clockSkew(LongSupplier referenceMillis, long warnMillis, long failMillis) {
+        return probe("clock", atm -> {
+            long skew = System.currentTimeMillis() - referenceMillis.getAsLong();
+            String detail = String.format("wall clock %+d ms from reference", skew);
+            return Math.abs(skew) > failMillis ? DiagnosticResult.fail(detail)
+                    : Math.abs(skew) > warnMillis ? DiagnosticResult.warn(detail)
+                    : DiagnosticResult.pass(detail);
+        });
+    }
+
+    /**
+     * A reference for {@link #clockSkew}: the wall clock when this is called,
+     * moved forward by the monotonic clock, so a later jump of the wall clock
+     * shows as skew.
+     */
+    public static LongSupplier monotonicClock() {
+        long wall = System.currentTimeMillis();
+        long nanos = System.nanoTime();
+        return () -> wall + (System.nanoTime() - nanos) / 1_000_000;
+    }
+
+    /** Warns when the file store holding {@code directory} has less than {@code warnBytes} free, fails below {@code failBytes}. */
+    public static DiagnosticProbe storage(Path directory, long warnBytes, long failBytes) {
+        return probe("storage", atm -> {
+            FileStore store = Files.getFileStore(directory);
+            long free = store.getUsableSpace();
+            String detail = free / MB + " MB free of " + store.getTotalSpace() / MB + " MB";
+            return free < failBytes ? DiagnosticResult.fail(detail)
+                    : free < warnBytes ? DiagnosticResult.warn(detail)
+                    : DiagnosticResult.pass(detail);
+        });
+    }
+
+    private interface Check {
+        DiagnosticResult check(AtmTerminal atm) throws IOException, InterruptedException;
+    }
+
+    private static DiagnosticProbe probe(String name, Check check) {
+        return new DiagnosticProbe() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public DiagnosticResult check(AtmTerminal atm) throws IOException, InterruptedException {
+                return check.check(atm);
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/** The results of every {@link DiagnosticProbe} run on one terminal by {@link Diagnostics#run}. */
+public final class DiagnosticReport {
+
+    private final String terminalId;
+    private final List<DiagnosticResult> results;
+    private final long elapsedNanos;
+
+    public DiagnosticReport(String terminalId, List<DiagnosticResult> results, long elapsedNanos) {
+        this.terminalId = terminalId;
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    /** One result per probe, in the order the probes were registered. */
+    public List<DiagnosticResult> getResults() {
+        return results;
+    }
+
+    /** Wall-clock time of the whole run; the probes run at the same time. */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Whether no probe failed; warnings pass. */
+    public boolean passed() {
+        for (DiagnosticResult r : results) {
+            if (r.getStatus() == DiagnosticResult.Status.FAIL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Self-check of %s: %s in %.1f ms%n", terminalId, passed() ? "PASSED" : "FAILED",
+                elapsedNanos / 1e6));
+        for (DiagnosticResult r : results) {
+            sb.append(r).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
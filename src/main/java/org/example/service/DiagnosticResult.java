@@ -0,0 +1,60 @@
+package org.example.service;
+
+/** What one {@link DiagnosticProbe} found, and how long it took. */
+public final class DiagnosticResult {
+
+    public enum Status {
+        PASS, WARN, FAIL
+    }
+
+    private final String probe;
+    private final Status status;
+    private final String detail;
+    private final long elapsedNanos;
+
+    public DiagnosticResult(String probe, Status status, String detail, long elapsedNanos) {
+        this.probe = probe;
+        this.status = status;
+        this.detail = detail;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** A result for a probe to return; {@link Diagnostics} fills in its name and time. */
+    public static DiagnosticResult pass(String detail) {
+        return new DiagnosticResult(null, Status.PASS, detail, 0);
+    }
+
+    /** Works, but needs attention soon; does not fail the check. */
+    public static DiagnosticResult warn(String detail) {
+        return new DiagnosticResult(null, Status.WARN, detail, 0);
+    }
+
+    public static DiagnosticResult fail(String detail) {
+        return new DiagnosticResult(null, Status.FAIL, detail, 0);
+    }
+
+    DiagnosticResult named(String probe, long elapsedNanos) {
+        return new DiagnosticResult(probe, status, detail, elapsedNanos);
+    }
+
+    public String getProbe() {
+        return probe;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-4s  %-12s %8.1f ms  %s", status, probe, elapsedNanos / 1e6, detail);
+    }
+}
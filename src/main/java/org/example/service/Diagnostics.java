@@ -0,0 +1,131 @@
+package org.example.service;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the registered {@link DiagnosticProbe}s against a terminal, all at
+ * once, and collects a {@link DiagnosticReport}.
+ *
+ * Each run is a structured scope: every probe is forked on its own thread
+ * (virtual where the JDK has them), the run waits for each until that
+ * probe's own deadline, and before it returns every probe still running is
+ * cancelled, so none outlives the run. A run therefore takes as long as the
+ * slowest probe or the longest timeout, whichever is shorter, not the sum of
+ * them. A probe that misses its deadline, throws or returns nothing fails.
+ */
+public class Diagnostics implements Closeable {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 2_000;
+
+    private static final class Registered {
+        final DiagnosticProbe probe;
+        final long timeoutNanos;
+
+        Registered(DiagnosticProbe probe, long timeoutNanos) {
+            this.probe = probe;
+            this.timeoutNanos = timeoutNanos;
+        }
+    }
+
+    private final List<Registered> probes = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = VirtualThreads.newPerTaskExecutor("diagnostics");
+
+    public void register(DiagnosticProbe probe) {
+        register(probe, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /** Adds {@code probe}, or replaces the one with the same name; it fails if it takes longer than the timeout. */
+    public void register(DiagnosticProbe probe, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        Registered r = new Registered(probe, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        synchronized (probes) {
+            for (int i = 0; i < probes.size(); i++) {
+                if (probes.get(i).probe.name().equals(probe.name())) {
+                    probes.set(i, r);
+                    return;
+                }
+            }
+            probes.add(r);
+        }
+    }
+
+    public boolean unregister(String name) {
+        return probes.removeIf(r -> r.probe.name().equals(name));
+    }
+
+    public List<String> probeNames() {
+        List<String> names = new ArrayList<>();
+        for (Registered r : probes) {
+            names.add(r.probe.name());
+        }
+        return names;
+    }
+
+    /** Runs every probe against {@code atm} at once; returns when all have answered or timed out. */
+    public DiagnosticReport run(AtmTerminal atm) {
+        long start = System.nanoTime();
+        List<Registered> run = new ArrayList<>(probes);
+        List<Future<DiagnosticResult>> forks = new ArrayList<>(run.size());
+        List<DiagnosticResult> results = new ArrayList<>(run.size());
+        try {
+            for (Registered r : run) {
+                forks.add(executor.submit(() -> check(r.probe, atm)));
+            }
+            for (int i = 0; i < run.size(); i++) {
+                results.add(join(run.get(i), forks.get(i), start));
+            }
+        } finally {
+            for (Future<DiagnosticResult> f : forks) {
+                f.cancel(true); // no-op for the ones that finished
+            }
+        }
+        return new DiagnosticReport(atm.getId(), results, System.nanoTime() - start);
+    }
+
+    private static DiagnosticResult check(DiagnosticProbe probe, AtmTerminal atm) {
+        long t = System.nanoTime();
+        DiagnosticResult result;
+        try {
+            result = probe.check(atm);
+        } catch (Exception e) {
+            result = DiagnosticResult.fail(e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        return result == null ? null : result.named(probe.name(), System.nanoTime() - t);
+    }
+
+    private static DiagnosticResult join(Registered r, Future<DiagnosticResult> fork, long start) {
+        String name = r.probe.name();
+        long left = start + r.timeoutNanos - System.nanoTime();
+        try {
+            DiagnosticResult result = fork.get(Math.max(0, left), TimeUnit.NANOSECONDS);
+            return result != null ? result
+                    : new DiagnosticResult(name, DiagnosticResult.Status.FAIL, "no result", System.nanoTime() - start);
+        } catch (TimeoutException e) {
+            return new DiagnosticResult(name, DiagnosticResult.Status.FAIL,
+                    "no answer within " + TimeUnit.NANOSECONDS.toMillis(r.timeoutNanos) + " ms", r.timeoutNanos);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            return new DiagnosticResult(name, DiagnosticResult.Status.FAIL,
+                    cause.getMessage() != null ? cause.getMessage() : cause.toString(), System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // the remaining joins fail at once; run() cancels the forks
+            return new DiagnosticResult(name, DiagnosticResult.Status.FAIL, "interrupted", System.nanoTime() - start);
+        }
+    }
+
+    /** Stops the probe threads; no run may start afterwards. */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.service;
+
+import java.io.IOException;
+
+/**
+ * Where the {@link EmergencyQueue} sends reports: the bank's operations desk.
+ * Called from several dispatch threads at once.
+ */
+public interface EmergencyNotifier {
+
+    /**
+     * Delivers one report. Throws if it did not arrive; the queue then sends
+     * it again after a backoff.
+     */
+    void send(EmergencyReport report) throws IOException;
+}
@@ -0,0 +1,374 @@
+package org.example.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of emergency reports waiting to reach the bank, drained by
+ * a few dispatch threads that hand each to an {@link EmergencyNotifier}.
+ *
+ * Reports live in a fixed number of preallocated slots, kept as columns, so
+ * {@link #offer} only copies its arguments into a free slot and pushes the
+ * slot's index onto the ring of its {@link EmergencyReport.Priority}: no
+ * allocation, and the lock is held for a few stores. Dispatchers always take
+ * the oldest report of the highest priority that is ready.
+ *
+ * When every slot is taken a report is not dropped: it waits, as an
+ * {@link EmergencyReport} object, in an overflow list of its priority, and
+ * takes the next slot that frees up ahead of overflowed reports of lower
+ * priority and of every report made after it.
+ *
+ * A report the notifier refuses waits out a backoff that doubles with each
+ * attempt, from {@value #FIRST_BACKOFF_MILLIS} ms up to
+ * {@value #MAX_BACKOFF_MILLIS} ms, and is then sent again; reports are never
+ * given up on. Once one is delivered the {@link Listener} is told how long
+ * it took from the report, which the bank holds against {@link #SLA_NANOS}.
+ *
+ * The queue itself is not durable: the bank journals each report before
+ * offering it and journals its delivery after, and offers the undelivered
+ * ones again on startup.
+ */
+public class EmergencyQueue implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_DISPATCHERS = 2;
+    /** Promised time from a customer's report to the bank knowing of it. */
+    public static final long SLA_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final long FIRST_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 8_000;
+    private static final EmergencyReport.Priority[] PRIORITIES = EmergencyReport.Priority.values();
+
+    /** Told of each delivered report, on the dispatch thread that sent it. */
+    public interface Listener {
+        void delivered(EmergencyReport report, long latencyNanos);
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work = lock.newCondition();
+
+    // slot columns, guarded by lock
+    private final long[] ids;
+    private final long[] reportedAt;
+    private final long[] enqueuedNanos; // reportedAt on the nanoTime clock
+    private final long[] dueNanos;
+    private final String[] terminalIds;
+    private final String[] types;
+    private final String[] cardNumbers;
+    private final byte[] priorities;
+    private final int[] attempts;
+
+    // guarded by lock
+    private final int[] free;
+    private int freeCount;
+    private final int[][] ready; // per priority, a ring of slot indexes
+    private final int[] readyHead = new int[PRIORITIES.length];
+    private final int[] readyCount = new int[PRIORITIES.length];
+    private final int[] backingOff;
+    private int backingOffCount;
+    private final List<ArrayDeque<EmergencyReport>> overflow; // per priority, reports waiting for a slot
+    private int overflowCount;
+    private boolean closed;
+
+    private volatile long delivered;
+    private volatile long retries;
+    private volatile long overflowed;
+
+    private volatile EmergencyNotifier notifier;
+    private final Listener listener;
+    private final Thread[] dispatchers;
+
+    public EmergencyQueue(EmergencyNotifier notifier, Listener listener) {
+        this(notifier, listener, DEFAULT_CAPACITY, DEFAULT_DISPATCHERS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public EmergencyQueue(EmergencyNotifier notifier, Listener listener, int capacity, int dispatchers) {
+        if (capacity <= 0 || dispatchers <= 0) {
+            throw new IllegalArgumentException("Capacity and dispatchers must be positive");
+        }
+        this.notifier = notifier;
+        this.listener = listener;
+        ids = new long[capacity];
+        reportedAt = new long[capacity];
+        enqueuedNanos = new long[capacity];
+        dueNanos = new long[capacity];
+        terminalIds = new String[capacity];
+        types = new String[capacity];
+        cardNumbers = new String[capacity];
+        priorities = new byte[capacity];
+        attempts = new int[capacity];
+        free = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            free[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+        ready = new int[PRIORITIES.length][capacity];
+        backingOff = new int[capacity];
+        overflow = new ArrayList<>(PRIORITIES.length);
+        for (int p = 0; p < PRIORITIES.length; p++) {
+            overflow.add(new ArrayDeque<>());
+        }
+        this.dispatchers = new Thread[dispatchers];
+        for (int i = 0; i < dispatchers; i++) {
+            Thread t = new Thread(this::dispatchLoop, "emergency-dispatch-" + i);
+            t.setDaemon(true);
+            this.dispatchers[i] = t;
+            t.start();
+        }
+    }
+
+    // --- Reporting (customer threads) ---
+
+    /**
+     * Queues a report made at wall-clock time {@code reportedAt}; its SLA
+     * clock runs from then. Never blocks on dispatch, and allocates nothing
+     * while a slot is free. Returns false if the report had to go to the
+     * overflow list instead, or if the queue is closed and the report was
+     * dropped (the bank's journal still has it).
+     */
+    public boolean offer(long id, long reportedAt, String terminalId, String type, String cardNumber) {
+        long enqueued = enqueuedNanos(reportedAt);
+        int priority = EmergencyReport.priorityOf(type).ordinal();
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (freeCount == 0 || overflowCount > 0) {
+                overflow.get(priority).add(new EmergencyReport(id, reportedAt, terminalId, type, cardNumber, 0));
+                overflowCount++;
+                overflowed++;
+                return false;
+            }
+            fill(free[--freeCount], id, reportedAt, enqueued, terminalId, type, cardNumber, priority);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** {@code reportedAt} on the nanoTime clock. */
+    private static long enqueuedNanos(long reportedAt) {
+        long age = Math.max(0, System.currentTimeMillis() - reportedAt);
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(age);
+    }
+
+    /** Puts a report into slot {@code s} and makes it ready. Called with the lock held. */
+    private void fill(int s, long id, long reportedAt, long enqueued, String terminalId, String type,
+                      String cardNumber, int priority) {
+        ids[s] = id;
+        this.reportedAt[s] = reportedAt;
+        enqueuedNanos[s] = enqueued;
+        terminalIds[s] = terminalId;
+        types[s] = type;
+        cardNumbers[s] = cardNumber;
+        priorities[s] = (byte) priority;
+        attempts[s] = 0;
+        pushReady(s);
+        work.signal();
+    }
+
+    /** Moves the most urgent overflowed report into a free slot. Called with the lock held. */
+    private void admitOverflow() {
+        for (int p = 0; p < PRIORITIES.length && overflowCount > 0; p++) {
+            EmergencyReport r = overflow.get(p).poll();
+            if (r != null) {
+                overflowCount--;
+                fill(free[--freeCount], r.getId(), r.getReportedAt(), enqueuedNanos(r.getReportedAt()),
+                        r.getTerminalId(), r.getType(), r.getCardNumber(), p);
+                return;
+            }
+        }
+    }
+
+    public EmergencyNotifier getNotifier() {
+        return notifier;
+    }
+
+    /** Sends every report from now on, retries included, to {@code notifier}. */
+    public void setNotifier(EmergencyNotifier notifier) {
+        this.notifier = notifier;
+    }
+
+    // --- Statistics ---
+
+    public long delivered() {
+        return delivered;
+    }
+
+    /** Deliveries the notifier refused; each is tried again. */
+    public long retries() {
+        return retries;
+    }
+
+    /** Reports that found every slot taken and waited in the overflow list. */
+    public long overflowed() {
+        return overflowed;
+    }
+
+    /** Reports not delivered yet, including those being sent right now. */
+    public int backlog() {
+        lock.lock();
+        try {
+            return ids.length - freeCount + overflowCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The reports not delivered yet, oldest first; the attempt is the number
+     * of times each was sent so far.
+     */
+    public List<EmergencyReport> pending() {
+        List<EmergencyReport> result = new ArrayList<>();
+        lock.lock();
+        try {
+            boolean[] isFree = new boolean[ids.length];
+            for (int i = 0; i < freeCount; i++) {
+                isFree[free[i]] = true;
+            }
+            for (int s = 0; s < ids.length; s++) {
+                if (!isFree[s]) {
+                    result.add(report(s, attempts[s]));
+                }
+            }
+            for (ArrayDeque<EmergencyReport> reports : overflow) {
+                result.addAll(reports);
+            }
+        } finally {
+            lock.unlock();
+        }
+        result.sort(Comparator.comparingLong(EmergencyReport::getId));
+        return result;
+    }
+
+    // --- Dispatch (dispatch threads) ---
+
+    private void dispatchLoop() {
+        while (true) {
+            int s;
+            EmergencyReport report;
+            lock.lock();
+            try {
+                s = awaitReady();
+                if (s < 0) {
+                    return;
+                }
+                report = report(s, ++attempts[s]);
+            } finally {
+                lock.unlock();
+            }
+            boolean sent;
+            try {
+                notifier.send(report);
+                sent = true;
+            } catch (IOException | RuntimeException e) {
+                sent = false;
+            }
+            long latency = System.nanoTime();
+            lock.lock();
+            try {
+                latency -= enqueuedNanos[s];
+                if (sent) {
+                    terminalIds[s] = types[s] = cardNumbers[s] = null;
+                    free[freeCount++] = s;
+                    delivered++;
+                    admitOverflow();
+                } else {
+                    long backoff = Math.min(MAX_BACKOFF_MILLIS, FIRST_BACKOFF_MILLIS << Math.min(attempts[s] - 1, 16));
+                    dueNanos[s] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+                    backingOff[backingOffCount++] = s;
+                    retries++;
+                    work.signal(); // a waiting dispatcher sets its timer for this one
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (sent) {
+                try {
+                    listener.delivered(report, latency);
+                } catch (RuntimeException e) {
+                    // the report did arrive; keep dispatching
+                }
+            }
+        }
+    }
+
+    /** The next slot to send, waiting for one; -1 once closed. Called with the lock held. */
+    private int awaitReady() {
+        while (!closed) {
+            long now = System.nanoTime();
+            long wait = Long.MAX_VALUE;
+            for (int i = backingOffCount - 1; i >= 0; i--) {
+                int s = backingOff[i];
+                long left = dueNanos[s] - now;
+                if (left <= 0) {
+                    backingOff[i] = backingOff[--backingOffCount];
+                    pushReady(s);
+                } else {
+                    wait = Math.min(wait, left);
+                }
+            }
+            for (int p = 0; p < PRIORITIES.length; p++) {
+                if (readyCount[p] > 0) {
+                    int s = ready[p][readyHead[p]];
+                    readyHead[p] = (readyHead[p] + 1) % ids.length;
+                    readyCount[p]--;
+                    return s;
+                }
+            }
+            try {
+                if (wait == Long.MAX_VALUE) {
+                    work.await();
+                } else {
+                    work.awaitNanos(wait);
+                }
+            } catch (InterruptedException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void pushReady(int s) {
+        int p = priorities[s];
+        ready[p][(readyHead[p] + readyCount[p]) % ids.length] = s;
+        readyCount[p]++;
+    }
+
+    private EmergencyReport report(int s, int attempt) {
+        return new EmergencyReport(ids[s], reportedAt[s], terminalIds[s], types[s], cardNumbers[s], attempt);
+    }
+
+    /**
+     * Stops the dispatchers, interrupting deliveries in flight. Undelivered
+     * reports stay in the bank's journal and are queued again on startup.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            work.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread t : dispatchers) {
+            t.interrupt();
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
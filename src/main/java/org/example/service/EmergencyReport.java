@@ -0,0 +1,81 @@
+package org.example.service;
+
+import java.time.Instant;
+
+/**
+ * An emergency reported by a customer at a terminal, as handed to the
+ * {@link EmergencyNotifier}. The id is the report's journal LSN (a counter
+ * for an in-memory bank, negated if the journal refused the report), so a
+ * notifier that sees a report twice, after a crash between delivery and its
+ * acknowledgement, can tell.
+ */
+public final class EmergencyReport {
+
+    /** Dispatch order: every ready report of a higher priority goes first. */
+    public enum Priority {
+        /** The terminal is out of service with a card or notes stuck in it. */
+        URGENT,
+        /** The card is already blocked; the bank still needs to know. */
+        HIGH,
+        NORMAL
+    }
+
+    private final long id;
+    private final long reportedAt;
+    private final String terminalId;
+    private final String type;
+    private final String cardNumber;
+    private final int attempt;
+
+    public EmergencyReport(long id, long reportedAt, String terminalId, String type, String cardNumber, int attempt) {
+        this.id = id;
+        this.reportedAt = reportedAt;
+        this.terminalId = terminalId;
+        this.type = type;
+        this.cardNumber = cardNumber;
+        this.attempt = attempt;
+    }
+
+    public static Priority priorityOf(String type) {
+        if ("Stuck Card".equalsIgnoreCase(type) || "Cash Jam".equalsIgnoreCase(type)) {
+            return Priority.URGENT;
+        }
+        return "Stolen Card".equalsIgnoreCase(type) ? Priority.HIGH : Priority.NORMAL;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /** Wall-clock time of the report, in milliseconds. */
+    public long getReportedAt() {
+        return reportedAt;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getCardNumber() {
+        return cardNumber;
+    }
+
+    public Priority getPriority() {
+        return priorityOf(type);
+    }
+
+    /** 1 for the first delivery, counting up with each retry. */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d %s %-12s %-6s %-12s card %s", id, Instant.ofEpochMilli(reportedAt), terminalId,
+                getPriority(), type, cardNumber);
+    }
+}
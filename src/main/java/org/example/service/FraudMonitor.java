@@ -0,0 +1,220 @@
+package org.example.service;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scores every completed transaction with a set of {@link FraudRule}s, off
+ * the transaction path, and reports cards that look compromised.
+ *
+ * The bank publishes each deposit, withdrawal and transfer into a bounded
+ * ring of preallocated {@link TransactionEvent} slots: one CAS to claim a
+ * slot, a few field writes and an ordered store to publish it, with no
+ * allocation and no lock. A single daemon thread scores the events in order.
+ * If the scorer falls a whole ring behind, new events are dropped and
+ * counted rather than making the transaction wait.
+ *
+ * When the rules' scores for one event reach the threshold, the
+ * {@link Listener} is told the event's card; the bank blocks it.
+ */
+public class FraudMonitor implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int DEFAULT_THRESHOLD = 100;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** Receives the cards the rules flag, on the monitor's thread. */
+    public interface Listener {
+        void flagged(String cardNumber, String reason);
+    }
+
+    private final TransactionEvent[] slots;
+    private final AtomicLongArray published; // sequence + 1 of the event in each slot
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private final LongAdder dropped = new LongAdder();
+    private final Listener listener;
+    private final Thread scorer;
+    private volatile List<FraudRule> rules;
+    private volatile int threshold = DEFAULT_THRESHOLD;
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    // written by the scorer thread only
+    private volatile long flagged;
+    private volatile long ruleFailures;
+
+    public FraudMonitor(Listener listener) {
+        this(listener, DEFAULT_CAPACITY, FraudRules.defaults());
+    }
+
+    public FraudMonitor(Listener listener, int capacity, List<FraudRule> rules) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new TransactionEvent[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new TransactionEvent();
+        }
+        this.published = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.listener = listener;
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.scorer = new Thread(this::scoreLoop, "fraud-monitor");
+        scorer.setDaemon(true);
+        scorer.start();
+    }
+
+    // --- Publishing (transaction threads) ---
+
+    /**
+     * Queues a completed transaction for scoring. Never blocks; returns false
+     * if the ring is full and the event was dropped.
+     */
+    boolean publish(TransactionEvent.Type type, String terminalId, String cardNumber, String targetCardNumber,
+                    long amount, long balanceAfter) {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= slots.length || closed) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+        int i = (int) seq & mask;
+        slots[i].set(type, System.currentTimeMillis(), terminalId, cardNumber, targetCardNumber, amount,
+                balanceAfter);
+        published.lazySet(i, seq + 1); // ordered after the slot's fields
+        if (idle) {
+            LockSupport.unpark(scorer);
+        }
+        return true;
+    }
+
+    // --- Configuration ---
+
+    public List<FraudRule> getRules() {
+        return rules;
+    }
+
+    /** Replaces the rules; takes effect from the next event scored. */
+    public void setRules(List<FraudRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    public void addRule(FraudRule rule) {
+        List<FraudRule> next = new ArrayList<>(rules);
+        next.add(rule);
+        setRules(next);
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    // --- Statistics ---
+
+    public long scored() {
+        return consumed;
+    }
+
+    public long flagged() {
+        return flagged;
+    }
+
+    /** Events not scored because the ring was full. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /** Events published but not scored yet. */
+    public long backlog() {
+        return claimed.get() - consumed;
+    }
+
+    /** Rule calls that threw; the rule's score counts as 0. */
+    public long ruleFailures() {
+        return ruleFailures;
+    }
+
+    // --- Scoring (monitor thread) ---
+
+    private void scoreLoop() {
+        long next = 0;
+        int[] scores = new int[0];
+        while (true) {
+            int i = (int) next & mask;
+            if (published.get(i) != next + 1) {
+                if (closed && claimed.get() == next) {
+                    return;
+                }
+                idle = true;
+                if (published.get(i) != next + 1) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+            List<FraudRule> rs = rules;
+            if (scores.length < rs.size()) {
+                scores = new int[rs.size()];
+            }
+            score(slots[i], rs, scores);
+            next++;
+            consumed = next; // frees the slot for producers
+        }
+    }
+
+    private void score(TransactionEvent event, List<FraudRule> rs, int[] scores) {
+        int total = 0;
+        for (int r = 0; r < rs.size(); r++) {
+            int s;
+            try {
+                s = rs.get(r).score(event);
+            } catch (RuntimeException e) {
+                ruleFailures++;
+                s = 0;
+            }
+            scores[r] = s;
+            total += s;
+        }
+        if (total < threshold) {
+            return;
+        }
+        StringBuilder reason = new StringBuilder("fraud score ").append(total).append(':');
+        for (int r = 0; r < rs.size(); r++) {
+            if (scores[r] > 0) {
+                reason.append(' ').append(rs.get(r).name()).append('=').append(scores[r]);
+            }
+        }
+        flagged++;
+        try {
+            listener.flagged(event.getCardNumber(), reason.toString());
+        } catch (RuntimeException e) {
+            // keep scoring; the card stays unblocked and is flagged again on its next event
+        }
+    }
+
+    /** Scores what is already queued, then stops the monitor thread. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(scorer);
+        try {
+            scorer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.service;
+
+/**
+ * One check run by the {@link FraudMonitor} on every transaction. Rules are
+ * called from the monitor's single thread, in event order, so they may keep
+ * per-card state without locking. See {@link FraudRules} for the built-in
+ * ones.
+ */
+public interface FraudRule {
+
+    /** Short name shown in block reasons. */
+    String name();
+
+    /**
+     * How suspicious {@code event} looks, from 0 (not at all) up; the
+     * monitor blocks the card once the rules' scores for one event add up to
+     * its threshold.
+     */
+    int score(TransactionEvent event);
+}
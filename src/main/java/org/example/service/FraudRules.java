@@ -0,0 +1,140 @@
+package org.example.service;
+
+import org.example.model.Money;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The built-in {@link FraudRule}s. Each keeps its per-card state for at most
+ * {@link #MAX_CARDS} recently active cards, so the monitor's memory stays
+ * bounded however many cards it sees.
+ */
+public final class FraudRules {
+
+    public static final int MAX_CARDS = 100_000;
+
+    private FraudRules() {
+    }
+
+    /**
+     * The rules a new bank starts with. Rapid withdrawals block a card on
+     * their own; an outlier amount or a new payee only together.
+     */
+    public static List<FraudRule> defaults() {
+        return Arrays.asList(
+                amountOutlier(5, 4.0, Money.ofLira(1_000), 60),
+                rapidWithdrawals(5, TimeUnit.MINUTES.toMillis(10), 100),
+                newPayee(Money.ofLira(500), 40));
+    }
+
+    /**
+     * Scores a withdrawal or outgoing transfer of at least {@code minAmount}
+     * that is more than {@code sigmas} standard deviations above the card's
+     * usual outgoing amount, once the card has {@code minHistory} of them.
+     */
+    public static FraudRule amountOutlier(int minHistory, double sigmas, long minAmount, int score) {
+        return new FraudRule() {
+            private final Map<String, double[]> stats = cardStates(); // count, mean, sum of squared deviations
+
+            @Override
+            public String name() {
+                return "amount-outlier";
+            }
+
+            @Override
+            public int score(TransactionEvent e) {
+                if (e.getType() == TransactionEvent.Type.DEPOSIT) return 0;
+                double[] s = stats.computeIfAbsent(e.getCardNumber(), k -> new double[3]);
+                double amount = e.getAmount();
+                boolean outlier = s[0] >= minHistory && e.getAmount() >= minAmount
+                        && amount > s[1] + sigmas * Math.sqrt(s[2] / (s[0] - 1));
+                s[0]++; // Welford's running mean and variance
+                double delta = amount - s[1];
+                s[1] += delta / s[0];
+                s[2] += delta * (amount - s[1]);
+                return outlier ? score : 0;
+            }
+        };
+    }
+
+    /**
+     * Scores the {@code count}th withdrawal of a card within
+     * {@code windowMillis}, and every one after it while they keep coming
+     * that fast.
+     */
+    public static FraudRule rapidWithdrawals(int count, long windowMillis, int score) {
+        if (count < 2) {
+            throw new IllegalArgumentException("count must be at least 2");
+        }
+        return new FraudRule() {
+            private final Map<String, long[]> times = cardStates(); // ring of the last count - 1 times, plus next index
+
+            @Override
+            public String name() {
+                return "rapid-withdrawals";
+            }
+
+            @Override
+            public int score(TransactionEvent e) {
+                if (e.getType() != TransactionEvent.Type.WITHDRAWAL) return 0;
+                long[] ring = times.computeIfAbsent(e.getCardNumber(), k -> {
+                    long[] r = new long[count];
+                    Arrays.fill(r, 0, count - 1, Long.MIN_VALUE);
+                    return r;
+                });
+                int next = (int) ring[count - 1];
+                long oldest = ring[next]; // the (count - 1)th withdrawal before this one
+                ring[next] = e.getTimeMillis();
+                ring[count - 1] = (next + 1) % (count - 1);
+                return oldest != Long.MIN_VALUE && e.getTimeMillis() - oldest <= windowMillis ? score : 0;
+            }
+        };
+    }
+
+    /**
+     * Scores a transfer of at least {@code minAmount} to a card the paying
+     * card has not sent money to before (among its last 16 payees).
+     */
+    public static FraudRule newPayee(long minAmount, int score) {
+        return new FraudRule() {
+            private final Map<String, String[]> payees = cardStates(); // ring of recent payees
+
+            @Override
+            public String name() {
+                return "new-payee";
+            }
+
+            @Override
+            public int score(TransactionEvent e) {
+                if (e.getType() != TransactionEvent.Type.TRANSFER) return 0;
+                String[] known = payees.computeIfAbsent(e.getCardNumber(), k -> new String[16]);
+                String target = e.getTargetCardNumber();
+                int free = -1;
+                for (int i = 0; i < known.length; i++) {
+                    if (target.equals(known[i])) return 0;
+                    if (known[i] == null && free < 0) free = i;
+                }
+                if (free < 0) { // full: forget the oldest
+                    System.arraycopy(known, 1, known, 0, known.length - 1);
+                    free = known.length - 1;
+                }
+                known[free] = target;
+                return e.getAmount() >= minAmount ? score : 0;
+            }
+        };
+    }
+
+    /** Per-card state for the {@link #MAX_CARDS} most recently active cards. */
+    private static <S> Map<String, S> cardStates() {
+        return new LinkedHashMap<String, S>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, S> eldest) {
+                return size() > MAX_CARDS;
+            }
+        };
+    }
+}
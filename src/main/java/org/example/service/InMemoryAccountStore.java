@@ -0,0 +1,50 @@
+package org.example.service;
+
+import org.example.model.Customer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap-backed store: one {@link Customer} object graph per card.
+ * Suitable for demo data and tests; nothing survives a restart on its own.
+ */
+public class InMemoryAccountStore implements AccountStore {
+
+    private final Map<String, Customer> customersByCard = new ConcurrentHashMap<>();
+
+    @Override
+    public Customer find(String cardNumber) {
+        return customersByCard.get(cardNumber);
+    }
+
+    @Override
+    public boolean contains(String cardNumber) {
+        return customersByCard.containsKey(cardNumber);
+    }
+
+    @Override
+    public void add(Customer customer) {
+        if (customersByCard.putIfAbsent(customer.getCardNumber(), customer) != null) {
+            throw new IllegalArgumentException("Card already registered: " + customer.getCardNumber());
+        }
+    }
+
+    @Override
+    public void updatePin(Customer customer) {
+        // the customer object is the stored record
+    }
+
+    @Override
+    public long size() {
+        return customersByCard.size();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
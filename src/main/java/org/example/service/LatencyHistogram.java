@@ -0,0 +1,90 @@
+package org.example.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear latency histogram in nanoseconds, in the style of
+ * HdrHistogram: values below 128 are exact, larger values fall into one of 64
+ * sub-buckets per power of two (under 1.6% relative error). Recording is a
+ * single atomic increment; the maximum is only written when it grows. Count
+ * and mean are computed from the buckets when read.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (63 - SUB_BITS) * SUB_COUNT + 2 * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(v));
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            // lost a race with another new maximum; retry
+        }
+    }
+
+    public long count() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /** Mean, accurate to the bucket width. */
+    public double mean() {
+        long n = 0;
+        double total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            n += c;
+            total += (double) c * highestEquivalent(i);
+        }
+        return n == 0 ? 0 : total / n;
+    }
+
+    /** Value at the given percentile (0-100), accurate to the bucket width. */
+    public long percentile(double percentile) {
+        long n = count();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    static int indexOf(long v) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(v) - SUB_BITS);
+        return shift * SUB_COUNT + (int) (v >>> shift);
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long mantissa = index - (long) shift * SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
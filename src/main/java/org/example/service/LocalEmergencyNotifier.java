@@ -0,0 +1,49 @@
+package org.example.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Stand-in for the link to the bank's operations desk: appends each report
+ * as a line to an outbox file, or only keeps it in memory, and remembers
+ * the last {@value #RECENT} delivered.
+ */
+public class LocalEmergencyNotifier implements EmergencyNotifier {
+
+    public static final int RECENT = 100;
+
+    private final Path outbox; // null: in-memory only
+    private final Deque<EmergencyReport> recent = new ArrayDeque<>();
+
+    public LocalEmergencyNotifier() {
+        this(null);
+    }
+
+    public LocalEmergencyNotifier(Path outbox) {
+        this.outbox = outbox;
+    }
+
+    @Override
+    public synchronized void send(EmergencyReport report) throws IOException {
+        if (outbox != null) {
+            Files.write(outbox, (report + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        if (recent.size() == RECENT) {
+            recent.removeFirst();
+        }
+        recent.addLast(report);
+    }
+
+    /** The reports delivered most recently, oldest first. */
+    public synchronized List<EmergencyReport> recent() {
+        return new ArrayList<>(recent);
+    }
+}
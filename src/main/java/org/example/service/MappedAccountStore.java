@@ -0,0 +1,369 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Off-heap account store backed by a memory-mapped file of fixed 128-byte
+ * records, laid out as an open-addressing hash table keyed by card number.
+ *
+ * Opening a file only maps it and reads the header, so start-up time does not
+ * depend on the number of accounts. A customer is materialized on its first
+ * lookup and handed out again for as long as anyone holds it, so every
+ * session for a card shares one {@link Customer} and a lookup of a card in
+ * use allocates nothing; customers nobody holds are left to the garbage
+ * collector. Their {@link Account} reads and writes the balance directly in
+ * the mapped record. The 48-byte PIN credential is too wide for one atomic store, so it is read and
+ * written under the card's stripe lock and a lookup never sees half of a new
+ * salt with half of the old key.
+ *
+ * <pre>
+ * record: 0 int status | 4 card (len + 19) | 24 account no (len + 23)
+ *         48 name (len + 23, UTF-8) | 72 long balance | 80 PIN credential (32 key + 16 salt)
+ * </pre>
+ */
+public class MappedAccountStore implements AccountStore {
+
+    private static final long MAGIC = 0x41544D4C45444752L; // "ATMLEDGR"
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 128;
+    private static final int SEGMENT_SHIFT = 30; // 1 GiB per mapping, a multiple of RECORD_SIZE
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    // header fields (header occupies the first record slot)
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 8;
+    private static final int H_RECORD_SIZE = 12;
+    private static final int H_CAPACITY = 16;
+    private static final int H_COUNT = 24;
+
+    // record fields
+    private static final int R_STATUS = 0;
+    private static final int R_CARD = 4;
+    private static final int R_ACCOUNT = 24;
+    private static final int R_NAME = 48;
+    private static final int R_BALANCE = 72;
+    private static final int R_PIN_HASH = 80;
+    private static final int CARD_MAX = 19;
+    private static final int ACCOUNT_MAX = 23;
+    private static final int NAME_MAX = 23;
+    private static final int USED = 1;
+
+    private static final VarHandle INT =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long capacity;
+    private final long mask;
+    private final AccountLocks pinLocks = new AccountLocks(); // by card number
+    private final ConcurrentHashMap<String, CustomerRef> customers = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Customer> collected = new ReferenceQueue<>();
+
+    private MappedAccountStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT_SIZE, size - start));
+        }
+        MappedByteBuffer header = segments[0];
+        if ((long) LONG.get(header, H_MAGIC) != MAGIC
+                || (int) INT.get(header, H_VERSION) != VERSION
+                || (int) INT.get(header, H_RECORD_SIZE) != RECORD_SIZE) {
+            channel.close();
+            throw new IOException("Not an account ledger file");
+        }
+        capacity = (long) LONG.get(header, H_CAPACITY);
+        mask = capacity - 1;
+    }
+
+    /** Creates an empty ledger sized for {@code expectedAccounts} at a load factor of about 0.6. */
+    public static MappedAccountStore create(Path file, long expectedAccounts) throws IOException {
+        long capacity = Math.max(16, Long.highestOneBit(Math.max(1, expectedAccounts * 5 / 3)) << 1);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(H_MAGIC, MAGIC)
+                    .putInt(H_VERSION, VERSION)
+                    .putInt(H_RECORD_SIZE, RECORD_SIZE)
+                    .putLong(H_CAPACITY, capacity)
+                    .putLong(H_COUNT, 0);
+            ch.write(header, 0);
+            // sparse: untouched slots cost no disk space and read as empty
+            ch.write(ByteBuffer.allocate(1), (capacity + 1) * RECORD_SIZE - 1);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        return new MappedAccountStore(ch);
+    }
+
+    /** Opens an existing ledger. Only the header is read. */
+    public static MappedAccountStore open(Path file) throws IOException {
+        return new MappedAccountStore(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    // --- AccountStore ---
+
+    @Override
+    public Customer find(String cardNumber) {
+        CustomerRef ref = customers.get(cardNumber);
+        Customer c = ref == null ? null : ref.get();
+        if (c != null) {
+            return c;
+        }
+        expunge();
+        long slot = findSlot(cardNumber);
+        if (slot < 0) {
+            return null;
+        }
+        Customer[] found = new Customer[1];
+        customers.compute(cardNumber, (card, current) -> {
+            found[0] = current == null ? null : current.get();
+            if (found[0] != null) {
+                return current; // another lookup got here first
+            }
+            found[0] = materialize(slot, card);
+            return new CustomerRef(card, found[0], collected);
+        });
+        return found[0];
+    }
+
+    @Override
+    public boolean contains(String cardNumber) {
+        return findSlot(cardNumber) >= 0;
+    }
+
+    @Override
+    public synchronized void add(Customer customer) {
+        String card = customer.getCardNumber();
+        String accountNumber = customer.getAccount().getAccountNumber();
+        if (card.length() > CARD_MAX || accountNumber.length() > ACCOUNT_MAX) {
+            throw new IllegalArgumentException("Card or account number too long for ledger record");
+        }
+        long count = size();
+        if (count >= capacity - capacity / 8) {
+            throw new IllegalStateException("Account ledger is full (" + count + " accounts)");
+        }
+        long slot = spread(card) & mask;
+        while (true) {
+            MappedByteBuffer seg = segment(slot);
+            int pos = position(slot);
+            if ((int) INT.getVolatile(seg, pos + R_STATUS) != USED) {
+                putAscii(seg, pos + R_CARD, card);
+                putAscii(seg, pos + R_ACCOUNT, accountNumber);
+                putName(seg, pos + R_NAME, customer.getName());
+                LONG.setVolatile(seg, pos + R_BALANCE, customer.getAccount().getBalance());
+                putPinHash(seg, pos, customer.getPinHash());
+                INT.setVolatile(seg, pos + R_STATUS, USED); // publish the record last
+                LONG.setVolatile(segments[0], H_COUNT, count + 1);
+                return;
+            }
+            if (cardEquals(seg, pos, card)) {
+                throw new IllegalArgumentException("Card already registered: " + card);
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public void updatePin(Customer customer) {
+        long slot = findSlot(customer.getCardNumber());
+        if (slot >= 0) {
+            String card = customer.getCardNumber();
+            pinLocks.lock(card);
+            try {
+                putPinHash(segment(slot), position(slot), customer.getPinHash());
+            } finally {
+                pinLocks.unlock(card);
+            }
+            // after the write, so a customer being materialized now reads the new PIN or gets it here
+            customers.computeIfPresent(card, (k, ref) -> {
+                Customer shared = ref.get();
+                if (shared != null && shared != customer) {
+                    shared.setPinHash(customer.getPinHash());
+                }
+                return ref;
+            });
+        }
+    }
+
+    @Override
+    public long size() {
+        return (long) LONG.getVolatile(segments[0], H_COUNT);
+    }
+
+    @Override
+    public void flush() {
+        for (MappedByteBuffer seg : segments) {
+            seg.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    // --- Record access ---
+
+    private long findSlot(String cardNumber) {
+        long slot = spread(cardNumber) & mask;
+        while (true) {
+            MappedByteBuffer seg = segment(slot);
+            int pos = position(slot);
+            if ((int) INT.getVolatile(seg, pos + R_STATUS) != USED) {
+                return -1;
+            }
+            if (cardEquals(seg, pos, cardNumber)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** Forgets customers the garbage collector has taken. */
+    private void expunge() {
+        Reference<? extends Customer> r;
+        while ((r = collected.poll()) != null) {
+            CustomerRef ref = (CustomerRef) r;
+            customers.remove(ref.cardNumber, ref);
+        }
+    }
+
+    private Customer materialize(long slot, String cardNumber) {
+        MappedByteBuffer seg = segment(slot);
+        int pos = position(slot);
+        byte[] pinHash = new byte[CredentialHasher.CREDENTIAL_LENGTH];
+        pinLocks.lock(cardNumber);
+        try {
+            for (int i = 0; i < pinHash.length; i++) {
+                pinHash[i] = seg.get(pos + R_PIN_HASH + i);
+            }
+        } finally {
+            pinLocks.unlock(cardNumber);
+        }
+        Account account = new MappedAccount(getAscii(seg, pos + R_ACCOUNT), seg, pos + R_BALANCE);
+        return new Customer(getAscii(seg, pos + R_CARD), pinHash, getName(seg, pos + R_NAME), account);
+    }
+
+    private MappedByteBuffer segment(long slot) {
+        return segments[(int) (((slot + 1) * RECORD_SIZE) >>> SEGMENT_SHIFT)];
+    }
+
+    private static int position(long slot) {
+        return (int) (((slot + 1) * RECORD_SIZE) & (SEGMENT_SIZE - 1));
+    }
+
+    private static long spread(String cardNumber) {
+        long h = cardNumber.hashCode() * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static boolean cardEquals(MappedByteBuffer seg, int pos, String card) {
+        int n = seg.get(pos + R_CARD) & 0xFF;
+        if (n != card.length()) return false;
+        for (int i = 0; i < n; i++) {
+            if (seg.get(pos + R_CARD + 1 + i) != (byte) card.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static void putAscii(MappedByteBuffer seg, int at, String s) {
+        seg.put(at, (byte) s.length());
+        for (int i = 0; i < s.length(); i++) {
+            seg.put(at + 1 + i, (byte) s.charAt(i));
+        }
+    }
+
+    private static String getAscii(MappedByteBuffer seg, int at) {
+        int n = seg.get(at) & 0xFF;
+        char[] chars = new char[n];
+        for (int i = 0; i < n; i++) {
+            chars[i] = (char) seg.get(at + 1 + i);
+        }
+        return new String(chars);
+    }
+
+    /** Names are stored as UTF-8, cut at a character boundary if longer than the field. */
+    private static void putName(MappedByteBuffer seg, int at, String name) {
+        String s = name;
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > NAME_MAX) {
+            s = s.substring(0, s.length() - 1);
+            bytes = s.getBytes(StandardCharsets.UTF_8);
+        }
+        seg.put(at, (byte) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            seg.put(at + 1 + i, bytes[i]);
+        }
+    }
+
+    private static String getName(MappedByteBuffer seg, int at) {
+        byte[] bytes = new byte[seg.get(at) & 0xFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = seg.get(at + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putPinHash(MappedByteBuffer seg, int pos, byte[] hash) {
+        for (int i = 0; i < CredentialHasher.CREDENTIAL_LENGTH; i++) {
+            seg.put(pos + R_PIN_HASH + i, hash[i]);
+        }
+    }
+
+    /** A handed-out customer, cleared once nobody holds it. */
+    private static final class CustomerRef extends WeakReference<Customer> {
+        final String cardNumber;
+
+        CustomerRef(String cardNumber, Customer customer, ReferenceQueue<Customer> queue) {
+            super(customer, queue);
+            this.cardNumber = cardNumber;
+        }
+    }
+
+    /** Account whose balance lives in the mapped record rather than on the heap. */
+    private static final class MappedAccount extends Account {
+        private final MappedByteBuffer segment;
+        private final int balanceOffset;
+
+        MappedAccount(String accountNumber, MappedByteBuffer segment, int balanceOffset) {
+            super(accountNumber, 0);
+            this.segment = segment;
+            this.balanceOffset = balanceOffset;
+        }
+
+        @Override
+        public long getBalance() {
+            return (long) LONG.getVolatile(segment, balanceOffset);
+        }
+
+        @Override
+        public void setBalance(long balance) {
+            LONG.setVolatile(segment, balanceOffset, balance);
+        }
+    }
+}
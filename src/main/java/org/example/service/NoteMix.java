@@ -0,0 +1,230 @@
+package org.example.service;
+
+import org.example.model.Money;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The banknotes an ATM pays out, and how to make up an amount from them.
+ *
+ * A terminal has {@link #CASSETTES} cassettes, of 200, 100, 50 and 20 TL
+ * notes. Their counts are packed into one long, 16 bits each with the 200 TL
+ * cassette lowest, so a {@link CashStock} takes notes out with a single CAS;
+ * a plan of notes to pay out is packed the same way.
+ *
+ * {@link #plan} pays an amount with the fewest notes, at most
+ * {@link #MAX_NOTES}, which is what the dispenser presents at once. Among
+ * plans with as few notes it would take more from the fuller cassettes, so
+ * they run down evenly; with 200, 100, 50 and 20 TL notes no two plans tie,
+ * so this only decides anything if the denominations change. Each plan is
+ * read from a table of the fewest notes for every amount, built once per
+ * cassette state and fill order and then cached. Counts above
+ * {@code MAX_NOTES} cannot limit a plan and are capped in the key, so while
+ * every cassette holds that many notes all withdrawals share a handful of
+ * tables and a plan costs well under a microsecond. Low cassettes make many
+ * short-lived states; once {@code MAX_TABLES} are cached, each new one
+ * evicts a single table that has not been used lately, so the shared tables
+ * stay warm.
+ */
+final class NoteMix {
+
+    static final int CASSETTES = 4;
+    static final int MAX_NOTES = 40;
+    static final int MAX_COUNT = 0xFFFF;
+    /** Notes per cassette after a technician refill. */
+    static final int REFILL_COUNT = 2_500;
+    static final long NONE = -1;
+
+    private static final long[] DENOMINATIONS = {
+            Money.ofLira(200), Money.ofLira(100), Money.ofLira(50), Money.ofLira(20)};
+    private static final long UNIT = Money.ofLira(10); // gcd of the denominations
+    private static final int MAX_UNITS = MAX_NOTES * (int) (DENOMINATIONS[0] / UNIT);
+    static final int MAX_TABLES = 4096;
+    private static final ConcurrentHashMap<Integer, Table> TABLES = new ConcurrentHashMap<>();
+
+    private NoteMix() {
+    }
+
+    /** Kurus per note in {@code cassette}. */
+    static long denomination(int cassette) {
+        return DENOMINATIONS[cassette];
+    }
+
+    static int count(long notes, int cassette) {
+        return (int) (notes >>> (16 * cassette)) & MAX_COUNT;
+    }
+
+    /** Counts packed into one long; each must be between 0 and {@link #MAX_COUNT}. */
+    static long pack(int[] counts) {
+        long notes = 0;
+        for (int i = CASSETTES - 1; i >= 0; i--) {
+            if (counts[i] < 0 || counts[i] > MAX_COUNT) {
+                throw new IllegalArgumentException("Note count out of range: " + counts[i]);
+            }
+            notes = notes << 16 | counts[i];
+        }
+        return notes;
+    }
+
+    static int[] unpack(long notes) {
+        int[] counts = new int[CASSETTES];
+        for (int i = 0; i < CASSETTES; i++) {
+            counts[i] = count(notes, i);
+        }
+        return counts;
+    }
+
+    /** The notes' total value in kurus. */
+    static long value(long notes) {
+        long value = 0;
+        for (int i = 0; i < CASSETTES; i++) {
+            value += count(notes, i) * DENOMINATIONS[i];
+        }
+        return value;
+    }
+
+    /** Adds counts, stopping each cassette at {@link #MAX_COUNT}. */
+    static long add(long notes, long more) {
+        long sum = 0;
+        for (int i = CASSETTES - 1; i >= 0; i--) {
+            sum = sum << 16 | Math.min(MAX_COUNT, count(notes, i) + count(more, i));
+        }
+        return sum;
+    }
+
+    /** Subtracts counts, stopping each cassette at 0. */
+    static long subtract(long notes, long less) {
+        long diff = 0;
+        for (int i = CASSETTES - 1; i >= 0; i--) {
+            diff = diff << 16 | Math.max(0, count(notes, i) - count(less, i));
+        }
+        return diff;
+    }
+
+    /**
+     * Notes to load {@code amount} into empty cassettes: about the same value
+     * in each, with what does not divide evenly in the smallest notes that
+     * fit. Whatever is left over is not dispensable.
+     */
+    static long fill(long amount) {
+        int[] counts = new int[CASSETTES];
+        long share = amount / CASSETTES;
+        long left = amount;
+        for (int i = 0; i < CASSETTES; i++) {
+            counts[i] = (int) Math.min(MAX_COUNT, share / DENOMINATIONS[i]);
+            left -= counts[i] * DENOMINATIONS[i];
+        }
+        for (int i = CASSETTES - 1; i >= 0 && left > 0; i--) {
+            int more = (int) Math.min(MAX_COUNT - counts[i], left / DENOMINATIONS[i]);
+            counts[i] += more;
+            left -= more * DENOMINATIONS[i];
+        }
+        return pack(counts);
+    }
+
+    /** The notes to pay {@code amount} out of {@code notes}, or {@link #NONE} if it cannot be done. */
+    static long plan(long notes, long amount) {
+        if (amount <= 0 || amount % UNIT != 0 || amount / UNIT > MAX_UNITS) {
+            return NONE;
+        }
+        // fullest cassette first: the table breaks ties toward earlier cassettes
+        int order = 0; // cassette indexes, 2 bits each, in fill order
+        int taken = 0;
+        for (int s = 0; s < CASSETTES; s++) {
+            int best = -1;
+            for (int i = 0; i < CASSETTES; i++) {
+                if ((taken & 1 << i) == 0 && (best < 0 || count(notes, i) > count(notes, best))) {
+                    best = i;
+                }
+            }
+            taken |= 1 << best;
+            order |= best << (2 * s);
+        }
+        int key = order;
+        for (int i = 0; i < CASSETTES; i++) {
+            key = key << 6 | Math.min(MAX_NOTES, count(notes, i));
+        }
+        Table table = TABLES.get(key);
+        if (table == null) {
+            if (TABLES.size() >= MAX_TABLES) {
+                evictOne();
+            }
+            table = TABLES.computeIfAbsent(key, k -> new Table(notes, k >>> (6 * CASSETTES)));
+        }
+        return table.plan((int) (amount / UNIT));
+    }
+
+    /** Tables cached right now; at most about {@link #MAX_TABLES}. */
+    static int cachedTables() {
+        return TABLES.size();
+    }
+
+    /**
+     * Drops one table not used since the sweep last passed it (second
+     * chance); tables it passes that were used are marked unused.
+     */
+    private static void evictOne() {
+        for (int pass = 0; pass < 2; pass++) {
+            for (Map.Entry<Integer, Table> e : TABLES.entrySet()) {
+                Table t = e.getValue();
+                if (!t.used) {
+                    TABLES.remove(e.getKey(), t);
+                    return;
+                }
+                t.used = false;
+            }
+        }
+    }
+
+    /** Fewest notes for every amount, for one cassette state and fill order. */
+    private static final class Table {
+        private static final byte IMPOSSIBLE = Byte.MAX_VALUE;
+
+        private final int[] cassette = new int[CASSETTES]; // by stage
+        private final int[] units = new int[CASSETTES];
+        private final int[] caps = new int[CASSETTES];
+        private final byte[][] fewest = new byte[CASSETTES + 1][MAX_UNITS + 1]; // stages s.. only
+        private volatile boolean used; // since the eviction sweep last passed
+
+        Table(long notes, int order) {
+            for (int s = 0; s < CASSETTES; s++) {
+                cassette[s] = order >>> (2 * s) & 3;
+                units[s] = (int) (DENOMINATIONS[cassette[s]] / UNIT);
+                caps[s] = Math.min(MAX_NOTES, count(notes, cassette[s]));
+            }
+            Arrays.fill(fewest[CASSETTES], IMPOSSIBLE);
+            fewest[CASSETTES][0] = 0;
+            for (int s = CASSETTES - 1; s >= 0; s--) {
+                for (int a = 0; a <= MAX_UNITS; a++) {
+                    int best = IMPOSSIBLE;
+                    for (int k = 0; k <= caps[s] && k * units[s] <= a; k++) {
+                        best = Math.min(best, k + fewest[s + 1][a - k * units[s]]);
+                    }
+                    fewest[s][a] = (byte) Math.min(IMPOSSIBLE, best);
+                }
+            }
+        }
+
+        long plan(int amount) {
+            if (!used) {
+                used = true; // read first: the shared tables stay clean in every core's cache
+            }
+            if (fewest[0][amount] > MAX_NOTES) {
+                return NONE;
+            }
+            long plan = 0;
+            for (int s = 0; s < CASSETTES; s++) {
+                int need = fewest[s][amount];
+                int k = Math.min(caps[s], amount / units[s]);
+                while (k + fewest[s + 1][amount - k * units[s]] != need) {
+                    k--; // the most notes from this cassette that still gives the fewest overall
+                }
+                plan |= (long) k << (16 * cassette[s]);
+                amount -= k * units[s];
+            }
+            return plan;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts unsuccessful PIN attempts per card in a fixed amount of memory.
+ *
+ * Cards are keyed by a 64-bit hash of the card number in two open-addressing
+ * generations of primitive arrays, like {@link RequestDeduplicator}. A card
+ * counted in the previous generation carries its count over when it is
+ * counted again. A generation is retired after {@link #DEFAULT_WINDOW_MILLIS}
+ * or when three-quarters full, so a count is forgotten after one to two
+ * windows without attempts, or sooner if a flood of other cards fills the
+ * table. An attacker cannot grow the heap; at worst they make the table
+ * forget counts faster.
+ *
+ * All operations are lock-free; the bank checks one card's PINs at a time,
+ * so counts for different cards are the only concurrent updates.
+ */
+class PinAttemptTracker {
+
+    static final long DEFAULT_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(1);
+    static final int DEFAULT_CAPACITY = 1 << 16; // per generation: ~768 KB
+
+    private final int capacity;
+    private final long windowMillis;
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    PinAttemptTracker() {
+        this(DEFAULT_CAPACITY, DEFAULT_WINDOW_MILLIS);
+    }
+
+    PinAttemptTracker(int capacityPerGeneration, long windowMillis) {
+        this.capacity = Integer.highestOneBit(Math.max(16, capacityPerGeneration - 1)) << 1;
+        this.windowMillis = windowMillis;
+        this.current = new Generation(capacity, System.currentTimeMillis());
+    }
+
+    /** Counts one more attempt against {@code cardNumber} and returns the new count. */
+    int increment(String cardNumber) {
+        return add(key(cardNumber), 1);
+    }
+
+    /** Forgets the card's attempts, e.g. after a correct PIN. */
+    void reset(String cardNumber) {
+        long key = key(cardNumber);
+        current.clear(key);
+        Generation prev = previous;
+        if (prev != null) {
+            prev.clear(key);
+        }
+    }
+
+    int attempts(String cardNumber) {
+        long key = key(cardNumber);
+        int n = current.get(key);
+        if (n < 0) {
+            Generation prev = previous;
+            n = prev == null ? 0 : Math.max(0, prev.get(key));
+        }
+        return n;
+    }
+
+    private int add(long key, int delta) {
+        Generation cur = current;
+        if (cur.size.get() >= cur.limit || System.currentTimeMillis() - cur.startedAt >= windowMillis) {
+            cur = rotate(cur);
+        }
+        while (true) {
+            Generation prev = previous;
+            int carried = prev == null ? 0 : Math.max(0, prev.get(key));
+            int n = cur.add(key, delta, carried);
+            if (n != Integer.MIN_VALUE) return n;
+            cur = rotate(cur); // filled up by concurrent inserts
+        }
+    }
+
+    private synchronized Generation rotate(Generation seen) {
+        if (current == seen) {
+            previous = seen;
+            current = new Generation(capacity, System.currentTimeMillis());
+        }
+        return current;
+    }
+
+    /** FNV-1a over the card number's characters; never 0, which marks an empty slot. */
+    private static long key(String cardNumber) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < cardNumber.length(); i++) {
+            h ^= cardNumber.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    private static final class Generation {
+        final AtomicLongArray keys; // 0: empty slot
+        final AtomicIntegerArray counts;
+        final int mask;
+        final int limit;
+        final long startedAt;
+        final AtomicInteger size = new AtomicInteger();
+
+        Generation(int capacity, long startedAt) {
+            this.keys = new AtomicLongArray(capacity);
+            this.counts = new AtomicIntegerArray(capacity);
+            this.mask = capacity - 1;
+            this.limit = capacity / 4 * 3;
+            this.startedAt = startedAt;
+        }
+
+        int get(long key) {
+            for (int i = slot(key), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long k = keys.get(i);
+                if (k == key) return counts.get(i);
+                if (k == 0) return -1;
+            }
+            return -1;
+        }
+
+        /**
+         * Adds {@code delta} to the key's count, starting a new key at
+         * {@code initial}. Returns the new count, or {@link Integer#MIN_VALUE}
+         * if the generation is too full to take the key.
+         */
+        int add(long key, int delta, int initial) {
+            for (int i = slot(key), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long k = keys.get(i);
+                if (k == 0) {
+                    if (size.get() >= limit) return Integer.MIN_VALUE;
+                    if (keys.compareAndSet(i, 0, key)) {
+                        size.incrementAndGet();
+                        return counts.addAndGet(i, initial + delta);
+                    }
+                    k = keys.get(i);
+                }
+                if (k == key) return counts.addAndGet(i, delta);
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        void clear(long key) {
+            for (int i = slot(key), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long k = keys.get(i);
+                if (k == key) {
+                    counts.set(i, 0);
+                    return;
+                }
+                if (k == 0) return;
+            }
+        }
+
+        private int slot(long key) {
+            key ^= key >>> 33; // murmur3 finalizer
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key & mask;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.service;
+
+import org.example.service.BankMetrics.Outcome;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the outcome of recent monetary requests by request id, so a
+ * request retried after a timeout is answered from memory instead of being
+ * applied twice.
+ *
+ * Ids live in two open-addressing generations of primitive arrays (a long key
+ * and a byte outcome per slot, about 12 bytes per id at the maximum load).
+ * New ids go into the current generation; when it is {@link #DEFAULT_TTL_MILLIS}
+ * old or three-quarters full it becomes the previous one and the old previous
+ * generation is dropped whole. An id is therefore remembered for at least the
+ * TTL unless more than {@code capacity * 3 / 4} ids arrive within it.
+ *
+ * The bank looks an id up and records its outcome under the account's stripe
+ * lock, which already serializes every attempt of one request, so the table
+ * only has to be safe for inserts of different ids.
+ */
+public class RequestDeduplicator {
+
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    public static final int DEFAULT_CAPACITY = 1 << 20; // per generation: ~9 MB
+
+    /** Request id meaning "no id": the operation is not deduplicated. */
+    public static final long NONE = 0;
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final int capacity;
+    private final long ttlMillis;
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    public RequestDeduplicator() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+    }
+
+    public RequestDeduplicator(int capacityPerGeneration, long ttlMillis) {
+        this.capacity = Integer.highestOneBit(Math.max(16, capacityPerGeneration - 1)) << 1;
+        this.ttlMillis = ttlMillis;
+        this.current = new Generation(capacity, System.currentTimeMillis());
+    }
+
+    /** A fresh random request id for one customer action; never {@link #NONE}. */
+    public static long newRequestId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == NONE);
+        return id;
+    }
+
+    /** The recorded outcome of {@code requestId}, or null if it has not been seen (or has expired). */
+    Outcome outcomeOf(long requestId) {
+        Generation cur = current;
+        int o = cur.get(requestId);
+        if (o < 0) {
+            Generation prev = previous;
+            o = prev == null ? -1 : prev.get(requestId);
+        }
+        return o < 0 ? null : OUTCOMES[o];
+    }
+
+    void remember(long requestId, Outcome outcome) {
+        Generation cur = current;
+        if (cur.size.get() >= cur.limit || System.currentTimeMillis() - cur.startedAt >= ttlMillis) {
+            cur = rotate(cur);
+        }
+        while (!cur.put(requestId, (byte) outcome.ordinal())) {
+            cur = rotate(cur); // filled up by concurrent inserts
+        }
+    }
+
+    /** Ids currently remembered, including some that may be past the TTL. */
+    public int size() {
+        Generation prev = previous;
+        return current.size.get() + (prev == null ? 0 : prev.size.get());
+    }
+
+    private synchronized Generation rotate(Generation seen) {
+        if (current == seen) {
+            previous = seen;
+            current = new Generation(capacity, System.currentTimeMillis());
+        }
+        return current;
+    }
+
+    private static final class Generation {
+        final AtomicLongArray keys; // 0: empty slot
+        final byte[] outcomes;      // written by the thread that claimed the key
+        final int mask;
+        final int limit;
+        final long startedAt;
+        final AtomicInteger size = new AtomicInteger();
+
+        Generation(int capacity, long startedAt) {
+            this.keys = new AtomicLongArray(capacity);
+            this.outcomes = new byte[capacity];
+            this.mask = capacity - 1;
+            this.limit = capacity / 4 * 3;
+            this.startedAt = startedAt;
+        }
+
+        int get(long key) {
+            for (int i = slot(key), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long k = keys.get(i);
+                if (k == key) return outcomes[i];
+                if (k == NONE) return -1;
+            }
+            return -1;
+        }
+
+        /** Returns false if this generation is too full to take another key. */
+        boolean put(long key, byte outcome) {
+            if (size.get() >= limit) return false;
+            for (int i = slot(key), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long k = keys.get(i);
+                if (k == NONE && keys.compareAndSet(i, NONE, key)) {
+                    outcomes[i] = outcome;
+                    size.incrementAndGet();
+                    return true;
+                }
+                if (k == key || keys.get(i) == key) {
+                    outcomes[i] = outcome;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int slot(long key) {
+            key ^= key >>> 33; // murmur3 finalizer
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key & mask;
+        }
+    }
+}
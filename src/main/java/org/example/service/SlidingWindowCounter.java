@@ -0,0 +1,64 @@
+package org.example.service;
+
+/**
+ * Sum and count of the values added during the last {@code buckets} time
+ * buckets, as a ring of primitive slots with running totals.
+ *
+ * Adding and reading are O(1) and allocation-free: moving forward in time
+ * clears at most one ring's worth of expired slots, and the totals are
+ * adjusted as slots are cleared instead of being summed on every read. The
+ * window slides a bucket at a time, so it covers between
+ * {@code buckets - 1} and {@code buckets} bucket widths of the past.
+ *
+ * Not thread-safe; the bank only touches a card's counters under the
+ * account's stripe lock.
+ */
+final class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final long[] sums;
+    private final int[] counts;
+    private long head; // absolute bucket number (time / bucketMillis) of the newest slot
+    private long sum;
+    private int count;
+
+    SlidingWindowCounter(int buckets, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.sums = new long[buckets];
+        this.counts = new int[buckets];
+    }
+
+    void add(long nowMillis, long value) {
+        advance(nowMillis);
+        int slot = (int) (head % sums.length);
+        sums[slot] += value;
+        counts[slot]++;
+        sum += value;
+        count++;
+    }
+
+    long sum(long nowMillis) {
+        advance(nowMillis);
+        return sum;
+    }
+
+    int count(long nowMillis) {
+        advance(nowMillis);
+        return count;
+    }
+
+    /** Clears the slots that fell out of the window; a clock that went back counts as the newest slot. */
+    private void advance(long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        if (bucket <= head) return;
+        long steps = Math.min(bucket - head, sums.length);
+        for (long i = 1; i <= steps; i++) {
+            int slot = (int) ((head + i) % sums.length);
+            sum -= sums[slot];
+            count -= counts[slot];
+            sums[slot] = 0;
+            counts[slot] = 0;
+        }
+        head = bucket;
+    }
+}
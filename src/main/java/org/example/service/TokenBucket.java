@@ -0,0 +1,44 @@
+package org.example.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket: up to {@code burst} permits at once, refilled at
+ * {@code perSecond}.
+ *
+ * The bucket is kept as a single "theoretical arrival time" (the generic cell
+ * rate algorithm): a permit is granted if that time is no more than
+ * {@code burst} refill intervals ahead of now, and granting it pushes the time
+ * one interval further. One CAS per permit, no allocation and no timer.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos; // 0: unlimited
+    private final long burstNanos;
+    private final AtomicLong arrival;
+
+    /** A rate of {@link Double#POSITIVE_INFINITY} grants every request. */
+    TokenBucket(double perSecond, int burst) {
+        if (!(perSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = Double.isInfinite(perSecond) ? 0 : (long) (1e9 / perSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    boolean tryAcquire() {
+        if (intervalNanos == 0) return true;
+        long now = System.nanoTime();
+        while (true) {
+            long tat = arrival.get();
+            long base = tat - now < 0 ? now : tat; // an idle bucket is full, not in credit
+            if (base + intervalNanos - now > burstNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(tat, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+}
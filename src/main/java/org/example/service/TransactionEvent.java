@@ -0,0 +1,75 @@
+package org.example.service;
+
+/**
+ * One completed deposit, withdrawal or transfer as seen by the
+ * {@link FraudMonitor}. Amounts are in kurus.
+ *
+ * Events live in reused ring-buffer slots: a {@link FraudRule} may read one
+ * while it is being scored but must not keep a reference to it.
+ */
+public final class TransactionEvent {
+
+    public enum Type {
+        DEPOSIT, WITHDRAWAL, TRANSFER
+    }
+
+    private Type type;
+    private long timeMillis;
+    private String terminalId;
+    private String cardNumber;
+    private String targetCardNumber;
+    private long amount;
+    private long balanceAfter;
+
+    TransactionEvent() {
+    }
+
+    void set(Type type, long timeMillis, String terminalId, String cardNumber, String targetCardNumber,
+             long amount, long balanceAfter) {
+        this.type = type;
+        this.timeMillis = timeMillis;
+        this.terminalId = terminalId;
+        this.cardNumber = cardNumber;
+        this.targetCardNumber = targetCardNumber;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /** The terminal the customer used; null for transfers. */
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    /** The customer's card; for a transfer, the paying card. */
+    public String getCardNumber() {
+        return cardNumber;
+    }
+
+    /** The receiving card of a transfer; null otherwise. */
+    public String getTargetCardNumber() {
+        return targetCardNumber;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    /** Balance of {@link #getCardNumber()} after the operation. */
+    public long getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + cardNumber + (targetCardNumber == null ? "" : " -> " + targetCardNumber)
+                + " " + amount + " kurus";
+    }
+}
@@ -0,0 +1,338 @@
+package org.example.service;
+
+import org.example.model.StatementEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only history of every card's deposits, withdrawals and transfers,
+ * for mini-statements.
+ *
+ * Each card's history is kept as primitive columns (time, type, amount,
+ * balance after) in chunks that double in size, so a quiet card costs a few
+ * dozen bytes and an append never copies older entries. The bank appends
+ * under the account's stripe lock; queries take no lock and cost
+ * O(entries returned), plus a binary search for a date range.
+ *
+ * On disk the history is a single append-only file. The {@link Checkpointer}
+ * extends it from the journal before a snapshot lets journal segments go, so
+ * the hot path never writes it. On startup the file is loaded and journal
+ * records newer than it are replayed on top.
+ */
+public class TransactionHistory {
+
+    private static final String FILE_NAME = "history.log";
+    private static final StatementEntry.Type[] TYPES = StatementEntry.Type.values();
+
+    private final ConcurrentHashMap<String, CardHistory> cards = new ConcurrentHashMap<>();
+    private final Path file; // null: in-memory only
+    private long persistedLsn; // highest LSN in the file; guarded by this
+
+    /** In-memory history, lost on exit. */
+    public TransactionHistory() {
+        this.file = null;
+    }
+
+    /** Opens the history kept in {@code directory} and loads every entry in it. */
+    public TransactionHistory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(FILE_NAME);
+        load();
+    }
+
+    /**
+     * Appends an entry for {@code cardNumber}, timestamped now. {@code amount}
+     * is signed: positive for money in, negative for money out. Callers must
+     * hold the account's stripe lock.
+     */
+    public void record(String cardNumber, StatementEntry.Type type, long amount, long balanceAfter) {
+        history(cardNumber).append(System.currentTimeMillis(), type, amount, balanceAfter);
+    }
+
+    // --- Queries ---
+
+    /** Entries recorded for {@code cardNumber} so far. */
+    public int size(String cardNumber) {
+        CardHistory h = cards.get(cardNumber);
+        return h == null ? 0 : h.size;
+    }
+
+    /** The newest {@code count} entries, newest first. */
+    public List<StatementEntry> latest(String cardNumber, int count) {
+        return before(cardNumber, Long.MAX_VALUE, count);
+    }
+
+    /**
+     * Up to {@code count} entries older than {@code index}, newest first; pass
+     * the last index of one page to get the next.
+     */
+    public List<StatementEntry> before(String cardNumber, long index, int count) {
+        CardHistory h = cards.get(cardNumber);
+        if (h == null || count <= 0) return Collections.emptyList();
+        int size = h.size;
+        Chunk[] chunks = h.chunks; // read after size: holds every chunk below it
+        int hi = (int) Math.min(size, index);
+        List<StatementEntry> out = new ArrayList<>(Math.min(count, hi));
+        for (int i = hi - 1; i >= 0 && out.size() < count; i--) {
+            out.add(entry(chunks, i));
+        }
+        return out;
+    }
+
+    /**
+     * Up to {@code limit} entries with a time in {@code [fromMillis, toMillis)},
+     * newest first.
+     */
+    public List<StatementEntry> between(String cardNumber, long fromMillis, long toMillis, int limit) {
+        CardHistory h = cards.get(cardNumber);
+        if (h == null || limit <= 0) return Collections.emptyList();
+        int size = h.size;
+        Chunk[] chunks = h.chunks;
+        // times never decrease within a card: find the first entry at or after toMillis
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (chunks[chunkOf(mid)].time[offsetOf(mid)] < toMillis) lo = mid + 1;
+            else hi = mid;
+        }
+        List<StatementEntry> out = new ArrayList<>(Math.min(limit, lo));
+        for (int i = lo - 1; i >= 0 && out.size() < limit; i--) {
+            if (chunks[chunkOf(i)].time[offsetOf(i)] < fromMillis) break;
+            out.add(entry(chunks, i));
+        }
+        return out;
+    }
+
+    private static StatementEntry entry(Chunk[] chunks, int i) {
+        Chunk c = chunks[chunkOf(i)];
+        int o = offsetOf(i);
+        return new StatementEntry(i, c.time[o], TYPES[c.type[o]], c.amount[o], c.balance[o]);
+    }
+
+    // --- Recovery and persistence ---
+
+    /** Replayer that adds journal records the history file does not hold yet. */
+    TransactionJournal.Replayer replayer() {
+        long known;
+        synchronized (this) {
+            known = persistedLsn;
+        }
+        return new Records() {
+            @Override
+            void entry(long lsn, long time, String card, StatementEntry.Type type, long amount, long balance) {
+                if (lsn > known) {
+                    history(card).append(time, type, amount, balance);
+                }
+            }
+        };
+    }
+
+    /**
+     * Appends the journal records up to {@code upToLsn} (which must be
+     * durable) to the history file and forces it to disk.
+     */
+    synchronized void persist(Path journalDirectory, long upToLsn) throws IOException {
+        if (file == null || upToLsn <= persistedLsn) return;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+            TransactionJournal.read(journalDirectory, persistedLsn, upToLsn, new Records() {
+                @Override
+                void entry(long lsn, long time, String card, StatementEntry.Type type, long amount, long balance) {
+                    try {
+                        byte[] cardBytes = card.getBytes(StandardCharsets.UTF_8);
+                        out.writeLong(lsn);
+                        out.writeLong(time);
+                        out.writeByte(type.ordinal());
+                        out.writeLong(amount);
+                        out.writeLong(balance);
+                        out.writeShort(cardBytes.length);
+                        out.write(cardBytes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            out.flush();
+            ch.force(false);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        persistedLsn = upToLsn;
+    }
+
+    /** Loads the file, cutting off a record torn by a crash. */
+    private synchronized void load() throws IOException {
+        if (!Files.exists(file)) return;
+        long good = 0;
+        long lastLsn = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                long lsn = in.readLong();
+                if (lsn <= 0 || lsn < lastLsn) break; // unwritten space after a crash
+                long time = in.readLong();
+                int type = in.readUnsignedByte();
+                long amount = in.readLong();
+                long balance = in.readLong();
+                byte[] card = new byte[in.readUnsignedShort()];
+                in.readFully(card);
+                if (type >= TYPES.length) break;
+                history(new String(card, StandardCharsets.UTF_8)).append(time, TYPES[type], amount, balance);
+                lastLsn = lsn;
+                good += 8 + 8 + 1 + 8 + 8 + 2 + card.length;
+            }
+        } catch (EOFException e) {
+            // torn or complete; everything before `good` is intact
+        }
+        if (good < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(good);
+            }
+        }
+        persistedLsn = lastLsn;
+    }
+
+    private CardHistory history(String cardNumber) {
+        CardHistory h = cards.get(cardNumber);
+        return h != null ? h : cards.computeIfAbsent(cardNumber, k -> new CardHistory());
+    }
+
+    /** Turns monetary journal records into per-card entries. */
+    private abstract static class Records implements TransactionJournal.Replayer {
+
+        abstract void entry(long lsn, long time, String card, StatementEntry.Type type, long amount, long balance);
+
+        @Override
+        public void deposit(long lsn, long time, String terminalId, String cardNumber, long amount,
+                            long balanceAfter) {
+            entry(lsn, time, cardNumber, StatementEntry.Type.DEPOSIT, amount, balanceAfter);
+        }
+
+        @Override
+        public void withdraw(long lsn, long time, String terminalId, String cardNumber, long amount,
+                             long balanceAfter, long notes) {
+            entry(lsn, time, cardNumber, StatementEntry.Type.WITHDRAWAL, -amount, balanceAfter);
+        }
+
+        @Override
+        public void transfer(long lsn, long time, String fromCard, String toCard, long amount,
+                             long fromBalanceAfter, long toBalanceAfter) {
+            entry(lsn, time, fromCard, StatementEntry.Type.TRANSFER_OUT, -amount, fromBalanceAfter);
+            entry(lsn, time, toCard, StatementEntry.Type.TRANSFER_IN, amount, toBalanceAfter);
+        }
+
+        @Override
+        public void posted(long lsn, long time, String cardNumber, long amount, long balanceAfter) {
+            entry(lsn, time, cardNumber, amount > 0 ? StatementEntry.Type.DEPOSIT : StatementEntry.Type.WITHDRAWAL,
+                    amount, balanceAfter);
+        }
+
+        @Override
+        public void pinChanged(long lsn, String cardNumber, byte[] pinHash) {
+        }
+
+        @Override
+        public void emergency(long lsn, long time, String terminalId, String type, String cardNumber) {
+        }
+
+        @Override
+        public void emergencySent(long lsn, long reportLsn) {
+        }
+
+        @Override
+        public void cashLoaded(long lsn, String terminalId, long amount) {
+        }
+
+        @Override
+        public void cardRetained(long lsn, String terminalId, String cardNumber) {
+        }
+
+        @Override
+        public void cardReturned(long lsn, String cardNumber) {
+        }
+
+        @Override
+        public void cardBlocked(long lsn, String cardNumber, String reason) {
+        }
+
+        @Override
+        public void cardUnblocked(long lsn, String cardNumber) {
+        }
+
+        @Override
+        public void notesLoaded(long lsn, String terminalId, long notes) {
+        }
+    }
+
+    // --- Storage ---
+
+    private static final int FIRST_CHUNK_BITS = 2; // chunk k holds 4 << k entries
+
+    private static int chunkOf(int i) {
+        return 31 - Integer.numberOfLeadingZeros((i >>> FIRST_CHUNK_BITS) + 1);
+    }
+
+    private static int offsetOf(int i) {
+        return i - ((1 << (chunkOf(i) + FIRST_CHUNK_BITS)) - (1 << FIRST_CHUNK_BITS));
+    }
+
+    private static final class Chunk {
+        final long[] time;
+        final long[] amount;
+        final long[] balance;
+        final byte[] type;
+
+        Chunk(int capacity) {
+            time = new long[capacity];
+            amount = new long[capacity];
+            balance = new long[capacity];
+            type = new byte[capacity];
+        }
+    }
+
+    /** One card's entries. One writer at a time; readers see everything below {@code size}. */
+    private static final class CardHistory {
+        volatile Chunk[] chunks = new Chunk[2];
+        volatile int size;
+        long lastTime;
+
+        void append(long time, StatementEntry.Type type, long amount, long balance) {
+            int i = size;
+            int k = chunkOf(i);
+            Chunk[] cs = chunks;
+            if (k >= cs.length) {
+                cs = Arrays.copyOf(cs, cs.length * 2);
+            }
+            if (cs[k] == null) {
+                cs[k] = new Chunk(1 << (k + FIRST_CHUNK_BITS));
+            }
+            chunks = cs;
+            Chunk c = cs[k];
+            int o = offsetOf(i);
+            lastTime = Math.max(lastTime, time); // keep times sorted for range queries
+            c.time[o] = lastTime;
+            c.type[o] = (byte) type.ordinal();
+            c.amount[o] = amount;
+            c.balance[o] = balance;
+            size = i + 1; // publishes the entry
+        }
+    }
+}
@@ -0,0 +1,783 @@
+package org.example.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary write-ahead journal of everything that changes bank state.
+ *
+ * Each record is framed as {@code [int length][int crc32][long lsn][long time][byte type][payload]}.
+ * Monetary records carry the balances after the operation, so replaying a
+ * record twice leaves the account in the same state.
+ *
+ * Appends only copy the record into an in-memory buffer. A single flusher
+ * thread writes buffered records and calls {@code force} once per batch of up
+ * to {@code groupCommitSize} records (or after {@code maxLingerMicros}), and
+ * {@link #awaitDurable} releases every caller covered by that fsync at once.
+ *
+ * The journal is a directory of segment files named after the first LSN they
+ * hold. The flusher starts a new segment once the current one passes
+ * {@code maxSegmentBytes}, so segments covered by a snapshot can be deleted
+ * with {@link #deleteSegmentsUpTo}.
+ *
+ * Cash records name the ATM terminal they apply to. Terminal states are not
+ * journaled; they are kept in the {@link AtmStateLog}.
+ *
+ * Emergency reports are journaled when made and again, by LSN, once the
+ * {@link EmergencyQueue} has delivered them, so a replay knows which ones
+ * are still undelivered.
+ */
+public class TransactionJournal implements Closeable {
+
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAW = 2;
+    public static final byte TRANSFER = 3;
+    public static final byte PIN_CHANGE = 4;
+    public static final byte EMERGENCY = 5;
+    public static final byte EMERGENCY_SENT = 6;
+    public static final byte CASH_LOADED = 7;
+    public static final byte CARD_RETAINED = 8;
+    public static final byte CARD_RETURNED = 9;
+    public static final byte CARD_BLOCKED = 10;
+    public static final byte CARD_UNBLOCKED = 11;
+    public static final byte NOTES_LOADED = 12;
+    public static final byte POSTING = 13;
+
+    private static final int HEADER = 4 + 4;
+    private static final int BODY_HEADER = 8 + 8 + 1;
+    private static final int MAX_STRING = 255;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    private static final long QUIET_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Receives records in log order during {@link #replay}. Monetary records
+     * also carry the wall-clock time they were appended.
+     */
+    public interface Replayer {
+        void deposit(long lsn, long time, String terminalId, String cardNumber, long amount, long balanceAfter);
+
+        /**
+         * Cash paid out at a terminal: {@code notes} are the notes that made
+         * it up, packed one 16-bit count per cassette as in {@link NoteMix}.
+         */
+        void withdraw(long lsn, long time, String terminalId, String cardNumber, long amount, long balanceAfter,
+                      long notes);
+
+        void transfer(long lsn, long time, String fromCard, String toCard, long amount,
+                      long fromBalanceAfter, long toBalanceAfter);
+
+        /**
+         * A back-office batch credit ({@code amount > 0}) or debit
+         * ({@code amount < 0}); it moves no terminal cash.
+         */
+        void posted(long lsn, long time, String cardNumber, long amount, long balanceAfter);
+
+        void pinChanged(long lsn, String cardNumber, byte[] pinHash);
+
+        /** An emergency reported at a terminal; its LSN is the report's id. */
+        void emergency(long lsn, long time, String terminalId, String type, String cardNumber);
+
+        /** The emergency journaled at {@code reportLsn} reached the bank. */
+        void emergencySent(long lsn, long reportLsn);
+
+        /** Cash put into a terminal; the first load of an unknown terminal registers it. */
+        void cashLoaded(long lsn, String terminalId, long amount);
+
+        /** A card kept by a terminal after too many wrong PINs. */
+        void cardRetained(long lsn, String terminalId, String cardNumber);
+
+        /** A retained card given back to its customer. */
+        void cardReturned(long lsn, String cardNumber);
+
+        /** A card barred from every terminal, e.g. by the fraud monitor. */
+        void cardBlocked(long lsn, String cardNumber, String reason);
+
+        void cardUnblocked(long lsn, String cardNumber);
+
+        /** Notes put into a terminal's cassettes by a technician, packed as for {@link #withdraw}. */
+        void notesLoaded(long lsn, String terminalId, long notes);
+    }
+
+    private final Path directory;
+    private final int groupCommitSize;
+    private final long maxLingerNanos;
+    private final long maxSegmentBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition spaceFreed = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+
+    // guarded by lock
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer flushing = ByteBuffer.allocate(BUFFER_SIZE);
+    private int pending;
+    private int frameStart;
+    private long lastLsn;
+    private long durableLsn;
+    private boolean bufferFull;
+    private boolean closed;
+    private IOException failure;
+
+    // owned by the flusher once started
+    private FileChannel channel;
+    private long writePosition;
+    private volatile long activeFirstLsn;
+    private Thread flusher;
+
+    public TransactionJournal(Path directory, int groupCommitSize) throws IOException {
+        this(directory, groupCommitSize, 1_000, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public TransactionJournal(Path directory, int groupCommitSize, long maxLingerMicros,
+                              long maxSegmentBytes) throws IOException {
+        if (groupCommitSize < 1) {
+            throw new IllegalArgumentException("groupCommitSize must be >= 1");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.groupCommitSize = groupCommitSize;
+        this.maxLingerNanos = TimeUnit.MICROSECONDS.toNanos(maxLingerMicros);
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    // --- Recovery ---
+
+    /**
+     * Feeds every intact record after {@code afterLsn} to {@code replayer}, cuts
+     * off a torn tail left by a crash and starts the flusher. Must be called
+     * once, before any append. Returns the number of records fed.
+     */
+    public long replay(long afterLsn, Replayer replayer) throws IOException {
+        if (flusher != null) {
+            throw new IllegalStateException("journal already started");
+        }
+        List<Long> starts = segmentStarts(directory);
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < starts.size(); i++) {
+            boolean last = i == starts.size() - 1;
+            if (!last && starts.get(i + 1) - 1 <= afterLsn) {
+                continue; // every record in this segment is already covered
+            }
+            Path file = segmentPath(directory, starts.get(i));
+            cursor.lastLsn = starts.get(i) - 1;
+            cursor.position = 0;
+            if (last) {
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                scan(channel, afterLsn, Long.MAX_VALUE, replayer, cursor);
+                channel.truncate(cursor.position);
+                writePosition = cursor.position;
+                activeFirstLsn = starts.get(i);
+            } else {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    scan(ch, afterLsn, Long.MAX_VALUE, replayer, cursor);
+                }
+            }
+        }
+        lastLsn = cursor.lastLsn;
+        if (channel == null || lastLsn < afterLsn) {
+            // empty directory, or the journal was lost behind a newer snapshot
+            if (channel != null) {
+                channel.close();
+            }
+            lastLsn = Math.max(lastLsn, afterLsn);
+            activeFirstLsn = lastLsn + 1;
+            channel = FileChannel.open(segmentPath(directory, activeFirstLsn), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writePosition = 0;
+        }
+        durableLsn = lastLsn;
+
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        return cursor.delivered;
+    }
+
+    /**
+     * Reads records in {@code (afterLsn, upToLsn]} from a journal directory
+     * without disturbing a journal that is appending to it, as long as
+     * {@code upToLsn} is already durable. Returns the last LSN delivered.
+     */
+    public static long read(Path directory, long afterLsn, long upToLsn, Replayer replayer) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        Cursor cursor = new Cursor();
+        long delivered = afterLsn;
+        for (int i = 0; i < starts.size(); i++) {
+            if (starts.get(i) > upToLsn) break;
+            if (i + 1 < starts.size() && starts.get(i + 1) - 1 <= afterLsn) continue;
+            cursor.position = 0;
+            cursor.lastLsn = afterLsn;
+            try (FileChannel ch = FileChannel.open(segmentPath(directory, starts.get(i)), StandardOpenOption.READ)) {
+                scan(ch, afterLsn, upToLsn, replayer, cursor);
+            }
+            delivered = Math.max(delivered, cursor.lastLsn);
+        }
+        return delivered;
+    }
+
+    /** Deletes segments whose records are all at or below {@code lsn}; the active segment is kept. */
+    public void deleteSegmentsUpTo(long lsn) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i + 1 < starts.size(); i++) {
+            if (starts.get(i + 1) - 1 > lsn || starts.get(i) == activeFirstLsn) {
+                break;
+            }
+            Files.deleteIfExists(segmentPath(directory, starts.get(i)));
+        }
+    }
+
+    private static final class Cursor {
+        long position;
+        long lastLsn;
+        long delivered;
+    }
+
+    /** Scans intact records from the start of a segment, delivering those in {@code (afterLsn, upToLsn]}. */
+    private static void scan(FileChannel ch, long afterLsn, long upToLsn, Replayer replayer,
+                             Cursor cursor) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        ByteBuffer body = ByteBuffer.allocate(1024);
+        long position = 0;
+        long size = ch.size();
+        while (position + HEADER <= size) {
+            header.clear();
+            readFully(ch, header, position);
+            int length = header.getInt(0);
+            int expectedCrc = header.getInt(4);
+            if (length < BODY_HEADER || position + HEADER + length > size) {
+                break;
+            }
+            if (body.capacity() < length) {
+                body = ByteBuffer.allocate(length);
+            }
+            body.clear().limit(length);
+            readFully(ch, body, position + HEADER);
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+            long lsn = body.getLong(0);
+            if (lsn > upToLsn) {
+                break;
+            }
+            if (lsn > afterLsn) {
+                body.flip();
+                dispatch(body, replayer);
+                cursor.delivered++;
+            }
+            cursor.lastLsn = lsn;
+            position += HEADER + length;
+        }
+        cursor.position = position;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, position);
+            if (n < 0) break;
+            position += n;
+        }
+    }
+
+    private static List<Long> segmentStarts(Path directory) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                starts.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(starts);
+        return starts;
+    }
+
+    private static Path segmentPath(Path directory, long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    private static void dispatch(ByteBuffer body, Replayer replayer) {
+        long lsn = body.getLong();
+        long time = body.getLong();
+        byte type = body.get();
+        switch (type) {
+            case DEPOSIT:
+                replayer.deposit(lsn, time, getString(body), getString(body), body.getLong(), body.getLong());
+                break;
+            case WITHDRAW:
+                replayer.withdraw(lsn, time, getString(body), getString(body), body.getLong(), body.getLong(),
+                        body.getLong());
+                break;
+            case TRANSFER:
+                replayer.transfer(lsn, time, getString(body), getString(body),
+                        body.getLong(), body.getLong(), body.getLong());
+                break;
+            case POSTING:
+                replayer.posted(lsn, time, getString(body), body.getLong(), body.getLong());
+                break;
+            case PIN_CHANGE:
+                replayer.pinChanged(lsn, getString(body), getBytes(body));
+                break;
+            case EMERGENCY:
+                replayer.emergency(lsn, time, getString(body), getString(body), getString(body));
+                break;
+            case EMERGENCY_SENT:
+                replayer.emergencySent(lsn, body.getLong());
+                break;
+            case CASH_LOADED:
+                replayer.cashLoaded(lsn, getString(body), body.getLong());
+                break;
+            case CARD_RETAINED:
+                replayer.cardRetained(lsn, getString(body), getString(body));
+                break;
+            case CARD_RETURNED:
+                replayer.cardReturned(lsn, getString(body));
+                break;
+            case CARD_BLOCKED:
+                replayer.cardBlocked(lsn, getString(body), getString(body));
+                break;
+            case CARD_UNBLOCKED:
+                replayer.cardUnblocked(lsn, getString(body));
+                break;
+            case NOTES_LOADED:
+                replayer.notesLoaded(lsn, getString(body), body.getLong());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    // --- Appends ---
+
+    public long logDeposit(String terminalId, String cardNumber, long amount, long balanceAfter) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(DEPOSIT, stringSize(terminalId) + stringSize(cardNumber) + 16);
+            putString(buf, terminalId);
+            putString(buf, cardNumber);
+            buf.putLong(amount).putLong(balanceAfter);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Journals a withdrawal together with the notes paid out, so replay never sees one without the other. */
+    public long logWithdraw(String terminalId, String cardNumber, long amount, long balanceAfter, long notes) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(WITHDRAW, stringSize(terminalId) + stringSize(cardNumber) + 24);
+            putString(buf, terminalId);
+            putString(buf, cardNumber);
+            buf.putLong(amount).putLong(balanceAfter).putLong(notes);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logTransfer(String fromCard, String toCard, long amount,
+                            long fromBalanceAfter, long toBalanceAfter) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(TRANSFER, stringSize(fromCard) + stringSize(toCard) + 24);
+            putString(buf, fromCard);
+            putString(buf, toCard);
+            buf.putLong(amount).putLong(fromBalanceAfter).putLong(toBalanceAfter);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logPosting(String cardNumber, long amount, long balanceAfter) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(POSTING, stringSize(cardNumber) + 16);
+            putString(buf, cardNumber);
+            buf.putLong(amount).putLong(balanceAfter);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logPinChange(String cardNumber, byte[] pinHash) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(PIN_CHANGE, stringSize(cardNumber) + 1 + pinHash.length);
+            putString(buf, cardNumber);
+            buf.put((byte) pinHash.length).put(pinHash);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logEmergency(String terminalId, String type, String cardNumber) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(EMERGENCY,
+                    stringSize(terminalId) + stringSize(type) + stringSize(cardNumber));
+            putString(buf, terminalId);
+            putString(buf, type);
+            putString(buf, cardNumber);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logEmergencySent(long reportLsn) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(EMERGENCY_SENT, 8);
+            buf.putLong(reportLsn);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logCashLoaded(String terminalId, long amount) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(CASH_LOADED, stringSize(terminalId) + 8);
+            putString(buf, terminalId);
+            buf.putLong(amount);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logCardRetained(String terminalId, String cardNumber) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(CARD_RETAINED, stringSize(terminalId) + stringSize(cardNumber));
+            putString(buf, terminalId);
+            putString(buf, cardNumber);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logCardReturned(String cardNumber) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(CARD_RETURNED, stringSize(cardNumber));
+            putString(buf, cardNumber);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logCardBlocked(String cardNumber, String reason) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(CARD_BLOCKED, stringSize(cardNumber) + stringSize(reason));
+            putString(buf, cardNumber);
+            putString(buf, reason);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logCardUnblocked(String cardNumber) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(CARD_UNBLOCKED, stringSize(cardNumber));
+            putString(buf, cardNumber);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logNotesLoaded(String terminalId, long notes) {
+        lock.lock();
+        try {
+            ByteBuffer buf = begin(NOTES_LOADED, stringSize(terminalId) + 8);
+            putString(buf, terminalId);
+            buf.putLong(notes);
+            return end(buf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Blocks until the record with {@code lsn} (and all before it) is on disk. */
+    public void awaitDurable(long lsn) {
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Journal write failed", failure);
+                }
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastLsn() {
+        lock.lock();
+        try {
+            return lastLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Highest LSN known to be on disk; everything up to it can be read with {@link #read}. */
+    public long durableLsn() {
+        lock.lock();
+        try {
+            return durableLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Re-reads every durable record in the segments on disk and checks its
+     * CRC, without disturbing appends. Returns the last LSN checked.
+     *
+     * @throws IOException if the flusher has failed, or a durable record is
+     *                     damaged or missing
+     */
+    public long verify() throws IOException {
+        long upTo;
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new IOException("Journal write failed: " + failure.getMessage(), failure);
+            }
+            upTo = durableLsn;
+        } finally {
+            lock.unlock();
+        }
+        List<Long> starts = segmentStarts(directory);
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < starts.size() && starts.get(i) <= upTo; i++) {
+            long end = i + 1 < starts.size() ? Math.min(upTo, starts.get(i + 1) - 1) : upTo;
+            cursor.position = 0;
+            cursor.lastLsn = starts.get(i) - 1;
+            try (FileChannel ch = FileChannel.open(segmentPath(directory, starts.get(i)), StandardOpenOption.READ)) {
+                scan(ch, Long.MAX_VALUE, end, null, cursor); // nothing is after Long.MAX_VALUE: no dispatch
+            } catch (NoSuchFileException e) {
+                continue; // deleted behind a snapshot meanwhile
+            }
+            if (cursor.lastLsn < end) {
+                throw new IOException("Damaged record after LSN " + cursor.lastLsn + " in "
+                        + segmentPath(directory, starts.get(i)).getFileName());
+            }
+        }
+        return upTo;
+    }
+
+    private ByteBuffer begin(byte type, int payloadSize) {
+        if (closed) {
+            throw new IllegalStateException("journal is closed");
+        }
+        if (flusher == null) {
+            throw new IllegalStateException("journal must be replayed before appending");
+        }
+        int frame = HEADER + BODY_HEADER + payloadSize;
+        while (true) {
+            if (failure != null) { // the flusher is gone: nothing would ever be written, or free space
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+            if (active.remaining() >= frame) break;
+            bufferFull = true;
+            batchReady.signal();
+            spaceFreed.awaitUninterruptibly();
+        }
+        ByteBuffer buf = active;
+        frameStart = buf.position();
+        buf.putInt(BODY_HEADER + payloadSize).putInt(0); // crc patched in end()
+        buf.putLong(lastLsn + 1).putLong(System.currentTimeMillis()).put(type);
+        return buf;
+    }
+
+    private long end(ByteBuffer buf) {
+        int bodyStart = frameStart + HEADER;
+        crc.reset();
+        crc.update(buf.array(), bodyStart, buf.position() - bodyStart);
+        buf.putInt(frameStart + 4, (int) crc.getValue());
+        lastLsn++;
+        if (++pending >= groupCommitSize || pending == 1) {
+            batchReady.signal(); // batch full, or first record opens the linger window
+        }
+        return lastLsn;
+    }
+
+    // --- Group commit ---
+
+    private void flushLoop() {
+        long flushedLsn = durableLsn;
+        while (true) {
+            long batchLsn;
+            ByteBuffer batch;
+            lock.lock();
+            try {
+                while (pending == 0 && !closed) {
+                    batchReady.awaitUninterruptibly();
+                }
+                if (pending == 0) {
+                    return; // closed and drained
+                }
+                // Linger for a fuller batch, but stop as soon as appends go quiet:
+                // a lone session should not pay the whole linger on every commit.
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (pending < groupCommitSize && !closed && !bufferFull) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    int before = pending;
+                    try {
+                        batchReady.awaitNanos(Math.min(left, QUIET_NANOS));
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    if (pending == before) break;
+                }
+                batch = active;
+                active = flushing;
+                flushing = batch;
+                active.clear();
+                batchLsn = lastLsn;
+                pending = 0;
+                bufferFull = false;
+                spaceFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                if (writePosition >= maxSegmentBytes) {
+                    rollSegment(flushedLsn + 1);
+                }
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    writePosition += channel.write(batch, writePosition);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    spaceFreed.signalAll(); // appends waiting for a buffer fail instead
+                } else {
+                    durableLsn = batchLsn;
+                    flushedLsn = batchLsn;
+                }
+                durable.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void rollSegment(long firstLsn) throws IOException {
+        FileChannel next = FileChannel.open(segmentPath(directory, firstLsn), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.close();
+        channel = next;
+        writePosition = 0;
+        activeFirstLsn = firstLsn;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            batchReady.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    // --- Encoding helpers ---
+
+    private static int stringSize(String s) {
+        if (s.length() > MAX_STRING) {
+            throw new IllegalArgumentException("Journal string too long: " + s.length());
+        }
+        return 1 + s.length();
+    }
+
+    /** Card numbers and emergency types are ASCII; written char by char to avoid allocation. */
+    private static void putString(ByteBuffer buf, String s) {
+        int n = s.length();
+        buf.put((byte) n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            buf.put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.get() & 0xFF];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int n = buf.get() & 0xFF;
+        char[] chars = new char[n];
+        for (int i = 0; i < n; i++) {
+            chars[i] = (char) buf.get();
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.service;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Thread-per-task executors that use virtual threads when the running JDK has
+ * them (21+), while the project itself still compiles for Java 17.
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean available() {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * A new virtual-thread-per-task executor, or a cached pool of daemon
+     * platform threads named {@code namePrefix-N} on older JDKs.
+     */
+    public static ExecutorService newPerTaskExecutor(String namePrefix) {
+        if (NEW_VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invokeExact();
+            } catch (Throwable e) {
+                // fall through to platform threads
+            }
+        }
+        int[] counter = {0};
+        return Executors.newCachedThreadPool(r -> {
+            Thread t;
+            synchronized (counter) {
+                t = new Thread(r, namePrefix + "-" + (++counter[0]));
+            }
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static MethodHandle lookup() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
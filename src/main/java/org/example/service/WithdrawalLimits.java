@@ -0,0 +1,51 @@
+package org.example.service;
+
+import org.example.model.Money;
+
+/**
+ * How much cash one card may take out: an amount per rolling day, an amount
+ * per rolling hour and a number of withdrawals per rolling hour. Amounts are
+ * in kurus (see {@link Money}); {@link Long#MAX_VALUE} and
+ * {@link Integer#MAX_VALUE} mean no limit.
+ */
+public final class WithdrawalLimits {
+
+    public static final WithdrawalLimits UNLIMITED =
+            new WithdrawalLimits(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    /** Limits applied to cards without limits of their own. */
+    public static final WithdrawalLimits DEFAULT =
+            new WithdrawalLimits(Money.ofLira(20_000), Money.ofLira(10_000), 10);
+
+    private final long perDay;
+    private final long perHour;
+    private final int countPerHour;
+
+    public WithdrawalLimits(long perDay, long perHour, int countPerHour) {
+        if (perDay < 0 || perHour < 0 || countPerHour < 0) {
+            throw new IllegalArgumentException("Limits must not be negative");
+        }
+        this.perDay = perDay;
+        this.perHour = perHour;
+        this.countPerHour = countPerHour;
+    }
+
+    public long getPerDay() {
+        return perDay;
+    }
+
+    public long getPerHour() {
+        return perHour;
+    }
+
+    public int getCountPerHour() {
+        return countPerHour;
+    }
+
+    @Override
+    public String toString() {
+        return "WithdrawalLimits{perDay=" + (perDay == Long.MAX_VALUE ? "none" : Money.format(perDay))
+                + ", perHour=" + (perHour == Long.MAX_VALUE ? "none" : Money.format(perHour))
+                + ", countPerHour=" + (countPerHour == Integer.MAX_VALUE ? "none" : countPerHour) + "}";
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.service;
+
+import org.example.model.StatementEntry;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-card withdrawal limits and the sliding-window counters that enforce
+ * them.
+ *
+ * Each card that has withdrawn gets two {@link SlidingWindowCounter}s: 24
+ * hourly buckets for the day and 12 five-minute buckets for the hour, about
+ * 450 bytes in all. Checks and updates run under the account's stripe lock,
+ * in the same critical section as the balance, so concurrent withdrawals on
+ * one card cannot both slip under a limit.
+ *
+ * Counters are not persisted. A card's counters are rebuilt from its
+ * {@link TransactionHistory} the first time it withdraws after a restart.
+ */
+class WithdrawalVelocity {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final TransactionHistory history;
+    private final ConcurrentHashMap<String, Windows> cards = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, WithdrawalLimits> overrides = new ConcurrentHashMap<>();
+    private volatile WithdrawalLimits defaults = WithdrawalLimits.DEFAULT;
+
+    WithdrawalVelocity(TransactionHistory history) {
+        this.history = history;
+    }
+
+    void setDefaults(WithdrawalLimits limits) {
+        defaults = limits;
+    }
+
+    WithdrawalLimits getDefaults() {
+        return defaults;
+    }
+
+    /** Gives {@code cardNumber} its own limits; null goes back to the defaults. */
+    void setLimits(String cardNumber, WithdrawalLimits limits) {
+        if (limits == null) {
+            overrides.remove(cardNumber);
+        } else {
+            overrides.put(cardNumber, limits);
+        }
+    }
+
+    WithdrawalLimits limitsOf(String cardNumber) {
+        WithdrawalLimits own = overrides.get(cardNumber);
+        return own != null ? own : defaults;
+    }
+
+    /**
+     * Whether {@code cardNumber} may withdraw {@code amount} now. Call under
+     * the account's stripe lock, and {@link #record} the withdrawal in the
+     * same critical section if it goes ahead.
+     */
+    boolean allows(String cardNumber, long amount) {
+        return allowance(cardNumber, System.currentTimeMillis()) >= amount;
+    }
+
+    /** Counts a withdrawal; call under the account's stripe lock, before it is added to the history. */
+    void record(String cardNumber, long amount) {
+        long now = System.currentTimeMillis();
+        Windows w = windows(cardNumber, now);
+        w.day.add(now, amount);
+        w.hour.add(now, amount);
+    }
+
+    /** Largest amount {@code cardNumber} may withdraw now. Call under the account's stripe lock. */
+    long allowance(String cardNumber) {
+        return allowance(cardNumber, System.currentTimeMillis());
+    }
+
+    private long allowance(String cardNumber, long now) {
+        WithdrawalLimits limits = limitsOf(cardNumber);
+        if (limits == WithdrawalLimits.UNLIMITED) return Long.MAX_VALUE;
+        Windows w = windows(cardNumber, now);
+        if (w.hour.count(now) >= limits.getCountPerHour()) return 0;
+        long left = Math.min(limits.getPerDay() - w.day.sum(now), limits.getPerHour() - w.hour.sum(now));
+        return Math.max(0, left);
+    }
+
+    private Windows windows(String cardNumber, long now) {
+        Windows w = cards.get(cardNumber);
+        return w != null ? w : cards.computeIfAbsent(cardNumber, k -> seed(k, now));
+    }
+
+    /** Counters holding the card's withdrawals of the last day, from its history. */
+    private Windows seed(String cardNumber, long now) {
+        Windows w = new Windows();
+        List<StatementEntry> day = history.between(cardNumber, now - DAY_MILLIS, now + 1, Integer.MAX_VALUE);
+        for (int i = day.size() - 1; i >= 0; i--) { // oldest first, as the counters expect
+            StatementEntry e = day.get(i);
+            if (e.getType() == StatementEntry.Type.WITHDRAWAL) {
+                w.day.add(e.getTimeMillis(), -e.getAmount());
+                if (e.getTimeMillis() > now - HOUR_MILLIS) {
+                    w.hour.add(e.getTimeMillis(), -e.getAmount());
+                }
+            }
+        }
+        return w;
+    }
+
+    private static final class Windows {
+        final SlidingWindowCounter day = new SlidingWindowCounter(24, HOUR_MILLIS);
+        final SlidingWindowCounter hour = new SlidingWindowCounter(12, TimeUnit.MINUTES.toMillis(5));
+    }
+}
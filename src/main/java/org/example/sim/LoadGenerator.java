@@ -0,0 +1,423 @@
+package org.example.sim;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.remote.BankServer;
+import org.example.remote.RemoteBankService;
+import org.example.service.AsyncBankService;
+import org.example.service.AtmTerminal;
+import org.example.service.BankCentralSystem;
+import org.example.service.BankService;
+import org.example.service.CashStock;
+import org.example.service.CredentialHasher;
+import org.example.service.CredentialVerifier;
+import org.example.service.FraudMonitor;
+import org.example.service.InMemoryAccountStore;
+import org.example.service.LatencyHistogram;
+import org.example.service.RequestDeduplicator;
+import org.example.service.VirtualThreads;
+import org.example.service.WithdrawalLimits;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless driver that replays the ATM customer flow (login, one monetary
+ * transaction, auto-logout) against a {@link BankCentralSystem} from many
+ * concurrent virtual users, then prints throughput, latency percentiles and
+ * a money-conservation check.
+ *
+ * Arguments are {@code key=value} pairs, for example:
+ * <pre>
+ * sessions=2000 duration=30 accounts=100000 zipf=1.1 think=20 kdf=100000
+ * mix=deposit:30,withdraw:30,transfer:20,balance:20 link=tcp rtt=100 jitter=20
+ * </pre>
+ * With {@code link=tcp} the sessions reach the bank through an in-process
+ * {@link BankServer} and a {@link RemoteBankService} that adds {@code rtt}
+ * milliseconds of simulated round trip (plus or minus {@code jitter / 2}).
+ * The default {@code link=local} calls the bank directly; there
+ * {@code atms=N} spreads the sessions over N terminals with their own cash.
+ * Cards are held to {@link WithdrawalLimits#DEFAULT}; {@code limits=off}
+ * lifts the limits so withdrawals only depend on balance and cash. The
+ * per-terminal login rate is always lifted: one simulated terminal stands in
+ * for many real ones. Transactions are published to the fraud monitor with
+ * its rules removed, since hot simulated cards would soon be blocked;
+ * {@code fraud=on} keeps the default rules.
+ * Sessions run on virtual threads when the JDK provides them, otherwise on
+ * platform threads. All simulated cards share one PIN credential, and the
+ * KDF defaults to 1000 iterations so setup and first logins stay fast.
+ */
+public class LoadGenerator {
+
+    private static final String PIN = "0000";
+
+    private static final String[] OPERATIONS = {"deposit", "withdraw", "transfer", "balance"};
+
+    // --- Configuration ---
+
+    private int sessions = 1000;
+    private int durationSeconds = 10;
+    private int accounts = 10_000;
+    private double zipf = 0; // 0: uniform card population
+    private int thinkMillis = 0;
+    private long seed = 42;
+    private int kdfIterations = 1000;
+    private final int[] mix = {30, 30, 20, 20};
+    private int atms = 1;
+    private boolean limits = true;
+    private boolean fraud;
+    private boolean remote;
+    private long rttMillis;
+    private long jitterMillis;
+
+    // --- Run state ---
+
+    private BankCentralSystem bank;
+    private BankServer server; // null unless link=tcp
+    private BankService[] services; // one per terminal
+    private String[] cards;
+    private Customer[] customers;
+    private double[] cdf;
+
+    private final Map<String, LatencyHistogram> latency = new LinkedHashMap<>();
+    private final LongAdder completedSessions = new LongAdder();
+    private final LongAdder failedLogins = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder deposited = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        LoadGenerator gen = new LoadGenerator();
+        gen.configure(args);
+        gen.run();
+    }
+
+    void configure(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            String key = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            switch (key) {
+                case "sessions":
+                    sessions = Integer.parseInt(value);
+                    break;
+                case "duration":
+                    durationSeconds = Integer.parseInt(value);
+                    break;
+                case "accounts":
+                    accounts = Integer.parseInt(value);
+                    break;
+                case "zipf":
+                    zipf = Double.parseDouble(value);
+                    break;
+                case "think":
+                    thinkMillis = Integer.parseInt(value);
+                    break;
+                case "kdf":
+                    kdfIterations = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "mix":
+                    parseMix(value);
+                    break;
+                case "atms":
+                    atms = Integer.parseInt(value);
+                    break;
+                case "limits":
+                    if (!value.equals("on") && !value.equals("off")) {
+                        throw new IllegalArgumentException("limits must be on or off: " + value);
+                    }
+                    limits = value.equals("on");
+                    break;
+                case "fraud":
+                    if (!value.equals("on") && !value.equals("off")) {
+                        throw new IllegalArgumentException("fraud must be on or off: " + value);
+                    }
+                    fraud = value.equals("on");
+                    break;
+                case "link":
+                    if (!value.equals("local") && !value.equals("tcp")) {
+                        throw new IllegalArgumentException("link must be local or tcp: " + value);
+                    }
+                    remote = value.equals("tcp");
+                    break;
+                case "rtt":
+                    rttMillis = Long.parseLong(value);
+                    break;
+                case "jitter":
+                    jitterMillis = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+    }
+
+    private void parseMix(String value) {
+        Arrays.fill(mix, 0);
+        for (String part : value.split(",")) {
+            String[] kv = part.split(":");
+            int op = Arrays.asList(OPERATIONS).indexOf(kv[0]);
+            if (op < 0 || kv.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry: " + part);
+            }
+            mix[op] = Integer.parseInt(kv[1]);
+        }
+    }
+
+    // --- Setup ---
+
+    private void setUp() throws IOException {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        CredentialVerifier verifier = new CredentialVerifier(new CredentialHasher(kdfIterations),
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                CredentialVerifier.DEFAULT_QUEUE_CAPACITY, accounts);
+        byte[] pinHash = verifier.hash(PIN);
+        cards = new String[accounts];
+        customers = new Customer[accounts];
+        for (int i = 0; i < accounts; i++) {
+            String card = Long.toString(4_000_000_000_000_000L + i);
+            Customer c = new Customer(card, pinHash, "Load " + i,
+                    new Account("ACC-L" + i, Money.ofLira(10_000)));
+            store.add(c);
+            cards[i] = card;
+            customers[i] = c;
+        }
+        bank = new BankCentralSystem(store, Money.ofLira(1_000_000_000L), verifier);
+        bank.setLoginRate(Double.POSITIVE_INFINITY, 1);
+        if (!limits) {
+            bank.setWithdrawalLimits(WithdrawalLimits.UNLIMITED);
+        }
+        if (!fraud) {
+            bank.getFraudMonitor().setRules(Collections.emptyList());
+        }
+        if (remote) {
+            if (atms != 1) {
+                throw new IllegalArgumentException("link=tcp serves a single terminal");
+            }
+            server = new BankServer(bank, 0);
+            services = new BankService[]{
+                    RemoteBankService.connect("localhost", server.getPort(), rttMillis, jitterMillis)};
+        } else {
+            services = new BankService[atms];
+            services[0] = new AsyncBankService(bank, Runnable::run);
+            for (int i = 1; i < atms; i++) {
+                AtmTerminal atm = bank.registerTerminal("ATM-" + (i + 1), Money.ofLira(1_000_000_000L));
+                services[i] = new AsyncBankService(bank, atm, Runnable::run);
+            }
+        }
+
+        // Zipf-like card popularity: card k is picked with weight 1 / (k + 1)^zipf
+        cdf = new double[accounts];
+        double acc = 0;
+        for (int i = 0; i < accounts; i++) {
+            acc += zipf == 0 ? 1 : 1 / Math.pow(i + 1, zipf);
+            cdf[i] = acc;
+        }
+        for (int i = 0; i < accounts; i++) {
+            cdf[i] /= acc;
+        }
+
+        for (String name : new String[]{"login", "deposit", "withdraw", "transfer", "balance", "session"}) {
+            latency.put(name, new LatencyHistogram());
+        }
+    }
+
+    // --- Run ---
+
+    void run() throws InterruptedException, IOException {
+        setUp();
+        long moneyBefore = totalBalances() - bank.getFleet().totalCash();
+        long balancesBefore = totalBalances();
+
+        System.out.printf("Running %d sessions at %d ATMs for %d s over %d cards "
+                        + "(zipf=%.2f, think=%d ms, %s threads, %s)%n",
+                sessions, atms, durationSeconds, accounts, zipf, thinkMillis,
+                VirtualThreads.available() ? "virtual" : "platform",
+                remote ? "tcp link, rtt=" + rttMillis + " ms, jitter=" + jitterMillis + " ms" : "local");
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("atm-session");
+        for (int i = 0; i < sessions; i++) {
+            long userSeed = seed + i;
+            BankService service = services[i % atms];
+            executor.execute(() -> virtualUser(service, new SplittableRandom(userSeed), deadline));
+        }
+        executor.shutdown();
+        executor.awaitTermination(durationSeconds + 60L, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        report(elapsed);
+        if (server != null) {
+            RemoteBankService link = (RemoteBankService) services[0];
+            System.out.printf("Link: %d frames sent in %d flushes (%.1f per flush)%n",
+                    link.framesSent(), link.flushes(), link.framesSent() / (double) Math.max(1, link.flushes()));
+        }
+        for (BankService service : services) {
+            service.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        checkInvariants(moneyBefore, balancesBefore);
+    }
+
+    private void virtualUser(BankService service, SplittableRandom random, long deadline) {
+        while (System.nanoTime() < deadline) {
+            long bankNanos = 0;
+            int idx = pickCard(random);
+
+            long t0 = System.nanoTime();
+            Customer customer = service.authenticateCustomer(cards[idx], PIN).join();
+            bankNanos += timed("login", t0);
+            if (customer == null) {
+                failedLogins.increment();
+                continue;
+            }
+            think(random);
+
+            long amount = Money.ofLira(10 + random.nextInt(491));
+            switch (pickOperation(random)) {
+                case 0: {
+                    t0 = System.nanoTime();
+                    boolean ok = service.deposit(customer, amount, RequestDeduplicator.newRequestId()).join();
+                    bankNanos += timed("deposit", t0);
+                    if (ok) deposited.add(amount); else declined.increment();
+                    break;
+                }
+                case 1: {
+                    // same shape as the UI: hold cash, confirm, then debit
+                    amount = Money.ofLira(20 * (1 + random.nextInt(25))); // something the notes can pay
+                    t0 = System.nanoTime();
+                    long reservation = service.reserveCash(customer, amount).join();
+                    long held = System.nanoTime() - t0;
+                    if (reservation == CashStock.NO_RESERVATION) {
+                        declined.increment();
+                        break;
+                    }
+                    think(random);
+                    t0 = System.nanoTime();
+                    boolean ok = service.withdrawReserved(customer, reservation, RequestDeduplicator.newRequestId()).join();
+                    long debit = System.nanoTime() - t0;
+                    latency.get("withdraw").record(held + debit);
+                    bankNanos += held + debit;
+                    if (ok) withdrawn.add(amount); else declined.increment();
+                    break;
+                }
+                case 2: {
+                    String target = cards[pickCard(random)];
+                    t0 = System.nanoTime();
+                    boolean valid = service.isValidCard(target).join();
+                    long check = System.nanoTime() - t0;
+                    think(random);
+                    t0 = System.nanoTime();
+                    boolean ok = valid && service.transfer(customer, target, amount, RequestDeduplicator.newRequestId()).join();
+                    long move = System.nanoTime() - t0;
+                    latency.get("transfer").record(check + move);
+                    bankNanos += check + move;
+                    if (!ok) declined.increment();
+                    break;
+                }
+                default: {
+                    t0 = System.nanoTime();
+                    service.getBalance(customer).join();
+                    bankNanos += timed("balance", t0);
+                }
+            }
+            // auto-logout after one transaction
+            latency.get("session").record(bankNanos);
+            completedSessions.increment();
+            think(random);
+        }
+    }
+
+    private long timed(String op, long startNanos) {
+        long d = System.nanoTime() - startNanos;
+        latency.get(op).record(d);
+        return d;
+    }
+
+    private int pickCard(SplittableRandom random) {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(accounts - 1, i >= 0 ? i : -i - 1);
+    }
+
+    private int pickOperation(SplittableRandom random) {
+        int total = 0;
+        for (int w : mix) total += w;
+        int r = random.nextInt(Math.max(1, total));
+        for (int op = 0; op < mix.length; op++) {
+            r -= mix[op];
+            if (r < 0) return op;
+        }
+        return mix.length - 1;
+    }
+
+    private void think(SplittableRandom random) {
+        if (thinkMillis <= 0) return;
+        long ms = (long) (-Math.log(1 - random.nextDouble()) * thinkMillis); // exponential
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Output ---
+
+    private void report(double elapsedSeconds) {
+        long done = completedSessions.sum();
+        System.out.printf("%nSessions: %d in %.1f s = %.0f sessions/s (%d failed logins, %d declined)%n",
+                done, elapsedSeconds, done / elapsedSeconds, failedLogins.sum(), declined.sum());
+        System.out.printf("%-9s %10s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p99 us", "p999 us", "max us");
+        for (Map.Entry<String, LatencyHistogram> e : latency.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            System.out.printf("%-9s %10d %10.1f %10.1f %10.1f %10.1f%n", e.getKey(), h.count(),
+                    h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3);
+        }
+        System.out.printf("%nBank-side metrics:%n%s", bank.getMetrics().dump());
+        FraudMonitor monitor = bank.getFraudMonitor();
+        System.out.printf("Fraud monitor: %d scored, %d dropped, %d flagged, %d blocked cards%n",
+                monitor.scored(), monitor.dropped(), monitor.flagged(), bank.getBlockedCards().size());
+    }
+
+    private void checkInvariants(long moneyBefore, long balancesBefore) {
+        long balancesAfter = totalBalances();
+        long moneyAfter = balancesAfter - bank.getFleet().totalCash();
+        boolean flowsMatch = balancesAfter == balancesBefore + deposited.sum() - withdrawn.sum();
+        boolean conserved = moneyAfter == moneyBefore;
+        boolean noOverdraft = true;
+        for (Customer c : customers) {
+            if (c.getAccount().getBalance() < 0) {
+                noOverdraft = false;
+                break;
+            }
+        }
+        System.out.printf("%nInvariants: balances-minus-cash conserved=%s, balances match deposits/withdrawals=%s, "
+                + "no negative balance=%s%n", conserved, flowsMatch, noOverdraft);
+        if (!(conserved && flowsMatch && noOverdraft)) {
+            System.exit(1);
+        }
+    }
+
+    private long totalBalances() {
+        long total = 0;
+        for (Customer c : customers) {
+            total += c.getAccount().getBalance();
+        }
+        return total;
+    }
+}
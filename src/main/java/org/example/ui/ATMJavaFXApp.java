@@ -1,6 +1,7 @@
 package org.example.ui;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -11,25 +12,80 @@ import javafx.scene.text.Text;
 import javafx.stage.Stage;
 import org.example.model.ATMState;
 import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.model.StatementEntry;
 import org.example.model.Technician;
+import org.example.remote.BankServer;
+import org.example.remote.RemoteBankService;
+import org.example.service.AsyncBankService;
+import org.example.service.AtmFleet;
+import org.example.service.AtmTerminal;
 import org.example.service.BankCentralSystem;
+import org.example.service.BankService;
+import org.example.service.CashStock;
+import org.example.service.DiagnosticReport;
+import org.example.service.RequestDeduplicator;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Simple JavaFX UI for the ATM Transaction System.
  * This reuses the same domain and service classes as the console version.
+ * Bank calls go through a {@link BankService}, so the FX Application
+ * Thread never waits for the bank. The bank is local by default; launch with
+ * {@code --bank=host:port} to use a {@link BankServer} instead, optionally
+ * with {@code --rtt=ms} and {@code --jitter=ms} to simulate a slow link.
+ * {@code --terminal=id} picks the bank's terminal this app is; by default
+ * {@link AtmFleet#DEFAULT_TERMINAL_ID}.
  */
 public class ATMJavaFXApp extends Application {
 
-    private final BankCentralSystem bank = new BankCentralSystem();
+    private static final long BANK_TIMEOUT_SECONDS = 30;
+    private static final String RETAINED_MESSAGE =
+            "Too many incorrect PINs. Your card has been retained; please contact your bank.";
+    private static final String BLOCKED_MESSAGE = "This card is blocked. Please contact your bank.";
+
+    private BankService bank;
+    private BankCentralSystem localBank; // null: the bank is remote
 
     private Stage primaryStage;
 
     private Customer currentCustomer;
     private Technician currentTechnician;
 
+    @Override
+    public void init() throws IOException {
+        Map<String, String> options = getParameters().getNamed();
+        String address = options.getOrDefault("bank", "local");
+        String terminalId = options.getOrDefault("terminal", AtmFleet.DEFAULT_TERMINAL_ID);
+        if (address.equals("local")) {
+            localBank = new BankCentralSystem(BankCentralSystem.DEFAULT_DATA_DIR);
+            AtmTerminal terminal = localBank.getFleet().get(terminalId);
+            if (terminal == null) {
+                localBank.close();
+                throw new IllegalArgumentException("Unknown terminal " + terminalId);
+            }
+            bank = new AsyncBankService(localBank, terminal);
+            return;
+        }
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("--bank must be 'local' or host:port, not " + address);
+        }
+        bank = RemoteBankService.connect(address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)), terminalId,
+                Long.parseLong(options.getOrDefault("rtt", "0")),
+                Long.parseLong(options.getOrDefault("jitter", "0")));
+    }
+
     @Override
     public void start(Stage stage) {
         this.primaryStage = stage;
@@ -38,13 +94,23 @@ public class ATMJavaFXApp extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() throws IOException {
+        bank.close();
+        if (localBank != null) {
+            localBank.close();
+        }
+    }
+
     // --- Scene builders ---
 
     private void showHomeScene() {
         VBox header = createHeader("ATM Transaction System", "Secure Banking Experience");
 
-        Label stateLabel = new Label("ATM State: " + bank.getAtmState());
+        Label stateLabel = new Label("ATM State: ...");
         stateLabel.getStyleClass().add("atm-state-label");
+        bank.isInService().thenAccept(inService -> Platform.runLater(() ->
+                stateLabel.setText(inService ? "ATM State: In service" : "ATM State: Temporarily out of service")));
 
         Button customerBtn = new Button("Customer Login");
         Button techBtn = new Button("Technician Login");
@@ -75,12 +141,17 @@ public class ATMJavaFXApp extends Application {
     // --- Customer flow ---
 
     private void showCustomerLoginScene() {
-        if (bank.getAtmState() != ATMState.ACTIVE) {
-            showError("ATM is not available for customers right now.");
-            showHomeScene();
-            return;
-        }
+        onBank(bank.isInService(), inService -> {
+            if (!inService) {
+                showError("ATM is not available for customers right now.");
+                showHomeScene();
+            } else {
+                showCustomerLoginForm();
+            }
+        });
+    }
 
+    private void showCustomerLoginForm() {
         VBox header = createHeader("Customer Login", "Please insert your card and enter your PIN.");
 
         TextField cardField = new TextField();
@@ -106,16 +177,18 @@ public class ATMJavaFXApp extends Application {
 
         backBtn.setOnAction(e -> showHomeScene());
         loginBtn.setOnAction(e -> {
-            long start = System.currentTimeMillis();
-            Customer c = bank.authenticateCustomer(cardField.getText().trim(), pinField.getText().trim());
-            long duration = System.currentTimeMillis() - start;
-            if (c == null) {
-                showError("Authentication failed (" + duration + " ms).");
-            } else {
-                this.currentCustomer = c;
-                showInfo("Welcome, " + c.getName() + " (" + duration + " ms)");
-                showCustomerMenuScene();
-            }
+            String cardNumber = cardField.getText().trim();
+            onBank(bank.authenticateCustomer(cardNumber, pinField.getText().trim()), c -> {
+                if (c == null) {
+                    onBank(bank.isCardRetained(cardNumber).thenCombine(bank.isCardBlocked(cardNumber),
+                            (retained, blocked) -> retained ? RETAINED_MESSAGE
+                                    : blocked ? BLOCKED_MESSAGE : "Authentication failed."), this::showError);
+                } else {
+                    this.currentCustomer = c;
+                    showInfo("Welcome, " + c.getName());
+                    showCustomerMenuScene();
+                }
+            });
         });
 
         BorderPane root = createBaseLayout(header, card, "Never share your PIN with anyone, including bank staff.");
@@ -184,37 +257,45 @@ public class ATMJavaFXApp extends Application {
         Button withdrawBtn = new Button("Withdraw");
         Button balanceBtn = new Button("Check Balance");
         Button transferBtn = new Button("Transfer Money");
+        Button statementBtn = new Button("Mini Statement");
 
         depositBtn.getStyleClass().add("atm-primary-button");
         withdrawBtn.getStyleClass().add("atm-primary-button");
         balanceBtn.getStyleClass().add("atm-secondary-button");
         transferBtn.getStyleClass().add("atm-secondary-button");
+        statementBtn.getStyleClass().add("atm-secondary-button");
 
         depositBtn.setMaxWidth(Double.MAX_VALUE);
         withdrawBtn.setMaxWidth(Double.MAX_VALUE);
         balanceBtn.setMaxWidth(Double.MAX_VALUE);
         transferBtn.setMaxWidth(Double.MAX_VALUE);
+        statementBtn.setMaxWidth(Double.MAX_VALUE);
 
         depositBtn.setOnAction(e -> doDepositFx());
         withdrawBtn.setOnAction(e -> doWithdrawFx());
-        balanceBtn.setOnAction(e -> {
-            showInfo("Your current balance: " + bank.getBalance(currentCustomer) + " TL");
+        balanceBtn.setOnAction(e -> onBank(bank.getBalance(currentCustomer), balance -> {
+            showInfo("Your current balance: " + Money.format(balance) + " TL");
             showMonetaryScene();
-        });
+        }));
         transferBtn.setOnAction(e -> doTransferFx());
+        statementBtn.setOnAction(e -> onBank(
+                bank.miniStatement(currentCustomer, BankCentralSystem.MINI_STATEMENT_ENTRIES), entries -> {
+                    showMiniStatementFx(entries);
+                    showMonetaryScene();
+                }));
 
         Button backBtn = new Button("Cancel");
         backBtn.getStyleClass().add("atm-secondary-button");
         backBtn.setOnAction(e -> showCustomerMenuScene());
 
-        VBox card = new VBox(8, title, depositBtn, withdrawBtn, balanceBtn, transferBtn, backBtn);
+        VBox card = new VBox(8, title, depositBtn, withdrawBtn, balanceBtn, transferBtn, statementBtn, backBtn);
         card.setPadding(new Insets(15));
         card.setAlignment(Pos.CENTER);
         card.getStyleClass().add("atm-card");
 
         VBox header = createHeader("Monetary Transactions", "Choose a transaction type.");
         BorderPane root = createBaseLayout(header, card, "Cash withdrawals are limited to daily transaction limits.");
-        setSceneWithTheme(root, 500, 400);
+        setSceneWithTheme(root, 500, 440);
     }
 
     private void showManageAccountScene() {
@@ -280,16 +361,16 @@ public class ATMJavaFXApp extends Application {
         card.getStyleClass().add("atm-card");
 
         backBtn.setOnAction(e -> showHomeScene());
-        loginBtn.setOnAction(e -> {
-            Technician tech = bank.authenticateTechnician(userField.getText().trim(), passField.getText().trim());
-            if (tech == null) {
-                showError("Access denied.");
-            } else {
-                this.currentTechnician = tech;
-                showInfo("Welcome, technician " + tech.getUsername());
-                showTechnicianMenuScene();
-            }
-        });
+        loginBtn.setOnAction(e -> onBank(
+                bank.authenticateTechnician(userField.getText().trim(), passField.getText().trim()), tech -> {
+                    if (tech == null) {
+                        showError("Access denied.");
+                    } else {
+                        this.currentTechnician = tech;
+                        showInfo("Welcome, technician " + tech.getUsername());
+                        showTechnicianMenuScene();
+                    }
+                }));
 
         BorderPane root = createBaseLayout(header, card, "All actions are logged for security purposes.");
         setSceneWithTheme(root, 500, 400);
@@ -306,25 +387,58 @@ public class ATMJavaFXApp extends Application {
 
         Button enableBtn = new Button("Enable Maintenance Mode");
         Button disableBtn = new Button("Disable Maintenance Mode");
+        Button metricsBtn = new Button("Show Metrics");
+        Button retainedBtn = new Button("Retained Cards");
+        Button blockedBtn = new Button("Blocked Cards");
+        Button blocklistBtn = new Button("Load Blocklist");
+        Button refillBtn = new Button("Refill Cassettes");
+        Button forecastBtn = new Button("Cash Forecast");
+        Button uptimeBtn = new Button("Uptime");
+        Button emergenciesBtn = new Button("Emergency Reports");
         Button logoutBtn = new Button("Log Out");
 
         enableBtn.getStyleClass().add("atm-primary-button");
         disableBtn.getStyleClass().add("atm-secondary-button");
+        metricsBtn.getStyleClass().add("atm-secondary-button");
+        retainedBtn.getStyleClass().add("atm-secondary-button");
+        blockedBtn.getStyleClass().add("atm-secondary-button");
+        blocklistBtn.getStyleClass().add("atm-secondary-button");
+        refillBtn.getStyleClass().add("atm-secondary-button");
+        forecastBtn.getStyleClass().add("atm-secondary-button");
+        uptimeBtn.getStyleClass().add("atm-secondary-button");
+        emergenciesBtn.getStyleClass().add("atm-secondary-button");
         logoutBtn.getStyleClass().add("atm-danger-button");
 
         enableBtn.setMaxWidth(Double.MAX_VALUE);
         disableBtn.setMaxWidth(Double.MAX_VALUE);
+        metricsBtn.setMaxWidth(Double.MAX_VALUE);
+        retainedBtn.setMaxWidth(Double.MAX_VALUE);
+        blockedBtn.setMaxWidth(Double.MAX_VALUE);
+        blocklistBtn.setMaxWidth(Double.MAX_VALUE);
+        refillBtn.setMaxWidth(Double.MAX_VALUE);
+        forecastBtn.setMaxWidth(Double.MAX_VALUE);
+        uptimeBtn.setMaxWidth(Double.MAX_VALUE);
+        emergenciesBtn.setMaxWidth(Double.MAX_VALUE);
         logoutBtn.setMaxWidth(Double.MAX_VALUE);
 
         enableBtn.setOnAction(e -> enableMaintenanceFx());
         disableBtn.setOnAction(e -> disableMaintenanceFx());
+        metricsBtn.setOnAction(e -> showMetricsFx());
+        retainedBtn.setOnAction(e -> showRetainedCardsFx());
+        blockedBtn.setOnAction(e -> showBlockedCardsFx());
+        blocklistBtn.setOnAction(e -> loadBlocklistFx());
+        refillBtn.setOnAction(e -> refillCassettesFx());
+        forecastBtn.setOnAction(e -> showCashForecastFx());
+        uptimeBtn.setOnAction(e -> showUptimeFx());
+        emergenciesBtn.setOnAction(e -> showEmergenciesFx());
         logoutBtn.setOnAction(e -> {
             this.currentTechnician = null;
             showInfo("Technician logged out.");
             showHomeScene();
         });
 
-        VBox card = new VBox(8, title, enableBtn, disableBtn, logoutBtn);
+        VBox card = new VBox(8, title, enableBtn, disableBtn, metricsBtn, retainedBtn, blockedBtn,
+                blocklistBtn, refillBtn, forecastBtn, uptimeBtn, emergenciesBtn, logoutBtn);
         card.setPadding(new Insets(15));
         card.setAlignment(Pos.CENTER);
         card.getStyleClass().add("atm-card");
@@ -332,7 +446,7 @@ public class ATMJavaFXApp extends Application {
         VBox header = createHeader("Maintenance Menu", "Change ATM availability state.");
         BorderPane root = createBaseLayout(header, card,
                 "Ensure no customer is using the ATM before enabling maintenance mode.");
-        setSceneWithTheme(root, 500, 400);
+        setSceneWithTheme(root, 500, 680);
     }
 
     // --- Monetary actions (FX) ---
@@ -346,112 +460,151 @@ public class ATMJavaFXApp extends Application {
             autoLogoutAfterTransaction();
             return;
         }
-        BigDecimal amount = parseAmount(result.get());
-        if (amount == null) {
+        long amount = parseAmount(result.get());
+        if (amount <= 0) {
             showInfo("Deposit cancelled. Money and card returned.");
             autoLogoutAfterTransaction();
             return;
         }
 
-        if (!showConfirmation("Confirm deposit of " + amount + " TL?")) {
+        if (!showConfirmation("Confirm deposit of " + Money.format(amount) + " TL?")) {
             showInfo("Deposit cancelled. Money and card returned.");
             autoLogoutAfterTransaction();
             return;
         }
-        boolean ok = bank.deposit(currentCustomer, amount);
-        if (ok) {
-            showInfo("Deposit successful. New balance: " + bank.getBalance(currentCustomer) + " TL");
-            autoLogoutAfterTransaction();
-        } else {
-            showError("Error while depositing. Operation cancelled.");
-            autoLogoutAfterTransaction();
-        }
+        Customer customer = currentCustomer;
+        long requestId = RequestDeduplicator.newRequestId();
+        onBankRetrying(() -> bank.deposit(customer, amount, requestId), ok -> {
+            if (ok) {
+                onBank(bank.getBalance(customer), balance -> {
+                    showInfo("Deposit successful. New balance: " + Money.format(balance) + " TL");
+                    autoLogoutAfterTransaction();
+                });
+            } else {
+                showError("Error while depositing. Operation cancelled.");
+                autoLogoutAfterTransaction();
+            }
+        });
     }
 
     private void doWithdrawFx() {
         if (currentCustomer == null)
             return;
-        while (true) {
-            Optional<String> result = showTextInput("Withdraw", "Enter amount to withdraw:");
-            if (result.isEmpty())
-                return;
-            BigDecimal amount = parseAmount(result.get());
-            if (amount == null)
-                return;
+        Customer customer = currentCustomer;
+        Optional<String> result = showTextInput("Withdraw", "Enter amount to withdraw:");
+        if (result.isEmpty())
+            return;
+        long amount = parseAmount(result.get());
+        if (amount <= 0)
+            return;
+
+        onBank(bank.withdrawalAllowance(customer), allowance -> {
+            if (amount <= allowance) {
+                reserveAndWithdrawFx(customer, amount);
+            } else if (allowance <= 0) {
+                showError("You have reached your withdrawal limit for now.");
+                showMonetaryScene();
+            } else {
+                showError("This exceeds your withdrawal limit. You can withdraw up to "
+                        + Money.format(allowance) + " TL right now.");
+                doWithdrawFx();
+            }
+        });
+    }
 
-            if (bank.getAtmCashStock().compareTo(amount) < 0) {
-                boolean again = showConfirmation("ATM doesn't have enough cash. Enter different amount?");
-                if (!again) {
+    private void reserveAndWithdrawFx(Customer customer, long amount) {
+        onBank(bank.reserveCash(customer, amount), reservation -> {
+            if (reservation == CashStock.NO_RESERVATION) {
+                boolean again = showConfirmation("ATM cannot pay out this amount with the notes it has. "
+                        + "Enter a different amount?");
+                if (again) {
+                    doWithdrawFx();
+                } else {
                     showInfo("Card returned.");
                     showMonetaryScene();
-                    return;
                 }
-                continue;
+                return;
             }
 
-            if (!showConfirmation("Confirm withdrawal of " + amount + " TL?")) {
+            if (!showConfirmation("Confirm withdrawal of " + Money.format(amount) + " TL?")) {
+                releaseCashFx(customer, reservation);
                 showInfo("Withdrawal cancelled. Card returned.");
                 showMonetaryScene();
                 return;
             }
 
-            boolean ok = bank.withdraw(currentCustomer, amount);
-            if (!ok) {
-                showError("Insufficient funds. Please enter an amount within your balance.");
-                continue;
-            } else {
-                showInfo("Please take your cash. New balance: " + bank.getBalance(currentCustomer) + " TL");
-                autoLogoutAfterTransaction();
-                return;
-            }
-        }
+            // A retry sends the same reservation: the bank pays it out once, and
+            // releasing it after a lost reply that did pay out puts nothing back.
+            long requestId = RequestDeduplicator.newRequestId();
+            onBankRetrying(() -> bank.withdrawReserved(customer, reservation, requestId), ok -> {
+                if (!ok) {
+                    showError("Withdrawal declined. Please enter an amount within your balance and limits.");
+                    doWithdrawFx();
+                } else {
+                    onBank(bank.getBalance(customer), balance -> {
+                        showInfo("Please take your cash. New balance: " + Money.format(balance) + " TL");
+                        autoLogoutAfterTransaction();
+                    });
+                }
+            }, () -> releaseCashFx(customer, reservation));
+        });
     }
 
     private void doTransferFx() {
         if (currentCustomer == null)
             return;
-        String targetCard;
-        while (true) {
-            Optional<String> cardResult = showTextInput("Transfer", "Enter target card number:");
-            if (cardResult.isEmpty()) {
-                showMonetaryScene();
-                return;
-            }
-            targetCard = cardResult.get().trim();
-            if (!bank.isValidCard(targetCard)) {
+        Optional<String> cardResult = showTextInput("Transfer", "Enter target card number:");
+        if (cardResult.isEmpty()) {
+            showMonetaryScene();
+            return;
+        }
+        String targetCard = cardResult.get().trim();
+        onBank(bank.isValidCard(targetCard), valid -> {
+            if (!valid) {
                 showError("Invalid card number. Please enter a valid card number.");
-                continue;
+                doTransferFx();
+                return;
             }
 
             if (targetCard.equals(currentCustomer.getCardNumber())) {
                 showError("You cannot transfer money to your own account. Please enter a different card number.");
-                continue;
+                doTransferFx();
+                return;
             }
 
             if (!showConfirmation("Is this target card correct?\n" + targetCard)) {
-                continue;
+                doTransferFx();
+                return;
             }
-            break;
-        }
+            doTransferAmountFx(targetCard);
+        });
+    }
 
+    private void doTransferAmountFx(String targetCard) {
+        Customer customer = currentCustomer;
         Optional<String> amountResult = showTextInput("Transfer", "Enter amount to transfer:");
         if (amountResult.isEmpty()) {
             showMonetaryScene();
             return;
         }
-        BigDecimal amount = parseAmount(amountResult.get());
-        if (amount == null) {
+        long amount = parseAmount(amountResult.get());
+        if (amount <= 0) {
             showMonetaryScene();
             return;
         }
 
-        boolean ok = bank.transfer(currentCustomer, targetCard, amount);
-        if (ok) {
-            showInfo("Transfer completed. New balance: " + bank.getBalance(currentCustomer) + " TL");
-        } else {
-            showError("Transfer failed (insufficient funds or system error).");
-        }
-        autoLogoutAfterTransaction();
+        long requestId = RequestDeduplicator.newRequestId();
+        onBankRetrying(() -> bank.transfer(customer, targetCard, amount, requestId), ok -> {
+            if (ok) {
+                onBank(bank.getBalance(customer), balance -> {
+                    showInfo("Transfer completed. New balance: " + Money.format(balance) + " TL");
+                    autoLogoutAfterTransaction();
+                });
+            } else {
+                showError("Transfer failed (insufficient funds or system error).");
+                autoLogoutAfterTransaction();
+            }
+        });
     }
 
     // --- Manage account (FX) ---
@@ -459,30 +612,40 @@ public class ATMJavaFXApp extends Application {
     private void doChangePinFx() {
         if (currentCustomer == null)
             return;
+        Customer customer = currentCustomer;
         Optional<String> oldPinRes = showTextInput("Change PIN", "Enter your old PIN:");
         if (oldPinRes.isEmpty())
             return;
-        if (!currentCustomer.getPin().equals(oldPinRes.get().trim())) {
-            showError("Incorrect PIN. Card returned.");
-            autoLogoutAfterTransaction();
-            return;
-        }
+        onBank(bank.verifyPin(customer, oldPinRes.get().trim()), verified -> {
+            if (!verified) {
+                onBank(bank.isCardRetained(customer.getCardNumber()), retained -> {
+                    showError(retained ? RETAINED_MESSAGE : "Incorrect PIN. Card returned.");
+                    autoLogoutAfterTransaction();
+                });
+                return;
+            }
 
-        Optional<String> newPin1Res = showTextInput("Change PIN", "Enter your new PIN:");
-        if (newPin1Res.isEmpty())
-            return;
-        Optional<String> newPin2Res = showTextInput("Change PIN", "Re-enter your new PIN:");
-        if (newPin2Res.isEmpty())
-            return;
+            Optional<String> newPin1Res = showTextInput("Change PIN", "Enter your new PIN:");
+            if (newPin1Res.isEmpty())
+                return;
+            Optional<String> newPin2Res = showTextInput("Change PIN", "Re-enter your new PIN:");
+            if (newPin2Res.isEmpty())
+                return;
 
-        if (!newPin1Res.get().trim().equals(newPin2Res.get().trim())) {
-            showError("PINs do not match, try again. Card returned.");
-            autoLogoutAfterTransaction();
-            return;
-        }
-        currentCustomer.setPin(newPin1Res.get().trim());
-        showInfo("PIN successfully changed.");
-        autoLogoutAfterTransaction();
+            if (!newPin1Res.get().trim().equals(newPin2Res.get().trim())) {
+                showError("PINs do not match, try again. Card returned.");
+                autoLogoutAfterTransaction();
+                return;
+            }
+            onBank(bank.changePin(customer, newPin1Res.get().trim()), changed -> {
+                if (changed) {
+                    showInfo("PIN successfully changed.");
+                } else {
+                    showError("System busy, PIN not changed. Please try again later.");
+                }
+                autoLogoutAfterTransaction();
+            });
+        });
     }
 
     private void doReportEmergencyFx() {
@@ -503,35 +666,245 @@ public class ATMJavaFXApp extends Application {
             return;
         }
 
-        long start = System.currentTimeMillis();
-        bank.reportEmergency(type, currentCustomer.getCardNumber());
-        long duration = System.currentTimeMillis() - start;
-
-        showInfo("Report received (" + duration + " ms). A technician is going to assist you, please be patient.");
-        autoLogoutAfterTransaction();
+        onBank(bank.reportEmergency(currentCustomer, type), done -> {
+            showInfo("Report received. A technician is going to assist you, please be patient.");
+            autoLogoutAfterTransaction();
+        });
     }
 
     // --- Technician actions (FX) ---
 
     private void enableMaintenanceFx() {
-        bank.setAtmState(ATMState.ON_MAINTENANCE);
-        showInfo("ATM state changed to ON_MAINTENANCE.\nCard reader locked. Screen: 'Temporarily Out of Service'.");
-        showTechnicianMenuScene();
+        onBank(bank.setAtmState(currentTechnician, ATMState.ON_MAINTENANCE), ok -> {
+            if (ok) {
+                showInfo("ATM state changed to ON_MAINTENANCE.\nCard reader locked. Screen: 'Temporarily Out of Service'.");
+                showTechnicianMenuScene();
+            } else {
+                onBank(bank.getAtmState(currentTechnician), state -> {
+                    showError("Cannot enter maintenance mode from " + state + ".");
+                    showTechnicianMenuScene();
+                });
+            }
+        });
     }
 
     private void disableMaintenanceFx() {
-        if (!bank.selfCheckOk()) {
-            showError("Error, check the ATM Machine. Staying in ON_MAINTENANCE.");
-            bank.setAtmState(ATMState.ON_MAINTENANCE);
-        } else {
-            bank.setAtmState(ATMState.ACTIVE);
-            showInfo("ATM ready. Screen: 'Ready'.");
+        onBank(bank.runDiagnostics(currentTechnician), report -> {
+            showDiagnosticsFx(report);
+            if (!report.passed()) {
+                onBank(bank.setAtmState(currentTechnician, ATMState.ON_MAINTENANCE), done -> {
+                    showError("Error, check the ATM Machine. Staying in ON_MAINTENANCE.");
+                    showTechnicianMenuScene();
+                });
+            } else {
+                onBank(bank.setAtmState(currentTechnician, ATMState.ACTIVE), active -> {
+                    if (active) {
+                        showInfo("ATM ready. Screen: 'Ready'.");
+                        showTechnicianMenuScene();
+                    } else {
+                        onBank(bank.getAtmState(currentTechnician), state -> {
+                            showError("Cannot go back into service from " + state
+                                    + ". Enable maintenance mode first.");
+                            showTechnicianMenuScene();
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    private void showDiagnosticsFx(DiagnosticReport report) {
+        TextArea text = new TextArea(report.toString());
+        text.setEditable(false);
+        text.setStyle("-fx-font-family: monospace;");
+        text.setPrefSize(760, 200);
+        Alert alert = new Alert(report.passed() ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
+        alert.setTitle("Self-check");
+        alert.setHeaderText(report.passed() ? "All checks passed" : "Some checks failed");
+        alert.getDialogPane().setContent(text);
+        alert.setResizable(true);
+        alert.showAndWait();
+    }
+
+    private void showRetainedCardsFx() {
+        onBank(bank.getRetainedCards(currentTechnician), retained -> {
+            if (retained.isEmpty()) {
+                showInfo("No cards are retained.");
+                return;
+            }
+            StringBuilder list = new StringBuilder();
+            retained.forEach((card, atm) -> list.append(card).append(" at ").append(atm).append('\n'));
+            Optional<String> card = showTextInput("Retained Cards", list + "\nCard number to give back:");
+            if (card.isEmpty() || card.get().isBlank())
+                return;
+            onBank(bank.returnRetainedCard(currentTechnician, card.get().trim()), returned -> {
+                if (returned) {
+                    showInfo("Card returned to its customer.");
+                } else {
+                    showError("That card is not retained.");
+                }
+            });
+        });
+    }
+
+    private void showBlockedCardsFx() {
+        CompletableFuture<Integer> listed = bank.blocklistSize(currentTechnician);
+        onBank(bank.getBlockedCards(currentTechnician), blocked -> onBank(listed, size -> {
+            if (blocked.isEmpty()) {
+                showInfo("No cards are blocked; " + size + " on the blocklist.");
+                return;
+            }
+            StringBuilder list = new StringBuilder();
+            list.append(size).append(" cards on the blocklist.\n\n");
+            blocked.forEach((card, reason) -> list.append(card).append(": ").append(reason).append('\n'));
+            Optional<String> card = showTextInput("Blocked Cards", list + "\nCard number to unblock:");
+            if (card.isEmpty() || card.get().isBlank())
+                return;
+            onBank(bank.unblockCard(currentTechnician, card.get().trim()), unblocked -> {
+                if (unblocked) {
+                    showInfo("Card unblocked.");
+                } else {
+                    showError("That card is not blocked.");
+                }
+            });
+        }));
+    }
+
+    private void refillCassettesFx() {
+        onBank(bank.refillCassettes(currentTechnician), added -> onBank(bank.noteCounts(currentTechnician), counts -> {
+            long[] denominations = CashStock.denominations();
+            StringBuilder text = new StringBuilder("Loaded " + Money.format(added)
+                    + " TL in notes. Cassettes now hold:");
+            for (int i = 0; i < counts.length; i++) {
+                text.append('\n').append(counts[i]).append(" x ")
+                        .append(Money.toBigDecimal(denominations[i]).stripTrailingZeros().toPlainString())
+                        .append(" TL");
+            }
+            showInfo(text.toString());
+        }));
+    }
+
+    private void showCashForecastFx() {
+        onBank(bank.cashForecastReport(currentTechnician), report -> showReportFx("Cash Forecast",
+                "Withdrawals by terminal, and when the cassettes run low", report, 200));
+    }
+
+    private void showUptimeFx() {
+        onBank(bank.uptimeReport(currentTechnician, 30), report -> showReportFx("Uptime",
+                "Time in service and out of it, by terminal", report, 200));
+    }
+
+    private void showEmergenciesFx() {
+        onBank(bank.emergencyReport(currentTechnician), report -> showReportFx("Emergency Reports",
+                "Delivery of customer reports to the bank", report, 200));
+    }
+
+    private void loadBlocklistFx() {
+        Optional<String> file = showTextInput("Load Blocklist", "Blocklist file, one card number per line:");
+        if (file.isEmpty() || file.get().isBlank())
+            return;
+        onBank(bank.loadBlocklist(currentTechnician, file.get().trim()),
+                size -> showInfo(size + " cards on the blocklist."));
+    }
+
+    private void showMetricsFx() {
+        onBank(bank.metricsReport(), report -> showReportFx("Bank Metrics",
+                "Latency (microseconds) and outcomes per operation", report, 320));
+    }
+
+    /** A resizable dialog showing a monospaced text report. */
+    private void showReportFx(String title, String header, String report, int height) {
+        TextArea text = new TextArea(report);
+        text.setEditable(false);
+        text.setStyle("-fx-font-family: monospace;");
+        text.setPrefSize(760, height);
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(header);
+        alert.getDialogPane().setContent(text);
+        alert.setResizable(true);
+        alert.showAndWait();
+    }
+
+    private void showMiniStatementFx(List<StatementEntry> entries) {
+        StringBuilder lines = new StringBuilder();
+        for (StatementEntry e : entries) {
+            lines.append(e).append('\n');
         }
-        showTechnicianMenuScene();
+        TextArea text = new TextArea(entries.isEmpty() ? "No transactions yet." : lines.toString());
+        text.setEditable(false);
+        text.setStyle("-fx-font-family: monospace;");
+        text.setPrefSize(560, 260);
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Mini Statement");
+        alert.setHeaderText("Last " + BankCentralSystem.MINI_STATEMENT_ENTRIES + " transactions, newest first");
+        alert.getDialogPane().setContent(text);
+        alert.setResizable(true);
+        alert.showAndWait();
     }
 
     // --- Helpers ---
 
+    /**
+     * Gives a cash reservation back without waiting. A failed release is
+     * shown to the operator, since the cash stays held until a technician
+     * or, for a remote bank, the session's expiry frees it.
+     */
+    private void releaseCashFx(Customer customer, long reservation) {
+        bank.releaseCash(customer, reservation).whenComplete((ignored, error) -> {
+            if (error != null) {
+                Platform.runLater(() -> showError("Cash reservation " + reservation
+                        + " could not be released and is still held. Please call a technician."));
+            }
+        });
+    }
+
+    /**
+     * Runs a bank call off the FX Application Thread and continues with its
+     * result back on it. The current scene is disabled until then, so the
+     * same action cannot be started twice.
+     */
+    private <T> void onBank(CompletableFuture<T> call, Consumer<T> then) {
+        Parent root = primaryStage.getScene().getRoot();
+        root.setDisable(true);
+        call.whenComplete((result, error) -> Platform.runLater(() -> {
+            root.setDisable(false);
+            if (error != null) {
+                showError("The bank could not complete the request. Please try again.");
+                return;
+            }
+            then.accept(result);
+        }));
+    }
+
+    /**
+     * Like {@link #onBank}, but if the bank fails or does not answer within
+     * {@link #BANK_TIMEOUT_SECONDS} the customer may send the same call again.
+     * Only for calls that carry a request id, so a retry is never applied twice.
+     */
+    private <T> void onBankRetrying(Supplier<CompletableFuture<T>> call, Consumer<T> then) {
+        onBankRetrying(call, then, () -> { });
+    }
+
+    /** As above; {@code abandoned} runs if the customer gives up instead of trying again. */
+    private <T> void onBankRetrying(Supplier<CompletableFuture<T>> call, Consumer<T> then, Runnable abandoned) {
+        Parent root = primaryStage.getScene().getRoot();
+        root.setDisable(true);
+        call.get().orTimeout(BANK_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .whenComplete((result, error) -> Platform.runLater(() -> {
+                    root.setDisable(false);
+                    if (error == null) {
+                        then.accept(result);
+                    } else if (showConfirmation("The bank did not answer. Try again?")) {
+                        onBankRetrying(call, then, abandoned);
+                    } else {
+                        abandoned.run();
+                        showError("The transaction may not have completed. Please check your balance.");
+                        autoLogoutAfterTransaction();
+                    }
+                }));
+    }
+
     private void autoLogoutAfterTransaction() {
         // Homework gereksinimine göre: işlem tamamlandığında otomatik logout ve kart
         // iadesi
@@ -548,17 +921,23 @@ public class ATMJavaFXApp extends Application {
         return dialog.showAndWait();
     }
 
-    private BigDecimal parseAmount(String text) {
+    /** Parses an amount in TL and returns it in kurus, or 0 if it was rejected. */
+    private long parseAmount(String text) {
         try {
             BigDecimal amount = new BigDecimal(text.trim());
             if (amount.signum() <= 0) {
                 showError("Amount must be positive.");
-                return null;
+                return 0;
+            }
+            long minor = Money.toMinor(amount);
+            if (minor <= 0) {
+                showError("Invalid number.");
+                return 0;
             }
-            return amount;
+            return minor;
         } catch (NumberFormatException e) {
             showError("Invalid number.");
-            return null;
+            return 0;
         }
     }
 
@@ -0,0 +1,86 @@
+package org.example.remote;
+
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.service.BankCentralSystem;
+import org.example.service.CashStock;
+import org.example.service.RequestDeduplicator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CashReservationSessionTest {
+
+    private BankCentralSystem bank;
+    private BankServer server;
+    private RemoteBankService ali;
+    private RemoteBankService ayse;
+    private Customer aliCustomer;
+    private Customer ayseCustomer;
+
+    @BeforeEach
+    void start() throws IOException {
+        bank = new BankCentralSystem();
+        server = new BankServer(bank, 0);
+        ali = RemoteBankService.connect("localhost", server.getPort());
+        ayse = RemoteBankService.connect("localhost", server.getPort());
+        aliCustomer = ali.authenticateCustomer("1", "1234").join();
+        ayseCustomer = ayse.authenticateCustomer("5555666677778888", "4321").join();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        ali.close();
+        ayse.close();
+        server.close();
+        bank.close();
+    }
+
+    @Test
+    void onlyTheReservingSessionCanPayOut() {
+        long reservation = ali.reserveCash(aliCustomer, Money.ofLira(100)).join();
+        assertNotEquals(CashStock.NO_RESERVATION, reservation);
+
+        ayse.releaseCash(ayseCustomer, reservation).join();
+        assertEquals(Money.ofLira(100), reserved());
+        assertFalse(ayse.withdrawReserved(ayseCustomer, reservation, RequestDeduplicator.newRequestId()).join());
+        assertEquals(Money.ofLira(100), reserved());
+
+        assertTrue(ali.withdrawReserved(aliCustomer, reservation, RequestDeduplicator.newRequestId()).join());
+        assertEquals(0, reserved());
+        assertEquals(Money.ofLira(1_900), (long) ali.getBalance(aliCustomer).join());
+    }
+
+    @Test
+    void onlyTheReservingSessionCanRelease() {
+        long reservation = ali.reserveCash(aliCustomer, Money.ofLira(100)).join();
+
+        ayse.releaseCash(ayseCustomer, reservation).join();
+        assertEquals(Money.ofLira(100), reserved());
+        ali.releaseCash(aliCustomer, reservation).join();
+        assertEquals(0, reserved());
+    }
+
+    @Test
+    void reservingNeedsACustomerSession() throws IOException {
+        try (RemoteBankService anonymous = RemoteBankService.connect("localhost", server.getPort())) {
+            CompletionException e = assertThrows(CompletionException.class,
+                    () -> anonymous.reserveCash(aliCustomer, Money.ofLira(100)).join());
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(0, reserved());
+    }
+
+    private long reserved() {
+        return bank.getDefaultTerminal().getCashStock().reserved();
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.remote;
+
+import org.example.model.ATMState;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.model.Technician;
+import org.example.service.AtmTerminal;
+import org.example.service.BankCentralSystem;
+import org.example.service.CashStock;
+import org.example.service.EmergencyReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Sessions act on the terminal they logged in at. */
+class TerminalSessionTest {
+
+    private BankCentralSystem bank;
+    private BankServer server;
+    private AtmTerminal second;
+    private RemoteBankService atm;
+
+    @BeforeEach
+    void start() throws IOException {
+        bank = new BankCentralSystem();
+        second = bank.registerTerminal("ATM-2", Money.ofLira(10_000));
+        server = new BankServer(bank, 0);
+        atm = RemoteBankService.connect("localhost", server.getPort(), "ATM-2", 0, 0);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        atm.close();
+        server.close();
+        bank.close();
+    }
+
+    @Test
+    void cashComesFromTheSessionsTerminal() {
+        Customer ali = atm.authenticateCustomer("1", "1234").join();
+        long reservation = atm.reserveCash(ali, Money.ofLira(100)).join();
+        assertNotEquals(CashStock.NO_RESERVATION, reservation);
+
+        assertEquals(Money.ofLira(100), second.getCashStock().reserved());
+        assertEquals(0, bank.getDefaultTerminal().getCashStock().reserved());
+    }
+
+    @Test
+    void techniciansManageTheirOwnTerminal() {
+        Technician tech = atm.authenticateTechnician("tech1", "password").join();
+        assertTrue(atm.setAtmState(tech, ATMState.ON_MAINTENANCE).join());
+
+        assertEquals(ATMState.ON_MAINTENANCE, atm.getAtmState(tech).join());
+        assertEquals(ATMState.ON_MAINTENANCE, second.getState());
+        assertEquals(ATMState.ACTIVE, bank.getDefaultTerminal().getState());
+        assertFalse(atm.isInService().join());
+        assertEquals(second.getCashStock().available(), (long) atm.getAtmCashStock(tech).join());
+        assertEquals("ATM-2", atm.runDiagnostics(tech).join().getTerminalId());
+    }
+
+    @Test
+    void longEmergencyTypesAreClipped() {
+        bank.getEmergencyQueue().setNotifier(report -> {
+            throw new IOException("link down"); // keeps the report in the queue
+        });
+        Customer ali = atm.authenticateCustomer("1", "1234").join();
+        atm.reportEmergency(ali, "x".repeat(300)).join();
+
+        EmergencyReport report = bank.getEmergencyQueue().pending().stream()
+                .filter(r -> r.getTerminalId().equals("ATM-2")).findFirst().orElseThrow();
+        assertEquals("x".repeat(255), report.getType());
+    }
+
+    @Test
+    void unknownTerminalsCannotLogIn() throws IOException {
+        try (RemoteBankService unknown = RemoteBankService.connect("localhost", server.getPort(), "ATM-9", 0, 0)) {
+            CompletionException e = assertThrows(CompletionException.class,
+                    () -> unknown.authenticateCustomer("1", "1234").join());
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
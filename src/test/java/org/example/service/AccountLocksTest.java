@@ -0,0 +1,121 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountLocksTest {
+
+    @Test
+    void roundsStripesUpToAPowerOfTwo() {
+        AccountLocks locks = new AccountLocks(100);
+
+        for (int i = 0; i < 1_000; i++) {
+            int stripe = locks.stripeOf("ACC-" + i);
+            assertTrue(stripe >= 0 && stripe < 128);
+            assertEquals(stripe, locks.stripeOf("ACC-" + i));
+        }
+    }
+
+    @Test
+    void lockBothTakesASharedStripeOnce() {
+        AccountLocks locks = new AccountLocks(1); // every account on one stripe
+
+        locks.lockBoth("ACC-1", "ACC-2");
+        locks.unlockBoth("ACC-1", "ACC-2");
+        assertTrue(tryLockElsewhere(locks, "ACC-1"));
+    }
+
+    @Test
+    @Timeout(30)
+    void lockBothInOppositeOrdersNeverDeadlocks() throws Exception {
+        AccountLocks locks = new AccountLocks(64);
+        String a = "ACC-1";
+        String b = "ACC-2";
+        assertNotEquals(locks.stripeOf(a), locks.stripeOf(b));
+        long[] counter = new long[1];
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> forward = pool.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    locks.lockBoth(a, b);
+                    counter[0]++;
+                    locks.unlockBoth(a, b);
+                }
+            });
+            Future<?> backward = pool.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    locks.lockBoth(b, a);
+                    counter[0]++;
+                    locks.unlockBoth(b, a);
+                }
+            });
+            forward.get();
+            backward.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(400_000, counter[0]);
+        assertTrue(tryLockElsewhere(locks, a));
+        assertTrue(tryLockElsewhere(locks, b));
+    }
+
+    @Test
+    @Timeout(30)
+    void sortedStripesExcludeEachOther() throws Exception {
+        AccountLocks locks = new AccountLocks(16);
+        int[] low = {1, 5, 9};
+        int[] high = {5, 9, 12}; // overlaps low on 5 and 9
+        long[] counter = new long[1];
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int[] stripes = t % 2 == 0 ? low : high;
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        locks.lockStripes(stripes);
+                        counter[0]++;
+                        locks.unlockStripes(stripes);
+                    }
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(400_000, counter[0]);
+    }
+
+    /** Whether another thread can take {@code account}'s stripe, i.e. nothing is left locked. */
+    private static boolean tryLockElsewhere(AccountLocks locks, String account) {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            return other.submit(() -> {
+                locks.lock(account);
+                locks.unlock(account);
+                return true;
+            }).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            return false;
+        } finally {
+            other.shutdownNow();
+        }
+    }
+}
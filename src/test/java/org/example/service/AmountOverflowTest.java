@@ -0,0 +1,67 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AmountOverflowTest {
+
+    @Test
+    void accountRefusesToWrap() {
+        Account acc = new Account("ACC-1", Long.MAX_VALUE - 10);
+
+        assertThrows(ArithmeticException.class, () -> acc.deposit(11));
+        assertEquals(Long.MAX_VALUE - 10, acc.getBalance());
+    }
+
+    @Test
+    void cashStockRefusesToWrap() {
+        CashStock cash = new CashStock(Money.ofLira(1_000));
+
+        assertThrows(ArithmeticException.class, () -> cash.add(Long.MAX_VALUE));
+        assertEquals(Money.ofLira(1_000), cash.available());
+    }
+
+    @Test
+    void depositThatWouldWrapIsInvalid() {
+        Customer rich = customer("9100", Long.MAX_VALUE - 10);
+        Customer poor = customer("9101", 0);
+        BankCentralSystem bank = bank(rich, poor);
+        long cash = bank.getAtmCashStock();
+
+        assertFalse(bank.deposit(rich, 11));
+        assertFalse(bank.deposit(poor, Long.MAX_VALUE)); // fits the balance, not the deposit bin
+        assertEquals(Long.MAX_VALUE - 10, rich.getAccount().getBalance());
+        assertEquals(0, poor.getAccount().getBalance());
+        assertEquals(cash, bank.getAtmCashStock());
+        assertEquals(2, bank.getMetrics().count(BankMetrics.Operation.DEPOSIT, BankMetrics.Outcome.INVALID_AMOUNT));
+    }
+
+    @Test
+    void transferThatWouldWrapIsUndone() {
+        Customer from = customer("9100", Money.ofLira(100));
+        Customer to = customer("9101", Long.MAX_VALUE - 10);
+        BankCentralSystem bank = bank(from, to);
+
+        assertFalse(bank.transfer(from, to.getCardNumber(), 11));
+        assertEquals(Money.ofLira(100), from.getAccount().getBalance());
+        assertEquals(Long.MAX_VALUE - 10, to.getAccount().getBalance());
+    }
+
+    private static Customer customer(String card, long balance) {
+        return new Customer(card, new byte[0], "Overflow " + card, new Account("ACC-" + card, balance));
+    }
+
+    private static BankCentralSystem bank(Customer... customers) {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        for (Customer c : customers) {
+            store.add(c);
+        }
+        return new BankCentralSystem(store, Money.ofLira(100_000));
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.service;
+
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Cash reservations made through the local facade belong to the customer who made them. */
+class AsyncBankServiceTest {
+
+    private BankCentralSystem bank;
+    private AsyncBankService atm;
+    private Customer ali;
+    private Customer ayse;
+
+    @BeforeEach
+    void open() {
+        bank = new BankCentralSystem();
+        atm = new AsyncBankService(bank, Runnable::run);
+        ali = atm.authenticateCustomer("1", "1234").join();
+        ayse = atm.authenticateCustomer("5555666677778888", "4321").join();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        atm.close();
+        bank.close();
+    }
+
+    @Test
+    void onlyTheReservingCustomerCanPayOut() {
+        long reservation = atm.reserveCash(ali, Money.ofLira(100)).join();
+        assertNotEquals(CashStock.NO_RESERVATION, reservation);
+
+        assertFalse(atm.withdrawReserved(ayse, reservation, RequestDeduplicator.newRequestId()).join());
+        assertEquals(Money.ofLira(100), reserved());
+
+        assertTrue(atm.withdrawReserved(ali, reservation, RequestDeduplicator.newRequestId()).join());
+        assertEquals(0, reserved());
+        assertEquals(Money.ofLira(1_900), (long) atm.getBalance(ali).join());
+    }
+
+    @Test
+    void onlyTheReservingCustomerCanRelease() {
+        long reservation = atm.reserveCash(ali, Money.ofLira(100)).join();
+
+        atm.releaseCash(ayse, reservation).join();
+        assertEquals(Money.ofLira(100), reserved());
+        atm.releaseCash(ali, reservation).join();
+        assertEquals(0, reserved());
+    }
+
+    @Test
+    void closingReleasesWhatIsStillHeld() {
+        atm.reserveCash(ali, Money.ofLira(100)).join();
+        atm.reserveCash(ayse, Money.ofLira(200)).join();
+
+        atm.close();
+        assertEquals(0, reserved());
+    }
+
+    private long reserved() {
+        return bank.getDefaultTerminal().getCashStock().reserved();
+    }
+}
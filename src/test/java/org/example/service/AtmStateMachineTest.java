@@ -0,0 +1,138 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+import org.example.model.Money;
+import org.example.service.BankMetrics.Operation;
+import org.example.service.BankMetrics.Outcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AtmStateMachineTest {
+
+    @TempDir
+    Path dir;
+
+    private final BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), Money.ofLira(1_000));
+    private final AtmTerminal atm = bank.getDefaultTerminal();
+
+    @Test
+    void onlyTheLifecycleEdgesAreAllowed() {
+        assertEquals(EnumSet.of(ATMState.NEED_MAINTENANCE, ATMState.ON_MAINTENANCE),
+                AtmStateMachine.allowedFrom(ATMState.ACTIVE));
+        assertEquals(EnumSet.of(ATMState.ON_MAINTENANCE), AtmStateMachine.allowedFrom(ATMState.NEED_MAINTENANCE));
+        assertEquals(EnumSet.of(ATMState.ACTIVE), AtmStateMachine.allowedFrom(ATMState.ON_MAINTENANCE));
+        assertFalse(AtmStateMachine.isAllowed(ATMState.NEED_MAINTENANCE, ATMState.ACTIVE));
+    }
+
+    @Test
+    void refusedChangesLeaveTheStateAndTheLogAlone() {
+        assertTrue(bank.setAtmState(atm, ATMState.ACTIVE)); // already there: not logged
+        bank.reportEmergency(atm, "Cash Jam", "1");
+
+        assertFalse(bank.setAtmState(atm, ATMState.ACTIVE));
+        assertEquals(ATMState.NEED_MAINTENANCE, atm.getState());
+        assertEquals(1, bank.getMetrics().count(Operation.STATE_CHANGE, Outcome.INVALID_TRANSITION));
+        assertEquals(List.of("ACTIVE>NEED_MAINTENANCE"), history(bank));
+    }
+
+    @Test
+    void historyIsEveryTransitionInOrder() {
+        bank.reportEmergency(atm, "Stuck Card", "1");
+        bank.setAtmState(atm, ATMState.ON_MAINTENANCE);
+        bank.setAtmState(atm, ATMState.ACTIVE);
+
+        assertEquals(List.of("ACTIVE>NEED_MAINTENANCE", "NEED_MAINTENANCE>ON_MAINTENANCE", "ON_MAINTENANCE>ACTIVE"),
+                history(bank));
+    }
+
+    @Test
+    void uptimeSplitsThePeriodByState() throws InterruptedException {
+        long from = System.currentTimeMillis();
+        bank.reportEmergency(atm, "Cash Jam", "1");
+        Thread.sleep(20);
+        bank.setAtmState(atm, ATMState.ON_MAINTENANCE);
+        Thread.sleep(20);
+        bank.setAtmState(atm, ATMState.ACTIVE);
+        long to = System.currentTimeMillis() + 1;
+
+        AtmUptime u = bank.getStateMachine().uptime(List.of(atm), from, to).get(0);
+        assertEquals(to - from, u.millisIn(ATMState.ACTIVE) + u.millisIn(ATMState.NEED_MAINTENANCE)
+                + u.millisIn(ATMState.ON_MAINTENANCE));
+        assertTrue(u.millisIn(ATMState.NEED_MAINTENANCE) >= 20);
+        assertTrue(u.millisIn(ATMState.ON_MAINTENANCE) >= 20);
+        assertEquals(u.downtimeMillis(), to - from - u.millisIn(ATMState.ACTIVE));
+        assertEquals(3, u.getTransitions());
+        assertEquals(1, u.getFaults());
+    }
+
+    @Test
+    void terminalThatNeverChangedWasInItsStateAllPeriod() {
+        AtmUptime u = uptime(0);
+
+        assertEquals(u.getToMillis(), u.millisIn(ATMState.ACTIVE));
+        assertEquals(0, u.downtimeMillis());
+        assertEquals(0, u.getTransitions());
+    }
+
+    @Test
+    void restartReplaysStatesAndUptimeFromTheLog() throws IOException {
+        long from = System.currentTimeMillis();
+        try (BankCentralSystem first = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            first.reportEmergency(first.getDefaultTerminal(), "Cash Jam", "1");
+            first.setAtmState(first.getDefaultTerminal(), ATMState.ON_MAINTENANCE);
+        }
+
+        try (BankCentralSystem again = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            AtmTerminal t = again.getDefaultTerminal();
+            assertEquals(ATMState.ON_MAINTENANCE, t.getState());
+            assertEquals(List.of("ACTIVE>NEED_MAINTENANCE", "NEED_MAINTENANCE>ON_MAINTENANCE"), history(again));
+            AtmUptime u = again.getStateMachine().uptime(List.of(t), from, System.currentTimeMillis() + 1).get(0);
+            assertEquals(2, u.getTransitions());
+            assertEquals(1, u.getFaults());
+        }
+    }
+
+    @Test
+    void emergencyDuringMaintenanceIsAFault() {
+        long from = System.currentTimeMillis();
+        bank.setAtmState(atm, ATMState.ON_MAINTENANCE);
+
+        bank.reportEmergency(atm, "Cash Jam", "1");
+
+        assertEquals(ATMState.NEED_MAINTENANCE, atm.getState());
+        assertEquals(1, uptime(from).getFaults());
+    }
+
+    @Test
+    void secondFaultWhileWaitingIsNotLogged() {
+        long from = System.currentTimeMillis();
+
+        bank.reportEmergency(atm, "Stuck Card", "1");
+        bank.reportEmergency(atm, "Cash Jam", "1");
+
+        assertEquals(ATMState.NEED_MAINTENANCE, atm.getState());
+        assertEquals(1, uptime(from).getFaults());
+        assertEquals(1, uptime(from).getTransitions());
+    }
+
+    private static List<String> history(BankCentralSystem bank) {
+        List<String> seen = new ArrayList<>();
+        bank.getStateMachine().history((time, terminalId, from, to, reason) -> seen.add(from + ">" + to));
+        return seen;
+    }
+
+    private AtmUptime uptime(long from) {
+        List<AtmUptime> uptime = bank.getStateMachine().uptime(List.of(atm), from, System.currentTimeMillis() + 1);
+        return uptime.get(0);
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.service;
+
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.service.BankMetrics.Operation;
+import org.example.service.BankMetrics.Outcome;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BankMetricsTest {
+
+    @Test
+    void countsEachOutcomeSeparately() {
+        BankMetrics metrics = new BankMetrics();
+        long start = System.nanoTime();
+        assertTrue(metrics.record(Operation.WITHDRAW, Outcome.OK, start));
+        assertTrue(metrics.record(Operation.WITHDRAW, Outcome.OK, start));
+        assertFalse(metrics.record(Operation.WITHDRAW, Outcome.INSUFFICIENT_FUNDS, start));
+        assertFalse(metrics.record(Operation.DEPOSIT, Outcome.INVALID_AMOUNT, start));
+
+        assertEquals(2, metrics.count(Operation.WITHDRAW, Outcome.OK));
+        assertEquals(1, metrics.count(Operation.WITHDRAW, Outcome.INSUFFICIENT_FUNDS));
+        assertEquals(0, metrics.count(Operation.WITHDRAW, Outcome.INVALID_AMOUNT));
+        assertEquals(1, metrics.count(Operation.DEPOSIT, Outcome.INVALID_AMOUNT));
+        assertEquals(0, metrics.count(Operation.DEPOSIT, Outcome.OK));
+        assertEquals(3, metrics.latency(Operation.WITHDRAW).count());
+        assertEquals(1, metrics.latency(Operation.DEPOSIT).count());
+        assertEquals(0, metrics.latency(Operation.TRANSFER).count());
+
+        String dump = metrics.dump();
+        assertTrue(dump.contains("INSUFFICIENT_FUNDS=1"));
+        assertTrue(dump.contains("OK=2"));
+        assertFalse(dump.contains("TRANSFER"));
+
+        metrics.reset();
+        assertEquals(0, metrics.count(Operation.WITHDRAW, Outcome.OK));
+        assertEquals(0, metrics.latency(Operation.WITHDRAW).count());
+    }
+
+    @Test
+    void bankOperationsRecordTheirOutcome() throws IOException {
+        try (BankCentralSystem bank = new BankCentralSystem()) {
+            BankMetrics metrics = bank.getMetrics();
+            Customer ali = bank.authenticateCustomer("1", "1234");
+            bank.authenticateCustomer("1", "0000");
+            bank.deposit(ali, Money.ofLira(100));
+            bank.deposit(ali, -1);
+
+            assertEquals(1, metrics.count(Operation.LOGIN, Outcome.OK));
+            assertEquals(1, metrics.count(Operation.LOGIN, Outcome.BAD_CREDENTIALS));
+            assertEquals(1, metrics.count(Operation.DEPOSIT, Outcome.OK));
+            assertEquals(1, metrics.count(Operation.DEPOSIT, Outcome.INVALID_AMOUNT));
+            assertEquals(2, metrics.latency(Operation.DEPOSIT).count());
+        }
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        BankMetrics metrics = new BankMetrics();
+        Outcome[] outcomes = {Outcome.OK, Outcome.BUSY, Outcome.THROTTLED};
+        int threads = 8;
+        int perThread = 30_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    metrics.record(Operation.TRANSFER, outcomes[i % outcomes.length], System.nanoTime());
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (Outcome outcome : outcomes) {
+            assertEquals((long) threads * perThread / outcomes.length, metrics.count(Operation.TRANSFER, outcome));
+        }
+        assertEquals((long) threads * perThread, metrics.latency(Operation.TRANSFER).count());
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.service.BankMetrics.Outcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchPostingTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<BatchInstruction> batch = List.of(
+            BatchInstruction.deposit("9200", Money.ofLira(300)),
+            BatchInstruction.withdraw("9200", Money.ofLira(150)),
+            BatchInstruction.transfer("9200", "9201", Money.ofLira(100)),
+            BatchInstruction.withdraw("9201", Money.ofLira(5_000)));
+
+    @Test
+    void itemsMoveBalancesButNoTerminalCash() {
+        InMemoryAccountStore store = store();
+        BankCentralSystem bank = new BankCentralSystem(store, Money.ofLira(10_000));
+        CashStock cash = bank.getDefaultTerminal().getCashStock();
+        long available = cash.available();
+        int[] notes = cash.noteCounts();
+
+        assertArrayEquals(new Outcome[] {Outcome.OK, Outcome.OK, Outcome.OK, Outcome.INSUFFICIENT_FUNDS},
+                bank.applyBatch(batch));
+        assertEquals(Money.ofLira(1_050), store.find("9200").getAccount().getBalance());
+        assertEquals(Money.ofLira(1_100), store.find("9201").getAccount().getBalance());
+        assertEquals(available, cash.available());
+        assertArrayEquals(notes, cash.noteCounts());
+        assertEquals(0, bank.getDefaultTerminal().getForecaster().withdrawn(System.currentTimeMillis(), 1));
+    }
+
+    @Test
+    void replayedItemsMoveNoTerminalCash() throws IOException {
+        long available;
+        try (BankCentralSystem bank = new BankCentralSystem(store(), dir, 1)) {
+            available = bank.getAtmCashStock();
+            bank.applyBatch(batch);
+        }
+
+        InMemoryAccountStore store = store();
+        try (BankCentralSystem bank = new BankCentralSystem(store, dir, 1)) {
+            assertEquals(Money.ofLira(1_050), store.find("9200").getAccount().getBalance());
+            assertEquals(Money.ofLira(1_100), store.find("9201").getAccount().getBalance());
+            assertEquals(available, bank.getAtmCashStock());
+            assertEquals(3, bank.miniStatement(store.find("9200"), 10).size());
+        }
+    }
+
+    private static InMemoryAccountStore store() {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        store.add(new Customer("9200", new byte[0], "Batch A", new Account("ACC-B0", Money.ofLira(1_000))));
+        store.add(new Customer("9201", new byte[0], "Batch B", new Account("ACC-B1", Money.ofLira(1_000))));
+        return store;
+    }
+}
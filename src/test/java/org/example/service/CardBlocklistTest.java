@@ -0,0 +1,74 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardBlocklistTest {
+
+    @Test
+    void findsNumericAndOtherCards() {
+        CardBlocklist list = CardBlocklist.of(List.of(
+                "4111111111111111", "0042", "9999999999999999999", "12345678901234567890", "AB-12"));
+
+        assertTrue(list.contains("4111111111111111"));
+        assertTrue(list.contains("0042")); // leading zero: kept as text
+        assertTrue(list.contains("9999999999999999999")); // 19 digits: above Long.MAX_VALUE
+        assertTrue(list.contains("12345678901234567890")); // 20 digits: kept as text
+        assertTrue(list.contains("AB-12"));
+        assertFalse(list.contains("42"));
+        assertFalse(list.contains("4111111111111112"));
+        assertFalse(list.contains(""));
+        assertEquals(5, list.size());
+    }
+
+    @Test
+    void countsDuplicatesOnce() {
+        CardBlocklist list = CardBlocklist.of(List.of("1", "1", "x", "x", "2"));
+
+        assertEquals(3, list.size());
+    }
+
+    @Test
+    void emptyListBlocksNothing() {
+        assertFalse(CardBlocklist.EMPTY.contains("4111111111111111"));
+        assertFalse(CardBlocklist.EMPTY.contains("x"));
+        assertEquals(0, CardBlocklist.EMPTY.size());
+    }
+
+    @Test
+    void loadSkipsBlankLinesAndComments(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("blocklist.txt");
+        Files.write(file, List.of("# stolen cards", "", "  5555666677778888  ", "1", "# 2"));
+
+        CardBlocklist list = CardBlocklist.load(file);
+        assertEquals(2, list.size());
+        assertTrue(list.contains("5555666677778888"));
+        assertTrue(list.contains("1"));
+        assertFalse(list.contains("2"));
+        assertFalse(list.contains("# stolen cards"));
+    }
+
+    @Test
+    void largeListHasNoFalseAnswers() {
+        List<String> cards = new ArrayList<>();
+        for (long i = 0; i < 100_000; i++) {
+            cards.add(Long.toString(4_000_000_000_000_000L + 2 * i));
+        }
+        CardBlocklist list = CardBlocklist.of(cards);
+
+        for (long i = 0; i < 100_000; i++) {
+            assertTrue(list.contains(Long.toString(4_000_000_000_000_000L + 2 * i)));
+            assertFalse(list.contains(Long.toString(4_000_000_000_000_001L + 2 * i)));
+        }
+    }
+}
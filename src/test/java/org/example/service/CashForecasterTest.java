@@ -0,0 +1,125 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CashForecasterTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long T0 = 1_700_000_000_000L / HOUR * HOUR; // the start of an hour, UTC
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void withdrawnSumsTheLastHours() {
+        CashForecaster f = new CashForecaster(1, ZoneOffset.UTC);
+        f.record(T0 + 60_000, 100);
+        f.record(T0 + 30 * 60_000, 200);
+        f.record(T0 + HOUR + 5_000, 50);
+        f.record(T0, 10); // late: counts in the open hour
+
+        assertEquals(60, f.withdrawn(T0 + HOUR + 10_000, 1));
+        assertEquals(360, f.withdrawn(T0 + HOUR + 10_000, 2));
+        assertEquals(0, f.withdrawn(T0 + 3 * HOUR, 1)); // nothing recorded since
+    }
+
+    @Test
+    void noForecastBeforeAnHourHasClosed() {
+        CashForecaster f = new CashForecaster(1, ZoneOffset.UTC);
+        f.record(T0, 100);
+
+        assertEquals(-1, f.expected(T0 + 1_000, 5));
+        assertEquals(-1, f.lowAt(T0 + 1_000, 1_000, 100));
+        assertEquals(T0, f.lowAt(T0, 99, 100)); // already low
+    }
+
+    @Test
+    void steadyHoursRunTheStockDownOnSchedule() {
+        CashForecaster f = new CashForecaster(1, ZoneOffset.UTC);
+        for (int h = 0; h < 24; h++) {
+            f.record(T0 + h * HOUR, 100);
+        }
+
+        assertEquals(1_000, f.expected(T0 + 24 * HOUR, 10));
+        assertEquals(T0 + 29 * HOUR, f.lowAt(T0 + 24 * HOUR, 1_000, 500));
+        assertEquals(-1, f.lowAt(T0 + 24 * HOUR, Long.MAX_VALUE / 2, 0)); // beyond the horizon
+    }
+
+    @Test
+    void openHourOnlyExpectsWhatItHasNotBroughtYet() {
+        CashForecaster f = new CashForecaster(1, ZoneOffset.UTC);
+        f.record(T0, 100);
+        f.record(T0 + HOUR, 40);
+
+        assertEquals(60, f.expected(T0 + HOUR + 1_000, 1));
+    }
+
+    @Test
+    void levelsLearnTheSameHourOfLastWeek() {
+        CashForecaster f = new CashForecaster(0.5, ZoneOffset.UTC);
+        long week = CashForecaster.HOURS_PER_WEEK * HOUR;
+        f.record(T0, 100);
+        f.record(T0 + HOUR, 0); // closes T0's hour at 100
+        f.record(T0 + week, 300);
+        f.record(T0 + week + HOUR, 0); // and next week's at 300: the level is halfway
+
+        assertEquals(200, f.expected(T0 + 2 * week, 1));
+    }
+
+    @Test
+    void smoothingMustBeAFraction() {
+        assertThrows(IllegalArgumentException.class, () -> new CashForecaster(0, ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> new CashForecaster(1.5, ZoneOffset.UTC));
+    }
+
+    @Test
+    void snapshotCopiesTheForecast() throws IOException {
+        CashForecaster f = new CashForecaster(1, ZoneOffset.UTC);
+        for (int h = 0; h < 5; h++) {
+            f.record(T0 + h * HOUR, 100 * (h + 1));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        f.write(new DataOutputStream(bytes));
+
+        CashForecaster read = new CashForecaster(1, ZoneOffset.UTC);
+        read.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        long now = T0 + 5 * HOUR;
+        assertEquals(f.withdrawn(now, 5), read.withdrawn(now, 5));
+        assertEquals(f.expected(now, 48), read.expected(now, 48));
+        assertEquals(f.lowAt(now, 10_000, 1_000), read.lowAt(now, 10_000, 1_000));
+    }
+
+    @Test
+    void restartRebuildsTheTerminalsVolume() throws IOException {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        Customer c = new Customer("9800", new byte[0], "Forecast", new Account("ACC-F0", Money.ofLira(10_000)));
+        store.add(c);
+        try (BankCentralSystem bank = new BankCentralSystem(store, dir, 1)) {
+            assertTrue(bank.withdraw(c, Money.ofLira(200)));
+            assertTrue(bank.withdraw(c, Money.ofLira(300)));
+        }
+
+        try (BankCentralSystem bank = new BankCentralSystem(store, dir, 1)) {
+            assertEquals(Money.ofLira(500),
+                    bank.getDefaultTerminal().getForecaster().withdrawn(System.currentTimeMillis(), 2));
+        }
+    }
+}
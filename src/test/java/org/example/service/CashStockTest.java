@@ -0,0 +1,139 @@
+package org.example.service;
+
+import org.example.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CashStockTest {
+
+    @Test
+    void reserveHoldsCashUntilCommitted() {
+        CashStock cash = new CashStock(Money.ofLira(1_000));
+        long dispensable = cash.dispensable();
+        long id = cash.reserve(Money.ofLira(300));
+
+        assertNotEquals(CashStock.NO_RESERVATION, id);
+        assertEquals(Money.ofLira(700), cash.available());
+        assertEquals(Money.ofLira(300), cash.reserved());
+        assertEquals(Money.ofLira(300), cash.amountOf(id));
+
+        long notes = cash.commit(id);
+        assertEquals(Money.ofLira(300), NoteMix.value(notes));
+        assertEquals(Money.ofLira(700), cash.available());
+        assertEquals(0, cash.reserved());
+        assertEquals(dispensable - Money.ofLira(300), cash.dispensable());
+    }
+
+    @Test
+    void releaseGivesCashAndNotesBack() {
+        CashStock cash = new CashStock(Money.ofLira(1_000));
+        int[] before = cash.noteCounts();
+        long id = cash.reserve(Money.ofLira(480));
+
+        assertTrue(cash.release(id));
+        assertEquals(Money.ofLira(1_000), cash.available());
+        assertEquals(0, cash.reserved());
+        assertArrayEquals(before, cash.noteCounts());
+    }
+
+    @Test
+    void reservationIsSettledOnlyOnce() {
+        CashStock cash = new CashStock(Money.ofLira(1_000));
+        long paid = cash.reserve(Money.ofLira(200));
+        long released = cash.reserve(Money.ofLira(200));
+
+        assertNotEquals(NoteMix.NONE, cash.commit(paid));
+        assertEquals(NoteMix.NONE, cash.commit(paid));
+        assertFalse(cash.release(paid));
+        assertTrue(cash.release(released));
+        assertFalse(cash.release(released));
+        assertEquals(NoteMix.NONE, cash.commit(released));
+        assertEquals(0, cash.amountOf(paid));
+        assertEquals(Money.ofLira(800), cash.available());
+    }
+
+    @Test
+    void sameAmountReservationsKeepTheirOwnIds() {
+        CashStock cash = new CashStock(Money.ofLira(1_000));
+        long a = cash.reserve(Money.ofLira(100));
+        long b = cash.reserve(Money.ofLira(100));
+
+        assertNotEquals(a, b);
+        assertTrue(cash.release(a));
+        assertEquals(Money.ofLira(100), cash.amountOf(b)); // releasing a did not touch b
+        assertNotEquals(NoteMix.NONE, cash.commit(b));
+    }
+
+    @Test
+    void refusesWhatTheCassettesCannotPay() {
+        CashStock cash = new CashStock(Money.ofLira(100));
+
+        assertEquals(CashStock.NO_RESERVATION, cash.reserve(Money.ofLira(120)));
+        assertEquals(CashStock.NO_RESERVATION, cash.reserve(Money.ofLira(15)));
+        assertEquals(CashStock.NO_RESERVATION, cash.reserve(0));
+        assertEquals(Money.ofLira(100), cash.available());
+        assertEquals(0, cash.reserved());
+    }
+
+    @Test
+    void concurrentSessionsNeitherLoseNorMintCash() throws Exception {
+        long total = Money.ofLira(200_000);
+        CashStock cash = new CashStock(total);
+        LongAdder paidOut = new LongAdder();
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long[] held = new long[64];
+                    int n = 0;
+                    for (int i = 0; i < 50_000; i++) {
+                        if (n < held.length && random.nextBoolean()) {
+                            long id = cash.reserve(Money.ofLira(20L * (1 + random.nextInt(25))));
+                            if (id != CashStock.NO_RESERVATION) {
+                                held[n++] = id;
+                            }
+                        } else if (n > 0) {
+                            long id = held[--n];
+                            long amount = cash.amountOf(id);
+                            if (random.nextBoolean()) {
+                                assertEquals(amount, NoteMix.value(cash.commit(id)));
+                                paidOut.add(amount);
+                            } else {
+                                assertTrue(cash.release(id));
+                            }
+                        }
+                    }
+                    while (n > 0) {
+                        assertTrue(cash.release(held[--n]));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(0, cash.reserved());
+        assertEquals(total, cash.available() + paidOut.sum());
+        assertEquals(cash.available(), cash.dispensable());
+    }
+}
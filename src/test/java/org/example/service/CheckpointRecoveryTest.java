@@ -0,0 +1,185 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.model.StatementEntry;
+import org.example.model.StatementEntry.Type;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Restarts from a snapshot plus the journal written after it, as after a crash. */
+class CheckpointRecoveryTest {
+
+    private static final String ALI = "1";
+    private static final String AYSE = "5555666677778888";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void restartAppliesTheSnapshotAndReplaysOnlyTheTail() throws Exception {
+        Path live = dir.resolve("live");
+        Path crashed = dir.resolve("crashed");
+        long balance;
+        long cash;
+        int[] notes;
+        byte[] pinHash;
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), live, 1)) {
+            Customer ali = bank.authenticateCustomer(ALI, "1234");
+            bank.deposit(ali, Money.ofLira(100));
+            bank.withdraw(ali, Money.ofLira(200));
+            bank.transfer(ali, AYSE, Money.ofLira(300));
+            bank.changePin(ali, "2468");
+            for (int i = 0; i < BankCentralSystem.MAX_PIN_ATTEMPTS; i++) {
+                bank.authenticateCustomer(AYSE, "0000");
+            }
+            bank.blockCard("4000", "test block");
+            bank.getEmergencyQueue().setNotifier(report -> {
+                throw new IOException("link down");
+            });
+            bank.reportEmergency("Card Skimmer", "4000");
+            bank.checkpoint();
+
+            bank.deposit(ali, Money.ofLira(50));
+            bank.withdraw(ali, Money.ofLira(20));
+            balance = ali.getAccount().getBalance();
+            cash = bank.getAtmCashStock();
+            notes = bank.getDefaultTerminal().getCashStock().noteCounts();
+            pinHash = ali.getPinHash();
+            copy(live, crashed); // no final checkpoint: the last two records are only in the journal
+        }
+
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), crashed, 1)) {
+            assertEquals(2, bank.getReplayedRecords());
+            Customer ali = bank.authenticateCustomer(ALI, "2468");
+            assertNotNull(ali);
+            assertArrayEquals(pinHash, ali.getPinHash());
+            assertEquals(balance, ali.getAccount().getBalance());
+            assertEquals(Money.ofLira(5_300), bank.getHistory().latest(AYSE, 1).get(0).getBalanceAfter());
+            assertEquals(cash, bank.getAtmCashStock());
+            assertArrayEquals(notes, bank.getDefaultTerminal().getCashStock().noteCounts());
+            assertTrue(bank.isCardRetained(AYSE));
+            assertEquals("test block", bank.getBlockedCards().get("4000"));
+
+            List<StatementEntry> statement = bank.miniStatement(ali, 10);
+            assertEquals(5, statement.size());
+            assertEquals(Type.WITHDRAWAL, statement.get(0).getType());
+            assertEquals(4, statement.get(0).getIndex());
+            assertEquals(Type.DEPOSIT, statement.get(4).getType());
+
+            LocalEmergencyNotifier notifier = (LocalEmergencyNotifier) bank.getEmergencyQueue().getNotifier();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (notifier.recent().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("Card Skimmer", notifier.recent().get(0).getType());
+        }
+    }
+
+    @Test
+    void cleanShutdownLeavesNothingToReplay() throws IOException {
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            bank.deposit(bank.authenticateCustomer(ALI, "1234"), Money.ofLira(100));
+        }
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            assertEquals(0, bank.getReplayedRecords());
+            assertEquals(Money.ofLira(2_100), bank.getHistory().latest(ALI, 1).get(0).getBalanceAfter());
+        }
+    }
+
+    @Test
+    void checkpointsKeepTheWholeHistory() throws IOException {
+        int deposits = 100;
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            Customer ali = bank.authenticateCustomer(ALI, "1234");
+            for (int i = 0; i < deposits; i++) {
+                bank.deposit(ali, Money.ofLira(1));
+                if (i % 10 == 9) {
+                    bank.checkpoint(); // each one lets the covered journal segments go
+                }
+            }
+        }
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            TransactionHistory history = bank.getHistory();
+            assertEquals(deposits, history.size(ALI));
+            List<StatementEntry> all = history.between(ALI, 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+            assertEquals(deposits, all.size());
+            assertEquals(0, all.get(deposits - 1).getIndex());
+            assertEquals(Money.ofLira(2_001), all.get(deposits - 1).getBalanceAfter());
+            assertEquals(deposits, history.before(ALI, deposits, Integer.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void checkpointDropsStateTransitionsPastTheRetention() throws IOException {
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            bank.reportEmergency("Cash Jam", ALI);
+            bank.setAtmState(ATMState.ON_MAINTENANCE);
+            bank.getStateMachine().compact(System.currentTimeMillis() + 1);
+            assertEquals(1, transitions(bank));
+        }
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            assertEquals(1, transitions(bank));
+            assertEquals(ATMState.ON_MAINTENANCE, bank.getAtmState());
+        }
+    }
+
+    @Test
+    void repeatedCheckpointFailuresFailTheSelfCheck() throws IOException {
+        Path snapshots = dir.resolve("snapshots");
+        try (BankCentralSystem bank = new BankCentralSystem(new InMemoryAccountStore(), dir, 1)) {
+            assertEquals(DiagnosticResult.Status.PASS, checkpointProbe(bank).getStatus());
+
+            Customer ali = bank.authenticateCustomer(ALI, "1234");
+            Files.writeString(snapshots, "not a directory"); // nothing was snapshotted yet; now no snapshot can be
+            for (int i = 1; i <= 3; i++) {
+                bank.deposit(ali, Money.ofLira(1));
+                assertThrows(IOException.class, bank::checkpoint);
+                assertEquals(i < 3 ? DiagnosticResult.Status.WARN : DiagnosticResult.Status.FAIL,
+                        checkpointProbe(bank).getStatus());
+            }
+            assertTrue(checkpointProbe(bank).getDetail().startsWith("3 failed in a row"));
+
+            Files.delete(snapshots);
+            bank.checkpoint();
+            assertEquals(DiagnosticResult.Status.PASS, checkpointProbe(bank).getStatus());
+        }
+    }
+
+    private static DiagnosticResult checkpointProbe(BankCentralSystem bank) {
+        return bank.runDiagnostics().getResults().stream()
+                .filter(r -> r.getProbe().equals("checkpoint")).findFirst().orElseThrow();
+    }
+
+    private static int transitions(BankCentralSystem bank) {
+        int[] n = new int[1];
+        bank.getStateMachine().history((time, terminalId, from, to, reason) -> n[0]++);
+        return n[0];
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.walk(from)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Path target = to.resolve(from.relativize(f).toString());
+                if (Files.isDirectory(f)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(f, target);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentTransferTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final long OPENING = Money.ofLira(1_000);
+
+    @Test
+    @Timeout(60)
+    void randomTransfersKeepTheTotal() throws Exception {
+        Customer[] customers = customers();
+        BankCentralSystem bank = bank(customers);
+
+        run(8, t -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 20_000; i++) {
+                Customer from = customers[random.nextInt(ACCOUNTS)];
+                Customer to = customers[random.nextInt(ACCOUNTS)];
+                bank.transfer(from, to.getCardNumber(), Money.ofLira(1 + random.nextInt(50)));
+            }
+        });
+
+        assertEquals(ACCOUNTS * OPENING, total(customers));
+        for (Customer c : customers) {
+            assertTrue(c.getAccount().getBalance() >= 0);
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    void oppositeTransfersDoNotDeadlock() throws Exception {
+        Customer[] customers = customers();
+        BankCentralSystem bank = bank(customers);
+        Customer a = customers[0];
+        Customer b = customers[1];
+
+        run(4, t -> {
+            Customer from = t % 2 == 0 ? a : b;
+            Customer to = t % 2 == 0 ? b : a;
+            for (int i = 0; i < 50_000; i++) {
+                bank.transfer(from, to.getCardNumber(), Money.ofLira(1));
+            }
+        });
+
+        assertEquals(2 * OPENING, a.getAccount().getBalance() + b.getAccount().getBalance());
+    }
+
+    private static Customer[] customers() {
+        Customer[] customers = new Customer[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            customers[i] = new Customer("9000" + i, new byte[0], "Transfer " + i,
+                    new Account("ACC-T" + i, OPENING));
+        }
+        return customers;
+    }
+
+    private static BankCentralSystem bank(Customer[] customers) {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        for (Customer c : customers) {
+            store.add(c);
+        }
+        BankCentralSystem bank = new BankCentralSystem(store, Money.ofLira(100_000));
+        bank.getFraudMonitor().setRules(Collections.emptyList());
+        return bank;
+    }
+
+    private static long total(Customer[] customers) {
+        long sum = 0;
+        for (Customer c : customers) {
+            sum += c.getAccount().getBalance();
+        }
+        return sum;
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    private static void run(int threads, Worker worker) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                done.add(pool.submit(() -> worker.run(thread)));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.service.BankMetrics.Operation;
+import org.example.service.BankMetrics.Outcome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** Default KDF cost, so a hash is still running when an interrupted caller waits for it. */
+class CredentialVerifierTest {
+
+    private final CredentialVerifier verifier = new CredentialVerifier(new CredentialHasher(), 1, 16, 16);
+
+    @AfterEach
+    void close() {
+        Thread.interrupted();
+        verifier.close();
+    }
+
+    @Test
+    void matchesOnlyTheRightSecret() {
+        byte[] credential = verifier.hash("1234");
+
+        assertEquals(CredentialVerifier.Result.MATCH, verifier.verify("1", credential, "1234"));
+        assertEquals(CredentialVerifier.Result.MATCH, verifier.verify("1", credential, "1234")); // cached
+        assertEquals(CredentialVerifier.Result.MISMATCH, verifier.verify("1", credential, "9999"));
+        assertEquals(CredentialVerifier.Result.MISMATCH, verifier.verify("1", null, "1234"));
+    }
+
+    @Test
+    void interruptedCheckIsUnavailableNotWrong() {
+        byte[] credential = verifier.hash("1234");
+
+        Thread.currentThread().interrupt();
+        assertEquals(CredentialVerifier.Result.UNAVAILABLE, verifier.verify("1", credential, "9999"));
+    }
+
+    @Test
+    void closedPoolIsUnavailableNotWrong() {
+        byte[] credential = verifier.hash("1234");
+        verifier.close();
+
+        assertEquals(CredentialVerifier.Result.UNAVAILABLE, verifier.verify("1", credential, "9999"));
+    }
+
+    @Test
+    void unavailableChecksDoNotCountTowardsRetention() {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        store.add(new Customer("9400", verifier.hash("1234"), "Kdf", new Account("ACC-K0", Money.ofLira(100))));
+        BankCentralSystem bank = new BankCentralSystem(store, Money.ofLira(1_000), verifier);
+        bank.setLoginRate(1_000_000, 100);
+
+        for (int i = 0; i < BankCentralSystem.MAX_PIN_ATTEMPTS + 1; i++) {
+            Thread.currentThread().interrupt();
+            assertNull(bank.authenticateCustomer("9400", "9999"));
+            Thread.interrupted();
+        }
+
+        assertEquals(BankCentralSystem.MAX_PIN_ATTEMPTS + 1, bank.getMetrics().count(Operation.LOGIN, Outcome.BUSY));
+        assertFalse(bank.isCardRetained("9400"));
+        assertNotNull(bank.authenticateCustomer("9400", "1234"));
+    }
+}
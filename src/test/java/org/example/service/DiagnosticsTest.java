@@ -0,0 +1,125 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiagnosticsTest {
+
+    private final Diagnostics diagnostics = new Diagnostics();
+    private final AtmTerminal atm = new AtmTerminal("T1", 0, ATMState.ACTIVE, new TokenBucket(1, 1));
+
+    @AfterEach
+    void close() {
+        diagnostics.close();
+    }
+
+    @Test
+    void eachProbeHasItsOwnDeadline() {
+        diagnostics.register(new Sleeper("short", 200), 50);
+        diagnostics.register(new Sleeper("long", 200), 2_000);
+
+        DiagnosticReport report = diagnostics.run(atm);
+
+        List<DiagnosticResult> results = report.getResults();
+        assertEquals(DiagnosticResult.Status.FAIL, results.get(0).getStatus());
+        assertEquals("no answer within 50 ms", results.get(0).getDetail());
+        assertEquals(DiagnosticResult.Status.PASS, results.get(1).getStatus());
+        assertFalse(report.passed());
+    }
+
+    @Test
+    void probesRunAtOnceAndTheLateOnesAreCancelled() throws InterruptedException {
+        Sleeper hung = new Sleeper("hung", 60_000);
+        diagnostics.register(hung, 100);
+        diagnostics.register(new Sleeper("a", 150), 1_000);
+        diagnostics.register(new Sleeper("b", 150), 1_000);
+
+        DiagnosticReport report = diagnostics.run(atm);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(report.getElapsedNanos()) < 400); // not 100 + 150 + 150
+        assertTrue(hung.interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void throwingOrSilentProbesFail() {
+        diagnostics.register(new DiagnosticProbe() {
+            @Override
+            public String name() {
+                return "throws";
+            }
+
+            @Override
+            public DiagnosticResult check(AtmTerminal atm) {
+                throw new IllegalStateException("reader offline");
+            }
+        });
+        diagnostics.register(new DiagnosticProbe() {
+            @Override
+            public String name() {
+                return "silent";
+            }
+
+            @Override
+            public DiagnosticResult check(AtmTerminal atm) {
+                return null;
+            }
+        });
+
+        List<DiagnosticResult> results = diagnostics.run(atm).getResults();
+
+        assertEquals("reader offline", results.get(0).getDetail());
+        assertEquals(DiagnosticResult.Status.FAIL, results.get(0).getStatus());
+        assertEquals("no result", results.get(1).getDetail());
+        assertEquals(DiagnosticResult.Status.FAIL, results.get(1).getStatus());
+    }
+
+    @Test
+    void registeringANameAgainReplacesItsProbeAndTimeout() {
+        diagnostics.register(new Sleeper("reader", 200), 50);
+        diagnostics.register(new Sleeper("reader", 0), 1_000);
+
+        assertEquals(List.of("reader"), diagnostics.probeNames());
+        assertTrue(diagnostics.run(atm).passed());
+        assertTrue(diagnostics.unregister("reader"));
+        assertTrue(diagnostics.probeNames().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> diagnostics.register(new Sleeper("x", 0), 0));
+    }
+
+    /** Passes after sleeping; counts down {@link #interrupted} if cancelled first. */
+    private static final class Sleeper implements DiagnosticProbe {
+        final String name;
+        final long millis;
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        Sleeper(String name, long millis) {
+            this.name = name;
+            this.millis = millis;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public DiagnosticResult check(AtmTerminal atm) throws InterruptedException {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return DiagnosticResult.pass("slept " + millis + " ms");
+        }
+    }
+}
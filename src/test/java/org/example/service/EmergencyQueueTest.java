@@ -0,0 +1,145 @@
+package org.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmergencyQueueTest {
+
+    /** Records what it is sent; holds the first delivery until released. */
+    private static final class HeldNotifier implements EmergencyNotifier {
+        final List<Long> sent = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch holding = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void send(EmergencyReport report) throws IOException {
+            if (holding.getCount() > 0) {
+                holding.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            sent.add(report.getId());
+        }
+    }
+
+    private EmergencyQueue queue;
+
+    @AfterEach
+    void close() {
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    @Test
+    void urgentReportsGoFirstThenStolenCards() throws InterruptedException {
+        HeldNotifier notifier = new HeldNotifier();
+        queue = new EmergencyQueue(notifier, (r, latency) -> { }, 16, 1);
+        offer(1, "Card Skimmer");
+        assertTrue(notifier.holding.await(5, TimeUnit.SECONDS));
+
+        offer(2, "Card Skimmer");
+        offer(3, "Stolen Card");
+        offer(4, "Cash Jam");
+        offer(5, "Stuck Card");
+        notifier.release.countDown();
+
+        awaitDelivered(5);
+        assertEquals(List.of(1L, 4L, 5L, 3L, 2L), notifier.sent);
+    }
+
+    @Test
+    void refusedReportsAreRetriedWithADoublingBackoff() throws InterruptedException {
+        List<Long> attemptsAt = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> attempts = Collections.synchronizedList(new ArrayList<>());
+        queue = new EmergencyQueue(report -> {
+            attemptsAt.add(System.nanoTime());
+            attempts.add(report.getAttempt());
+            if (report.getAttempt() < 4) {
+                throw new IOException("link down");
+            }
+        }, (r, latency) -> { }, 16, 1);
+
+        offer(1, "Card Skimmer");
+        awaitDelivered(1);
+
+        assertEquals(List.of(1, 2, 3, 4), attempts);
+        assertEquals(3, queue.retries());
+        long tolerance = TimeUnit.MILLISECONDS.toNanos(20);
+        for (int i = 1; i < attemptsAt.size(); i++) {
+            long expected = TimeUnit.MILLISECONDS.toNanos(250L << (i - 1));
+            assertTrue(attemptsAt.get(i) - attemptsAt.get(i - 1) >= expected - tolerance,
+                    "attempt " + (i + 1) + " came early");
+        }
+        assertTrue(queue.pending().isEmpty());
+    }
+
+    @Test
+    void latencyRunsFromTheReport() throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        queue = new EmergencyQueue(report -> { }, (r, latency) -> latencies.add(latency), 16, 1);
+        long now = System.currentTimeMillis();
+
+        queue.offer(1, now - TimeUnit.MINUTES.toMillis(2), "ATM-1", "Card Skimmer", "1"); // replayed after a restart
+        awaitDelivered(1);
+        queue.offer(2, now, "ATM-1", "Card Skimmer", "1");
+        awaitDelivered(2);
+
+        assertTrue(latencies.get(0) > EmergencyQueue.SLA_NANOS);
+        assertTrue(latencies.get(1) < EmergencyQueue.SLA_NANOS);
+    }
+
+    @Test
+    void aFullQueueKeepsReportsInOverflow() throws InterruptedException {
+        HeldNotifier notifier = new HeldNotifier();
+        queue = new EmergencyQueue(notifier, (r, latency) -> { }, 2, 1);
+        assertTrue(offer(1, "Card Skimmer"));
+        assertTrue(notifier.holding.await(5, TimeUnit.SECONDS));
+        assertTrue(offer(2, "Card Skimmer"));
+
+        assertFalse(offer(3, "Card Skimmer"));
+        assertFalse(offer(4, "Stolen Card"));
+        assertEquals(2, queue.overflowed());
+        assertEquals(4, queue.backlog());
+        assertEquals(4, queue.pending().size());
+
+        notifier.release.countDown();
+        awaitDelivered(4);
+        assertEquals(List.of(1L, 4L, 2L, 3L), notifier.sent);
+        assertEquals(0, queue.backlog());
+    }
+
+    @Test
+    void aClosedQueueRefusesReports() {
+        queue = new EmergencyQueue(report -> { }, (r, latency) -> { }, 2, 1);
+        queue.close();
+        assertFalse(offer(1, "Cash Jam"));
+        assertEquals(0, queue.backlog());
+    }
+
+    private boolean offer(long id, String type) {
+        return queue.offer(id, System.currentTimeMillis(), "ATM-1", type, "1");
+    }
+
+    private void awaitDelivered(long n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (queue.delivered() < n && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(n, queue.delivered());
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.service;
+
+import org.example.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FraudRulesTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    void rapidWithdrawalsScoreTheNthWithinTheWindow() {
+        FraudRule rule = FraudRules.rapidWithdrawals(3, 10 * MINUTE, 100);
+
+        assertEquals(0, rule.score(withdrawal("1", 0, 100)));
+        assertEquals(0, rule.score(withdrawal("1", MINUTE, 100)));
+        assertEquals(100, rule.score(withdrawal("1", 2 * MINUTE, 100)));
+        assertEquals(100, rule.score(withdrawal("1", 3 * MINUTE, 100))); // still coming fast
+        assertEquals(0, rule.score(withdrawal("2", 3 * MINUTE, 100))); // cards are counted apart
+        assertEquals(0, rule.score(withdrawal("1", 30 * MINUTE, 100)));
+    }
+
+    @Test
+    void rapidWithdrawalsIgnoreOtherTransactions() {
+        FraudRule rule = FraudRules.rapidWithdrawals(2, 10 * MINUTE, 100);
+
+        assertEquals(0, rule.score(event(TransactionEvent.Type.DEPOSIT, "1", null, 0, 100)));
+        assertEquals(0, rule.score(event(TransactionEvent.Type.DEPOSIT, "1", null, 1, 100)));
+        assertEquals(0, rule.score(withdrawal("1", 2, 100)));
+        assertThrows(IllegalArgumentException.class, () -> FraudRules.rapidWithdrawals(1, MINUTE, 100));
+    }
+
+    @Test
+    void amountOutlierNeedsHistoryAndAMinimum() {
+        FraudRule rule = FraudRules.amountOutlier(5, 4.0, Money.ofLira(1_000), 60);
+
+        long[] usual = {Money.ofLira(100), Money.ofLira(120), Money.ofLira(80), Money.ofLira(110), Money.ofLira(90)};
+        for (int i = 0; i < usual.length; i++) {
+            assertEquals(0, rule.score(withdrawal("1", i, usual[i])));
+        }
+        assertEquals(0, rule.score(withdrawal("1", 10, Money.ofLira(500)))); // far out, but under the minimum
+        assertEquals(60, rule.score(withdrawal("1", 11, Money.ofLira(5_000))));
+        assertEquals(0, rule.score(withdrawal("2", 12, Money.ofLira(5_000)))); // no history yet
+        assertEquals(0, rule.score(event(TransactionEvent.Type.DEPOSIT, "1", null, 13, Money.ofLira(50_000))));
+    }
+
+    @Test
+    void newPayeeScoresOnlyTheFirstLargeTransfer() {
+        FraudRule rule = FraudRules.newPayee(Money.ofLira(500), 40);
+
+        assertEquals(40, rule.score(transfer("1", "2", Money.ofLira(600))));
+        assertEquals(0, rule.score(transfer("1", "2", Money.ofLira(600)))); // known by now
+        assertEquals(0, rule.score(transfer("1", "3", Money.ofLira(100)))); // too small
+        assertEquals(0, rule.score(transfer("1", "3", Money.ofLira(600)))); // remembered even so
+        assertEquals(40, rule.score(transfer("4", "2", Money.ofLira(600)))); // payees are per card
+    }
+
+    @Test
+    void newPayeeForgetsTheOldestOfSixteen() {
+        FraudRule rule = FraudRules.newPayee(0, 40);
+        for (int i = 0; i < 17; i++) {
+            assertEquals(40, rule.score(transfer("1", "payee-" + i, 1)));
+        }
+
+        assertEquals(0, rule.score(transfer("1", "payee-16", 1)));
+        assertEquals(40, rule.score(transfer("1", "payee-0", 1)));
+    }
+
+    private static TransactionEvent withdrawal(String card, long time, long amount) {
+        return event(TransactionEvent.Type.WITHDRAWAL, card, null, time, amount);
+    }
+
+    private static TransactionEvent transfer(String from, String to, long amount) {
+        return event(TransactionEvent.Type.TRANSFER, from, to, 0, amount);
+    }
+
+    private static TransactionEvent event(TransactionEvent.Type type, String card, String target, long time,
+                                          long amount) {
+        TransactionEvent e = new TransactionEvent();
+        e.set(type, time, "ATM-1", card, target, amount, 0);
+        return e;
+    }
+}
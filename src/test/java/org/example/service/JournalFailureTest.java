@@ -0,0 +1,125 @@
+package org.example.service;
+
+import org.example.model.ATMState;
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.service.BankMetrics.Operation;
+import org.example.service.BankMetrics.Outcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Changes made after the journal stopped taking records: a closed journal refuses every append. */
+class JournalFailureTest {
+
+    @TempDir
+    Path dir;
+
+    private BankCentralSystem bank;
+    private Customer a;
+    private Customer b;
+    private CashStock cash;
+
+    @BeforeEach
+    void openAndClose() throws IOException {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        a = new Customer("9300", new byte[0], "Journal A", new Account("ACC-J0", Money.ofLira(1_000)));
+        b = new Customer("9301", new byte[0], "Journal B", new Account("ACC-J1", Money.ofLira(1_000)));
+        store.add(a);
+        store.add(b);
+        bank = new BankCentralSystem(store, dir, 1);
+        cash = bank.getDefaultTerminal().getCashStock();
+        bank.close();
+    }
+
+    @Test
+    void depositIsUndone() {
+        long available = cash.available();
+
+        assertFalse(bank.deposit(a, Money.ofLira(100)));
+        assertEquals(Money.ofLira(1_000), a.getAccount().getBalance());
+        assertEquals(available, cash.available());
+        assertEquals(1, bank.getMetrics().count(Operation.DEPOSIT, Outcome.JOURNAL_FAILED));
+        assertEquals(0, bank.miniStatement(a, 10).size());
+    }
+
+    @Test
+    void withdrawalIsUndoneAndItsNotesGoBack() {
+        long available = cash.available();
+        int[] notes = cash.noteCounts();
+
+        long reservation = bank.reserveCash(Money.ofLira(200));
+        assertFalse(bank.withdrawReserved(a, reservation));
+        assertEquals(Money.ofLira(1_000), a.getAccount().getBalance());
+        assertEquals(available, cash.available());
+        assertEquals(0, cash.reserved());
+        assertArrayEquals(notes, cash.noteCounts());
+        assertEquals(1, bank.getMetrics().count(Operation.WITHDRAW, Outcome.JOURNAL_FAILED));
+    }
+
+    @Test
+    void transferIsUndone() {
+        assertFalse(bank.transfer(a, b.getCardNumber(), Money.ofLira(300)));
+        assertEquals(Money.ofLira(1_000), a.getAccount().getBalance());
+        assertEquals(Money.ofLira(1_000), b.getAccount().getBalance());
+        assertEquals(1, bank.getMetrics().count(Operation.TRANSFER, Outcome.JOURNAL_FAILED));
+    }
+
+    @Test
+    void batchItemsAreUndone() {
+        Outcome[] results = bank.applyBatch(List.of(
+                BatchInstruction.deposit("9300", Money.ofLira(100)),
+                BatchInstruction.withdraw("9300", Money.ofLira(100)),
+                BatchInstruction.transfer("9300", "9301", Money.ofLira(100))));
+
+        assertArrayEquals(new Outcome[] {Outcome.JOURNAL_FAILED, Outcome.JOURNAL_FAILED, Outcome.JOURNAL_FAILED},
+                results);
+        assertEquals(Money.ofLira(1_000), a.getAccount().getBalance());
+        assertEquals(Money.ofLira(1_000), b.getAccount().getBalance());
+    }
+
+    @Test
+    void pinChangeKeepsTheOldPin() throws IOException {
+        try (BankCentralSystem open = new BankCentralSystem(new InMemoryAccountStore(), dir.resolve("pin"), 1)) {
+            Customer ali = open.authenticateCustomer("1", "1234");
+            byte[] pinHash = ali.getPinHash();
+            open.getJournal().close();
+
+            assertFalse(open.changePin(ali, "2468"));
+            assertArrayEquals(pinHash, ali.getPinHash());
+            assertEquals(1, open.getMetrics().count(Operation.CHANGE_PIN, Outcome.JOURNAL_FAILED));
+            assertNotNull(open.authenticateCustomer("1", "1234"));
+        }
+    }
+
+    @Test
+    void emergencyStillBlocksFaultsAndQueues() throws IOException {
+        try (BankCentralSystem open = new BankCentralSystem(new InMemoryAccountStore(), dir.resolve("sos"), 1)) {
+            open.getEmergencyQueue().setNotifier(report -> {
+                throw new IOException("link down");
+            });
+            open.getJournal().close();
+
+            open.reportEmergency("Stolen Card", "4000");
+            open.reportEmergency("Cash Jam", "1");
+
+            assertTrue(open.isCardBlocked("4000"));
+            assertEquals(ATMState.NEED_MAINTENANCE, open.getAtmState());
+            List<EmergencyReport> pending = open.getEmergencyQueue().pending();
+            assertEquals(2, pending.size());
+            assertTrue(pending.stream().allMatch(r -> r.getId() < 0));
+            assertEquals(2, open.getMetrics().count(Operation.EMERGENCY, Outcome.JOURNAL_FAILED));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    /** The class doc promises under 1.6%: a bucket is at most 1/64 of its smallest value wide. */
+    private static final double ERROR = 1.0 / 64;
+
+    @Test
+    void smallValuesAreExact() {
+        for (long v = 0; v < 128; v++) {
+            assertEquals(v, LatencyHistogram.highestEquivalent(LatencyHistogram.indexOf(v)));
+        }
+    }
+
+    @Test
+    void bucketsTileEveryPowerOfTwo() {
+        for (int bit = 7; bit < 63; bit++) {
+            long power = 1L << bit;
+            int below = LatencyHistogram.indexOf(power - 1);
+            int at = LatencyHistogram.indexOf(power);
+            assertEquals(below + 1, at, "2^" + bit);
+            assertEquals(power - 1, LatencyHistogram.highestEquivalent(below), "2^" + bit);
+            // the first bucket of each power of two is 2^(bit-6) wide
+            assertEquals(power + (power >>> 6) - 1, LatencyHistogram.highestEquivalent(at), "2^" + bit);
+            assertNotEquals(at, LatencyHistogram.indexOf(power + (power >>> 6)));
+        }
+    }
+
+    @Test
+    void everyValueLandsInABucketWithinTheError() {
+        long[] probes = {128, 129, 255, 256, 1_000, 4_097, 1_234_567, 999_999_999, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long v : probes) {
+            int i = LatencyHistogram.indexOf(v);
+            long high = LatencyHistogram.highestEquivalent(i);
+            assertTrue(high >= v, "value " + v);
+            assertTrue(LatencyHistogram.highestEquivalent(i - 1) < v, "value " + v);
+            assertTrue(high - v <= v * ERROR, "value " + v);
+        }
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(Long.MAX_VALUE);
+        h.record(-5); // a clock step back counts as zero
+        assertEquals(2, h.count());
+        assertEquals(Long.MAX_VALUE, h.max());
+        assertEquals(0, h.percentile(50));
+    }
+
+    @Test
+    void percentilesStayWithinTheStatedError() {
+        LatencyHistogram h = new LatencyHistogram();
+        List<Long> values = new ArrayList<>();
+        long v = 1;
+        for (int i = 0; i < 100_000; i++) {
+            v = v * 6364136223846793005L + 1442695040888963407L; // LCG: spread over 1 ns .. ~1 s
+            long nanos = 1 + Math.floorMod(v >>> 20, 1_000_000_000L) / (1 + i % 1000);
+            values.add(nanos);
+            h.record(nanos);
+        }
+        values.sort(null);
+
+        for (double p : new double[] {1, 25, 50, 90, 99, 99.9, 99.99}) {
+            long exact = values.get((int) Math.ceil(values.size() * p / 100.0) - 1);
+            long reported = h.percentile(p);
+            assertTrue(reported >= exact, "p" + p);
+            assertTrue(reported - exact <= exact * ERROR, "p" + p + ": " + reported + " vs " + exact);
+        }
+        assertEquals(values.get(values.size() - 1), h.percentile(100));
+        assertEquals(values.get(values.size() - 1), h.max());
+
+        double mean = values.stream().mapToLong(Long::longValue).average().orElseThrow();
+        assertTrue(h.mean() >= mean && h.mean() <= mean * (1 + ERROR));
+    }
+
+    @Test
+    void emptyAndResetHistogramsReadZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(99));
+        assertEquals(0, h.mean());
+        h.record(1_000);
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.max());
+        assertEquals(0, h.percentile(99));
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram h = new LatencyHistogram();
+        int threads = 8;
+        int perThread = 100_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    h.record((long) i * threads + id);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals((long) threads * perThread, h.count());
+        assertEquals((long) threads * perThread - 1, h.max());
+        assertEquals(127, h.percentile(127.5 / (threads * perThread) * 100));
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MappedAccountStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pinChangeIsNeverSeenHalfWritten() throws Exception {
+        byte[] first = credential((byte) 0x11);
+        byte[] second = credential((byte) 0x22);
+        try (MappedAccountStore store = MappedAccountStore.create(dir.resolve("ledger"), 16)) {
+            Customer writer = new Customer("9500", first, "Mapped", new Account("ACC-M0", Money.ofLira(100)));
+            store.add(writer);
+
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger torn = new AtomicInteger();
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    byte[] seen = store.find("9500").getPinHash();
+                    if (!Arrays.equals(seen, first) && !Arrays.equals(seen, second)) {
+                        torn.incrementAndGet();
+                    }
+                }
+            });
+            reader.start();
+            for (int i = 0; i < 200_000; i++) {
+                writer.setPinHash((i & 1) == 0 ? second : first);
+                store.updatePin(writer);
+            }
+            done.set(true);
+            reader.join();
+
+            assertEquals(0, torn.get());
+            assertArrayEquals(first, store.find("9500").getPinHash());
+        }
+    }
+
+    @Test
+    void lookupsOfOneCardShareOneCustomer() throws IOException {
+        byte[] changed = credential((byte) 0x44);
+        try (MappedAccountStore store = MappedAccountStore.create(dir.resolve("ledger"), 16)) {
+            store.add(new Customer("9502", credential((byte) 0x02), "Mapped", new Account("ACC-M2", 0)));
+            Customer first = store.find("9502");
+            Customer second = store.find("9502");
+            assertSame(first, second);
+
+            Customer other = new Customer("9502", changed, "Mapped", new Account("ACC-M2", 0));
+            store.updatePin(other);
+            assertArrayEquals(changed, first.getPinHash());
+            assertNull(store.find("9999"));
+        }
+    }
+
+    @Test
+    void reopenedLedgerKeepsTheNewPin() throws IOException {
+        Path file = dir.resolve("ledger");
+        byte[] changed = credential((byte) 0x33);
+        try (MappedAccountStore store = MappedAccountStore.create(file, 16)) {
+            Customer c = new Customer("9501", credential((byte) 0x01), "Mapped", new Account("ACC-M1", 0));
+            store.add(c);
+            c.setPinHash(changed);
+            store.updatePin(c);
+        }
+        try (MappedAccountStore store = MappedAccountStore.open(file)) {
+            assertArrayEquals(changed, store.find("9501").getPinHash());
+        }
+    }
+
+    private static byte[] credential(byte fill) {
+        byte[] credential = new byte[CredentialHasher.CREDENTIAL_LENGTH];
+        Arrays.fill(credential, fill);
+        return credential;
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.service;
+
+import org.example.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NoteMixTest {
+
+    private static final long TEN_LIRA = Money.ofLira(10);
+
+    @Test
+    void paysWithTheFewestNotes() {
+        long full = notes(10, 10, 10, 10);
+        assertEquals(notes(2, 0, 0, 0), NoteMix.plan(full, Money.ofLira(400)));
+        assertEquals(notes(0, 1, 0, 4), NoteMix.plan(full, Money.ofLira(180)));
+        assertEquals(notes(0, 1, 0, 4), NoteMix.plan(notes(0, 10, 10, 10), Money.ofLira(180)));
+        assertEquals(notes(0, 0, 2, 4), NoteMix.plan(notes(0, 0, 10, 10), Money.ofLira(180)));
+        assertEquals(notes(0, 4, 0, 0), NoteMix.plan(notes(0, 10, 10, 10), Money.ofLira(400)));
+    }
+
+    @Test
+    void fewestNotePlansAreUnique() {
+        // no two plans with the fewest notes tie, so the fill order never picks between them
+        int[][] states = {{10, 10, 10, 10}, {0, 3, 40, 40}, {1, 0, 2, 40}, {40, 40, 40, 40}, {2, 1, 1, 7}};
+        for (int[] counts : states) {
+            long notes = NoteMix.pack(counts);
+            for (long amount = TEN_LIRA; amount <= Money.ofLira(2_000); amount += TEN_LIRA) {
+                List<Long> best = fewestNotePlans(counts, amount);
+                long plan = NoteMix.plan(notes, amount);
+                if (best.isEmpty()) {
+                    assertEquals(NoteMix.NONE, plan, "amount " + amount);
+                } else {
+                    assertEquals(1, best.size(), "amount " + amount);
+                    assertEquals(best.get(0), plan, "amount " + amount);
+                    assertEquals(amount, NoteMix.value(plan));
+                }
+            }
+        }
+    }
+
+    @Test
+    void refusesWhatNoNotesAddUpTo() {
+        long full = notes(10, 10, 10, 10);
+        assertEquals(NoteMix.NONE, NoteMix.plan(full, 0));
+        assertEquals(NoteMix.NONE, NoteMix.plan(full, -Money.ofLira(20)));
+        assertEquals(NoteMix.NONE, NoteMix.plan(full, Money.ofLira(15)));
+        assertEquals(NoteMix.NONE, NoteMix.plan(full, Money.ofLira(20) + 50));
+        assertEquals(NoteMix.NONE, NoteMix.plan(full, Money.ofLira(10)));
+        assertEquals(NoteMix.NONE, NoteMix.plan(full, Money.ofLira(30)));
+        assertEquals(NoteMix.NONE, NoteMix.plan(notes(0, 0, 0, 1), Money.ofLira(40)));
+        assertEquals(NoteMix.NONE, NoteMix.plan(notes(0, 0, 5, 0), Money.ofLira(120)));
+        // more notes than the dispenser presents at once
+        assertEquals(NoteMix.NONE, NoteMix.plan(notes(100, 0, 0, 0), (NoteMix.MAX_NOTES + 1) * Money.ofLira(200)));
+        assertEquals(NoteMix.NONE, NoteMix.plan(notes(0, 0, 0, 100), Money.ofLira(20) * (NoteMix.MAX_NOTES + 1)));
+    }
+
+    @Test
+    void plansFollowLoadedNotes() {
+        CashStock cash = new CashStock(0);
+        assertFalse(cash.canDispense(Money.ofLira(20)));
+
+        cash.loadNotes(notes(0, 0, 0, 1));
+        assertTrue(cash.canDispense(Money.ofLira(20)));
+        assertFalse(cash.canDispense(Money.ofLira(40)));
+
+        cash.loadNotes(notes(0, 0, 0, 1));
+        assertTrue(cash.canDispense(Money.ofLira(40)));
+        long id = cash.reserve(Money.ofLira(40));
+        assertEquals(notes(0, 0, 0, 2), cash.commit(id));
+        assertFalse(cash.canDispense(Money.ofLira(20)));
+
+        cash.loadNotes(notes(1, 0, 0, 0));
+        assertEquals(notes(1, 0, 0, 0), NoteMix.plan(NoteMix.pack(cash.noteCounts()), Money.ofLira(200)));
+    }
+
+    @Test
+    void plansStayRightAfterEvictions() {
+        List<int[]> first = new ArrayList<>();
+        int states = 0;
+        for (int a = 0; a <= 8 && states <= NoteMix.MAX_TABLES + 100; a++) {
+            for (int b = 0; b <= 8; b++) {
+                for (int c = 0; c <= 8; c++) {
+                    for (int d = 0; d <= 8; d++) {
+                        int[] counts = {a, b, c, d};
+                        NoteMix.plan(NoteMix.pack(counts), Money.ofLira(100));
+                        if (states++ < 20) {
+                            first.add(counts);
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(NoteMix.cachedTables() <= NoteMix.MAX_TABLES);
+
+        for (int[] counts : first) { // their tables were evicted and are built again
+            long notes = NoteMix.pack(counts);
+            for (long amount = TEN_LIRA; amount <= Money.ofLira(1_000); amount += TEN_LIRA) {
+                List<Long> best = fewestNotePlans(counts, amount);
+                assertEquals(best.isEmpty() ? NoteMix.NONE : best.get(0), NoteMix.plan(notes, amount));
+            }
+        }
+    }
+
+    private static long notes(int n200, int n100, int n50, int n20) {
+        return NoteMix.pack(new int[] {n200, n100, n50, n20});
+    }
+
+    /** Every way to pay {@code amount} from {@code counts} with the fewest notes, by brute force. */
+    private static List<Long> fewestNotePlans(int[] counts, long amount) {
+        List<Long> best = new ArrayList<>();
+        int fewest = NoteMix.MAX_NOTES + 1;
+        int[] k = new int[NoteMix.CASSETTES];
+        for (k[0] = 0; k[0] <= counts[0]; k[0]++) {
+            for (k[1] = 0; k[1] <= counts[1]; k[1]++) {
+                for (k[2] = 0; k[2] <= counts[2]; k[2]++) {
+                    long rest = amount - k[0] * NoteMix.denomination(0) - k[1] * NoteMix.denomination(1)
+                            - k[2] * NoteMix.denomination(2);
+                    if (rest < 0 || rest % NoteMix.denomination(3) != 0) {
+                        continue;
+                    }
+                    k[3] = (int) (rest / NoteMix.denomination(3));
+                    int n = k[0] + k[1] + k[2] + k[3];
+                    if (k[3] > counts[3] || n > fewest || n > NoteMix.MAX_NOTES) {
+                        continue;
+                    }
+                    if (n < fewest) {
+                        fewest = n;
+                        best.clear();
+                    }
+                    best.add(NoteMix.pack(k));
+                }
+            }
+        }
+        return best;
+    }
+}
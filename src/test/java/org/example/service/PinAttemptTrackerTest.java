@@ -0,0 +1,127 @@
+package org.example.service;
+
+import org.example.service.BankMetrics.Operation;
+import org.example.service.BankMetrics.Outcome;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PinAttemptTrackerTest {
+
+    @Test
+    void countsUntilReset() {
+        PinAttemptTracker tracker = new PinAttemptTracker();
+
+        assertEquals(1, tracker.increment("1"));
+        assertEquals(2, tracker.increment("1"));
+        assertEquals(1, tracker.increment("2"));
+        tracker.reset("1");
+        assertEquals(0, tracker.attempts("1"));
+        assertEquals(1, tracker.attempts("2"));
+    }
+
+    @Test
+    void countCarriesOverOneFullGenerationButNotTwo() {
+        PinAttemptTracker tracker = new PinAttemptTracker(32, TimeUnit.DAYS.toMillis(1)); // 24 cards per generation
+        tracker.increment("card");
+        flood(tracker, "a", 23); // fills the first generation
+
+        assertEquals(2, tracker.increment("card")); // rotates, carrying the count over
+        flood(tracker, "b", 23);
+        flood(tracker, "c", 25); // two more rotations with no attempt on the card
+
+        assertEquals(0, tracker.attempts("card"));
+    }
+
+    @Test
+    void countIsForgottenAfterTwoQuietWindows() throws InterruptedException {
+        PinAttemptTracker tracker = new PinAttemptTracker(16, 20);
+        tracker.increment("card");
+
+        Thread.sleep(30);
+        tracker.increment("other"); // rotates
+        assertEquals(1, tracker.attempts("card"));
+        Thread.sleep(30);
+        tracker.increment("other");
+        assertEquals(0, tracker.attempts("card"));
+    }
+
+    @Test
+    void correctPinBetweenWrongOnesStartsTheCountAgain() {
+        BankCentralSystem bank = new BankCentralSystem();
+        bank.setLoginRate(1_000, 100);
+
+        assertNull(bank.authenticateCustomer("1", "0000"));
+        assertNull(bank.authenticateCustomer("1", "0000"));
+        assertNotNull(bank.authenticateCustomer("1", "1234"));
+        assertNull(bank.authenticateCustomer("1", "0000"));
+        assertNull(bank.authenticateCustomer("1", "0000"));
+        assertFalse(bank.isCardRetained("1"));
+
+        assertNull(bank.authenticateCustomer("1", "0000"));
+        assertTrue(bank.isCardRetained("1"));
+        assertNull(bank.authenticateCustomer("1", "1234"));
+        assertEquals(1, bank.getMetrics().count(Operation.LOGIN, Outcome.CARD_RETAINED));
+    }
+
+    @Test
+    void bucketGrantsTheBurstThenRefuses() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(10, 3);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        Thread.sleep(150);
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    void bucketNeverGrantsMoreThanTheBurstUnderContention() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(0.001, 100);
+        AtomicInteger granted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    if (bucket.tryAcquire()) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, granted.get());
+    }
+
+    @Test
+    void infiniteRateGrantsEverythingAndBadRatesAreRefused() {
+        TokenBucket unlimited = new TokenBucket(Double.POSITIVE_INFINITY, 1);
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(unlimited.tryAcquire());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+
+    private static void flood(PinAttemptTracker tracker, String prefix, int cards) {
+        for (int i = 0; i < cards; i++) {
+            tracker.increment(prefix + i);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.service;
+
+import org.example.service.BankMetrics.Outcome;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RequestDeduplicatorTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @Test
+    void remembersOutcomes() {
+        RequestDeduplicator dedup = new RequestDeduplicator(16, HOUR);
+        dedup.remember(7, Outcome.OK);
+        dedup.remember(8, Outcome.INSUFFICIENT_FUNDS);
+
+        assertEquals(Outcome.OK, dedup.outcomeOf(7));
+        assertEquals(Outcome.INSUFFICIENT_FUNDS, dedup.outcomeOf(8));
+        assertNull(dedup.outcomeOf(9));
+        assertEquals(2, dedup.size());
+    }
+
+    @Test
+    void rememberingAgainReplacesTheOutcome() {
+        RequestDeduplicator dedup = new RequestDeduplicator(16, HOUR);
+        dedup.remember(7, Outcome.LIMIT_EXCEEDED);
+        dedup.remember(7, Outcome.OK);
+
+        assertEquals(Outcome.OK, dedup.outcomeOf(7));
+        assertEquals(1, dedup.size());
+    }
+
+    @Test
+    void fullGenerationIsKeptForOneMoreRound() {
+        RequestDeduplicator dedup = new RequestDeduplicator(32, HOUR); // 24 ids per generation
+        for (long id = 1; id <= 24; id++) {
+            dedup.remember(id, Outcome.OK);
+        }
+        dedup.remember(25, Outcome.OK); // rotates: 1..24 become the previous generation
+
+        assertEquals(Outcome.OK, dedup.outcomeOf(1));
+        assertEquals(Outcome.OK, dedup.outcomeOf(25));
+
+        for (long id = 26; id <= 49; id++) {
+            dedup.remember(id, Outcome.OK); // 25..48 fill the current one, 49 rotates again
+        }
+        assertNull(dedup.outcomeOf(1));
+        assertNull(dedup.outcomeOf(24));
+        assertEquals(Outcome.OK, dedup.outcomeOf(25));
+        assertEquals(Outcome.OK, dedup.outcomeOf(49));
+    }
+
+    @Test
+    void expiredGenerationIsDropped() {
+        RequestDeduplicator dedup = new RequestDeduplicator(16, 0); // every insert finds the generation expired
+        dedup.remember(1, Outcome.OK);
+        dedup.remember(2, Outcome.OK);
+
+        assertEquals(Outcome.OK, dedup.outcomeOf(1));
+        dedup.remember(3, Outcome.OK);
+        assertNull(dedup.outcomeOf(1));
+        assertEquals(Outcome.OK, dedup.outcomeOf(2));
+    }
+
+    @Test
+    void newRequestIdsAreNeverNone() {
+        for (int i = 0; i < 1_000; i++) {
+            assertNotEquals(RequestDeduplicator.NONE, RequestDeduplicator.newRequestId());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.model.StatementEntry;
+import org.example.model.StatementEntry.Type;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionHistoryTest {
+
+    @TempDir
+    Path dir;
+
+    private final TransactionHistory history = new TransactionHistory();
+
+    @Test
+    void latestIsNewestFirstAcrossChunks() {
+        for (int i = 1; i <= 100; i++) {
+            history.record("1", Type.DEPOSIT, i, i * 10);
+        }
+
+        List<StatementEntry> latest = history.latest("1", 10);
+
+        assertEquals(100, history.size("1"));
+        assertEquals(10, latest.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(99 - i, latest.get(i).getIndex());
+            assertEquals(100 - i, latest.get(i).getAmount());
+            assertEquals((100 - i) * 10, latest.get(i).getBalanceAfter());
+        }
+    }
+
+    @Test
+    void pagesFollowOnWithoutGapsOrRepeats() {
+        for (int i = 0; i < 50; i++) {
+            history.record("1", Type.WITHDRAWAL, -1, 50 - i);
+        }
+
+        long next = Long.MAX_VALUE;
+        int seen = 0;
+        List<StatementEntry> page;
+        while (!(page = history.before("1", next, 7)).isEmpty()) {
+            for (StatementEntry e : page) {
+                assertEquals(49 - seen, e.getIndex());
+                seen++;
+            }
+            next = page.get(page.size() - 1).getIndex();
+        }
+        assertEquals(50, seen);
+    }
+
+    @Test
+    void unknownCardAndEmptyRequestsGiveNothing() {
+        history.record("1", Type.DEPOSIT, 1, 1);
+
+        assertTrue(history.latest("2", 10).isEmpty());
+        assertTrue(history.latest("1", 0).isEmpty());
+        assertEquals(0, history.size("2"));
+    }
+
+    @Test
+    void betweenKeepsOnlyTheRange() throws InterruptedException {
+        history.record("1", Type.DEPOSIT, 1, 1);
+        Thread.sleep(5);
+        long from = System.currentTimeMillis();
+        history.record("1", Type.DEPOSIT, 2, 3);
+        history.record("1", Type.DEPOSIT, 3, 6);
+        long to = System.currentTimeMillis() + 1;
+
+        List<StatementEntry> range = history.between("1", from, to, 10);
+
+        assertEquals(2, range.size());
+        assertEquals(3, range.get(0).getAmount());
+        assertEquals(2, range.get(1).getAmount());
+        assertEquals(1, history.between("1", from, to, 1).size());
+    }
+
+    @Test
+    void miniStatementShowsEveryMovementOfTheCard() {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        Customer a = new Customer("9600", new byte[0], "History A", new Account("ACC-H0", Money.ofLira(1_000)));
+        Customer b = new Customer("9601", new byte[0], "History B", new Account("ACC-H1", Money.ofLira(1_000)));
+        store.add(a);
+        store.add(b);
+        BankCentralSystem bank = new BankCentralSystem(store, Money.ofLira(10_000));
+
+        bank.deposit(a, Money.ofLira(100));
+        bank.withdraw(a, Money.ofLira(200));
+        bank.transfer(a, "9601", Money.ofLira(300));
+
+        List<StatementEntry> statement = bank.miniStatement(a, 10);
+        assertEquals(3, statement.size());
+        assertEntry(statement.get(0), Type.TRANSFER_OUT, -Money.ofLira(300), Money.ofLira(600));
+        assertEntry(statement.get(1), Type.WITHDRAWAL, -Money.ofLira(200), Money.ofLira(900));
+        assertEntry(statement.get(2), Type.DEPOSIT, Money.ofLira(100), Money.ofLira(1_100));
+        assertEntry(bank.miniStatement(b, 10).get(0), Type.TRANSFER_IN, Money.ofLira(300), Money.ofLira(1_300));
+    }
+
+    @Test
+    void historySurvivesARestart() throws IOException {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        Customer a = new Customer("9600", new byte[0], "History A", new Account("ACC-H0", Money.ofLira(1_000)));
+        store.add(a);
+        try (BankCentralSystem bank = new BankCentralSystem(store, dir, 1)) {
+            bank.deposit(a, Money.ofLira(100));
+            bank.withdraw(a, Money.ofLira(40));
+        }
+
+        InMemoryAccountStore reloaded = new InMemoryAccountStore();
+        reloaded.add(new Customer("9600", new byte[0], "History A", new Account("ACC-H0", Money.ofLira(1_000))));
+        try (BankCentralSystem bank = new BankCentralSystem(reloaded, dir, 1)) {
+            List<StatementEntry> statement = bank.miniStatement(reloaded.find("9600"), 10);
+            assertEquals(2, statement.size());
+            assertEntry(statement.get(0), Type.WITHDRAWAL, -Money.ofLira(40), Money.ofLira(1_060));
+            assertEntry(statement.get(1), Type.DEPOSIT, Money.ofLira(100), Money.ofLira(1_100));
+        }
+    }
+
+    private static void assertEntry(StatementEntry e, Type type, long amount, long balanceAfter) {
+        assertEquals(type, e.getType());
+        assertEquals(amount, e.getAmount());
+        assertEquals(balanceAfter, e.getBalanceAfter());
+    }
+}
@@ -0,0 +1,228 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysEveryRecordInOrder() throws IOException {
+        try (TransactionJournal journal = open()) {
+            journal.replay(0, new Recorder());
+            journal.logDeposit("ATM-1", "1111", 500, 1500);
+            journal.logWithdraw("ATM-1", "1111", 200, 1300, 0x0001_0002_0003_0004L);
+            journal.logTransfer("1111", "2222", 100, 1200, 600);
+            journal.logCardBlocked("2222", "reported stolen");
+            journal.logNotesLoaded("ATM-1", 42);
+            journal.awaitDurable(journal.logPosting("2222", -50, 550));
+        }
+
+        Recorder replayed = reopen(0);
+        assertEquals(List.of(
+                "1 deposit ATM-1 1111 500 1500",
+                "2 withdraw ATM-1 1111 200 1300 1000200030004",
+                "3 transfer 1111 2222 100 1200 600",
+                "4 blocked 2222 reported stolen",
+                "5 notes ATM-1 2a",
+                "6 posted 2222 -50 550"), replayed.records);
+    }
+
+    @Test
+    void skipsRecordsCoveredBySnapshot() throws IOException {
+        writeDeposits(5);
+
+        Recorder replayed = reopen(3);
+        assertEquals(List.of("4 deposit ATM-1 1111 4 4", "5 deposit ATM-1 1111 5 5"), replayed.records);
+    }
+
+    @Test
+    void cutsTornTailAndAppendsAfterIt() throws IOException {
+        writeDeposits(3);
+        Path segment = onlySegment();
+        long intact = Files.size(segment);
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // a whole header, then part of the body it announces
+            ch.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 9, 9, 9}));
+        }
+
+        try (TransactionJournal journal = open()) {
+            Recorder replayed = new Recorder();
+            journal.replay(0, replayed);
+            assertEquals(3, replayed.records.size());
+            assertEquals(intact, Files.size(segment));
+            assertEquals(4, journal.logDeposit("ATM-1", "1111", 4, 4));
+            journal.awaitDurable(4);
+        }
+
+        assertEquals("4 deposit ATM-1 1111 4 4", reopen(3).records.get(0));
+    }
+
+    @Test
+    void stopsAtRecordWithBadCrc() throws IOException {
+        writeDeposits(3);
+        Path segment = onlySegment();
+        long frame = Files.size(segment) / 3; // every deposit frame is the same size
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            long position = frame + frame - 1; // last byte of the second record's balance
+            ch.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 1)).rewind();
+            ch.write(b, position);
+        }
+
+        assertEquals(List.of("1 deposit ATM-1 1111 1 1"), reopen(0).records);
+    }
+
+    @Test
+    void replaysAcrossSegments() throws IOException {
+        try (TransactionJournal journal = new TransactionJournal(dir, 1, 0, 256)) {
+            journal.replay(0, new Recorder());
+            for (int i = 1; i <= 20; i++) {
+                journal.awaitDurable(journal.logDeposit("ATM-1", "1111", i, i));
+            }
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.count() > 1);
+        }
+        Recorder replayed = reopen(0);
+        assertEquals(20, replayed.records.size());
+        assertEquals("20 deposit ATM-1 1111 20 20", replayed.records.get(19));
+        assertEquals(List.of("19 deposit ATM-1 1111 19 19", "20 deposit ATM-1 1111 20 20"),
+                readOnly(18).records);
+    }
+
+    private TransactionJournal open() throws IOException {
+        return new TransactionJournal(dir, 4);
+    }
+
+    private void writeDeposits(int count) throws IOException {
+        try (TransactionJournal journal = open()) {
+            journal.replay(0, new Recorder());
+            long lsn = 0;
+            for (int i = 1; i <= count; i++) {
+                lsn = journal.logDeposit("ATM-1", "1111", i, i);
+            }
+            journal.awaitDurable(lsn);
+        }
+    }
+
+    private Recorder reopen(long afterLsn) throws IOException {
+        Recorder replayed = new Recorder();
+        try (TransactionJournal journal = open()) {
+            journal.replay(afterLsn, replayed);
+        }
+        return replayed;
+    }
+
+    private Recorder readOnly(long afterLsn) throws IOException {
+        Recorder replayed = new Recorder();
+        TransactionJournal.read(dir, afterLsn, Long.MAX_VALUE, replayed);
+        return replayed;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> all = files.toList();
+            assertEquals(1, all.size());
+            return all.get(0);
+        }
+    }
+
+    /** Writes each record down as a line of text. */
+    private static final class Recorder implements TransactionJournal.Replayer {
+        final List<String> records = new ArrayList<>();
+
+        private void add(long lsn, Object... fields) {
+            StringBuilder line = new StringBuilder().append(lsn);
+            for (Object f : fields) {
+                line.append(' ').append(f);
+            }
+            records.add(line.toString());
+        }
+
+        @Override
+        public void deposit(long lsn, long time, String terminalId, String cardNumber, long amount,
+                            long balanceAfter) {
+            add(lsn, "deposit", terminalId, cardNumber, amount, balanceAfter);
+        }
+
+        @Override
+        public void withdraw(long lsn, long time, String terminalId, String cardNumber, long amount,
+                             long balanceAfter, long notes) {
+            add(lsn, "withdraw", terminalId, cardNumber, amount, balanceAfter, Long.toHexString(notes));
+        }
+
+        @Override
+        public void transfer(long lsn, long time, String fromCard, String toCard, long amount,
+                             long fromBalanceAfter, long toBalanceAfter) {
+            add(lsn, "transfer", fromCard, toCard, amount, fromBalanceAfter, toBalanceAfter);
+        }
+
+        @Override
+        public void posted(long lsn, long time, String cardNumber, long amount, long balanceAfter) {
+            add(lsn, "posted", cardNumber, amount, balanceAfter);
+        }
+
+        @Override
+        public void pinChanged(long lsn, String cardNumber, byte[] pinHash) {
+            add(lsn, "pin", cardNumber, pinHash.length);
+        }
+
+        @Override
+        public void emergency(long lsn, long time, String terminalId, String type, String cardNumber) {
+            add(lsn, "emergency", terminalId, type, cardNumber);
+        }
+
+        @Override
+        public void emergencySent(long lsn, long reportLsn) {
+            add(lsn, "sent", reportLsn);
+        }
+
+        @Override
+        public void cashLoaded(long lsn, String terminalId, long amount) {
+            add(lsn, "cash", terminalId, amount);
+        }
+
+        @Override
+        public void cardRetained(long lsn, String terminalId, String cardNumber) {
+            add(lsn, "retained", terminalId, cardNumber);
+        }
+
+        @Override
+        public void cardReturned(long lsn, String cardNumber) {
+            add(lsn, "returned", cardNumber);
+        }
+
+        @Override
+        public void cardBlocked(long lsn, String cardNumber, String reason) {
+            add(lsn, "blocked", cardNumber, reason);
+        }
+
+        @Override
+        public void cardUnblocked(long lsn, String cardNumber) {
+            add(lsn, "unblocked", cardNumber);
+        }
+
+        @Override
+        public void notesLoaded(long lsn, String terminalId, long notes) {
+            add(lsn, "notes", terminalId, Long.toHexString(notes));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.service;
+
+import org.example.model.Account;
+import org.example.model.Customer;
+import org.example.model.Money;
+import org.example.service.BankMetrics.Operation;
+import org.example.service.BankMetrics.Outcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WithdrawalLimitsTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long FIVE_MINUTES = TimeUnit.MINUTES.toMillis(5);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void dayWindowForgetsAnHourAtATime() {
+        SlidingWindowCounter day = new SlidingWindowCounter(24, HOUR);
+        day.add(0, 100);
+        day.add(5 * HOUR, 200);
+
+        assertEquals(300, day.sum(23 * HOUR));
+        assertEquals(2, day.count(23 * HOUR));
+        assertEquals(200, day.sum(24 * HOUR)); // the first hour's bucket slid out
+        assertEquals(0, day.sum(29 * HOUR));
+        assertEquals(0, day.count(100 * HOUR));
+    }
+
+    @Test
+    void hourWindowForgetsFiveMinutesAtATime() {
+        SlidingWindowCounter hour = new SlidingWindowCounter(12, FIVE_MINUTES);
+        hour.add(0, 10);
+        hour.add(FIVE_MINUTES, 20);
+
+        assertEquals(30, hour.sum(HOUR - 1));
+        assertEquals(20, hour.sum(HOUR));
+        assertEquals(1, hour.count(HOUR));
+        assertEquals(20, hour.sum(HOUR / 2)); // a clock that went back does not bring the slot back
+    }
+
+    @Test
+    void limitsMustNotBeNegative() {
+        assertThrows(IllegalArgumentException.class, () -> new WithdrawalLimits(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new WithdrawalLimits(0, 0, -1));
+    }
+
+    @Test
+    void hourlyAmountCapsTheAllowance() {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        Customer c = new Customer("9700", new byte[0], "Limits", new Account("ACC-L0", Money.ofLira(10_000)));
+        store.add(c);
+        BankCentralSystem bank = new BankCentralSystem(store, Money.ofLira(100_000));
+        bank.setWithdrawalLimits(new WithdrawalLimits(Money.ofLira(2_000), Money.ofLira(500), 10));
+
+        assertTrue(bank.withdraw(c, Money.ofLira(400)));
+        assertEquals(Money.ofLira(100), bank.withdrawalAllowance(c));
+        assertFalse(bank.withdraw(c, Money.ofLira(200)));
+        assertEquals(1, bank.getMetrics().count(Operation.WITHDRAW, Outcome.LIMIT_EXCEEDED));
+        assertTrue(bank.withdraw(c, Money.ofLira(100)));
+        assertEquals(0, bank.withdrawalAllowance(c));
+    }
+
+    @Test
+    void hourlyCountAndCardLimitsApply() {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        Customer c = new Customer("9700", new byte[0], "Limits", new Account("ACC-L0", Money.ofLira(10_000)));
+        Customer other = new Customer("9701", new byte[0], "Limits", new Account("ACC-L1", Money.ofLira(10_000)));
+        store.add(c);
+        store.add(other);
+        BankCentralSystem bank = new BankCentralSystem(store, Money.ofLira(100_000));
+        bank.setWithdrawalLimits("9700", new WithdrawalLimits(Money.ofLira(20_000), Money.ofLira(10_000), 2));
+
+        assertTrue(bank.withdraw(c, Money.ofLira(20)));
+        assertTrue(bank.withdraw(c, Money.ofLira(20)));
+        assertEquals(0, bank.withdrawalAllowance(c));
+        assertFalse(bank.withdraw(c, Money.ofLira(20)));
+        assertEquals(WithdrawalLimits.DEFAULT, bank.getWithdrawalLimits("9701"));
+        assertEquals(WithdrawalLimits.DEFAULT.getPerHour(), bank.withdrawalAllowance(other));
+
+        bank.setWithdrawalLimits("9700", null);
+        assertEquals(WithdrawalLimits.DEFAULT.getPerHour() - Money.ofLira(40), bank.withdrawalAllowance(c));
+    }
+
+    @Test
+    void dailyTotalSurvivesARestart() throws IOException {
+        InMemoryAccountStore store = new InMemoryAccountStore();
+        Customer c = new Customer("9700", new byte[0], "Limits", new Account("ACC-L0", Money.ofLira(10_000)));
+        store.add(c);
+        try (BankCentralSystem bank = new BankCentralSystem(store, dir, 1)) {
+            assertTrue(bank.withdraw(c, Money.ofLira(300)));
+        }
+
+        try (BankCentralSystem bank = new BankCentralSystem(store, dir, 1)) {
+            bank.setWithdrawalLimits(new WithdrawalLimits(Money.ofLira(1_000), Money.ofLira(1_000), 10));
+            assertEquals(Money.ofLira(700), bank.withdrawalAllowance(c));
+        }
+    }
+}